@@ -0,0 +1,282 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking HTTP client that parses JSON responses while they arrive.
+ * Requests run on the JDK HttpClient (one selector thread plus a small executor),
+ * so thousands can be in flight at once. Each body chunk is fed to Jackson's
+ * non-blocking parser and the next chunk is only requested once the tokens of
+ * the current one are consumed; while a consumer is busy the client stops
+ * reading the socket, which pushes back on the server through TCP flow control.
+ * Memory per response is bounded by one chunk plus the element being bound,
+ * however large the body is.
+ */
+public class AsyncJsonClient {
+    
+    public static final int DEFAULT_THREADS = 4;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+    
+    private final ObjectMapper objectMapper;
+    private final HttpClient client;
+    private final Duration timeout;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    
+    public AsyncJsonClient(ObjectMapper objectMapper) {
+        this(objectMapper, DEFAULT_THREADS, DEFAULT_TIMEOUT);
+    }
+    
+    /**
+     * @param objectMapper binds streamed elements
+     * @param threads      executor threads for response handling and parsing
+     * @param timeout      connect timeout and time allowed until the response headers arrive
+     */
+    public AsyncJsonClient(ObjectMapper objectMapper, int threads, Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "async-json-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .executor(executor)
+            .build();
+    }
+    
+    /**
+     * Receives the tokens of a response body in order. The parser is positioned on
+     * the token, so its value can be read with getText(), getLongValue() and so on.
+     */
+    @FunctionalInterface
+    public interface TokenHandler {
+        void onToken(JsonToken token, JsonParser parser) throws IOException;
+    }
+    
+    /**
+     * GETs a JSON document and hands every token to the handler as it is parsed
+     *
+     * @return completes when the document has been read, or exceptionally on an
+     *         HTTP error status, I/O error, malformed JSON or handler failure
+     */
+    public CompletionStage<Void> streamTokens(URI uri, TokenHandler handler) {
+        return send(uri, () -> new StreamingSubscriber<>(handler, () -> null));
+    }
+    
+    /**
+     * GETs a JSON array and binds its elements one at a time; a document that is
+     * not an array is bound as a single element
+     *
+     * @return number of elements delivered
+     */
+    public <T> CompletionStage<Long> streamArray(URI uri, Class<T> type, Consumer<? super T> consumer) {
+        ElementBinder<T> binder = new ElementBinder<>(objectMapper, type, consumer);
+        return send(uri, () -> new StreamingSubscriber<>(binder, binder::count));
+    }
+    
+    private <R> CompletionStage<R> send(URI uri, Supplier<StreamingSubscriber<R>> subscribers) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(timeout)
+            .header("Accept", "application/json")
+            .GET()
+            .build();
+        HttpResponse.BodyHandler<R> bodyHandler = info -> {
+            if (info.statusCode() < 200 || info.statusCode() >= 300) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            return subscribers.get();
+        };
+        
+        requests.increment();
+        inFlight.incrementAndGet();
+        return client.sendAsync(request, bodyHandler)
+            .whenComplete((response, error) -> inFlight.decrementAndGet())
+            .thenCompose(response -> {
+                if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                    return CompletableFuture.failedFuture(
+                        new IOException("HTTP " + response.statusCode() + " from " + uri));
+                }
+                return CompletableFuture.completedFuture(response.body());
+            });
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    public long getRequests() {
+        return requests.sum();
+    }
+    
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+    
+    /**
+     * Feeds body chunks to a non-blocking parser, requesting one chunk at a time
+     */
+    private final class StreamingSubscriber<R> implements HttpResponse.BodySubscriber<R> {
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+        private final TokenHandler handler;
+        private final Supplier<R> completion;
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private byte[] chunk = new byte[8192];
+        private Flow.Subscription subscription;
+        
+        StreamingSubscriber(TokenHandler handler, Supplier<R> completion) {
+            this.handler = handler;
+            this.completion = completion;
+            try {
+                this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+            } catch (IOException e) {
+                throw new IllegalStateException("JSON factory cannot parse without blocking", e);
+            }
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+        
+        @Override
+        public CompletionStage<R> getBody() {
+            return result;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+        
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    int length = buffer.remaining();
+                    bytesReceived.add(length);
+                    if (chunk.length < length) {
+                        chunk = new byte[length];
+                    }
+                    buffer.get(chunk, 0, length);
+                    // The parser reads from chunk until it runs dry, so it can be refilled afterwards
+                    feeder.feedInput(chunk, 0, length);
+                    drain();
+                }
+            } catch (Throwable e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            subscription.request(1);
+        }
+        
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                handler.onToken(token, parser);
+            }
+        }
+        
+        @Override
+        public void onError(Throwable error) {
+            result.completeExceptionally(error);
+        }
+        
+        @Override
+        public void onComplete() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                feeder.endOfInput();
+                drain();
+                parser.close();
+                result.complete(completion.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+    
+    /**
+     * Collects the tokens of one array element and binds it once the element is complete
+     */
+    private static final class ElementBinder<T> implements TokenHandler {
+        private final ObjectMapper mapper;
+        private final Class<T> type;
+        private final Consumer<? super T> consumer;
+        private TokenBuffer element;
+        private int depth;
+        private boolean started;
+        private boolean topLevelArray;
+        private long count;
+        
+        ElementBinder(ObjectMapper mapper, Class<T> type, Consumer<? super T> consumer) {
+            this.mapper = mapper;
+            this.type = type;
+            this.consumer = consumer;
+        }
+        
+        @Override
+        public void onToken(JsonToken token, JsonParser parser) throws IOException {
+            if (!started) {
+                started = true;
+                if (token == JsonToken.START_ARRAY) {
+                    topLevelArray = true;
+                    return;
+                }
+            }
+            if (topLevelArray && depth == 0 && token == JsonToken.END_ARRAY) {
+                return;
+            }
+            if (element == null) {
+                element = new TokenBuffer(parser, null);
+            }
+            element.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (depth == 0) {
+                T value;
+                try (JsonParser elementParser = element.asParser(mapper)) {
+                    value = mapper.readValue(elementParser, type);
+                }
+                element = null;
+                count++;
+                consumer.accept(value);
+            }
+        }
+        
+        Long count() {
+            return count;
+        }
+    }
+}
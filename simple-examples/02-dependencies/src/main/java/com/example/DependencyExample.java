@@ -1,38 +1,159 @@
 package com.example;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Demonstrates Maven dependency management with various external libraries.
  * This class shows how to use different types of dependencies and their scopes.
  */
-public class DependencyExample {
+public class DependencyExample implements Closeable {
     
     private static final Logger logger = LoggerFactory.getLogger(DependencyExample.class);
-    private final ObjectMapper objectMapper;
-    private final HttpClient httpClient;
+    private static final byte[] EMPTY_JSON = "{}".getBytes(StandardCharsets.UTF_8);
+    /** System property with the directory of the response cache's disk tier */
+    public static final String HTTP_CACHE_DIR_PROPERTY = "dependency.example.http.cache.dir";
+    
+    private final boolean generatedAccessors;
+    private final Path httpCacheDirectory;
+    private final StartupTrace startupTrace = new StartupTrace();
+    /** Created on first use, so a run only pays for the libraries it touches */
+    private final List<Lazy<?>> components = new ArrayList<>();
+    private final Lazy<ObjectMapper> objectMapper;
+    /** Mappers for the binary wire formats, by format and string sharing; created on first use */
+    private final ConcurrentMap<String, ObjectMapper> formatMappers = new ConcurrentHashMap<>();
+    private final Lazy<ObjectWriter> streamWriter;
+    private final Lazy<PooledHttpFetcher> httpFetcher;
+    private final Lazy<HttpResponseCache> responseCache;
+    private final Lazy<HedgedHttpFetcher> hedgedFetcher;
+    /** Collapses concurrent fetchCached calls for the same URI into one cache lookup */
+    private final Lazy<SingleFlight<RequestKey, HttpResponseCache.CachedResponse>> cachedFetches;
+    private final Lazy<AsyncJsonClient> asyncJsonClient;
     
     public DependencyExample() {
-        // Initialize Jackson ObjectMapper with JSR310 module for Java 8 time support
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this(false);
+    }
+    
+    /**
+     * @param generatedAccessors register the Blackbird module, which replaces reflective
+     *                           getter/setter/field access of bean properties with
+     *                           generated lambdas (faster for POJOs, no effect on Maps)
+     */
+    public DependencyExample(boolean generatedAccessors) {
+        this(generatedAccessors, defaultHttpCacheDirectory());
+    }
+    
+    /**
+     * @param generatedAccessors see DependencyExample(boolean)
+     * @param httpCacheDirectory disk tier of the response cache, kept across runs; created
+     *                           for the owner only, and ignored if others could write to it
+     */
+    public DependencyExample(boolean generatedAccessors, Path httpCacheDirectory) {
+        this.generatedAccessors = generatedAccessors;
+        this.httpCacheDirectory = httpCacheDirectory;
+        // Jackson ObjectMapper with JSR310 module for Java 8 time support
+        this.objectMapper = lazy("objectMapper", () -> configure(new ObjectMapper()));
+        // Callers own the streams they pass in, so serialization must not close them
+        this.streamWriter = lazy("streamWriter",
+            () -> objectMapper.get().writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        
+        // HTTP client backed by a pool of keep-alive connections
+        this.httpFetcher = lazy("httpFetcher", PooledHttpFetcher::new);
+        // Responses are reused while fresh and revalidated when stale
+        this.responseCache = lazy("responseCache",
+            () -> new HttpResponseCache(httpFetcher.get().getClient(), 32L << 20, httpCacheDirectory, 256L << 20,
+                                        System::currentTimeMillis));
+        // Slow GETs get a duplicate after the endpoint's 95th percentile, within a 5% extra load budget
+        this.hedgedFetcher = lazy("hedgedFetcher", () -> new HedgedHttpFetcher(httpFetcher.get().getClient()));
+        this.cachedFetches = lazy("cachedFetches", SingleFlight::new);
         
-        // Initialize HTTP client
-        this.httpClient = HttpClients.createDefault();
+        // Non-blocking client that parses responses while they stream in
+        this.asyncJsonClient = lazy("asyncJsonClient", () -> new AsyncJsonClient(objectMapper.get()));
+    }
+    
+    /**
+     * The HTTP_CACHE_DIR_PROPERTY directory if set, otherwise one under the user's
+     * ~/.cache. Not the shared temporary directory, where another user could create
+     * it first.
+     */
+    static Path defaultHttpCacheDirectory() {
+        String configured = System.getProperty(HTTP_CACHE_DIR_PROPERTY);
+        if (configured != null && !configured.trim().isEmpty()) {
+            return Paths.get(configured.trim());
+        }
+        return Paths.get(System.getProperty("user.home"), ".cache", "dependency-example-http");
+    }
+    
+    private <T> Lazy<T> lazy(String name, Supplier<? extends T> create) {
+        Lazy<T> component = new Lazy<>(name, startupTrace, create);
+        components.add(component);
+        return component;
+    }
+    
+    /**
+     * Creates every component now instead of on first use, for long-running callers
+     * that would rather pay the startup cost before their first request
+     */
+    public void initializeAll() {
+        for (Lazy<?> component : components) {
+            component.get();
+        }
+    }
+    
+    /**
+     * Components created so far and the time each one took, class loading included
+     */
+    public StartupTrace getStartupTrace() {
+        return startupTrace;
+    }
+    
+    /**
+     * Registers the modules every mapper of this example shares, whatever its format
+     */
+    private ObjectMapper configure(ObjectMapper mapper) {
+        mapper.registerModule(new JavaTimeModule());
+        if (generatedAccessors) {
+            mapper.registerModule(new BlackbirdModule());
+        }
+        return mapper;
+    }
+    
+    private ObjectMapper mapperFor(WireFormat format, WireFormat.StringSharing sharing) {
+        if (format == WireFormat.JSON) {
+            return objectMapper.get();
+        }
+        // Only Smile uses the sharing option; the other formats need one mapper each
+        String key = format == WireFormat.SMILE ? format + "/" + sharing : format.name();
+        return formatMappers.computeIfAbsent(key, name -> startupTrace.time(
+            "mapper " + key, () -> configure(new ObjectMapper(format.newFactory(sharing)))));
     }
     
     /**
@@ -50,19 +171,44 @@ public class DependencyExample {
             data.put("active", true);
             
             // Serialize to JSON
-            String json = objectMapper.writeValueAsString(data);
+            String json = objectMapper.get().writeValueAsString(data);
             logger.info("Serialized JSON: {}", json);
             
             // Deserialize back to Map
             @SuppressWarnings("unchecked")
-            Map<String, Object> deserializedData = objectMapper.readValue(json, Map.class);
+            Map<String, Object> deserializedData = objectMapper.get().readValue(json, Map.class);
             logger.info("Deserialized data: {}", deserializedData);
             
+            // Read only the fields needed, without building the Map
+            LazyJsonDocument document = readLazy(json.getBytes(StandardCharsets.UTF_8));
+            logger.info("Lazily read name: {}, active: {}", document.get("/name"), document.get("/active"));
+        
         } catch (Exception e) {
             logger.error("Error during JSON processing", e);
         }
     }
     
+    /**
+     * Indexes a UTF-8 JSON document so that single values can be read by JSON Pointer
+     * without deserializing the rest; values bind with this example's ObjectMapper.
+     * The array is not copied.
+     */
+    public LazyJsonDocument readLazy(byte[] json) throws IOException {
+        return LazyJsonDocument.parse(objectMapper.get(), json);
+    }
+    
+    /**
+     * Creates a pipeline that reads newline-delimited JSON records of the given type,
+     * transforms them on a pool of worker threads and writes the results as NDJSON,
+     * using this example's ObjectMapper on both ends.
+     *
+     * @param ordered write results in input order rather than as they complete
+     */
+    public <I, O> NdjsonPipeline<I, O> ndjsonPipeline(Class<I> type, Function<? super I, ? extends O> transform,
+                                                      int workers, boolean ordered) {
+        return new NdjsonPipeline<>(objectMapper.get(), type, transform, workers, ordered);
+    }
+    
     /**
      * Demonstrates Apache Commons Lang utilities.
      */
@@ -83,10 +229,18 @@ public class DependencyExample {
         logger.info("Is empty: {}", isEmpty);
         logger.info("Is blank (whitespace): {}", isBlank);
         
-        // Array utilities
-        String[] words = StringUtils.split(trimmed);
-        String joined = StringUtils.join(words, " | ");
-        logger.info("Words: {}", String.join(", ", words));
+        // Tokens are positions in the input; only the log lines are built as Strings
+        StringBuilder words = new StringBuilder();
+        StringBuilder joined = new StringBuilder();
+        Tokenizer.tokenize(trimmed, (source, start, end) -> {
+            if (words.length() > 0) {
+                words.append(", ");
+                joined.append(" | ");
+            }
+            words.append(source, start, end);
+            joined.append(source, start, end);
+        });
+        logger.info("Words: {}", words);
         logger.info("Joined: {}", joined);
     }
     
@@ -97,25 +251,87 @@ public class DependencyExample {
         logger.info("Demonstrating HTTP client");
         
         try {
-            HttpGet request = new HttpGet("https://httpbin.org/json");
-            HttpResponse response = httpClient.execute(request);
-            
-            int statusCode = response.getStatusLine().getStatusCode();
-            String responseBody = EntityUtils.toString(response.getEntity());
-            
-            logger.info("HTTP Status: {}", statusCode);
-            logger.info("Response: {}", responseBody);
+            HttpResponseCache.CachedResponse response = fetchCached(URI.create("https://httpbin.org/json"));
             
+            logger.info("HTTP Status: {} ({})", response.getStatus(), response.getSource());
+            logger.info("Response: {}", response.bodyAsString());
+        
         } catch (IOException e) {
             logger.warn("HTTP request failed (this is expected if no internet connection): {}", e.getMessage());
         }
     }
     
     /**
-     * Utility method to validate input using Commons Lang.
+     * GETs a URI through the two-tier response cache: fresh entries are served from
+     * memory or disk, stale ones are revalidated with If-None-Match/If-Modified-Since.
+     * Concurrent calls for the same URI share one lookup, so when an entry expires
+     * only one request goes upstream.
+     */
+    public HttpResponseCache.CachedResponse fetchCached(URI uri) throws IOException {
+        return cachedFetches.get().execute(RequestKey.get(uri), () -> responseCache.get().get(uri));
+    }
+    
+    /**
+     * Fetches many URIs concurrently over pooled keep-alive connections and returns
+     * the results as they complete (see PooledHttpFetcher for the limits).
+     */
+    public Iterator<PooledHttpFetcher.FetchResult> fetchAll(List<URI> uris) {
+        return httpFetcher.get().fetchAll(uris);
+    }
+    
+    /**
+     * GETs a URI and, if it is slower than the endpoint's 95th percentile latency so
+     * far, sends a duplicate and takes whichever answers first (see HedgedHttpFetcher).
+     * Only for idempotent requests; failures are reported in the result.
+     */
+    public PooledHttpFetcher.FetchResult fetchHedged(URI uri) {
+        return hedgedFetcher.get().fetch(uri);
+    }
+    
+    /**
+     * Fetches a JSON array without blocking and binds its elements one at a time as
+     * the bytes arrive, so memory stays bounded however large the response is.
+     *
+     * @return completes with the number of elements once the response has been read
+     */
+    public <T> CompletionStage<Long> streamJsonArray(URI uri, Class<T> type, Consumer<? super T> consumer) {
+        return asyncJsonClient.get().streamArray(uri, type, consumer);
+    }
+    
+    /**
+     * Utility method to validate input: not blank, and at least three characters
+     * once trimmed. Same result as StringUtils.isNotBlank(input) && input.trim().length() >= 3,
+     * without allocating a trimmed copy.
      */
     public boolean isValidInput(String input) {
-        return StringUtils.isNotBlank(input) && input.trim().length() >= 3;
+        return InputValidator.isValid(input);
+    }
+    
+    /**
+     * Counts the whitespace-separated tokens of a UTF-8 file, memory-mapping it in
+     * line-aligned chunks that are tokenized in parallel
+     */
+    public long countTokens(Path file) throws IOException {
+        return Tokenizer.tokenize(file, TokenCount::new, TokenCount::add).count;
+    }
+    
+    /**
+     * Applies isValidInput to a batch in parallel
+     *
+     * @return bit i is set when record i is valid
+     */
+    public BitSet validateAll(List<? extends CharSequence> records) {
+        return InputValidator.validate(records);
+    }
+    
+    /**
+     * Applies isValidInput to every line of a UTF-8 file in parallel, memory-mapping
+     * it in chunks so files larger than the heap work
+     *
+     * @return bit i is set when line i is valid
+     */
+    public BitSet validateLines(Path file) throws IOException {
+        return InputValidator.validateLines(file);
     }
     
     /**
@@ -123,27 +339,115 @@ public class DependencyExample {
      */
     public String toJson(Object object) {
         try {
-            return objectMapper.writeValueAsString(object);
+            return objectMapper.get().writeValueAsString(object);
         } catch (Exception e) {
             logger.error("Failed to serialize object to JSON", e);
             return "{}";
         }
     }
     
-    public static void main(String[] args) {
+    /**
+     * Converts an object to UTF-8 encoded JSON without an intermediate String.
+     * The bytes are collected in Jackson's recycled buffers and copied out once.
+     */
+    public byte[] toJsonBytes(Object object) {
+        try {
+            return objectMapper.get().writeValueAsBytes(object);
+        } catch (Exception e) {
+            logger.error("Failed to serialize object to JSON", e);
+            return EMPTY_JSON.clone();
+        }
+    }
+    
+    /**
+     * Writes an object as UTF-8 encoded JSON straight to a stream, encoding into
+     * Jackson's recycled output buffer. The stream is flushed but not closed.
+     * Part of the document may already have been written when this fails.
+     */
+    public void toJson(Object object, OutputStream out) throws IOException {
+        streamWriter.get().writeValue(out, object);
+    }
+    
+    /**
+     * Encodes an object in the given wire format, sharing repeated property names
+     * where the format supports it. JSON gives the same bytes as toJsonBytes.
+     */
+    public byte[] toBytes(Object object, WireFormat format) throws IOException {
+        return toBytes(object, format, WireFormat.StringSharing.NAMES);
+    }
+    
+    /**
+     * Encodes an object in the given wire format with the given string back-references
+     */
+    public byte[] toBytes(Object object, WireFormat format, WireFormat.StringSharing sharing) throws IOException {
+        return mapperFor(format, sharing).writeValueAsBytes(object);
+    }
+    
+    /**
+     * Writes an object in the given wire format straight to a stream, which is flushed but not closed
+     */
+    public void toStream(Object object, WireFormat format, OutputStream out) throws IOException {
+        mapperFor(format, WireFormat.StringSharing.NAMES).writer()
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .writeValue(out, object);
+    }
+    
+    /**
+     * Decodes data in the given wire format; shared strings are resolved whatever
+     * option they were written with
+     */
+    public <T> T fromBytes(byte[] data, Class<T> type, WireFormat format) throws IOException {
+        return mapperFor(format, WireFormat.StringSharing.NAMES).readValue(data, type);
+    }
+    
+    /**
+     * Closes the components that were created; the others are never created
+     */
+    @Override
+    public void close() throws IOException {
+        HedgedHttpFetcher hedged = hedgedFetcher.getIfCreated();
+        if (hedged != null) {
+            hedged.close();
+        }
+        PooledHttpFetcher pooled = httpFetcher.getIfCreated();
+        if (pooled != null) {
+            pooled.close();
+        }
+    }
+    
+    public static void main(String[] args) throws IOException {
         logger.info("Starting Maven Dependency Example");
         
-        DependencyExample example = new DependencyExample();
+        try (DependencyExample example = new DependencyExample()) {
+            // Demonstrate different libraries
+            example.demonstrateJsonProcessing();
+            example.demonstrateCommonsLang();
+            example.demonstrateHttpClient();
+            
+            // Test utility methods
+            logger.info("Input validation test: {}", example.isValidInput("Maven"));
+            logger.info("Input validation test (invalid): {}", example.isValidInput("  "));
+            
+            logger.info("Startup trace: {}", example.getStartupTrace());
+        }
         
-        // Demonstrate different libraries
-        example.demonstrateJsonProcessing();
-        example.demonstrateCommonsLang();
-        example.demonstrateHttpClient();
+        logger.info("Maven Dependency Example completed");
+    }
+    
+    /**
+     * Per-chunk token counter for countTokens
+     */
+    private static final class TokenCount implements Tokenizer.Utf8TokenHandler {
+        long count;
         
-        // Test utility methods
-        logger.info("Input validation test: {}", example.isValidInput("Maven"));
-        logger.info("Input validation test (invalid): {}", example.isValidInput("  "));
+        @Override
+        public void onToken(ByteBuffer source, int start, int end) {
+            count++;
+        }
         
-        logger.info("Maven Dependency Example completed");
+        TokenCount add(TokenCount other) {
+            count += other.count;
+            return this;
+        }
     }
 }
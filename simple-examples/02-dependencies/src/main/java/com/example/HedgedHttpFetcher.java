@@ -0,0 +1,345 @@
+package com.example;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cuts tail latency of idempotent GETs by hedging: when a request has not
+ * completed within a delay taken from a percentile of the endpoint's recent
+ * latencies, a duplicate is sent, the first response wins and the other request
+ * is aborted. Endpoints (scheme, host, port and path) are tracked separately,
+ * and are not hedged until they have enough samples. A token bucket earns a
+ * fraction of a hedge per request, so hedges never add more than that fraction
+ * of extra load, give or take a short burst.
+ */
+public class HedgedHttpFetcher implements Closeable {
+    
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    /** Extra requests allowed, as a fraction of all requests */
+    public static final double DEFAULT_BUDGET = 0.05;
+    /** Latencies kept per endpoint */
+    static final int WINDOW = 256;
+    /** Samples an endpoint needs before it is hedged */
+    static final int MIN_SAMPLES = 20;
+    /** Hedges that may be saved up for a burst */
+    static final int MAX_SAVED_HEDGES = 10;
+    private static final long MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /** Budget tokens are kept in thousandths of a hedge */
+    private static final long TOKENS_PER_HEDGE = 1000;
+    
+    private final CloseableHttpClient client;
+    private final double percentile;
+    private final long tokensPerRequest;
+    private final ExecutorService attempts;
+    private final ScheduledExecutorService timer;
+    private final ConcurrentMap<String, LatencyWindow> endpoints = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder hedgesDenied = new LongAdder();
+    
+    public HedgedHttpFetcher(CloseableHttpClient client) {
+        this(client, DEFAULT_PERCENTILE, DEFAULT_BUDGET);
+    }
+    
+    /**
+     * @param client     client the requests go through; not closed by this fetcher
+     * @param percentile latency percentile after which a request is hedged, such as 0.95
+     * @param budget     extra requests allowed as a fraction of all requests; 0 disables hedging
+     */
+    public HedgedHttpFetcher(CloseableHttpClient client, double percentile, double budget) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1: " + percentile);
+        }
+        if (budget < 0 || budget > 1) {
+            throw new IllegalArgumentException("budget must be between 0 and 1: " + budget);
+        }
+        this.client = client;
+        this.percentile = percentile;
+        this.tokensPerRequest = Math.round(budget * TOKENS_PER_HEDGE);
+        
+        // Attempts block on the socket, so every in-flight attempt needs its own thread;
+        // the connection pool bounds how many there are
+        AtomicInteger threadCount = new AtomicInteger();
+        this.attempts = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "http-hedge-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * GETs a URI, hedging it if it is slow, and waits for the result.
+     * Failures are reported as results, not thrown.
+     */
+    public PooledHttpFetcher.FetchResult fetch(URI uri) {
+        try {
+            return fetchAsync(uri).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new PooledHttpFetcher.FetchResult(uri, -1, null, 0, new IOException("Interrupted", e));
+        } catch (ExecutionException e) {
+            // Attempts report their own failures, so this is a bug
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    /**
+     * Starts a GET and completes with the first response, from the original request
+     * or its hedge. A request that fails before it is hedged is not retried; once a
+     * hedge is in flight, the result is a failure only if both attempts fail.
+     * Cancelling the future aborts both attempts.
+     */
+    public CompletableFuture<PooledHttpFetcher.FetchResult> fetchAsync(URI uri) {
+        requests.increment();
+        earnToken();
+        LatencyWindow window = endpoints.computeIfAbsent(endpoint(uri), key -> new LatencyWindow());
+        Hedge hedge = new Hedge(uri, window, System.nanoTime());
+        
+        synchronized (hedge) {
+            hedge.primary = start(hedge, false);
+        }
+        long delay = window.getDelayNanos();
+        if (delay > 0) {
+            hedge.timer = timer.schedule(() -> fireHedge(hedge), delay, TimeUnit.NANOSECONDS);
+        }
+        hedge.result.whenComplete((result, error) -> {
+            if (hedge.result.isCancelled()) {
+                hedge.abort();
+            }
+        });
+        return hedge.result;
+    }
+    
+    /**
+     * Current hedge delay of the endpoint of a URI
+     *
+     * @return the delay in milliseconds, or -1 while the endpoint is not hedged yet
+     */
+    public double getHedgeDelayMillis(URI uri) {
+        LatencyWindow window = endpoints.get(endpoint(uri));
+        long delay = window == null ? 0 : window.getDelayNanos();
+        return delay > 0 ? delay / 1e6 : -1;
+    }
+    
+    /**
+     * Latencies recorded so far for the endpoint of a URI
+     */
+    int getLatencySamples(URI uri) {
+        LatencyWindow window = endpoints.get(endpoint(uri));
+        return window == null ? 0 : window.getCount();
+    }
+    
+    public long getRequests() {
+        return requests.sum();
+    }
+    
+    /** Duplicate requests sent */
+    public long getHedges() {
+        return hedges.sum();
+    }
+    
+    /** Hedges that answered before the original request */
+    public long getHedgesWon() {
+        return hedgesWon.sum();
+    }
+    
+    /** Hedges skipped because the budget was spent */
+    public long getHedgesDenied() {
+        return hedgesDenied.sum();
+    }
+    
+    /**
+     * Extra requests sent, as a fraction of all requests
+     */
+    public double getHedgeRatio() {
+        long total = requests.sum();
+        return total == 0 ? 0 : (double) hedges.sum() / total;
+    }
+    
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        attempts.shutdownNow();
+    }
+    
+    private void fireHedge(Hedge hedge) {
+        synchronized (hedge) {
+            if (hedge.result.isDone() || hedge.failedOnce) {
+                return;
+            }
+            if (!spendToken()) {
+                hedgesDenied.increment();
+                return;
+            }
+            hedges.increment();
+            hedge.secondary = start(hedge, true);
+        }
+    }
+    
+    private HttpGet start(Hedge hedge, boolean secondary) {
+        HttpGet request = new HttpGet(hedge.uri);
+        attempts.execute(() -> complete(hedge, request, secondary));
+        return request;
+    }
+    
+    /**
+     * Runs one attempt on an attempt thread and reports it to the hedge
+     */
+    private void complete(Hedge hedge, HttpGet request, boolean secondary) {
+        PooledHttpFetcher.FetchResult result;
+        try (CloseableHttpResponse response = client.execute(request)) {
+            // Reading the entity to the end releases the connection back to the pool
+            byte[] body = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+            result = new PooledHttpFetcher.FetchResult(hedge.uri, response.getStatusLine().getStatusCode(), body,
+                                                       System.nanoTime() - hedge.startNanos, null);
+        } catch (IOException e) {
+            result = new PooledHttpFetcher.FetchResult(hedge.uri, -1, null, System.nanoTime() - hedge.startNanos, e);
+        }
+        
+        HttpGet loser;
+        synchronized (hedge) {
+            if (hedge.result.isDone() || request.isAborted()) {
+                return;
+            }
+            boolean otherRunning = secondary || hedge.secondary != null;
+            if (result.getError() != null && otherRunning && !hedge.failedOnce) {
+                // Wait for the other attempt before giving up
+                hedge.failedOnce = true;
+                return;
+            }
+            loser = secondary ? hedge.primary : hedge.secondary;
+            if (secondary) {
+                hedgesWon.increment();
+            } else if (result.getError() == null) {
+                // Only real latencies of the original request: when the hedge won, the time
+                // is a lower bound that would drag the percentile, and so the delay, down.
+                // Recorded before the caller sees the result, so its next request uses it.
+                hedge.window.record(System.nanoTime() - hedge.startNanos, percentile);
+            }
+            hedge.result.complete(result);
+        }
+        
+        ScheduledFuture<?> pending = hedge.timer;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        if (loser != null) {
+            loser.abort();
+        }
+    }
+    
+    private void earnToken() {
+        long max = MAX_SAVED_HEDGES * TOKENS_PER_HEDGE;
+        tokens.getAndUpdate(current -> Math.min(max, current + tokensPerRequest));
+    }
+    
+    private boolean spendToken() {
+        while (true) {
+            long current = tokens.get();
+            if (current < TOKENS_PER_HEDGE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKENS_PER_HEDGE)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Endpoints are the URI without its query: the same resource with different
+     * parameters usually has the same latency profile
+     */
+    private static String endpoint(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath();
+    }
+    
+    /**
+     * One request and its possible hedge; the attempts and failedOnce are guarded by
+     * the instance lock
+     */
+    private static final class Hedge {
+        final URI uri;
+        final LatencyWindow window;
+        final long startNanos;
+        final CompletableFuture<PooledHttpFetcher.FetchResult> result = new CompletableFuture<>();
+        HttpGet primary;
+        HttpGet secondary;
+        boolean failedOnce;
+        volatile ScheduledFuture<?> timer;
+        
+        Hedge(URI uri, LatencyWindow window, long startNanos) {
+            this.uri = uri;
+            this.window = window;
+            this.startNanos = startNanos;
+        }
+        
+        synchronized void abort() {
+            primary.abort();
+            if (secondary != null) {
+                secondary.abort();
+            }
+        }
+    }
+    
+    /**
+     * The last WINDOW latencies of an endpoint; the percentile is recomputed every
+     * 16 samples rather than on every request
+     */
+    static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW];
+        private int count;
+        private volatile long delayNanos;
+        
+        synchronized void record(long nanos, double percentile) {
+            samples[count % WINDOW] = nanos;
+            count++;
+            if (count >= MIN_SAMPLES && (count % 16 == 0 || count == MIN_SAMPLES)) {
+                long[] sorted = Arrays.copyOf(samples, Math.min(count, WINDOW));
+                Arrays.sort(sorted);
+                int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+                delayNanos = Math.max(MIN_DELAY_NANOS, sorted[Math.max(0, rank)]);
+            }
+        }
+        
+        /**
+         * @return the hedge delay, or 0 while there are too few samples
+         */
+        long getDelayNanos() {
+            return delayNanos;
+        }
+        
+        synchronized int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,703 @@
+package com.example;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Private HTTP cache for GET responses with two tiers: an in-memory LRU bounded
+ * by body bytes, and a directory of entry files that is read through memory
+ * mapping and survives restarts. Every stored response is written through to
+ * disk; entries evicted from memory are still found there and promoted back.
+ *
+ * Freshness follows Cache-Control (no-store, no-cache, max-age, must-revalidate),
+ * then Expires relative to Date, then the usual heuristic of 10% of the time
+ * since Last-Modified. Stale entries with an ETag or Last-Modified are
+ * revalidated with a conditional request; a 304 refreshes the entry and its
+ * body is served from the cache. Responses with "Vary: *" are not stored.
+ *
+ * Anyone who can write to the directory can plant entries that are served as
+ * fresh, so it is created readable by its owner only, and an existing directory
+ * is only used if it is not a symbolic link, belongs to the current user and
+ * grants nothing to group or others. Otherwise the cache works from memory alone.
+ */
+public class HttpResponseCache {
+    
+    /** Share of the Last-Modified age used as lifetime when the server gives none */
+    static final double HEURISTIC_FRACTION = 0.1;
+    private static final int MAGIC = 0x48524331;
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final Set<PosixFilePermission> OWNER_ONLY = EnumSet.of(
+        PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+    
+    private static final Logger logger = LoggerFactory.getLogger(HttpResponseCache.class);
+    
+    private final CloseableHttpClient client;
+    private final long memoryLimitBytes;
+    private final Path directory;
+    private final long diskLimitBytes;
+    private final LongSupplier clock;
+    
+    /** Access-ordered, so iteration starts at the least recently used entry */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    /** Whether the directory passed the checks; decided on first use */
+    private Boolean diskUsable;
+    /** File sizes of the disk tier, access-ordered; loaded on first use */
+    private LinkedHashMap<String, Long> disk;
+    private long diskBytes;
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder bytesFromCache = new LongAdder();
+    
+    /**
+     * @param client           performs the network requests
+     * @param memoryLimitBytes body bytes kept in memory
+     * @param directory        disk tier location, created on first use
+     * @param diskLimitBytes   bytes of entry files kept on disk
+     * @param clock            wall clock in milliseconds
+     */
+    public HttpResponseCache(CloseableHttpClient client, long memoryLimitBytes, Path directory,
+                             long diskLimitBytes, LongSupplier clock) {
+        this.client = client;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.directory = directory;
+        this.diskLimitBytes = diskLimitBytes;
+        this.clock = clock;
+    }
+    
+    /**
+     * A response body with the metadata needed to reuse it
+     */
+    public static final class CachedResponse {
+        private final int status;
+        private final String contentType;
+        private final ByteBuffer body;
+        private final Source source;
+        
+        CachedResponse(int status, String contentType, ByteBuffer body, Source source) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+            this.source = source;
+        }
+        
+        public int getStatus() { return status; }
+        public String getContentType() { return contentType; }
+        /** Read-only view of the body; for disk entries this is the mapped file */
+        public ByteBuffer getBody() { return body.duplicate(); }
+        public Source getSource() { return source; }
+        
+        public String bodyAsString() {
+            return StandardCharsets.UTF_8.decode(getBody()).toString();
+        }
+    }
+    
+    /** Where a response came from */
+    public enum Source { NETWORK, MEMORY, DISK, REVALIDATED }
+    
+    /**
+     * GETs the URI, from the cache when a fresh or successfully revalidated entry exists
+     */
+    public CachedResponse get(URI uri) throws IOException {
+        requests.increment();
+        String key = key(uri);
+        Entry entry;
+        Source tier;
+        synchronized (this) {
+            entry = memory.get(key);
+            tier = Source.MEMORY;
+        }
+        if (entry == null) {
+            entry = readFromDisk(key);
+            tier = Source.DISK;
+            if (entry != null && !entry.uri.equals(uri.toString())) {
+                // Hash collision: treat as a miss
+                entry = null;
+            }
+        }
+        
+        long now = clock.getAsLong();
+        if (entry != null && entry.isFresh(now)) {
+            (tier == Source.MEMORY ? memoryHits : diskHits).increment();
+            if (tier == Source.DISK) {
+                putInMemory(key, entry);
+            }
+            bytesFromCache.add(entry.body.remaining());
+            return entry.toResponse(tier);
+        }
+        
+        HttpGet request = new HttpGet(uri);
+        if (entry != null && entry.hasValidators()) {
+            revalidations.increment();
+            if (entry.etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+            }
+        }
+        
+        try (CloseableHttpResponse response = client.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            long received = clock.getAsLong();
+            if (status == HttpStatus.SC_NOT_MODIFIED && entry != null) {
+                EntityUtils.consume(response.getEntity());
+                notModified.increment();
+                Entry refreshed = entry.refresh(response, received);
+                store(key, refreshed);
+                bytesFromCache.add(refreshed.body.remaining());
+                return refreshed.toResponse(Source.REVALIDATED);
+            }
+            
+            byte[] body = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+            String contentType = header(response, HttpHeaders.CONTENT_TYPE);
+            Entry fetched = Entry.from(uri.toString(), status, contentType, ByteBuffer.wrap(body), response, received);
+            if (fetched != null) {
+                store(key, fetched);
+            } else if (entry != null) {
+                remove(key);
+            }
+            return new CachedResponse(status, contentType, ByteBuffer.wrap(body).asReadOnlyBuffer(), Source.NETWORK);
+        }
+    }
+    
+    private void store(String key, Entry entry) {
+        putInMemory(key, entry);
+        try {
+            writeToDisk(key, entry);
+        } catch (IOException e) {
+            // The memory tier still holds the entry; the disk tier is best effort
+            synchronized (this) {
+                if (disk != null && disk.remove(key) != null) {
+                    diskBytes = sizeOfDisk();
+                }
+            }
+        }
+    }
+    
+    private synchronized void putInMemory(String key, Entry entry) {
+        Entry previous = memory.remove(key);
+        if (previous != null) {
+            memoryBytes -= previous.body.remaining();
+        }
+        int size = entry.body.remaining();
+        if (size > memoryLimitBytes) {
+            return;
+        }
+        memory.put(key, entry);
+        memoryBytes += size;
+        Iterator<Map.Entry<String, Entry>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > memoryLimitBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().getValue().body.remaining();
+            eldest.remove();
+        }
+    }
+    
+    private void remove(String key) throws IOException {
+        synchronized (this) {
+            Entry previous = memory.remove(key);
+            if (previous != null) {
+                memoryBytes -= previous.body.remaining();
+            }
+            loadDiskIndex();
+            Long size = disk.remove(key);
+            if (size != null) {
+                diskBytes -= size;
+            }
+        }
+        Files.deleteIfExists(entryFile(key));
+    }
+    
+    private Entry readFromDisk(String key) throws IOException {
+        synchronized (this) {
+            loadDiskIndex();
+            if (disk.get(key) == null) {
+                return null;
+            }
+        }
+        Path file = entryFile(key);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return Entry.decode(mapped);
+        } catch (IOException | RuntimeException e) {
+            // Missing or corrupt file: drop it and fetch again
+            remove(key);
+            return null;
+        }
+    }
+    
+    private void writeToDisk(String key, Entry entry) throws IOException {
+        if (!isDiskUsable()) {
+            return;
+        }
+        Path file = entryFile(key);
+        Path temporary = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer encoded = entry.encode();
+                while (encoded.hasRemaining()) {
+                    channel.write(encoded);
+                }
+            }
+            // Readers see either the old or the new entry, never a partial one
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            loadDiskIndex();
+            Long previous = disk.put(key, Files.size(file));
+            diskBytes += disk.get(key) - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+            while (diskBytes > diskLimitBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> candidate = eldest.next();
+                if (candidate.getKey().equals(key)) {
+                    continue;
+                }
+                diskBytes -= candidate.getValue();
+                evicted.add(candidate.getKey());
+                eldest.remove();
+            }
+        }
+        for (String stale : evicted) {
+            Files.deleteIfExists(entryFile(stale));
+        }
+    }
+    
+    /**
+     * Lists the entry files left by earlier runs, least recently used first
+     */
+    private void loadDiskIndex() {
+        if (disk != null) {
+            return;
+        }
+        disk = new LinkedHashMap<>(16, 0.75f, true);
+        diskBytes = 0;
+        if (!isDiskUsable()) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                .sorted((a, b) -> lastModified(a).compareTo(lastModified(b)))
+                .forEach(file -> {
+                    String name = file.getFileName().toString();
+                    long size = size(file);
+                    disk.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+                    diskBytes += size;
+                });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list cache directory " + directory, e);
+        }
+    }
+    
+    private synchronized boolean isDiskUsable() {
+        if (diskUsable == null) {
+            diskUsable = checkDirectory();
+        }
+        return diskUsable;
+    }
+    
+    /**
+     * Creates the directory for the owner only, or checks an existing one
+     *
+     * @return false when the disk tier must not be used
+     */
+    private boolean checkDirectory() {
+        try {
+            if (Files.notExists(directory, LinkOption.NOFOLLOW_LINKS)) {
+                Path parent = directory.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                try {
+                    if (isPosix()) {
+                        Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                    } else {
+                        Files.createDirectory(directory);
+                    }
+                    return true;
+                } catch (FileAlreadyExistsException e) {
+                    // Created by someone else in the meantime; check it like any other
+                }
+            }
+            String problem = problemWithDirectory();
+            if (problem != null) {
+                logger.warn("Not using {} for the HTTP cache, it {}; caching in memory only", directory, problem);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warn("Cannot use {} for the HTTP cache ({}); caching in memory only", directory, e.toString());
+            return false;
+        }
+    }
+    
+    /**
+     * @return why an existing directory must not be trusted, or null
+     */
+    private String problemWithDirectory() throws IOException {
+        BasicFileAttributes attributes =
+            Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory()) {
+            return attributes.isSymbolicLink() ? "is a symbolic link" : "is not a directory";
+        }
+        if (Files.getFileAttributeView(directory, FileOwnerAttributeView.class, LinkOption.NOFOLLOW_LINKS) != null) {
+            UserPrincipal owner = Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS);
+            UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!owner.equals(user)) {
+                return "belongs to " + owner.getName();
+            }
+        }
+        if (isPosix()) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS);
+            if (!OWNER_ONLY.containsAll(permissions)) {
+                return "has permissions " + PosixFilePermissions.toString(permissions) + " instead of owner-only";
+            }
+        }
+        return null;
+    }
+    
+    private boolean isPosix() {
+        return directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+    
+    private long sizeOfDisk() {
+        return disk.values().stream().mapToLong(Long::longValue).sum();
+    }
+    
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+    
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private Path entryFile(String key) {
+        return directory.resolve(key + ENTRY_SUFFIX);
+    }
+    
+    private static String key(URI uri) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format(Locale.ROOT, "%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every JVM", e);
+        }
+    }
+    
+    private static String header(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+    
+    /**
+     * Share of requests answered without downloading the body again
+     */
+    public double getHitRatio() {
+        long total = requests.sum();
+        return total == 0 ? 0 : (double) (memoryHits.sum() + diskHits.sum() + notModified.sum()) / total;
+    }
+    
+    public long getBytesFromCache() {
+        return bytesFromCache.sum();
+    }
+    
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+    
+    /**
+     * Counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.sum());
+        stats.put("memoryHits", memoryHits.sum());
+        stats.put("diskHits", diskHits.sum());
+        stats.put("revalidations", revalidations.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("hitRatio", getHitRatio());
+        stats.put("bytesFromCache", bytesFromCache.sum());
+        synchronized (this) {
+            stats.put("memoryEntries", memory.size());
+            stats.put("memoryBytes", memoryBytes);
+            stats.put("diskEntries", disk == null ? 0 : disk.size());
+            stats.put("diskBytes", diskBytes);
+            stats.put("diskDisabled", Boolean.FALSE.equals(diskUsable));
+        }
+        return stats;
+    }
+    
+    /**
+     * A stored response. The body is a read-only heap buffer, or a mapped file for
+     * entries read from disk.
+     */
+    static final class Entry {
+        final String uri;
+        final int status;
+        final String contentType;
+        final String etag;
+        final String lastModified;
+        final long storedAt;
+        /** Freshness lifetime in milliseconds; 0 means revalidate on every use */
+        final long lifetime;
+        final ByteBuffer body;
+        
+        Entry(String uri, int status, String contentType, String etag, String lastModified,
+              long storedAt, long lifetime, ByteBuffer body) {
+            this.uri = uri;
+            this.status = status;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+            this.lifetime = lifetime;
+            this.body = body.asReadOnlyBuffer();
+        }
+        
+        /**
+         * The entry for a network response, or null when it must not be stored
+         */
+        static Entry from(String uri, int status, String contentType, ByteBuffer body,
+                          HttpResponse response, long now) {
+            if (status != HttpStatus.SC_OK) {
+                return null;
+            }
+            CacheControl control = CacheControl.of(response);
+            String vary = header(response, HttpHeaders.VARY);
+            if (control.noStore || (vary != null && vary.trim().equals("*"))) {
+                return null;
+            }
+            String etag = header(response, HttpHeaders.ETAG);
+            String lastModified = header(response, HttpHeaders.LAST_MODIFIED);
+            long lifetime = control.lifetime(response);
+            if (lifetime <= 0 && etag == null && lastModified == null) {
+                // Never fresh and cannot be revalidated, so storing it gains nothing
+                return null;
+            }
+            return new Entry(uri, status, contentType, etag, lastModified, now, Math.max(0, lifetime), body);
+        }
+        
+        /**
+         * Applies the headers of a 304 response; the lifetime is kept when it has none
+         */
+        Entry refresh(HttpResponse notModified, long now) {
+            CacheControl control = CacheControl.of(notModified);
+            long renewed = control.hasExplicitLifetime(notModified) ? control.lifetime(notModified) : lifetime;
+            String newEtag = header(notModified, HttpHeaders.ETAG);
+            String newLastModified = header(notModified, HttpHeaders.LAST_MODIFIED);
+            return new Entry(uri, status, contentType, newEtag != null ? newEtag : etag,
+                             newLastModified != null ? newLastModified : lastModified,
+                             now, Math.max(0, renewed), body);
+        }
+        
+        boolean isFresh(long now) {
+            return now - storedAt < lifetime;
+        }
+        
+        boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+        
+        CachedResponse toResponse(Source source) {
+            return new CachedResponse(status, contentType, body, source);
+        }
+        
+        ByteBuffer encode() {
+            byte[][] strings = {bytes(uri), bytes(contentType), bytes(etag), bytes(lastModified)};
+            int size = 4 + 4 + 8 + 8 + 4 * strings.length + 4 + body.remaining();
+            for (byte[] string : strings) {
+                size += string == null ? 0 : string.length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(MAGIC).putInt(status).putLong(storedAt).putLong(lifetime);
+            for (byte[] string : strings) {
+                buffer.putInt(string == null ? -1 : string.length);
+                if (string != null) {
+                    buffer.put(string);
+                }
+            }
+            buffer.putInt(body.remaining()).put(body.duplicate());
+            return buffer.flip();
+        }
+        
+        static Entry decode(ByteBuffer buffer) {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a cache entry");
+            }
+            int status = buffer.getInt();
+            long storedAt = buffer.getLong();
+            long lifetime = buffer.getLong();
+            String uri = string(buffer);
+            String contentType = string(buffer);
+            String etag = string(buffer);
+            String lastModified = string(buffer);
+            int length = buffer.getInt();
+            ByteBuffer body = buffer.slice();
+            body.limit(length);
+            return new Entry(uri, status, contentType, etag, lastModified, storedAt, lifetime, body);
+        }
+        
+        private static byte[] bytes(String value) {
+            return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        }
+        
+        private static String string(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * The Cache-Control directives this cache acts on
+     */
+    static final class CacheControl {
+        boolean noStore;
+        boolean noCache;
+        boolean mustRevalidate;
+        long maxAgeSeconds = -1;
+        
+        static CacheControl of(HttpResponse response) {
+            CacheControl control = new CacheControl();
+            for (Header header : response.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+                for (String directive : header.getValue().split(",")) {
+                    String[] parts = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+                    switch (parts[0]) {
+                        case "no-store":
+                            control.noStore = true;
+                            break;
+                        case "no-cache":
+                            control.noCache = true;
+                            break;
+                        case "must-revalidate":
+                            control.mustRevalidate = true;
+                            break;
+                        case "max-age":
+                            if (parts.length == 2) {
+                                try {
+                                    control.maxAgeSeconds = Long.parseLong(parts[1].replace("\"", "").trim());
+                                } catch (NumberFormatException e) {
+                                    // Invalid max-age: treat the response as stale
+                                    control.maxAgeSeconds = 0;
+                                }
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            return control;
+        }
+        
+        boolean hasExplicitLifetime(HttpResponse response) {
+            return noCache || maxAgeSeconds >= 0 || response.getFirstHeader(HttpHeaders.EXPIRES) != null;
+        }
+        
+        /**
+         * Freshness lifetime in milliseconds, less the Age the response already has
+         */
+        long lifetime(HttpResponse response) {
+            if (noCache) {
+                return 0;
+            }
+            long age = 0;
+            String ageHeader = header(response, HttpHeaders.AGE);
+            if (ageHeader != null) {
+                try {
+                    age = Long.parseLong(ageHeader.trim()) * 1000;
+                } catch (NumberFormatException e) {
+                    age = 0;
+                }
+            }
+            if (maxAgeSeconds >= 0) {
+                return maxAgeSeconds * 1000 - age;
+            }
+            Date date = parseDate(header(response, HttpHeaders.DATE));
+            Date expires = parseDate(header(response, HttpHeaders.EXPIRES));
+            if (response.getFirstHeader(HttpHeaders.EXPIRES) != null) {
+                // An unparseable Expires (such as "0") means already expired
+                return expires == null || date == null ? 0 : expires.getTime() - date.getTime() - age;
+            }
+            Date lastModified = parseDate(header(response, HttpHeaders.LAST_MODIFIED));
+            if (mustRevalidate || date == null || lastModified == null) {
+                return 0;
+            }
+            return (long) ((date.getTime() - lastModified.getTime()) * HEURISTIC_FRACTION) - age;
+        }
+        
+        private static Date parseDate(String value) {
+            return value == null ? null : DateUtils.parseDate(value);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The isValidInput rule (not blank, and at least three characters once trimmed)
+ * evaluated without creating Strings, for single values and in bulk.
+ *
+ * Results match StringUtils.isNotBlank(input) && input.trim().length() >= 3 exactly:
+ * trimming strips characters up to U+0020 and blankness uses Character.isWhitespace.
+ * Bulk methods split the work into chunks that run in parallel on the common
+ * fork-join pool and return a BitSet with bit i set when record i is valid.
+ */
+public final class InputValidator {
+    
+    /** Characters that must remain after trimming */
+    public static final int MIN_LENGTH = 3;
+    /** Records per parallel task; a multiple of 64 so tasks write separate words */
+    static final int RECORDS_PER_TASK = 64 * 256;
+    /** Bytes of a file validated per parallel task */
+    static final int DEFAULT_CHUNK_BYTES = 8 << 20;
+    
+    private InputValidator() {
+    }
+    
+    /**
+     * Validates a String, StringBuilder, CharBuffer or any other character sequence
+     */
+    public static boolean isValid(CharSequence input) {
+        if (input == null) {
+            return false;
+        }
+        int length = input.length();
+        int start = 0;
+        while (start < length && input.charAt(start) <= ' ') {
+            start++;
+        }
+        int end = length;
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start < MIN_LENGTH) {
+            return false;
+        }
+        // Usually decided by the first character; the trimmed ends only matter for
+        // control characters, which are neither trimmed away nor whitespace
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(input.charAt(i))) {
+                return true;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if ((i < start || i >= end) && !Character.isWhitespace(input.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Validates the UTF-8 bytes between the buffer's position and limit
+     */
+    public static boolean isValidUtf8(ByteBuffer buffer) {
+        return isValidUtf8(buffer, buffer.position(), buffer.limit());
+    }
+    
+    /**
+     * Validates the UTF-8 bytes from index from (inclusive) to to (exclusive) without
+     * moving the buffer's position. Matches the rule on the decoded String for
+     * well-formed UTF-8; malformed sequences are never treated as whitespace.
+     */
+    public static boolean isValidUtf8(ByteBuffer buffer, int from, int to) {
+        // Bytes up to 0x20 only ever encode the characters trim() removes
+        int start = from;
+        while (start < to && (buffer.get(start) & 0xFF) <= 0x20) {
+            start++;
+        }
+        int end = to;
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= 0x20) {
+            end--;
+        }
+        
+        // Count UTF-16 units, as String.length() would: one per lead byte, two for 4-byte sequences
+        int units = 0;
+        for (int i = start; i < end && units < MIN_LENGTH; i++) {
+            int b = buffer.get(i) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                units += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        if (units < MIN_LENGTH) {
+            return false;
+        }
+        
+        int i = from;
+        while (i < to) {
+            int b = buffer.get(i) & 0xFF;
+            if (b < 0x80) {
+                if (!Character.isWhitespace(b)) {
+                    return true;
+                }
+                i++;
+                continue;
+            }
+            int sequence = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+            if (sequence == 1 || sequence == 4 || i + sequence > to
+                || (buffer.get(i + 1) & 0xC0) != 0x80
+                || (sequence == 3 && (buffer.get(i + 2) & 0xC0) != 0x80)) {
+                // Malformed or truncated sequence, or a supplementary character:
+                // none of them decodes to whitespace
+                return true;
+            }
+            int codePoint = sequence == 2
+                ? (b & 0x1F) << 6 | (buffer.get(i + 1) & 0x3F)
+                : (b & 0x0F) << 12 | (buffer.get(i + 1) & 0x3F) << 6 | (buffer.get(i + 2) & 0x3F);
+            if (!Character.isWhitespace(codePoint)) {
+                return true;
+            }
+            i += sequence;
+        }
+        return false;
+    }
+    
+    /**
+     * Validates every record in parallel; null records are invalid
+     *
+     * @return bit i is set when record i is valid
+     */
+    public static BitSet validate(List<? extends CharSequence> records) {
+        int size = records.size();
+        long[] words = new long[(size + 63) >>> 6];
+        int tasks = (size + RECORDS_PER_TASK - 1) / RECORDS_PER_TASK;
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            int from = task * RECORDS_PER_TASK;
+            int to = Math.min(size, from + RECORDS_PER_TASK);
+            for (int i = from; i < to; i++) {
+                if (isValid(records.get(i))) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        });
+        return BitSet.valueOf(words);
+    }
+    
+    /**
+     * Validates every line of a UTF-8 file in parallel. The file is memory-mapped
+     * in chunks cut at line boundaries, so it may be larger than the heap.
+     * Lines end with \n; a trailing \r is trimmed like any other control character.
+     *
+     * @return bit i is set when line i (counting from 0) is valid
+     */
+    public static BitSet validateLines(Path file) throws IOException {
+        return validateLines(file, DEFAULT_CHUNK_BYTES);
+    }
+    
+    static BitSet validateLines(Path file, int chunkBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = LineChunks.bounds(channel, chunkBytes);
+            LineBits[] chunks = new LineBits[bounds.length - 1];
+            try {
+                IntStream.range(0, chunks.length).parallel().forEach(chunk -> {
+                    try {
+                        long from = bounds[chunk];
+                        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from,
+                                                              bounds[chunk + 1] - from);
+                        chunks[chunk] = validateLines(mapped);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return merge(chunks);
+        }
+    }
+    
+    /**
+     * Validates the lines of one chunk
+     */
+    private static LineBits validateLines(ByteBuffer chunk) {
+        LineBits bits = new LineBits();
+        int limit = chunk.limit();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            if (chunk.get(i) == '\n') {
+                bits.add(isValidUtf8(chunk, lineStart, i));
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < limit) {
+            bits.add(isValidUtf8(chunk, lineStart, limit));
+        }
+        return bits;
+    }
+    
+    /**
+     * Concatenates the per-chunk results, shifting each by the lines before it
+     */
+    private static BitSet merge(LineBits[] chunks) {
+        long total = 0;
+        for (LineBits chunk : chunks) {
+            total += chunk.count;
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("More than " + Integer.MAX_VALUE + " lines");
+        }
+        long[] words = new long[(int) ((total + 63) >>> 6)];
+        long offset = 0;
+        for (LineBits chunk : chunks) {
+            int shift = (int) (offset & 63);
+            int base = (int) (offset >>> 6);
+            int used = (int) ((chunk.count + 63) >>> 6);
+            for (int i = 0; i < used; i++) {
+                long word = chunk.words[i];
+                words[base + i] |= word << shift;
+                if (shift != 0 && base + i + 1 < words.length) {
+                    words[base + i + 1] |= word >>> (64 - shift);
+                }
+            }
+            offset += chunk.count;
+        }
+        return BitSet.valueOf(words);
+    }
+    
+    /**
+     * Growable bit array for the lines of one chunk
+     */
+    private static final class LineBits {
+        long[] words = new long[1024];
+        long count;
+        
+        void add(boolean valid) {
+            int word = (int) (count >>> 6);
+            if (word == words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (valid) {
+                words[word] |= 1L << count;
+            }
+            count++;
+        }
+    }
+}
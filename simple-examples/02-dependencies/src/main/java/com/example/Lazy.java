@@ -0,0 +1,46 @@
+package com.example;
+
+import java.util.function.Supplier;
+
+/**
+ * A component created on first use, at most once however many threads ask for it
+ * at the same time. Creation is timed in a StartupTrace. If creation fails, the
+ * exception goes to the caller and the next call tries again.
+ */
+final class Lazy<T> implements Supplier<T> {
+    
+    private final String name;
+    private final StartupTrace trace;
+    private Supplier<? extends T> create;
+    private volatile T value;
+    
+    Lazy(String name, StartupTrace trace, Supplier<? extends T> create) {
+        this.name = name;
+        this.trace = trace;
+        this.create = create;
+    }
+    
+    @Override
+    public T get() {
+        T current = value;
+        if (current == null) {
+            synchronized (this) {
+                current = value;
+                if (current == null) {
+                    current = trace.time(name, create);
+                    value = current;
+                    // The supplier may hold on to things the component no longer needs
+                    create = null;
+                }
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * @return the component, or null when it has not been created; never creates it
+     */
+    T getIfCreated() {
+        return value;
+    }
+}
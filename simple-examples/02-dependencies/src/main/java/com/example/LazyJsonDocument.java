@@ -0,0 +1,553 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A JSON document that is read without being materialized. One pass over the
+ * UTF-8 bytes builds a structural index (the kind, start and end offset of every
+ * value, and where each value's subtree ends); values are decoded from the
+ * original bytes only when a JSON Pointer such as "/items/3/name" asks for them.
+ * Pointer lookups are cached, and so are the scalars they decode to, so repeated
+ * queries skip both the walk through the index and the decoding.
+ *
+ * Scalars decode to the same types as ObjectMapper.readValue(json, Map.class)
+ * (String, Integer, Long, BigInteger, Double, Boolean, null); objects and arrays,
+ * and values requested as another type, are bound by the ObjectMapper from their
+ * slice of the input. Instances are immutable and thread-safe. The byte array is
+ * not copied and must not change afterwards.
+ */
+public final class LazyJsonDocument {
+    
+    /** Deepest nesting accepted, so hostile input cannot overflow the stack */
+    static final int MAX_DEPTH = 1000;
+    
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+    private static final byte STRING = 3;
+    /** A string with backslash escapes, which the ObjectMapper decodes */
+    private static final byte ESCAPED_STRING = 4;
+    private static final byte INTEGER = 5;
+    private static final byte FLOAT = 6;
+    private static final byte TRUE = 7;
+    private static final byte FALSE = 8;
+    private static final byte NULL = 9;
+    
+    private static final int MISSING = -1;
+    /** Value of a resolution whose scalar has not been decoded yet */
+    private static final Object UNREAD = new Object();
+    
+    private final ObjectMapper mapper;
+    private final byte[] json;
+    private final Index index;
+    private final ConcurrentMap<String, Resolution> resolved = new ConcurrentHashMap<>();
+    
+    private LazyJsonDocument(ObjectMapper mapper, byte[] json, Index index) {
+        this.mapper = mapper;
+        this.json = json;
+        this.index = index;
+    }
+    
+    /**
+     * Indexes a UTF-8 JSON document
+     *
+     * @throws JsonParseException when the input is not a single well-formed JSON value
+     */
+    public static LazyJsonDocument parse(ObjectMapper mapper, byte[] json) throws IOException {
+        return new LazyJsonDocument(mapper, json, new Scanner(json).scan());
+    }
+    
+    /**
+     * Opens a document with the index of an earlier parse of the same bytes, skipping the scan
+     */
+    public static LazyJsonDocument parse(ObjectMapper mapper, byte[] json, Index index) {
+        if (index.length != json.length) {
+            throw new IllegalArgumentException("index is for " + index.length + " bytes, not " + json.length);
+        }
+        return new LazyJsonDocument(mapper, json, index);
+    }
+    
+    /**
+     * The structural index, which can be kept and reused with the same bytes
+     */
+    public Index getIndex() {
+        return index;
+    }
+    
+    /**
+     * Whether the pointer leads to a value (possibly null)
+     */
+    public boolean has(String pointer) {
+        return resolve(pointer).node != MISSING;
+    }
+    
+    /**
+     * Decodes the value at the pointer
+     *
+     * @return the value, or null when it is JSON null or missing
+     */
+    public Object get(String pointer) throws IOException {
+        Resolution resolution = resolve(pointer);
+        return resolution.node == MISSING ? null : value(resolution);
+    }
+    
+    /**
+     * Decodes the value at the pointer as the given type, through the ObjectMapper
+     * unless it is a scalar that already has that type
+     *
+     * @return the value, or null when it is missing
+     */
+    public <T> T get(String pointer, Class<T> type) throws IOException {
+        Resolution resolution = resolve(pointer);
+        int node = resolution.node;
+        if (node == MISSING) {
+            return null;
+        }
+        if (isScalar(index.kinds[node])) {
+            Object value = value(resolution);
+            if (value == null || type.isInstance(value)) {
+                return type.cast(value);
+            }
+        }
+        return mapper.readValue(json, index.starts[node], index.ends[node] - index.starts[node], type);
+    }
+    
+    /**
+     * Number of elements or properties of the array or object at the pointer
+     *
+     * @return the size, or -1 when the value is missing or not a container
+     */
+    public int size(String pointer) {
+        int node = resolve(pointer).node;
+        if (node == MISSING || (index.kinds[node] != OBJECT && index.kinds[node] != ARRAY)) {
+            return -1;
+        }
+        int size = 0;
+        for (int child = node + 1; child < index.after[node]; child = index.after[child]) {
+            size++;
+        }
+        return index.kinds[node] == OBJECT ? size / 2 : size;
+    }
+    
+    /**
+     * Property names of the object at the pointer, in document order
+     *
+     * @return the names, or an empty list when the value is missing or not an object
+     */
+    public List<String> fieldNames(String pointer) throws IOException {
+        int node = resolve(pointer).node;
+        List<String> names = new ArrayList<>();
+        if (node != MISSING && index.kinds[node] == OBJECT) {
+            for (int key = node + 1; key < index.after[node]; key = index.after[key + 1]) {
+                names.add((String) materialize(key));
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * The undecoded JSON text of the value at the pointer, as a read-only view of the input
+     *
+     * @return the view, or null when the value is missing
+     */
+    public ByteBuffer raw(String pointer) {
+        int node = resolve(pointer).node;
+        if (node == MISSING) {
+            return null;
+        }
+        return ByteBuffer.wrap(json, index.starts[node], index.ends[node] - index.starts[node])
+            .slice()
+            .asReadOnlyBuffer();
+    }
+    
+    private Resolution resolve(String pointer) {
+        return resolved.computeIfAbsent(pointer, key -> new Resolution(walk(JsonPointer.compile(key))));
+    }
+    
+    /**
+     * Decodes the value of a resolved node; scalars are immutable and kept for the next
+     * query, containers are bound afresh since callers may modify them
+     */
+    private Object value(Resolution resolution) throws IOException {
+        Object value = resolution.value;
+        if (value == UNREAD) {
+            value = materialize(resolution.node);
+            if (isScalar(index.kinds[resolution.node])) {
+                resolution.value = value;
+            }
+        }
+        return value;
+    }
+    
+    private static boolean isScalar(byte kind) {
+        return kind != OBJECT && kind != ARRAY;
+    }
+    
+    private int walk(JsonPointer pointer) {
+        int node = 0;
+        for (JsonPointer step = pointer; !step.matches(); step = step.tail()) {
+            byte kind = index.kinds[node];
+            if (kind == OBJECT) {
+                node = property(node, step.getMatchingProperty());
+            } else if (kind == ARRAY && step.getMatchingIndex() >= 0) {
+                node = element(node, step.getMatchingIndex());
+            } else {
+                return MISSING;
+            }
+            if (node == MISSING) {
+                return MISSING;
+            }
+        }
+        return node;
+    }
+    
+    /**
+     * Compares keys in place with the UTF-8 name; escaped keys are decoded to compare.
+     * The last duplicate wins, as it does in a deserialized Map.
+     */
+    private int property(int object, String name) {
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        int found = MISSING;
+        for (int key = object + 1; key < index.after[object]; key = index.after[key + 1]) {
+            int start = index.starts[key] + 1;
+            int end = index.ends[key] - 1;
+            boolean matches = index.kinds[key] == STRING
+                ? Arrays.equals(json, start, end, utf8, 0, utf8.length)
+                : name.equals(decodeEscaped(key));
+            if (matches) {
+                found = key + 1;
+            }
+        }
+        return found;
+    }
+    
+    private int element(int array, int position) {
+        int child = array + 1;
+        for (int i = 0; i < position && child < index.after[array]; i++) {
+            child = index.after[child];
+        }
+        return child < index.after[array] ? child : MISSING;
+    }
+    
+    private Object materialize(int node) throws IOException {
+        int start = index.starts[node];
+        int end = index.ends[node];
+        switch (index.kinds[node]) {
+            case STRING:
+                return new String(json, start + 1, end - start - 2, StandardCharsets.UTF_8);
+            case ESCAPED_STRING:
+                return mapper.readValue(json, start, end - start, String.class);
+            case INTEGER:
+                return integer(start, end);
+            case FLOAT:
+                return Double.parseDouble(new String(json, start, end - start, StandardCharsets.US_ASCII));
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return null;
+            default:
+                return mapper.readValue(json, start, end - start, Object.class);
+        }
+    }
+    
+    private String decodeEscaped(int node) {
+        try {
+            return mapper.readValue(json, index.starts[node], index.ends[node] - index.starts[node], String.class);
+        } catch (IOException e) {
+            // The scanner already checked the string's syntax
+            throw new IllegalStateException("Indexed string failed to decode", e);
+        }
+    }
+    
+    /**
+     * Integer, Long or BigInteger, whichever is smallest, like Jackson's untyped deserializer
+     */
+    private Number integer(int start, int end) {
+        boolean negative = json[start] == '-';
+        int digits = end - start - (negative ? 1 : 0);
+        if (digits > 18) {
+            BigInteger value = new BigInteger(new String(json, start, end - start, StandardCharsets.US_ASCII));
+            return value.bitLength() < 64 ? (Number) value.longValue() : value;
+        }
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (json[i] - '0');
+        }
+        value = negative ? -value : value;
+        return value == (int) value ? (Number) (int) value : (Number) value;
+    }
+    
+    /**
+     * Where a pointer leads, and the value there once decoded
+     */
+    private static final class Resolution {
+        final int node;
+        volatile Object value = UNREAD;
+        
+        Resolution(int node) {
+            this.node = node;
+        }
+    }
+    
+    /**
+     * Offsets of every value of one document, in document order: a container is
+     * followed by its children, and an object's children alternate key and value.
+     * Costs 13 bytes per value, against tens of bytes per boxed value in a Map.
+     */
+    public static final class Index {
+        private final int length;
+        private final int nodes;
+        private final byte[] kinds;
+        private final int[] starts;
+        private final int[] ends;
+        /** Node following the subtree of each node: its next sibling, or its parent's end */
+        private final int[] after;
+        
+        private Index(int length, int nodes, byte[] kinds, int[] starts, int[] ends, int[] after) {
+            this.length = length;
+            this.nodes = nodes;
+            this.kinds = kinds;
+            this.starts = starts;
+            this.ends = ends;
+            this.after = after;
+        }
+        
+        /** Number of indexed values, including object keys */
+        public int getNodes() {
+            return nodes;
+        }
+        
+        /** Heap taken by the index arrays, spare capacity included, excluding object headers */
+        public long getBytes() {
+            return kinds.length * 13L;
+        }
+    }
+    
+    /**
+     * Single pass recursive descent over the bytes that records nodes and checks syntax
+     */
+    private static final class Scanner {
+        private final byte[] json;
+        private int position;
+        private int nodes;
+        private byte[] kinds;
+        private int[] starts;
+        private int[] ends;
+        private int[] after;
+        
+        Scanner(byte[] json) {
+            this.json = json;
+            int capacity = capacity(json);
+            this.kinds = new byte[capacity];
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+            this.after = new int[capacity];
+        }
+        
+        /**
+         * Every value but the root follows one of , : [ { so counting those bytes
+         * (strings included, which can only overestimate) bounds the number of nodes,
+         * and the arrays never grow while scanning
+         */
+        private static int capacity(byte[] json) {
+            int count = 1;
+            for (byte b : json) {
+                if (b == ',' || b == ':' || b == '[' || b == '{') {
+                    count++;
+                }
+            }
+            return count;
+        }
+        
+        Index scan() throws JsonParseException {
+            value(0);
+            skipWhitespace();
+            if (position != json.length) {
+                throw error("Unexpected content after the document");
+            }
+            if (kinds.length - nodes > kinds.length / 8) {
+                kinds = Arrays.copyOf(kinds, nodes);
+                starts = Arrays.copyOf(starts, nodes);
+                ends = Arrays.copyOf(ends, nodes);
+                after = Arrays.copyOf(after, nodes);
+            }
+            return new Index(json.length, nodes, kinds, starts, ends, after);
+        }
+        
+        private void value(int depth) throws JsonParseException {
+            skipWhitespace();
+            if (position >= json.length) {
+                throw error("Unexpected end of input");
+            }
+            byte b = json[position];
+            if (b == '{' || b == '[') {
+                if (depth == MAX_DEPTH) {
+                    throw error("Nesting deeper than " + MAX_DEPTH);
+                }
+                container(b == '{', depth + 1);
+            } else if (b == '"') {
+                string();
+            } else if (b == '-' || (b >= '0' && b <= '9')) {
+                number();
+            } else if (!literal("true", TRUE) && !literal("false", FALSE) && !literal("null", NULL)) {
+                throw error("Unexpected character '" + (char) b + "'");
+            }
+        }
+        
+        private void container(boolean object, int depth) throws JsonParseException {
+            int node = add(object ? OBJECT : ARRAY, position);
+            byte close = (byte) (object ? '}' : ']');
+            position++;
+            skipWhitespace();
+            if (position < json.length && json[position] == close) {
+                position++;
+            } else {
+                while (true) {
+                    if (object) {
+                        skipWhitespace();
+                        if (position >= json.length || json[position] != '"') {
+                            throw error("Expected a property name");
+                        }
+                        string();
+                        expect((byte) ':');
+                    }
+                    value(depth);
+                    skipWhitespace();
+                    if (position < json.length && json[position] == ',') {
+                        position++;
+                    } else if (position < json.length && json[position] == close) {
+                        position++;
+                        break;
+                    } else {
+                        throw error("Expected ',' or '" + (char) close + "'");
+                    }
+                }
+            }
+            ends[node] = position;
+            after[node] = nodes;
+        }
+        
+        private void string() throws JsonParseException {
+            int start = position++;
+            boolean escaped = false;
+            while (position < json.length) {
+                byte b = json[position];
+                if (b == '"') {
+                    position++;
+                    close(add(escaped ? ESCAPED_STRING : STRING, start));
+                    return;
+                }
+                if (b == '\\') {
+                    escaped = true;
+                    position++;
+                } else if (b >= 0 && b < ' ') {
+                    throw error("Unescaped control character in string");
+                }
+                position++;
+            }
+            throw error("Unterminated string");
+        }
+        
+        private void number() throws JsonParseException {
+            int start = position;
+            if (json[position] == '-') {
+                position++;
+            }
+            int digits = skipDigits();
+            if (digits == 0 || (digits > 1 && json[position - digits] == '0')) {
+                throw error("Invalid number");
+            }
+            boolean fraction = false;
+            if (position < json.length && json[position] == '.') {
+                position++;
+                fraction = true;
+                if (skipDigits() == 0) {
+                    throw error("Invalid number");
+                }
+            }
+            if (position < json.length && (json[position] == 'e' || json[position] == 'E')) {
+                position++;
+                fraction = true;
+                if (position < json.length && (json[position] == '+' || json[position] == '-')) {
+                    position++;
+                }
+                if (skipDigits() == 0) {
+                    throw error("Invalid number");
+                }
+            }
+            close(add(fraction ? FLOAT : INTEGER, start));
+        }
+        
+        private int skipDigits() {
+            int start = position;
+            while (position < json.length && json[position] >= '0' && json[position] <= '9') {
+                position++;
+            }
+            return position - start;
+        }
+        
+        private boolean literal(String text, byte kind) {
+            int length = text.length();
+            if (position + length > json.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (json[position + i] != text.charAt(i)) {
+                    return false;
+                }
+            }
+            int start = position;
+            position += length;
+            close(add(kind, start));
+            return true;
+        }
+        
+        private void expect(byte expected) throws JsonParseException {
+            skipWhitespace();
+            if (position >= json.length || json[position] != expected) {
+                throw error("Expected '" + (char) expected + "'");
+            }
+            position++;
+        }
+        
+        private void skipWhitespace() {
+            while (position < json.length) {
+                byte b = json[position];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return;
+                }
+                position++;
+            }
+        }
+        
+        private int add(byte kind, int start) {
+            kinds[nodes] = kind;
+            starts[nodes] = start;
+            return nodes++;
+        }
+        
+        /** Ends a scalar node at the current position */
+        private void close(int node) {
+            ends[node] = position;
+            after[node] = node + 1;
+        }
+        
+        private JsonParseException error(String message) {
+            return new JsonParseException((JsonParser) null, message + " at byte " + position);
+        }
+    }
+}
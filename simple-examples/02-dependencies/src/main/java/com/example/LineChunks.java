@@ -0,0 +1,53 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a file into chunks that end on line boundaries, so each chunk can be
+ * memory-mapped and processed on its own thread
+ */
+final class LineChunks {
+    
+    private LineChunks() {
+    }
+    
+    /**
+     * Offsets that split the file into chunks of about chunkBytes, each ending just after a newline
+     */
+    static long[] bounds(FileChannel channel, int chunkBytes) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = 0;
+        while (size - position > chunkBytes) {
+            long scan = position + chunkBytes;
+            long boundary = -1;
+            while (boundary < 0 && scan < size) {
+                probe.clear();
+                int read = channel.read(probe, scan);
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        boundary = scan + i + 1;
+                        break;
+                    }
+                }
+                scan += Math.max(read, 0);
+                if (read <= 0) {
+                    break;
+                }
+            }
+            if (boundary < 0 || boundary >= size) {
+                break;
+            }
+            bounds.add(boundary);
+            position = boundary;
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,377 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Streams newline-delimited JSON through a user transform: a reader thread binds
+ * records with ObjectReader.readValues, worker threads apply the transform, and a
+ * writer thread serializes the results back to NDJSON. Records travel in batches
+ * through bounded queues, and at most maxBatchesInFlight batches exist at once
+ * (including batches waiting to be written in order), so memory use depends on
+ * the batch size, not the input size.
+ *
+ * Output is in input order when ordered is set, otherwise in completion order.
+ * A transform returning null drops the record. The first failure (malformed
+ * JSON, a throwing transform, an I/O error) stops every stage and is rethrown
+ * from run; output written up to that point is left in place.
+ *
+ * @param <I> record type read from the input
+ * @param <O> record type written to the output
+ */
+public class NdjsonPipeline<I, O> {
+    
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_MAX_BATCHES_IN_FLIGHT = 64;
+    private static final int OUTPUT_BUFFER_BYTES = 1 << 16;
+    
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final ObjectMapper objectMapper;
+    private final Function<? super I, ? extends O> transform;
+    private final int workers;
+    private final boolean ordered;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+    
+    private final LongAdder recordsRead = new LongAdder();
+    private final LongAdder recordsWritten = new LongAdder();
+    private final LongAdder recordsDropped = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder lagNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private final AtomicInteger batchesInFlight = new AtomicInteger();
+    private final AtomicInteger maxBatchesSeen = new AtomicInteger();
+    private volatile long startNanos;
+    private volatile long endNanos;
+    
+    public NdjsonPipeline(ObjectMapper objectMapper, Class<I> type, Function<? super I, ? extends O> transform,
+                          int workers, boolean ordered) {
+        this(objectMapper, type, transform, workers, ordered, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCHES_IN_FLIGHT);
+    }
+    
+    /**
+     * @param objectMapper       binds input records and serializes output records
+     * @param type               input record type
+     * @param transform          applied to every record on the worker threads; null drops it
+     * @param workers            transform threads
+     * @param ordered            write results in input order
+     * @param batchSize          records per queue element
+     * @param maxBatchesInFlight batches read but not yet written; bounds memory
+     */
+    public NdjsonPipeline(ObjectMapper objectMapper, Class<I> type, Function<? super I, ? extends O> transform,
+                          int workers, boolean ordered, int batchSize, int maxBatchesInFlight) {
+        this.objectMapper = objectMapper;
+        // Callers own the streams they pass in (System.in, System.out)
+        this.reader = objectMapper.readerFor(type).without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        // Flushing is done per batch, not per record
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.transform = transform;
+        this.workers = workers;
+        this.ordered = ordered;
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+    }
+    
+    /**
+     * Runs the pipeline from one file to another
+     */
+    public Stats run(Path input, Path output) throws IOException {
+        try (InputStream in = Files.newInputStream(input);
+             OutputStream out = Files.newOutputStream(output)) {
+            return run(in, out);
+        }
+    }
+    
+    /**
+     * Runs the pipeline until the input ends. Neither stream is closed; the output is flushed.
+     * One run at a time per pipeline.
+     */
+    public Stats run(InputStream in, OutputStream out) throws IOException {
+        reset();
+        BlockingQueue<Batch<I>> inputQueue = new ArrayBlockingQueue<>(maxBatchesInFlight);
+        BlockingQueue<Batch<O>> outputQueue = new ArrayBlockingQueue<>(maxBatchesInFlight + 1);
+        Semaphore inFlight = new Semaphore(maxBatchesInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(workers + 2, runnable -> {
+            Thread thread = new Thread(runnable, "ndjson-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger activeWorkers = new AtomicInteger(workers);
+        List<CompletableFuture<Void>> stages = new ArrayList<>();
+        stages.add(stage(threads, failure, failed, () -> read(in, inputQueue, inFlight)));
+        for (int i = 0; i < workers; i++) {
+            stages.add(stage(threads, failure, failed, () -> transform(inputQueue, outputQueue, activeWorkers)));
+        }
+        stages.add(stage(threads, failure, failed, () -> write(out, outputQueue, inFlight)));
+        
+        try {
+            // Stop waiting at the first failure: a reader blocked on stdin cannot be interrupted
+            CompletableFuture.anyOf(CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[0])), failed).join();
+        } catch (CompletionException e) {
+            // Reported below from the first failure
+        } finally {
+            threads.shutdownNow();
+            endNanos = System.nanoTime();
+        }
+        
+        Throwable error = failure.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error != null) {
+            throw new IOException("NDJSON pipeline failed", error);
+        }
+        return getStats();
+    }
+    
+    private interface Stage {
+        void run() throws Exception;
+    }
+    
+    /**
+     * Runs a stage; the first stage to fail records its error and signals run to interrupt the others
+     */
+    private static CompletableFuture<Void> stage(ExecutorService threads, AtomicReference<Throwable> failure,
+                                                 CompletableFuture<Void> failed, Stage stage) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                stage.run();
+            } catch (Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    failed.complete(null);
+                }
+                throw new CompletionException(e);
+            }
+        }, threads);
+    }
+    
+    private void read(InputStream in, BlockingQueue<Batch<I>> inputQueue, Semaphore inFlight) throws Exception {
+        long sequence = 0;
+        try (MappingIterator<I> records = reader.readValues(in)) {
+            while (true) {
+                inFlight.acquire();
+                List<I> values = new ArrayList<>(batchSize);
+                while (values.size() < batchSize && records.hasNextValue()) {
+                    values.add(records.nextValue());
+                }
+                if (values.isEmpty()) {
+                    inFlight.release();
+                    break;
+                }
+                recordsRead.add(values.size());
+                int current = batchesInFlight.incrementAndGet();
+                maxBatchesSeen.accumulateAndGet(current, Math::max);
+                inputQueue.put(new Batch<>(sequence++, values, System.nanoTime()));
+            }
+        }
+        for (int i = 0; i < workers; i++) {
+            inputQueue.put(Batch.end());
+        }
+    }
+    
+    private void transform(BlockingQueue<Batch<I>> inputQueue, BlockingQueue<Batch<O>> outputQueue,
+                           AtomicInteger activeWorkers) throws InterruptedException {
+        while (true) {
+            Batch<I> batch = inputQueue.take();
+            if (batch.isEnd()) {
+                if (activeWorkers.decrementAndGet() == 0) {
+                    outputQueue.put(Batch.end());
+                }
+                return;
+            }
+            List<O> results = new ArrayList<>(batch.values.size());
+            for (I value : batch.values) {
+                O result = transform.apply(value);
+                if (result != null) {
+                    results.add(result);
+                } else {
+                    recordsDropped.increment();
+                }
+            }
+            outputQueue.put(new Batch<>(batch.sequence, results, batch.readNanos));
+        }
+    }
+    
+    private void write(OutputStream out, BlockingQueue<Batch<O>> outputQueue, Semaphore inFlight) throws Exception {
+        OutputStream buffered = new BufferedOutputStream(out, OUTPUT_BUFFER_BYTES);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffered)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Each record is followed by a newline instead of separated by a space
+            generator.setRootValueSeparator(null);
+            Map<Long, Batch<O>> pending = new HashMap<>();
+            long next = 0;
+            while (true) {
+                Batch<O> batch = outputQueue.take();
+                if (batch.isEnd()) {
+                    break;
+                }
+                if (!ordered) {
+                    writeBatch(generator, batch, inFlight);
+                } else {
+                    pending.put(batch.sequence, batch);
+                    for (Batch<O> ready; (ready = pending.remove(next)) != null; next++) {
+                        writeBatch(generator, ready, inFlight);
+                    }
+                }
+                // Push buffered output out only when no further batch is waiting, so a
+                // busy pipeline writes in large blocks and an idle one is not held back
+                if (outputQueue.isEmpty()) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+        buffered.flush();
+    }
+    
+    private void writeBatch(JsonGenerator generator, Batch<O> batch, Semaphore inFlight) throws IOException {
+        for (O value : batch.values) {
+            writer.writeValue(generator, value);
+            generator.writeRaw('\n');
+        }
+        recordsWritten.add(batch.values.size());
+        batchesWritten.increment();
+        long lag = System.nanoTime() - batch.readNanos;
+        lagNanos.add(lag);
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        batchesInFlight.decrementAndGet();
+        inFlight.release();
+    }
+    
+    private void reset() {
+        recordsRead.reset();
+        recordsWritten.reset();
+        recordsDropped.reset();
+        batchesWritten.reset();
+        lagNanos.reset();
+        maxLagNanos.set(0);
+        batchesInFlight.set(0);
+        maxBatchesSeen.set(0);
+        endNanos = 0;
+        startNanos = System.nanoTime();
+    }
+    
+    /**
+     * Metrics of the current or last run; safe to call while it is running
+     */
+    public Stats getStats() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        long batches = batchesWritten.sum();
+        return new Stats(recordsRead.sum(), recordsWritten.sum(), recordsDropped.sum(), end - startNanos,
+                         batches == 0 ? 0 : lagNanos.sum() / batches, maxLagNanos.get(),
+                         batchesInFlight.get(), maxBatchesSeen.get());
+    }
+    
+    /**
+     * Throughput and lag of a run. Lag is the time from a batch being read to it
+     * being written, including time spent waiting in queues.
+     */
+    public static final class Stats {
+        private final long recordsRead;
+        private final long recordsWritten;
+        private final long recordsDropped;
+        private final long elapsedNanos;
+        private final long averageLagNanos;
+        private final long maxLagNanos;
+        private final int batchesInFlight;
+        private final int maxBatchesInFlight;
+        
+        Stats(long recordsRead, long recordsWritten, long recordsDropped, long elapsedNanos,
+              long averageLagNanos, long maxLagNanos, int batchesInFlight, int maxBatchesInFlight) {
+            this.recordsRead = recordsRead;
+            this.recordsWritten = recordsWritten;
+            this.recordsDropped = recordsDropped;
+            this.elapsedNanos = elapsedNanos;
+            this.averageLagNanos = averageLagNanos;
+            this.maxLagNanos = maxLagNanos;
+            this.batchesInFlight = batchesInFlight;
+            this.maxBatchesInFlight = maxBatchesInFlight;
+        }
+        
+        public long getRecordsRead() { return recordsRead; }
+        public long getRecordsWritten() { return recordsWritten; }
+        public long getRecordsDropped() { return recordsDropped; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public long getAverageLagNanos() { return averageLagNanos; }
+        public long getMaxLagNanos() { return maxLagNanos; }
+        /** Batches read but not yet written, at the time of the snapshot */
+        public int getBatchesInFlight() { return batchesInFlight; }
+        /** Most batches that were in flight at once */
+        public int getMaxBatchesInFlight() { return maxBatchesInFlight; }
+        
+        public double getRecordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : recordsWritten * 1e9 / elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("read=%d written=%d dropped=%d elapsed=%.1fms throughput=%.0f/s "
+                                 + "lag(avg=%.1fms max=%.1fms) inFlight=%d maxInFlight=%d",
+                                 recordsRead, recordsWritten, recordsDropped, elapsedNanos / 1e6,
+                                 getRecordsPerSecond(), averageLagNanos / 1e6, maxLagNanos / 1e6,
+                                 batchesInFlight, maxBatchesInFlight);
+        }
+    }
+    
+    /**
+     * Records read together, with their position in the input
+     */
+    private static final class Batch<T> {
+        private static final Batch<?> END = new Batch<>(-1, List.of(), 0);
+        
+        final long sequence;
+        final List<T> values;
+        final long readNanos;
+        
+        Batch(long sequence, List<T> values, long readNanos) {
+            this.sequence = sequence;
+            this.values = values;
+            this.readNanos = readNanos;
+        }
+        
+        @SuppressWarnings("unchecked")
+        static <T> Batch<T> end() {
+            return (Batch<T>) END;
+        }
+        
+        boolean isEnd() {
+            return this == END;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fetches many URIs concurrently over a shared pool of keep-alive connections.
+ * At most concurrency requests run at once (one worker thread each), at most
+ * maxPerRoute of them against the same host, and connections are returned to
+ * the pool after every response so later requests to the same host reuse them.
+ * Servers that send no Keep-Alive header get a default keep-alive time; idle
+ * and expired connections are evicted in the background.
+ */
+public class PooledHttpFetcher implements Closeable {
+    
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    public static final int DEFAULT_CONCURRENCY = 64;
+    public static final int DEFAULT_TIMEOUT_MILLIS = 10_000;
+    /** Keep-alive time for responses without a Keep-Alive header */
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30_000;
+    
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final ExecutorService workers;
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+    
+    public PooledHttpFetcher() {
+        this(DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE, DEFAULT_CONCURRENCY, DEFAULT_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * @param maxTotal      pooled connections across all hosts
+     * @param maxPerRoute   pooled connections per host (scheme, host and port)
+     * @param concurrency   requests in flight at once
+     * @param timeoutMillis connect, pool lease and socket read timeout
+     */
+    public PooledHttpFetcher(int maxTotal, int maxPerRoute, int concurrency, int timeoutMillis) {
+        ManagedHttpClientConnectionFactory delegate = ManagedHttpClientConnectionFactory.INSTANCE;
+        HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> countingFactory = (route, config) -> {
+            connectionsOpened.increment();
+            return delegate.create(route, config);
+        };
+        connectionManager = new PoolingHttpClientConnectionManager(countingFactory);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        // Check connections idle for a while before reusing them, not on every lease
+        connectionManager.setValidateAfterInactivity(2_000);
+        
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(timeoutMillis)
+            .setConnectionRequestTimeout(timeoutMillis)
+            .setSocketTimeout(timeoutMillis)
+            .build();
+        client = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setKeepAliveStrategy(new DefaultKeepAlive())
+            .evictExpiredConnections()
+            .evictIdleConnections(DEFAULT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "http-fetch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        workers = executor;
+    }
+    
+    /**
+     * The pooled client, for callers that issue requests of their own
+     */
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+    
+    /**
+     * Overrides the connection limit for one host
+     */
+    public void setMaxPerRoute(URI uri, int max) {
+        connectionManager.setMaxPerRoute(new HttpRoute(URIUtils.extractHost(uri)), max);
+    }
+    
+    /**
+     * Starts a GET for every URI and returns the results in completion order.
+     * Failures are reported as results, not thrown.
+     */
+    public Iterator<FetchResult> fetchAll(List<URI> uris) {
+        CompletionService<FetchResult> completion = new ExecutorCompletionService<>(workers);
+        for (URI uri : uris) {
+            completion.submit(() -> fetch(uri));
+        }
+        return new Iterator<>() {
+            private int remaining = uris.size();
+            
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+            
+            @Override
+            public FetchResult next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                try {
+                    return completion.take().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for results", e);
+                } catch (ExecutionException e) {
+                    // fetch() reports its own failures, so this is a bug
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        };
+    }
+    
+    /**
+     * Fetches one URI on the calling thread
+     */
+    public FetchResult fetch(URI uri) {
+        requests.increment();
+        long start = System.nanoTime();
+        try (CloseableHttpResponse response = client.execute(new HttpGet(uri))) {
+            // Reading the entity to the end releases the connection back to the pool
+            byte[] body = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+            return new FetchResult(uri, response.getStatusLine().getStatusCode(), body, System.nanoTime() - start, null);
+        } catch (IOException e) {
+            failures.increment();
+            return new FetchResult(uri, -1, null, System.nanoTime() - start, e);
+        }
+    }
+    
+    public long getRequests() {
+        return requests.sum();
+    }
+    
+    public long getFailures() {
+        return failures.sum();
+    }
+    
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+    
+    /**
+     * Share of requests served over an already open connection
+     */
+    public double getConnectionReuseRatio() {
+        long total = requests.sum();
+        return total == 0 ? 0 : Math.max(0, 1 - (double) connectionsOpened.sum() / total);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        workers.shutdownNow();
+        client.close();
+    }
+    
+    /**
+     * Honors the server's Keep-Alive timeout and falls back to the default when there is none
+     */
+    private static final class DefaultKeepAlive implements ConnectionKeepAliveStrategy {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : DEFAULT_KEEP_ALIVE_MILLIS;
+        }
+    }
+    
+    /**
+     * Outcome of one GET: status and body, or the exception that prevented a response
+     */
+    public static final class FetchResult {
+        private final URI uri;
+        private final int status;
+        private final byte[] body;
+        private final long elapsedNanos;
+        private final IOException error;
+        
+        FetchResult(URI uri, int status, byte[] body, long elapsedNanos, IOException error) {
+            this.uri = uri;
+            this.status = status;
+            this.body = body;
+            this.elapsedNanos = elapsedNanos;
+            this.error = error;
+        }
+        
+        public URI getUri() { return uri; }
+        /** HTTP status, or -1 when the request failed */
+        public int getStatus() { return status; }
+        /** Response body, or null when the request failed */
+        public byte[] getBody() { return body; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public IOException getError() { return error; }
+        public boolean isSuccess() { return error == null && status >= 200 && status < 300; }
+    }
+}
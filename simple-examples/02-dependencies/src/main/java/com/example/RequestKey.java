@@ -0,0 +1,120 @@
+package com.example;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Identifies requests that would get the same response: same method, same URI
+ * (scheme and host compared case-insensitively, fragment ignored) and same values
+ * of the headers that change a response. Other headers, such as User-Agent or
+ * tracing ids, are left out so they do not keep identical requests apart.
+ */
+public final class RequestKey {
+    
+    /**
+     * Headers that select a representation or a user; requests that differ in any of
+     * them never share a response
+     */
+    public static final Set<String> RELEVANT_HEADERS = Set.of(
+        "accept", "accept-encoding", "accept-language", "authorization", "cookie");
+    
+    private final String method;
+    private final URI uri;
+    private final SortedMap<String, String> headers;
+    
+    private RequestKey(String method, URI uri, SortedMap<String, String> headers) {
+        this.method = method;
+        this.uri = uri;
+        this.headers = headers;
+    }
+    
+    /**
+     * Key of a GET without headers
+     */
+    public static RequestKey get(URI uri) {
+        return of("GET", uri, Collections.emptyMap());
+    }
+    
+    /**
+     * Key of a request, keeping only the RELEVANT_HEADERS
+     */
+    public static RequestKey of(String method, URI uri, Map<String, String> headers) {
+        return of(method, uri, headers, RELEVANT_HEADERS);
+    }
+    
+    /**
+     * Key of a request, keeping only the given headers (lower case names)
+     */
+    public static RequestKey of(String method, URI uri, Map<String, String> headers, Set<String> relevant) {
+        SortedMap<String, String> kept = new TreeMap<>();
+        headers.forEach((name, value) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (relevant.contains(lower)) {
+                kept.put(lower, value.trim());
+            }
+        });
+        return new RequestKey(method.toUpperCase(Locale.ROOT), normalize(uri), kept);
+    }
+    
+    private static URI normalize(URI uri) {
+        if (uri.isOpaque() || uri.getScheme() == null || uri.getHost() == null) {
+            return uri.normalize();
+        }
+        StringBuilder normalized = new StringBuilder()
+            .append(uri.getScheme().toLowerCase(Locale.ROOT)).append("://");
+        if (uri.getRawUserInfo() != null) {
+            normalized.append(uri.getRawUserInfo()).append('@');
+        }
+        normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+        if (uri.getPort() != -1) {
+            normalized.append(':').append(uri.getPort());
+        }
+        normalized.append(uri.getRawPath().isEmpty() ? "/" : uri.getRawPath());
+        if (uri.getRawQuery() != null) {
+            normalized.append('?').append(uri.getRawQuery());
+        }
+        return URI.create(normalized.toString()).normalize();
+    }
+    
+    public String getMethod() {
+        return method;
+    }
+    
+    public URI getUri() {
+        return uri;
+    }
+    
+    /** Relevant headers, lower case names in order */
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableSortedMap(headers);
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey key = (RequestKey) other;
+        return method.equals(key.method) && uri.equals(key.uri) && headers.equals(key.headers);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(method, uri, headers);
+    }
+    
+    /** Method and URI only, so credentials in headers never reach logs */
+    @Override
+    public String toString() {
+        return method + " " + uri;
+    }
+}
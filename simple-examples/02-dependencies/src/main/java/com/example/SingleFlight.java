@@ -0,0 +1,259 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls with equal keys into one execution whose result, or
+ * failure, goes to every caller that joined while it was in flight. Nothing is
+ * cached: once a call completes its key is free, and the next caller starts a new
+ * execution.
+ *
+ * Every caller waits on a future of its own. Cancelling it (or interrupting a
+ * thread blocked in execute) detaches only that caller; the execution itself is
+ * cancelled when its last caller leaves, so a new caller never joins a call
+ * nobody wants anymore.
+ */
+public class SingleFlight<K, V> {
+    
+    /**
+     * A blocking call, run on one of the SingleFlight's threads
+     */
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws IOException;
+    }
+    
+    private final ExecutorService executor;
+    private final ConcurrentMap<K, Flight> flights = new ConcurrentHashMap<>();
+    
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    
+    public SingleFlight() {
+        // Calls block, so each execution in flight gets its own thread
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "single-flight-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+    
+    /**
+     * @param executor runs blocking calls passed to execute; interrupted when a call is abandoned
+     */
+    public SingleFlight(ExecutorService executor) {
+        this.executor = executor;
+    }
+    
+    /**
+     * Runs the call, or joins the execution already in flight for the key, and waits
+     * for the result. Every caller of a failed execution gets the same exception.
+     *
+     * @throws InterruptedIOException when this thread is interrupted while waiting;
+     *                                the execution goes on for the other callers
+     */
+    public V execute(K key, Call<? extends V> call) throws IOException {
+        CompletableFuture<V> result = submit(key, () -> run(call));
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for " + key);
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    
+    /**
+     * Starts the asynchronous call, or joins the one in flight for the key. The call's
+     * stage is cancelled (with CompletableFuture.cancel) once every caller has
+     * cancelled its future.
+     *
+     * @return this caller's future, completed with the shared result
+     */
+    public CompletableFuture<V> submit(K key, Supplier<? extends CompletionStage<? extends V>> call) {
+        calls.increment();
+        while (true) {
+            Flight flight = flights.get(key);
+            boolean started = false;
+            if (flight == null) {
+                Flight created = new Flight(key);
+                flight = flights.putIfAbsent(key, created);
+                if (flight == null) {
+                    flight = created;
+                    started = true;
+                }
+            }
+            CompletableFuture<V> waiter = flight.join();
+            if (started) {
+                executions.increment();
+                flight.start(call);
+            }
+            if (waiter != null) {
+                return waiter;
+            }
+            // Joined a flight just as its last caller left; it is leaving the map, try again
+        }
+    }
+    
+    /** Calls made, joined or not */
+    public long getCalls() {
+        return calls.sum();
+    }
+    
+    /** Calls that actually executed */
+    public long getExecutions() {
+        return executions.sum();
+    }
+    
+    /** Calls that joined an execution already in flight */
+    public long getShared() {
+        return calls.sum() - executions.sum();
+    }
+    
+    /** Executions cancelled because every caller left */
+    public long getAbandoned() {
+        return abandoned.sum();
+    }
+    
+    /** Keys with an execution in flight */
+    public int getInFlight() {
+        return flights.size();
+    }
+    
+    private CompletableFuture<V> run(Call<? extends V> call) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(call.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+    
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+    
+    /**
+     * One execution and the callers waiting for it; waiters and left are guarded by
+     * the instance lock
+     */
+    private final class Flight {
+        private final K key;
+        private final CompletableFuture<V> shared = new CompletableFuture<>();
+        private CompletableFuture<? extends V> source;
+        private int waiters;
+        private boolean left;
+        
+        Flight(K key) {
+            this.key = key;
+        }
+        
+        /**
+         * @return a future for one more caller, or null when everyone has left
+         */
+        synchronized CompletableFuture<V> join() {
+            if (left) {
+                return null;
+            }
+            waiters++;
+            CompletableFuture<V> waiter = new CompletableFuture<>();
+            shared.whenComplete((value, error) -> {
+                if (error == null) {
+                    waiter.complete(value);
+                } else {
+                    waiter.completeExceptionally(error);
+                }
+            });
+            waiter.whenComplete((value, error) -> {
+                if (waiter.isCancelled()) {
+                    leave();
+                }
+            });
+            return waiter;
+        }
+        
+        void start(Supplier<? extends CompletionStage<? extends V>> call) {
+            CompletableFuture<? extends V> started;
+            try {
+                started = call.get().toCompletableFuture();
+            } catch (Throwable t) {
+                started = CompletableFuture.failedFuture(t);
+            }
+            boolean cancel;
+            synchronized (this) {
+                source = started;
+                cancel = left;
+            }
+            if (cancel) {
+                started.cancel(true);
+            }
+            started.whenComplete((value, error) -> {
+                // Leave the map before anyone hears of the result, so no caller can join a finished flight
+                flights.remove(key, this);
+                if (error == null) {
+                    shared.complete(value);
+                } else {
+                    shared.completeExceptionally(unwrap(error));
+                }
+            });
+        }
+        
+        private void leave() {
+            CompletableFuture<? extends V> cancel;
+            synchronized (this) {
+                if (--waiters > 0 || shared.isDone()) {
+                    return;
+                }
+                left = true;
+                cancel = source;
+            }
+            abandoned.increment();
+            flights.remove(key, this);
+            shared.completeExceptionally(new CancellationException("Every caller left " + key));
+            if (cancel != null) {
+                cancel.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each component took to create, in the order they were created.
+ * Times include class loading and static initialization, which dominate the first
+ * use of a library. A component created while another is being created (such as
+ * the connection pool under the response cache) is timed on its own and left out
+ * of the outer component's time, so the entries add up to the total.
+ */
+public final class StartupTrace {
+    
+    private static final Logger logger = LoggerFactory.getLogger(StartupTrace.class);
+    
+    /**
+     * One component's creation
+     */
+    public static final class Entry {
+        private final String name;
+        private final long nanos;
+        private final String thread;
+        
+        Entry(String name, long nanos, String thread) {
+            this.name = name;
+            this.nanos = nanos;
+            this.thread = thread;
+        }
+        
+        public String getName() { return name; }
+        /** Time spent creating this component, without the components it created */
+        public long getNanos() { return nanos; }
+        /** Thread that created it, the one whose first call paid the cost */
+        public String getThread() { return thread; }
+        
+        @Override
+        public String toString() {
+            return String.format("%s %.1f ms", name, nanos / 1e6);
+        }
+    }
+    
+    private final List<Entry> entries = new ArrayList<>();
+    /** Time spent in components created inside the one being created on this thread */
+    private final ThreadLocal<long[]> nestedNanos = new ThreadLocal<>();
+    
+    /**
+     * Creates a component and records the time it took; nothing is recorded when the
+     * creation fails
+     */
+    public <T> T time(String name, Supplier<? extends T> create) {
+        long[] outer = nestedNanos.get();
+        long[] nested = new long[1];
+        nestedNanos.set(nested);
+        long start = System.nanoTime();
+        T component;
+        try {
+            component = create.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (outer == null) {
+                nestedNanos.remove();
+            } else {
+                nestedNanos.set(outer);
+                outer[0] += elapsed;
+            }
+            nested[0] = elapsed - nested[0];
+        }
+        Entry entry = new Entry(name, nested[0], Thread.currentThread().getName());
+        synchronized (entries) {
+            entries.add(entry);
+        }
+        logger.debug("Created {} in {} ms", name, String.format("%.1f", entry.getNanos() / 1e6));
+        return component;
+    }
+    
+    /** Components created so far, in creation order */
+    public List<Entry> getEntries() {
+        synchronized (entries) {
+            return List.copyOf(entries);
+        }
+    }
+    
+    public long getTotalNanos() {
+        return getEntries().stream().mapToLong(Entry::getNanos).sum();
+    }
+    
+    @Override
+    public String toString() {
+        List<Entry> created = getEntries();
+        if (created.isEmpty()) {
+            return "no components created";
+        }
+        long total = created.stream().mapToLong(Entry::getNanos).sum();
+        return String.format("%s (total %.1f ms)", created, total / 1e6);
+    }
+}
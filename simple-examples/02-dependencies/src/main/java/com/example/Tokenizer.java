@@ -0,0 +1,280 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Splits text into whitespace-separated tokens the way StringUtils.split(String)
+ * does (runs of Character.isWhitespace separate tokens, no empty tokens), but
+ * hands out positions in the input instead of new Strings. Works on any
+ * CharSequence, through a callback or a cursor, and on UTF-8 bytes, including
+ * memory-mapped files processed in parallel chunks cut at line boundaries.
+ */
+public final class Tokenizer {
+    
+    /** Bytes of a file tokenized per parallel task */
+    static final int DEFAULT_CHUNK_BYTES = 8 << 20;
+    
+    private Tokenizer() {
+    }
+    
+    /**
+     * Receives each token as the range start (inclusive) to end (exclusive) of the source
+     */
+    @FunctionalInterface
+    public interface CharTokenHandler {
+        void onToken(CharSequence source, int start, int end);
+    }
+    
+    /**
+     * Receives each token as a byte range of the UTF-8 source, and the end of every line
+     */
+    @FunctionalInterface
+    public interface Utf8TokenHandler {
+        void onToken(ByteBuffer source, int start, int end);
+        
+        /** Called for every \n, after the last token of its line */
+        default void onLineEnd() {
+        }
+    }
+    
+    /**
+     * Calls the handler for every token of the input
+     *
+     * @return number of tokens
+     */
+    public static int tokenize(CharSequence input, CharTokenHandler handler) {
+        int count = 0;
+        int length = input.length();
+        int start = -1;
+        for (int i = 0; i < length; i++) {
+            if (Character.isWhitespace(input.charAt(i))) {
+                if (start >= 0) {
+                    handler.onToken(input, start, i);
+                    count++;
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            handler.onToken(input, start, length);
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Calls the handler for every token between from and to of a UTF-8 buffer,
+     * without moving its position
+     *
+     * @return number of tokens
+     */
+    public static int tokenize(ByteBuffer utf8, int from, int to, Utf8TokenHandler handler) {
+        int count = 0;
+        int start = -1;
+        int i = from;
+        while (i < to) {
+            byte b = utf8.get(i);
+            // Printable ASCII, the common case, is never whitespace
+            int whitespace = b > ' ' ? 0 : b == '\n' ? 1 : whitespaceLength(utf8, i, to);
+            if (whitespace == 0) {
+                if (start < 0) {
+                    start = i;
+                }
+                i++;
+                continue;
+            }
+            if (start >= 0) {
+                handler.onToken(utf8, start, i);
+                count++;
+                start = -1;
+            }
+            if (b == '\n') {
+                handler.onLineEnd();
+            }
+            i += whitespace;
+        }
+        if (start >= 0) {
+            handler.onToken(utf8, start, to);
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Tokenizes a UTF-8 file in parallel. The file is memory-mapped in chunks that
+     * end on line boundaries; each chunk gets its own handler from the supplier, and
+     * the handlers are combined in file order, so a handler never sees two threads.
+     *
+     * @return the combined handler
+     */
+    public static <H extends Utf8TokenHandler> H tokenize(Path file, Supplier<H> handlers,
+                                                          BinaryOperator<H> combiner) throws IOException {
+        return tokenize(file, DEFAULT_CHUNK_BYTES, handlers, combiner);
+    }
+    
+    static <H extends Utf8TokenHandler> H tokenize(Path file, int chunkBytes, Supplier<H> handlers,
+                                                   BinaryOperator<H> combiner) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = LineChunks.bounds(channel, chunkBytes);
+            try {
+                return IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(chunk -> {
+                        H handler = handlers.get();
+                        try {
+                            long from = bounds[chunk];
+                            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from,
+                                                            bounds[chunk + 1] - from);
+                            tokenize(mapped, 0, mapped.limit(), handler);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return handler;
+                    })
+                    .reduce(combiner)
+                    .orElseGet(handlers);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+    
+    /**
+     * A cursor over the tokens of a sequence; between calls to next it is itself a
+     * CharSequence view of the current token. Reusable through reset.
+     */
+    public static CharCursor cursor(CharSequence input) {
+        return new CharCursor().reset(input);
+    }
+    
+    /**
+     * Byte length of the whitespace character at index i, or 0 when it is not whitespace
+     */
+    static int whitespaceLength(ByteBuffer utf8, int i, int limit) {
+        int b = utf8.get(i) & 0xFF;
+        if (b < 0x80) {
+            return Character.isWhitespace(b) ? 1 : 0;
+        }
+        // Every non-ASCII whitespace character (U+1680, U+2000 to U+205F, U+3000) has a 3-byte encoding
+        if (b < 0xE1 || b > 0xE3 || i + 2 >= limit) {
+            return 0;
+        }
+        int b1 = utf8.get(i + 1) & 0xFF;
+        int b2 = utf8.get(i + 2) & 0xFF;
+        // Malformed sequences are never whitespace, so no byte of a token is swallowed
+        if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80) {
+            return 0;
+        }
+        int codePoint = (b & 0x0F) << 12 | (b1 & 0x3F) << 6 | (b2 & 0x3F);
+        return Character.isWhitespace(codePoint) ? 3 : 0;
+    }
+    
+    /**
+     * Iterates over tokens without allocating: call next, then read the token
+     * through this CharSequence or through start and end
+     */
+    public static final class CharCursor implements CharSequence {
+        private CharSequence input;
+        private int position;
+        private int start;
+        private int end;
+        
+        CharCursor() {
+        }
+        
+        /**
+         * Starts over on new input
+         */
+        public CharCursor reset(CharSequence input) {
+            this.input = input;
+            this.position = 0;
+            this.start = 0;
+            this.end = 0;
+            return this;
+        }
+        
+        /**
+         * Moves to the next token
+         *
+         * @return false when there are no more tokens
+         */
+        public boolean next() {
+            int length = input.length();
+            int i = position;
+            while (i < length && Character.isWhitespace(input.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                position = length;
+                start = end = length;
+                return false;
+            }
+            start = i;
+            while (i < length && !Character.isWhitespace(input.charAt(i))) {
+                i++;
+            }
+            end = i;
+            position = i;
+            return true;
+        }
+        
+        /** Start of the current token in the input */
+        public int start() {
+            return start;
+        }
+        
+        /** End (exclusive) of the current token in the input */
+        public int end() {
+            return end;
+        }
+        
+        /**
+         * Compares the current token with text, without copying it
+         */
+        public boolean contentEquals(CharSequence text) {
+            int length = end - start;
+            if (text.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (input.charAt(start + i) != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public int length() {
+            return end - start;
+        }
+        
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+            }
+            return input.charAt(start + index);
+        }
+        
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return input.subSequence(start + from, start + to);
+        }
+        
+        /** Copies the current token into a new String */
+        @Override
+        public String toString() {
+            return input.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.util.Locale;
+
+/**
+ * Encodings for the same JSON data model: text JSON, and the binary Smile and
+ * CBOR formats, which skip number/text conversion and length-prefix strings.
+ * Pick one from an Accept header with negotiate, or from a Content-Type with
+ * forContentType.
+ */
+public enum WireFormat {
+    
+    JSON("application/json") {
+        @Override
+        JsonFactory newFactory(StringSharing sharing) {
+            return new JsonFactory();
+        }
+    },
+    
+    SMILE("application/x-jackson-smile") {
+        @Override
+        JsonFactory newFactory(StringSharing sharing) {
+            return SmileFactory.builder()
+                .configure(SmileGenerator.Feature.CHECK_SHARED_NAMES, sharing != StringSharing.NONE)
+                .configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, sharing == StringSharing.NAMES_AND_VALUES)
+                .build();
+        }
+    },
+    
+    CBOR("application/cbor") {
+        @Override
+        JsonFactory newFactory(StringSharing sharing) {
+            return new CBORFactory();
+        }
+    };
+    
+    /**
+     * Whether repeated strings are written once and referenced afterwards. Only
+     * Smile supports back-references (CBOR string references need Jackson 2.15);
+     * other formats ignore the setting. Readers detect it from the data.
+     */
+    public enum StringSharing {
+        /** Every string written in full */
+        NONE,
+        /** Repeated property names become back-references (Smile's default) */
+        NAMES,
+        /** Repeated names and short string values (up to 64 bytes) become back-references */
+        NAMES_AND_VALUES
+    }
+    
+    private final String contentType;
+    
+    WireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    abstract JsonFactory newFactory(StringSharing sharing);
+    
+    /**
+     * Picks the format with the highest quality in an Accept header; on a tie an
+     * exact media type beats a wildcard, then the one listed first wins. A missing
+     * or empty header means JSON.
+     *
+     * @return the format, or null when the header accepts none of them (HTTP 406)
+     */
+    public static WireFormat negotiate(String accept) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return JSON;
+        }
+        WireFormat best = null;
+        double bestQuality = 0;
+        boolean bestExact = false;
+        for (String range : accept.split(",")) {
+            String[] parts = range.split(";");
+            String mediaType = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = quality(parts);
+            WireFormat exact = forContentType(mediaType);
+            WireFormat match = exact != null ? exact : wildcard(mediaType);
+            if (match == null || quality <= 0) {
+                continue;
+            }
+            if (quality > bestQuality || (quality == bestQuality && exact != null && !bestExact)) {
+                best = match;
+                bestQuality = quality;
+                bestExact = exact != null;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * The format of a Content-Type header value (parameters such as charset are ignored)
+     *
+     * @return the format, or null for any other media type
+     */
+    public static WireFormat forContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String mediaType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        for (WireFormat format : values()) {
+            if (format.contentType.equals(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Wildcards that cover every format are answered with JSON
+     */
+    private static WireFormat wildcard(String mediaType) {
+        return mediaType.equals("*/*") || mediaType.equals("application/*") ? JSON : null;
+    }
+    
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for AsyncJsonClient against a local stub server
+ */
+class AsyncJsonClientTest {
+    
+    private static final int LARGE_ELEMENTS = 400_000;
+    
+    private static StubHttpServer server;
+    private static final AtomicLong largeBytesWritten = new AtomicLong();
+    /** Upstream documents carry fields the bound type does not have */
+    private static final ObjectMapper MAPPER = new ObjectMapper().registerModule(new JavaTimeModule())
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = new StubHttpServer(8)
+            .json("/small", "{\"name\":\"small\",\"values\":[1,2,3],\"nested\":{\"flag\":true}}")
+            .json("/broken", "{\"name\":")
+            .route("/missing", exchange -> StubHttpServer.respond(exchange, 404, "{}"))
+            .delayed("/delayed", 500, "{\"delayed\":true}")
+            .route("/large", exchange -> {
+                // About 50 MB of items, streamed with chunked encoding
+                largeBytesWritten.set(0);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    write(out, "[");
+                    for (int i = 0; i < LARGE_ELEMENTS; i++) {
+                        write(out, (i == 0 ? "" : ",") + "{\"id\":" + i + ",\"name\":\"item-" + i
+                            + "\",\"price\":" + i * 1.25 + ",\"available\":true,\"updated\":\"2024-01-15T10:30:00\""
+                            + ",\"padding\":\"" + "x".repeat(32) + "\"}");
+                    }
+                    write(out, "]");
+                }
+            });
+    }
+    
+    private static void write(OutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        largeBytesWritten.addAndGet(bytes.length);
+    }
+    
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+    
+    @Nested
+    @DisplayName("Streaming Tests")
+    class StreamingTests {
+        
+        @Test
+        @DisplayName("Should hand every token to the handler in order")
+        void shouldStreamTokens() throws Exception {
+            AsyncJsonClient client = new AsyncJsonClient(MAPPER);
+            List<JsonToken> tokens = new ArrayList<>();
+            
+            client.streamTokens(server.uri("/small"), (token, parser) -> tokens.add(token))
+                .toCompletableFuture().get(10, TimeUnit.SECONDS);
+            
+            assertThat(tokens).startsWith(JsonToken.START_OBJECT, JsonToken.FIELD_NAME, JsonToken.VALUE_STRING)
+                .endsWith(JsonToken.END_OBJECT, JsonToken.END_OBJECT).hasSize(15);
+        }
+        
+        @Test
+        @DisplayName("Should bind a large array one element at a time")
+        void shouldBindLargeArray() throws Exception {
+            AsyncJsonClient client = new AsyncJsonClient(MAPPER);
+            AtomicLong idSum = new AtomicLong();
+            
+            long count = client.streamArray(server.uri("/large"), JsonPayloads.Item.class,
+                                            item -> idSum.addAndGet(item.getId()))
+                .toCompletableFuture().get(60, TimeUnit.SECONDS);
+            
+            assertThat(count).isEqualTo(LARGE_ELEMENTS);
+            assertThat(idSum.get()).isEqualTo((long) LARGE_ELEMENTS * (LARGE_ELEMENTS - 1) / 2);
+            assertThat(client.getBytesReceived()).isEqualTo(largeBytesWritten.get());
+        }
+        
+        @Test
+        @DisplayName("Should stop reading while the consumer is busy")
+        void shouldApplyBackpressure() throws Exception {
+            AsyncJsonClient client = new AsyncJsonClient(MAPPER);
+            CountDownLatch release = new CountDownLatch(1);
+            
+            CompletableFuture<Long> done = client.streamArray(server.uri("/large"), JsonPayloads.Item.class, item -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).toCompletableFuture();
+            
+            // Wait until the server is blocked on full socket buffers
+            long written;
+            long previous = -1;
+            while ((written = largeBytesWritten.get()) != previous || written == 0) {
+                previous = written;
+                Thread.sleep(300);
+            }
+            long total = client.getBytesReceived();
+            release.countDown();
+            
+            assertThat(done.get(60, TimeUnit.SECONDS)).isEqualTo(LARGE_ELEMENTS);
+            System.out.printf("Backpressure: server stalled after %d KB, client had received %d KB of %d KB%n",
+                              written / 1024, total / 1024, largeBytesWritten.get() / 1024);
+            assertThat(written).isLessThan(largeBytesWritten.get() / 4);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Error Tests")
+    class ErrorTests {
+        
+        @Test
+        @DisplayName("Should fail on an error status")
+        void shouldFailOnErrorStatus() {
+            AsyncJsonClient client = new AsyncJsonClient(MAPPER);
+            
+            assertThatThrownBy(() -> client.streamTokens(server.uri("/missing"), (token, parser) -> { })
+                .toCompletableFuture().get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IOException.class)
+                .hasMessageContaining("HTTP 404");
+        }
+        
+        @Test
+        @DisplayName("Should fail on a truncated document")
+        void shouldFailOnMalformedJson() {
+            AsyncJsonClient client = new AsyncJsonClient(MAPPER);
+            
+            assertThatThrownBy(() -> client.streamTokens(server.uri("/broken"), (token, parser) -> { })
+                .toCompletableFuture().get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(JsonParseException.class);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Concurrency Tests")
+    class ConcurrencyTests {
+        
+        @Test
+        @DisplayName("Should keep thousands of requests in flight on a handful of threads")
+        void shouldHoldThousandsInFlight() throws Exception {
+            AsyncJsonClient client = new AsyncJsonClient(MAPPER, 4, Duration.ofSeconds(60));
+            int count = 2000;
+            URI uri = server.uri("/delayed");
+            
+            long start = System.nanoTime();
+            List<CompletableFuture<Long>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                results.add(client.streamArray(uri, Object.class, value -> { }).toCompletableFuture());
+            }
+            int peakInFlight = client.getInFlight();
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long clientThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("async-json-"))
+                .count();
+            System.out.printf("%d requests of 500 ms each in %.2f s, %d in flight at once, %d client threads%n",
+                              count, seconds, peakInFlight, clientThreads);
+            
+            assertThat(results).allSatisfy(result -> assertThat(result.join()).isEqualTo(1));
+            assertThat(peakInFlight).isGreaterThan(count / 2);
+            assertThat(clientThreads).isLessThanOrEqualTo(4);
+            assertThat(seconds).isLessThan(30);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for DependencyExample
+ */
+class DependencyExampleTest {
+    
+    private final DependencyExample example = new DependencyExample();
+    
+    @Nested
+    @DisplayName("JSON Serialization Tests")
+    class JsonSerializationTests {
+        
+        @Test
+        @DisplayName("Should produce the same document as a String, byte array and stream")
+        void shouldMatchStringPath() throws IOException {
+            Object payload = JsonPayloads.medium();
+            String expected = example.toJson(payload);
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            example.toJson(payload, out);
+            
+            assertThat(new String(example.toJsonBytes(payload), StandardCharsets.UTF_8)).isEqualTo(expected);
+            assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(expected);
+        }
+        
+        @Test
+        @DisplayName("Should flush but not close the caller's stream")
+        void shouldLeaveStreamOpen() throws IOException {
+            TrackingStream out = new TrackingStream();
+            
+            example.toJson(Map.of("name", "value"), out);
+            example.toJson(Map.of("other", 1), out);
+            
+            assertThat(out.closed).isFalse();
+            assertThat(out.flushed).isTrue();
+            assertThat(out.buffer.toString(StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"value\"}{\"other\":1}");
+        }
+        
+        @Test
+        @DisplayName("Should serialize identically with generated accessors")
+        void shouldMatchWithGeneratedAccessors() {
+            DependencyExample generated = new DependencyExample(true);
+            
+            for (Object payload : new Object[] {JsonPayloads.small(), JsonPayloads.medium()}) {
+                assertThat(generated.toJsonBytes(payload)).isEqualTo(example.toJsonBytes(payload));
+            }
+        }
+        
+        @Test
+        @DisplayName("Should fall back to an empty object when serialization fails")
+        void shouldFallBackOnFailure() {
+            assertThat(example.toJsonBytes(new Object())).isEqualTo("{}".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    @Nested
+    @DisplayName("Input Validation Tests")
+    class InputValidationTests {
+        
+        @Test
+        @DisplayName("Should accept input with at least three characters after trimming")
+        void shouldValidateInput() {
+            assertThat(example.isValidInput("Maven")).isTrue();
+            assertThat(example.isValidInput("  ab  ")).isFalse();
+            assertThat(example.isValidInput("  ")).isFalse();
+            assertThat(example.isValidInput(null)).isFalse();
+        }
+        
+        @Test
+        @DisplayName("Should validate a batch into a bitset")
+        void shouldValidateBatch() {
+            BitSet valid = example.validateAll(List.of("Maven", " ", "ab", "  abc  "));
+            
+            assertThat(valid.stream().toArray()).containsExactly(0, 3);
+        }
+    }
+    
+    @Nested
+    @DisplayName("HTTP Cache Tests")
+    class HttpCacheTests {
+        
+        @Test
+        @DisplayName("Should keep the disk cache under the user's home unless configured")
+        void shouldLocateCacheDirectory() {
+            Path home = Paths.get(System.getProperty("user.home"));
+            assertThat(DependencyExample.defaultHttpCacheDirectory()).startsWithRaw(home);
+            
+            Path configured = home.resolve("configured-cache");
+            System.setProperty(DependencyExample.HTTP_CACHE_DIR_PROPERTY, configured.toString());
+            try {
+                assertThat(DependencyExample.defaultHttpCacheDirectory()).isEqualTo(configured);
+            } finally {
+                System.clearProperty(DependencyExample.HTTP_CACHE_DIR_PROPERTY);
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Startup Tests")
+    class StartupTests {
+        
+        private List<String> created(DependencyExample instance) {
+            return instance.getStartupTrace().getEntries().stream()
+                .map(StartupTrace.Entry::getName)
+                .collect(Collectors.toList());
+        }
+        
+        @Test
+        @DisplayName("Should create only the components an entry point uses")
+        void shouldCreateOnDemand() throws IOException {
+            try (DependencyExample fresh = new DependencyExample()) {
+                fresh.demonstrateCommonsLang();
+                assertThat(created(fresh)).isEmpty();
+                
+                fresh.toJson(Map.of("name", "value"), new ByteArrayOutputStream());
+                fresh.fromBytes(fresh.toBytes(Map.of("name", "value"), WireFormat.CBOR), Map.class, WireFormat.CBOR);
+                // CBOR ignores the sharing option, so it does not get a mapper of its own
+                fresh.toBytes(Map.of("name", "value"), WireFormat.CBOR, WireFormat.StringSharing.NONE);
+                assertThat(created(fresh)).containsExactly("objectMapper", "streamWriter", "mapper CBOR");
+            }
+        }
+        
+        @Test
+        @DisplayName("Should create a component once when many threads use it first at the same time")
+        void shouldCreateOnce() throws Exception {
+            DependencyExample fresh = new DependencyExample();
+            ExecutorService threads = Executors.newFixedThreadPool(16);
+            CountDownLatch go = new CountDownLatch(1);
+            try {
+                List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    results.add(threads.submit(() -> {
+                        go.await();
+                        return fresh.toJson(Map.of("id", 1));
+                    }));
+                }
+                go.countDown();
+                
+                for (Future<String> result : results) {
+                    assertThat(result.get()).isEqualTo("{\"id\":1}");
+                }
+                assertThat(created(fresh)).containsExactly("objectMapper");
+            } finally {
+                threads.shutdownNow();
+            }
+        }
+        
+        @Test
+        @DisplayName("Should time nested components separately and create everything on request")
+        void shouldTraceEveryComponent() throws IOException {
+            try (DependencyExample fresh = new DependencyExample()) {
+                fresh.initializeAll();
+                fresh.initializeAll();
+                
+                StartupTrace trace = fresh.getStartupTrace();
+                assertThat(created(fresh)).containsExactlyInAnyOrder("objectMapper", "streamWriter", "httpFetcher",
+                                                                     "responseCache", "hedgedFetcher", "cachedFetches",
+                                                                     "asyncJsonClient");
+                assertThat(trace.getEntries()).allSatisfy(entry -> assertThat(entry.getNanos()).isNotNegative());
+                assertThat(trace.getTotalNanos()).isPositive();
+                assertThat(trace.toString()).contains("httpFetcher", "ms");
+            }
+        }
+        
+        @Test
+        @DisplayName("Should close without creating anything")
+        void shouldCloseUnused() throws IOException {
+            DependencyExample fresh = new DependencyExample();
+            
+            fresh.close();
+            
+            assertThat(created(fresh)).isEmpty();
+            assertThat(fresh.getStartupTrace()).hasToString("no components created");
+        }
+    }
+    
+    private static final class TrackingStream extends OutputStream {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        boolean flushed;
+        boolean closed;
+        
+        @Override
+        public void write(int b) {
+            buffer.write(b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.write(b, off, len);
+        }
+        
+        @Override
+        public void flush() {
+            flushed = true;
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for HedgedHttpFetcher against a local stub server that injects slow responses
+ */
+class HedgedHttpFetcherTest {
+    
+    private static final int REQUESTS = 500;
+    private static final int WARMUP = 50;
+    
+    private static StubHttpServer server;
+    private static PooledHttpFetcher pool;
+    /** Makes the next request to /once hang */
+    private static final AtomicBoolean hangNext = new AtomicBoolean();
+    
+    @BeforeAll
+    static void startServer() throws Exception {
+        AtomicLong tail = new AtomicLong();
+        AtomicLong alternating = new AtomicLong();
+        server = new StubHttpServer(16)
+            // One request in 25 takes 250 ms; the others 2 ms
+            .delayed("/tail", () -> tail.getAndIncrement() % 25 == 0 ? 250 : 2, "{\"ok\":true}")
+            .delayed("/alternating", () -> alternating.getAndIncrement() % 2 == 0 ? 30 : 1, "{\"ok\":true}")
+            // Hangs for 5 s when asked to, long enough to show it was not waited for
+            .delayed("/once", () -> hangNext.compareAndSet(true, false) ? 5_000 : 1, "{\"ok\":true}");
+        pool = new PooledHttpFetcher(200, 100, 1, 10_000);
+    }
+    
+    @AfterAll
+    static void stopServer() throws Exception {
+        pool.close();
+        server.close();
+    }
+    
+    /**
+     * Latency in milliseconds of each request after the warmup, sent by 8 callers at once
+     */
+    private static long[] latencies(HedgedHttpFetcher fetcher, URI uri) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            assertThat(fetcher.fetch(uri).isSuccess()).isTrue();
+        }
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                results.add(callers.submit(() -> {
+                    long start = System.nanoTime();
+                    PooledHttpFetcher.FetchResult result = fetcher.fetch(uri);
+                    assertThat(result.isSuccess()).as("%s", result.getError()).isTrue();
+                    return (System.nanoTime() - start) / 1_000_000;
+                }));
+            }
+            long[] latencies = new long[REQUESTS];
+            for (int i = 0; i < REQUESTS; i++) {
+                latencies[i] = results.get(i).get();
+            }
+            Arrays.sort(latencies);
+            return latencies;
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+    
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+    
+    @Nested
+    @DisplayName("Latency Tests")
+    class LatencyTests {
+        
+        @Test
+        @DisplayName("Should cut the p99 latency of an endpoint with slow outliers")
+        void shouldCutTailLatency() throws Exception {
+            URI uri = server.uri("/tail");
+            long[] plain;
+            long[] hedged;
+            long hedges;
+            try (HedgedHttpFetcher fetcher = new HedgedHttpFetcher(pool.getClient(), 0.95, 0)) {
+                plain = latencies(fetcher, uri);
+                assertThat(fetcher.getHedges()).isZero();
+            }
+            try (HedgedHttpFetcher fetcher = new HedgedHttpFetcher(pool.getClient())) {
+                hedged = latencies(fetcher, uri);
+                hedges = fetcher.getHedges();
+                System.out.printf("hedging: p50 %d -> %d ms, p99 %d -> %d ms, %d hedges (%d won) for %d requests,"
+                                  + " delay %.1f ms%n", percentile(plain, 0.5), percentile(hedged, 0.5),
+                                  percentile(plain, 0.99), percentile(hedged, 0.99), hedges, fetcher.getHedgesWon(),
+                                  fetcher.getRequests(), fetcher.getHedgeDelayMillis(uri));
+                assertThat(fetcher.getHedgesWon()).isPositive();
+            }
+            
+            assertThat(percentile(plain, 0.99)).isGreaterThanOrEqualTo(250);
+            assertThat(percentile(hedged, 0.99)).isLessThan(percentile(plain, 0.99) / 2);
+            assertThat(hedges).isLessThanOrEqualTo(
+                Math.round((REQUESTS + WARMUP) * HedgedHttpFetcher.DEFAULT_BUDGET) + HedgedHttpFetcher.MAX_SAVED_HEDGES);
+        }
+        
+        @Test
+        @DisplayName("Should answer with the hedge and abort the hung request")
+        void shouldAbortTheLoser() throws Exception {
+            URI uri = server.uri("/once");
+            try (HedgedHttpFetcher fetcher = new HedgedHttpFetcher(pool.getClient())) {
+                for (int i = 0; i < 30; i++) {
+                    fetcher.fetch(uri);
+                }
+                assertThat(fetcher.getHedgeDelayMillis(uri)).isPositive();
+                long won = fetcher.getHedgesWon();
+                long hits = server.hits("/once");
+                int samples = fetcher.getLatencySamples(uri);
+                
+                hangNext.set(true);
+                PooledHttpFetcher.FetchResult result = fetcher.fetch(uri);
+                
+                assertThat(result.isSuccess()).isTrue();
+                assertThat(result.getElapsedNanos()).isLessThan(1_000_000_000L);
+                assertThat(fetcher.getHedgesWon()).isEqualTo(won + 1);
+                assertThat(server.hits("/once")).isEqualTo(hits + 2);
+                // The hedge's time says nothing about the hung request's latency
+                assertThat(fetcher.getLatencySamples(uri)).isEqualTo(samples);
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Budget Tests")
+    class BudgetTests {
+        
+        @Test
+        @DisplayName("Should not send more hedges than the budget allows")
+        void shouldRespectBudget() throws Exception {
+            URI uri = server.uri("/alternating");
+            try (HedgedHttpFetcher fetcher = new HedgedHttpFetcher(pool.getClient(), 0.5, 0.1)) {
+                for (int i = 0; i < 200; i++) {
+                    assertThat(fetcher.fetch(uri).isSuccess()).isTrue();
+                }
+                
+                assertThat(fetcher.getHedges()).isLessThanOrEqualTo(20 + HedgedHttpFetcher.MAX_SAVED_HEDGES);
+                assertThat(fetcher.getHedgesDenied()).isPositive();
+                assertThat(fetcher.getHedgeRatio()).isLessThan(0.2);
+            }
+        }
+        
+        @Test
+        @DisplayName("Should not hedge endpoints without enough samples, nor retry failures")
+        void shouldNotHedgeUnknownEndpoints() throws Exception {
+            URI unreachable;
+            try (StubHttpServer closed = new StubHttpServer(1)) {
+                unreachable = closed.uri("/gone");
+            }
+            try (HedgedHttpFetcher fetcher = new HedgedHttpFetcher(pool.getClient())) {
+                PooledHttpFetcher.FetchResult result = fetcher.fetch(unreachable);
+                
+                assertThat(result.getStatus()).isEqualTo(-1);
+                assertThat(result.getError()).isNotNull();
+                assertThat(fetcher.getHedgeDelayMillis(unreachable)).isEqualTo(-1);
+                assertThat(fetcher.getHedges()).isZero();
+            }
+        }
+    }
+}
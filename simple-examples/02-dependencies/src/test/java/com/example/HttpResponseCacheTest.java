@@ -0,0 +1,272 @@
+package com.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for HttpResponseCache against a local stub server, with a manual clock
+ */
+class HttpResponseCacheTest {
+    
+    private static final String LAST_MODIFIED = "Tue, 15 Nov 1994 12:45:26 GMT";
+    private static final String LARGE_BODY = "{\"data\":\"" + "x".repeat(10_000) + "\"}";
+    
+    private static StubHttpServer server;
+    private static PooledHttpFetcher fetcher;
+    
+    @TempDir
+    Path directory;
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private HttpResponseCache cache;
+    
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = new StubHttpServer(4)
+            .route("/fresh", exchange -> respond(exchange, "max-age=60", "{\"fresh\":true}"))
+            .route("/etag", exchange -> {
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified(exchange);
+                } else {
+                    respond(exchange, "no-cache", "{\"version\":1}");
+                }
+            })
+            .route("/modified", exchange -> {
+                exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                if (LAST_MODIFIED.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"))) {
+                    notModified(exchange);
+                } else {
+                    respond(exchange, "max-age=0", "{\"modified\":true}");
+                }
+            })
+            .route("/no-store", exchange -> respond(exchange, "no-store", "{\"secret\":true}"))
+            .route("/large", exchange -> respond(exchange, "max-age=60", LARGE_BODY));
+        fetcher = new PooledHttpFetcher();
+    }
+    
+    @AfterAll
+    static void stopServer() throws IOException {
+        fetcher.close();
+        server.close();
+    }
+    
+    @BeforeEach
+    void createCache() {
+        cache = newCache(1 << 20);
+    }
+    
+    @AfterEach
+    void printStats() {
+        System.out.println("HttpResponseCache stats: " + cache.getStats());
+    }
+    
+    private HttpResponseCache newCache(long memoryBytes) {
+        return new HttpResponseCache(fetcher.getClient(), memoryBytes, directory, 1 << 20, clock::get);
+    }
+    
+    private static void respond(HttpExchange exchange, String cacheControl, String body) throws IOException {
+        exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        StubHttpServer.respond(exchange, 200, body);
+    }
+    
+    private static void notModified(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(304, -1);
+    }
+    
+    @Nested
+    @DisplayName("Freshness")
+    class FreshnessTests {
+        
+        @Test
+        @DisplayName("Should serve fresh responses from memory until max-age passes")
+        void shouldServeFreshResponsesFromMemory() throws Exception {
+            long before = server.hits("/fresh");
+            
+            HttpResponseCache.CachedResponse first = cache.get(server.uri("/fresh"));
+            HttpResponseCache.CachedResponse second = cache.get(server.uri("/fresh"));
+            
+            assertThat(first.getSource()).isEqualTo(HttpResponseCache.Source.NETWORK);
+            assertThat(second.getSource()).isEqualTo(HttpResponseCache.Source.MEMORY);
+            assertThat(second.bodyAsString()).isEqualTo("{\"fresh\":true}");
+            assertThat(second.getContentType()).isEqualTo("application/json");
+            assertThat(server.hits("/fresh") - before).isEqualTo(1);
+            
+            clock.addAndGet(61_000);
+            assertThat(cache.get(server.uri("/fresh")).getSource()).isEqualTo(HttpResponseCache.Source.NETWORK);
+            assertThat(server.hits("/fresh") - before).isEqualTo(2);
+            assertThat(cache.getHitRatio()).isCloseTo(1.0 / 3, within(1e-9));
+            assertThat(cache.getBytesFromCache()).isEqualTo("{\"fresh\":true}".length());
+        }
+        
+        @Test
+        @DisplayName("Should not store no-store responses")
+        void shouldNotStoreNoStoreResponses() throws Exception {
+            long before = server.hits("/no-store");
+            
+            cache.get(server.uri("/no-store"));
+            HttpResponseCache.CachedResponse second = cache.get(server.uri("/no-store"));
+            
+            assertThat(second.getSource()).isEqualTo(HttpResponseCache.Source.NETWORK);
+            assertThat(server.hits("/no-store") - before).isEqualTo(2);
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files).isEmpty();
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Revalidation")
+    class RevalidationTests {
+        
+        @Test
+        @DisplayName("Should revalidate with If-None-Match and reuse the body on 304")
+        void shouldRevalidateWithEtag() throws Exception {
+            cache.get(server.uri("/etag"));
+            HttpResponseCache.CachedResponse second = cache.get(server.uri("/etag"));
+            
+            assertThat(second.getSource()).isEqualTo(HttpResponseCache.Source.REVALIDATED);
+            assertThat(second.getStatus()).isEqualTo(200);
+            assertThat(second.bodyAsString()).isEqualTo("{\"version\":1}");
+            assertThat(cache.getRevalidations()).isEqualTo(1);
+            assertThat(cache.getStats()).containsEntry("notModified", 1L);
+        }
+        
+        @Test
+        @DisplayName("Should revalidate with If-Modified-Since when there is no ETag")
+        void shouldRevalidateWithLastModified() throws Exception {
+            cache.get(server.uri("/modified"));
+            HttpResponseCache.CachedResponse second = cache.get(server.uri("/modified"));
+            
+            assertThat(second.getSource()).isEqualTo(HttpResponseCache.Source.REVALIDATED);
+            assertThat(second.bodyAsString()).isEqualTo("{\"modified\":true}");
+            assertThat(cache.getRevalidations()).isEqualTo(1);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Tiers")
+    class TierTests {
+        
+        @Test
+        @DisplayName("Should evict least recently used entries from memory by size and serve them from disk")
+        void shouldServeEvictedEntriesFromDisk() throws Exception {
+            HttpResponseCache small = newCache(25_000);
+            for (int i = 0; i < 3; i++) {
+                small.get(server.uri("/large?n=" + i));
+            }
+            
+            assertThat(small.getStats()).containsEntry("memoryEntries", 2).containsEntry("diskEntries", 3);
+            assertThat((long) small.getStats().get("memoryBytes")).isLessThanOrEqualTo(25_000);
+            
+            HttpResponseCache.CachedResponse evicted = small.get(server.uri("/large?n=0"));
+            assertThat(evicted.getSource()).isEqualTo(HttpResponseCache.Source.DISK);
+            assertThat(evicted.bodyAsString()).isEqualTo(LARGE_BODY);
+            // Promoted back to memory
+            assertThat(small.get(server.uri("/large?n=0")).getSource()).isEqualTo(HttpResponseCache.Source.MEMORY);
+        }
+        
+        @Test
+        @DisplayName("Should serve entries stored by an earlier instance from disk")
+        void shouldSurviveRestart() throws Exception {
+            long before = server.hits("/fresh");
+            cache.get(server.uri("/fresh?restart"));
+            
+            HttpResponseCache restarted = newCache(1 << 20);
+            HttpResponseCache.CachedResponse response = restarted.get(server.uri("/fresh?restart"));
+            
+            assertThat(response.getSource()).isEqualTo(HttpResponseCache.Source.DISK);
+            assertThat(response.bodyAsString()).isEqualTo("{\"fresh\":true}");
+            assertThat(server.hits("/fresh") - before).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("Should keep the disk tier within its byte limit")
+        void shouldBoundDiskTier() throws Exception {
+            HttpResponseCache bounded = new HttpResponseCache(fetcher.getClient(), 0, directory, 25_000, clock::get);
+            for (int i = 0; i < 5; i++) {
+                bounded.get(server.uri("/large?bounded=" + i));
+            }
+            
+            long size;
+            try (Stream<Path> files = Files.list(directory)) {
+                size = files.mapToLong(file -> file.toFile().length()).sum();
+            }
+            assertThat(size).isLessThanOrEqualTo(25_000);
+            assertThat(bounded.get(server.uri("/large?bounded=4")).getSource()).isEqualTo(HttpResponseCache.Source.DISK);
+            assertThat(bounded.get(server.uri("/large?bounded=0")).getSource()).isEqualTo(HttpResponseCache.Source.NETWORK);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Directory")
+    class DirectoryTests {
+        
+        private HttpResponseCache cacheIn(Path location) {
+            return new HttpResponseCache(fetcher.getClient(), 1 << 20, location, 1 << 20, clock::get);
+        }
+        
+        @Test
+        @DisplayName("Should create a missing directory readable by its owner only")
+        void shouldCreatePrivateDirectory() throws Exception {
+            assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+            Path location = directory.resolve("nested/cache");
+            
+            cacheIn(location).get(server.uri("/fresh?private"));
+            
+            assertThat(Files.getPosixFilePermissions(location)).isEqualTo(PosixFilePermissions.fromString("rwx------"));
+            assertThat(cacheIn(location).get(server.uri("/fresh?private")).getSource())
+                .isEqualTo(HttpResponseCache.Source.DISK);
+        }
+        
+        @Test
+        @DisplayName("Should ignore entries in a directory others can write to")
+        void shouldIgnoreSharedDirectory() throws Exception {
+            assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+            Path location = directory.resolve("shared");
+            cacheIn(location).get(server.uri("/fresh?shared"));
+            Files.setPosixFilePermissions(location, PosixFilePermissions.fromString("rwxrwxrwx"));
+            long before = server.hits("/fresh");
+            
+            HttpResponseCache untrusted = cacheIn(location);
+            
+            assertThat(untrusted.get(server.uri("/fresh?shared")).getSource())
+                .isEqualTo(HttpResponseCache.Source.NETWORK);
+            assertThat(untrusted.get(server.uri("/fresh?shared")).getSource())
+                .isEqualTo(HttpResponseCache.Source.MEMORY);
+            assertThat(server.hits("/fresh") - before).isEqualTo(1);
+            assertThat(untrusted.getStats()).containsEntry("diskDisabled", true).containsEntry("diskEntries", 0);
+        }
+        
+        @Test
+        @DisplayName("Should not follow a symbolic link to the directory")
+        void shouldRejectSymbolicLink() throws Exception {
+            assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+            Path target = directory.resolve("target");
+            cacheIn(target).get(server.uri("/fresh?link"));
+            Path link = Files.createSymbolicLink(directory.resolve("link"), target);
+            
+            HttpResponseCache linked = cacheIn(link);
+            
+            assertThat(linked.get(server.uri("/fresh?link")).getSource()).isEqualTo(HttpResponseCache.Source.NETWORK);
+            assertThat(linked.getStats()).containsEntry("diskDisabled", true);
+        }
+    }
+}
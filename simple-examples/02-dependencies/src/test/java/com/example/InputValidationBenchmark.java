@@ -0,0 +1,132 @@
+package com.example;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the original String-based check (isNotBlank, then trim().length())
+ * with InputValidator on Strings, on UTF-8 bytes, in parallel batches and over
+ * the lines of a memory-mapped file. Reports records per second and bytes
+ * allocated per record on the benchmark thread (parallel work allocates on
+ * pool threads, so only the single-threaded rows show the per-record cost).
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.InputValidationBenchmark
+ */
+public class InputValidationBenchmark {
+    
+    private static final int RECORDS = 2_000_000;
+    private static final int ROUNDS = 5;
+    
+    private interface Pass {
+        long run() throws IOException;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        List<String> records = records(RECORDS);
+        Path file = Files.createTempFile("records", ".txt");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (String record : records) {
+                writer.write(record);
+                writer.write('\n');
+            }
+        }
+        ByteBuffer utf8 = ByteBuffer.wrap(Files.readAllBytes(file));
+        int[] lineStarts = lineStarts(utf8, records.size());
+        
+        System.out.printf("%nInput validation benchmark (Java %s, %d cores, %d records)%n",
+                          System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(), RECORDS);
+        System.out.printf("%-24s %16s %16s%n", "method", "records/s", "allocated/record");
+        report("String trim()", () -> {
+            long valid = 0;
+            for (String record : records) {
+                if (StringUtils.isNotBlank(record) && record.trim().length() >= 3) {
+                    valid++;
+                }
+            }
+            return valid;
+        });
+        report("isValid(CharSequence)", () -> {
+            long valid = 0;
+            for (String record : records) {
+                if (InputValidator.isValid(record)) {
+                    valid++;
+                }
+            }
+            return valid;
+        });
+        report("isValidUtf8(ByteBuffer)", () -> {
+            long valid = 0;
+            for (int i = 0; i < lineStarts.length - 1; i++) {
+                if (InputValidator.isValidUtf8(utf8, lineStarts[i], lineStarts[i + 1] - 1)) {
+                    valid++;
+                }
+            }
+            return valid;
+        });
+        report("validate(List)", () -> InputValidator.validate(records).cardinality());
+        report("validateLines(Path)", () -> InputValidator.validateLines(file).cardinality());
+    }
+    
+    private static void report(String name, Pass pass) throws IOException {
+        long expected = pass.run();
+        for (int i = 0; i < ROUNDS; i++) {
+            pass.run();
+        }
+        
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            if (pass.run() != expected) {
+                throw new IllegalStateException(name + " is not deterministic");
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        double records = (double) RECORDS * ROUNDS;
+        System.out.printf("%-24s %16.0f %16.2f%n", name, records * 1e9 / elapsed,
+                          allocatedBefore < 0 ? -1 : allocated / records);
+    }
+    
+    /**
+     * Mostly short identifiers, padded or not, with some blank and too-short values
+     */
+    private static List<String> records(int count) {
+        Random random = new Random(1);
+        String[] shapes = {"record-%d", "  record-%d  ", "%d", "   ", "", "\tvalue %d\r", "caf\u00e9 %d"};
+        List<String> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(String.format(shapes[random.nextInt(shapes.length)], random.nextInt(100)));
+        }
+        return records;
+    }
+    
+    private static int[] lineStarts(ByteBuffer buffer, int lines) {
+        int[] starts = new int[lines + 1];
+        int line = 1;
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+    
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
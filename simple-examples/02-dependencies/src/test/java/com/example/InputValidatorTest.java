@@ -0,0 +1,146 @@
+package com.example;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests that InputValidator agrees with the String-based isValidInput rule
+ */
+class InputValidatorTest {
+    
+    /** Characters at the edges of the rule: trimmed, whitespace, both or neither */
+    private static final String[] ALPHABET = {
+        "a", "Z", "\u00e9", "\u20ac", "\ud83d\ude00", " ", "\t", "\n", "\r", "\u0000", "\u0001", "\u001C",
+        "\u0085", "\u00A0", "\u2003", "\u3000", "\u2007"
+    };
+    
+    @TempDir
+    Path directory;
+    
+    /** The rule as DependencyExample.isValidInput first implemented it */
+    static boolean reference(String input) {
+        return StringUtils.isNotBlank(input) && input.trim().length() >= 3;
+    }
+    
+    static List<String> randomRecords(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder record = new StringBuilder();
+            int length = random.nextInt(7);
+            for (int c = 0; c < length; c++) {
+                record.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            records.add(record.toString());
+        }
+        return records;
+    }
+    
+    @Nested
+    @DisplayName("Single Value Tests")
+    class SingleValueTests {
+        
+        @Test
+        @DisplayName("Should agree with the String rule on edge cases")
+        void shouldMatchEdgeCases() {
+            String[] cases = {
+                "", "ab", "abc", "  abc  ", " a b ", "   ", "\u3000\u3000\u3000", "\u0001\u3000\u3000\u3000",
+                "\u0000\u0000\u0000", "\u00A0\u00A0\u00A0", "\ud83d\ude00a", "\ud83d\ude00", "\t\r\nabc\r\n"
+            };
+            for (String input : cases) {
+                assertThat(InputValidator.isValid(input)).as("'%s'", input).isEqualTo(reference(input));
+            }
+            assertThat(InputValidator.isValid(null)).isFalse();
+        }
+        
+        @Test
+        @DisplayName("Should agree with the String rule for strings, char buffers and UTF-8 bytes")
+        void shouldMatchRandomInputs() {
+            for (String input : randomRecords(100_000, 42)) {
+                boolean expected = reference(input);
+                ByteBuffer utf8 = ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+                
+                assertThat(InputValidator.isValid(input)).as("'%s'", input).isEqualTo(expected);
+                assertThat(InputValidator.isValid(CharBuffer.wrap(input.toCharArray()))).as("'%s'", input).isEqualTo(expected);
+                assertThat(InputValidator.isValidUtf8(utf8)).as("'%s'", input).isEqualTo(expected);
+                assertThat(utf8.position()).isZero();
+            }
+        }
+        
+        @Test
+        @DisplayName("Should validate a UTF-8 slice in place")
+        void shouldValidateSlice() {
+            ByteBuffer buffer = ByteBuffer.wrap("xx  abc  yy".getBytes(StandardCharsets.UTF_8));
+            
+            assertThat(InputValidator.isValidUtf8(buffer, 2, 9)).isTrue();
+            assertThat(InputValidator.isValidUtf8(buffer, 2, 6)).isFalse();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Bulk Tests")
+    class BulkTests {
+        
+        @Test
+        @DisplayName("Should set one bit per valid record in parallel batches")
+        void shouldValidateBatch() {
+            List<String> records = new ArrayList<>(randomRecords(100_003, 7));
+            records.set(5, null);
+            
+            BitSet valid = InputValidator.validate(records);
+            
+            for (int i = 0; i < records.size(); i++) {
+                assertThat(valid.get(i)).as("record %d", i).isEqualTo(reference(records.get(i)));
+            }
+            assertThat(valid.length()).isLessThanOrEqualTo(records.size());
+        }
+        
+        @Test
+        @DisplayName("Should validate the lines of a file split into many chunks")
+        void shouldValidateFileLines() throws IOException {
+            List<String> lines = randomRecords(50_000, 11);
+            lines.replaceAll(line -> line.replace("\n", ""));
+            Path file = directory.resolve("records.txt");
+            Files.write(file, lines, StandardCharsets.UTF_8);
+            
+            // Small chunks so boundaries fall inside lines and inside multi-byte characters
+            BitSet valid = InputValidator.validateLines(file, 1000);
+            
+            BitSet expected = new BitSet();
+            for (int i = 0; i < lines.size(); i++) {
+                expected.set(i, reference(lines.get(i)));
+            }
+            assertThat(valid).isEqualTo(expected);
+            assertThat(InputValidator.validateLines(file)).isEqualTo(expected);
+        }
+        
+        @Test
+        @DisplayName("Should count a last line without a newline and handle an empty file")
+        void shouldHandleFileEdges() throws IOException {
+            Path file = directory.resolve("edges.txt");
+            Files.write(file, "abc\r\n\nxy\nlast".getBytes(StandardCharsets.UTF_8));
+            Path empty = Files.createFile(directory.resolve("empty.txt"));
+            
+            BitSet valid = InputValidator.validateLines(file, 4);
+            
+            assertThat(valid.stream().toArray()).isEqualTo(new int[] {0, 3});
+            assertThat(InputValidator.validateLines(empty).isEmpty()).isTrue();
+        }
+    }
+}
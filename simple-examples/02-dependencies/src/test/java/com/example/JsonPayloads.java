@@ -0,0 +1,110 @@
+package com.example;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bean payloads of three sizes for the JSON tests and benchmarks
+ */
+final class JsonPayloads {
+    
+    private JsonPayloads() {
+    }
+    
+    /** One flat bean: a handful of fields */
+    static Item small() {
+        return new Item(1, "Maven Dependency Example", 19.99, true, LocalDateTime.of(2024, 1, 15, 10, 30));
+    }
+    
+    /** An order with 50 items, about 4 KB of JSON */
+    static Order medium() {
+        return order(50);
+    }
+    
+    /** An order with 5000 items, about 450 KB of JSON */
+    static Order large() {
+        return order(5000);
+    }
+    
+    static Order order(int items) {
+        List<Item> list = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            list.add(new Item(i, "item-" + i, i * 1.25, i % 2 == 0, LocalDateTime.of(2024, 1, 15, 10, 30).plusMinutes(i)));
+        }
+        Order order = new Order();
+        order.setId("order-" + items);
+        order.setCustomer("customer-42");
+        order.setItems(list);
+        return order;
+    }
+    
+    /**
+     * The untyped shape demonstrateJsonProcessing uses: a Map of strings, a
+     * LocalDateTime and a flag, here with a list of item Maps of the given size
+     */
+    static Map<String, Object> map(int items) {
+        List<Map<String, Object>> list = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", i);
+            item.put("name", "item-" + i);
+            item.put("category", i % 3 == 0 ? "books" : "tools");
+            item.put("price", i * 1.25);
+            item.put("updated", LocalDateTime.of(2024, 1, 15, 10, 30).plusMinutes(i));
+            list.add(item);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("name", "Maven Dependency Example");
+        data.put("version", "1.0.0");
+        data.put("timestamp", LocalDateTime.of(2024, 1, 15, 10, 30));
+        data.put("active", true);
+        data.put("items", list);
+        return data;
+    }
+    
+    public static class Item {
+        private long id;
+        private String name;
+        private double price;
+        private boolean available;
+        private LocalDateTime updated;
+        
+        public Item() {
+        }
+        
+        Item(long id, String name, double price, boolean available, LocalDateTime updated) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.available = available;
+            this.updated = updated;
+        }
+        
+        public long getId() { return id; }
+        public void setId(long id) { this.id = id; }
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public double getPrice() { return price; }
+        public void setPrice(double price) { this.price = price; }
+        public boolean isAvailable() { return available; }
+        public void setAvailable(boolean available) { this.available = available; }
+        public LocalDateTime getUpdated() { return updated; }
+        public void setUpdated(LocalDateTime updated) { this.updated = updated; }
+    }
+    
+    public static class Order {
+        private String id;
+        private String customer;
+        private List<Item> items;
+        
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public String getCustomer() { return customer; }
+        public void setCustomer(String customer) { this.customer = customer; }
+        public List<Item> getItems() { return items; }
+        public void setItems(List<Item> items) { this.items = items; }
+    }
+}
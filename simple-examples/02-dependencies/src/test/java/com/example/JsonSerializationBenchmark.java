@@ -0,0 +1,86 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the String path (toJson, then encode and write) with toJsonBytes and
+ * the streaming toJson(Object, OutputStream), with reflective and generated
+ * (Blackbird) accessors, for small, medium and large beans.
+ * Reports operations per second and bytes allocated per operation on the
+ * benchmark thread.
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.JsonSerializationBenchmark
+ */
+public class JsonSerializationBenchmark {
+    
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+    
+    private interface Serializer {
+        void write(DependencyExample example, Object payload, OutputStream out) throws IOException;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Object[] payloads = {JsonPayloads.small(), JsonPayloads.medium(), JsonPayloads.large()};
+        String[] sizes = {"small", "medium", "large"};
+        String[] paths = {"string", "bytes", "stream"};
+        Serializer[] serializers = {
+            (example, payload, out) -> out.write(example.toJson(payload).getBytes(StandardCharsets.UTF_8)),
+            (example, payload, out) -> out.write(example.toJsonBytes(payload)),
+            (example, payload, out) -> example.toJson(payload, out)
+        };
+        
+        System.out.printf("%nJSON serialization benchmark (Java %s)%n", System.getProperty("java.version"));
+        System.out.printf("%-8s %-10s %-8s %8s %14s %16s%n", "payload", "accessors", "path", "bytes", "ops/s", "allocated/op");
+        for (int size = 0; size < payloads.length; size++) {
+            int length = new DependencyExample().toJsonBytes(payloads[size]).length;
+            for (boolean generated : new boolean[] {false, true}) {
+                DependencyExample example = new DependencyExample(generated);
+                for (int path = 0; path < serializers.length; path++) {
+                    double[] result = measure(example, payloads[size], serializers[path]);
+                    System.out.printf("%-8s %-10s %-8s %8d %14.0f %16.0f%n", sizes[size],
+                                      generated ? "generated" : "reflective", paths[path], length, result[0], result[1]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return operations per second and bytes allocated per operation
+     */
+    private static double[] measure(DependencyExample example, Object payload, Serializer serializer) throws IOException {
+        OutputStream sink = OutputStream.nullOutputStream();
+        run(example, payload, serializer, sink, WARMUP_NANOS);
+        
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long operations = run(example, payload, serializer, sink, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        return new double[] {operations * 1e9 / elapsed, allocated < 0 ? -1 : (double) allocated / operations};
+    }
+    
+    private static long run(DependencyExample example, Object payload, Serializer serializer,
+                            OutputStream sink, long nanos) throws IOException {
+        long deadline = System.nanoTime() + nanos;
+        long operations = 0;
+        do {
+            for (int i = 0; i < 16; i++) {
+                serializer.write(example, payload, sink);
+            }
+            operations += 16;
+        } while (System.nanoTime() < deadline);
+        return operations;
+    }
+    
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a full Map deserialization with LazyJsonDocument on large documents
+ * (the Map payload of demonstrateJsonProcessing with many items): heap retained
+ * by the parsed form, the time to parse and read three fields, and the latency of
+ * repeated field reads once parsed. The smaller size runs once unreported to warm up.
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.LazyJsonBenchmark
+ */
+public class LazyJsonBenchmark {
+    
+    private static final int ROUNDS = 20;
+    private static final int QUERIES = 1_000_000;
+    
+    private interface Parse {
+        Object run() throws IOException;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        DependencyExample example = new DependencyExample();
+        
+        System.out.printf("%nLazy JSON benchmark (Java %s)%n", System.getProperty("java.version"));
+        System.out.printf("%-8s %10s %-6s %14s %16s %14s%n",
+                          "items", "json bytes", "form", "retained bytes", "parse+3 reads ms", "read ns");
+        compare(example, 10_000, false);
+        compare(example, 10_000, true);
+        compare(example, 100_000, true);
+        System.out.println("Lazy retained bytes include the JSON bytes the document reads from.");
+    }
+    
+    /**
+     * Measures one document size; in a method of its own so that nothing parsed stays
+     * reachable from main's frame and skews the next heap measurement
+     */
+    private static void compare(DependencyExample example, int items, boolean report) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] json = example.toJsonBytes(JsonPayloads.map(items));
+        String price = "/items/" + (items - 1) + "/price";
+        
+        long mapHeap = retained(() -> mapper.readValue(json, Map.class));
+        long lazyHeap = retained(() -> example.readLazy(json)) + json.length;
+        
+        double mapParse = millis(() -> {
+            Map<?, ?> map = mapper.readValue(json, Map.class);
+            List<?> list = (List<?>) map.get("items");
+            return "" + map.get("name") + map.get("active") + ((Map<?, ?>) list.get(items - 1)).get("price");
+        });
+        double lazyParse = millis(() -> {
+            LazyJsonDocument document = example.readLazy(json);
+            return "" + document.get("/name") + document.get("/active") + document.get(price);
+        });
+        
+        Map<?, ?> map = mapper.readValue(json, Map.class);
+        double mapRead = nanosPerQuery(() -> {
+            List<?> list = (List<?>) map.get("items");
+            return ((Map<?, ?>) list.get(items - 1)).get("price");
+        });
+        LazyJsonDocument document = example.readLazy(json);
+        double lazyRead = nanosPerQuery(() -> document.get(price));
+        
+        if (report) {
+            System.out.printf("%-8d %10d %-6s %14d %16.2f %14.1f%n", items, json.length, "Map", mapHeap,
+                              mapParse, mapRead);
+            System.out.printf("%-8d %10d %-6s %14d %16.2f %14.1f%n", items, json.length, "lazy", lazyHeap,
+                              lazyParse, lazyRead);
+        }
+    }
+    
+    /**
+     * Heap still in use after a GC while the parsed form is reachable, less the heap in use before
+     */
+    private static long retained(Parse parse) throws IOException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        Object parsed = parse.run();
+        System.gc();
+        long after = memory.getHeapMemoryUsage().getUsed();
+        Reference.reachabilityFence(parsed);
+        return after - before;
+    }
+    
+    private static double millis(Parse parse) throws IOException {
+        for (int i = 0; i < ROUNDS; i++) {
+            parse.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            parse.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / ROUNDS;
+    }
+    
+    private static double nanosPerQuery(Parse query) throws IOException {
+        for (int i = 0; i < QUERIES; i++) {
+            query.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            query.run();
+        }
+        return (double) (System.nanoTime() - start) / QUERIES;
+    }
+}
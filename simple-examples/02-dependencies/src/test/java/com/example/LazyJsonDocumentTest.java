@@ -0,0 +1,153 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests that LazyJsonDocument reads the same values as a full Map deserialization
+ */
+class LazyJsonDocumentTest {
+    
+    private final DependencyExample example = new DependencyExample();
+    private final ObjectMapper mapper = new ObjectMapper();
+    
+    private static byte[] utf8(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Checks every value under the pointer against the deserialized value
+     */
+    private static void assertSameValues(LazyJsonDocument document, String pointer, Object expected)
+            throws IOException {
+        assertThat(document.get(pointer)).as(pointer).isEqualTo(expected);
+        if (expected instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) expected;
+            assertThat(document.size(pointer)).isEqualTo(map.size());
+            assertThat(document.fieldNames(pointer)).containsExactlyElementsOf(
+                map.keySet().stream().map(String::valueOf)::iterator);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String name = entry.getKey().toString().replace("~", "~0").replace("/", "~1");
+                assertSameValues(document, pointer + "/" + name, entry.getValue());
+            }
+        } else if (expected instanceof List) {
+            List<?> list = (List<?>) expected;
+            assertThat(document.size(pointer)).isEqualTo(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                assertSameValues(document, pointer + "/" + i, list.get(i));
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Value Tests")
+    class ValueTests {
+        
+        @Test
+        @DisplayName("Should read every value of a payload like the Map deserialization")
+        void shouldMatchMapDeserialization() throws IOException {
+            byte[] json = example.toJsonBytes(JsonPayloads.map(20));
+            
+            LazyJsonDocument document = example.readLazy(json);
+            
+            assertSameValues(document, "", mapper.readValue(json, Map.class));
+        }
+        
+        @Test
+        @DisplayName("Should decode numbers, escapes and literals to the types Jackson uses")
+        void shouldDecodeScalars() throws IOException {
+            byte[] json = utf8("{\"int\": -42, \"long\": 12345678901, \"big\": 123456789012345678901234567890,"
+                + " \"double\": 1.5e3, \"text\": \"caf\u00e9 \\\"quoted\\\" \\u00e9\", \"a/b\": true,"
+                + " \"t~\": false, \"nothing\": null, \"max\": -9223372036854775808}");
+            
+            LazyJsonDocument document = example.readLazy(json);
+            
+            assertSameValues(document, "", mapper.readValue(json, Map.class));
+            assertThat(document.get("/int")).isEqualTo(-42);
+            assertThat(document.get("/long")).isEqualTo(12345678901L);
+            assertThat(document.get("/big")).isEqualTo(new BigInteger("123456789012345678901234567890"));
+            assertThat(document.get("/max")).isEqualTo(Long.MIN_VALUE);
+            assertThat(document.get("/text")).isEqualTo("caf\u00e9 \"quoted\" \u00e9");
+            assertThat(document.get("/a~1b")).isEqualTo(true);
+            assertThat(document.has("/nothing")).isTrue();
+            assertThat(document.get("/nothing")).isNull();
+        }
+        
+        @Test
+        @DisplayName("Should bind values to requested types through the ObjectMapper")
+        void shouldBindTypes() throws IOException {
+            byte[] json = utf8("{\"when\": \"2024-01-15T10:30:00\", \"count\": 7, \"item\": {\"id\": 3,"
+                + " \"name\": \"drill\", \"price\": 9.5, \"available\": true}}");
+            
+            LazyJsonDocument document = example.readLazy(json);
+            
+            assertThat(document.get("/when", LocalDateTime.class)).isEqualTo(LocalDateTime.of(2024, 1, 15, 10, 30));
+            assertThat(document.get("/count", Long.class)).isEqualTo(7L);
+            assertThat(document.get("/count", Integer.class)).isEqualTo(7);
+            assertThat(document.get("/item", JsonPayloads.Item.class).getName()).isEqualTo("drill");
+            assertThat(document.get("/missing", String.class)).isNull();
+        }
+        
+        @Test
+        @DisplayName("Should report missing values and keep the raw text of present ones")
+        void shouldHandleMissingValues() throws IOException {
+            LazyJsonDocument document = example.readLazy(utf8("{\"items\": [1, [2, 3], {\"x\": 4}], \"x\": 1, \"x\": 2}"));
+            
+            assertThat(document.has("/items/3")).isFalse();
+            assertThat(document.has("/items/-")).isFalse();
+            assertThat(document.has("/items/0/x")).isFalse();
+            assertThat(document.has("/other")).isFalse();
+            assertThat(document.get("/other")).isNull();
+            assertThat(document.size("/items/0")).isEqualTo(-1);
+            assertThat(document.get("/x")).isEqualTo(2);
+            assertThat(StandardCharsets.UTF_8.decode(document.raw("/items/1")).toString()).isEqualTo("[2, 3]");
+            assertThat(document.raw("/items/1").isReadOnly()).isTrue();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Index Tests")
+    class IndexTests {
+        
+        @Test
+        @DisplayName("Should reuse an index for the same bytes and reject it for others")
+        void shouldReuseIndex() throws IOException {
+            byte[] json = example.toJsonBytes(JsonPayloads.map(5));
+            LazyJsonDocument.Index index = example.readLazy(json).getIndex();
+            
+            LazyJsonDocument reopened = LazyJsonDocument.parse(mapper, json, index);
+            
+            assertThat(reopened.get("/items/4/name")).isEqualTo("item-4");
+            assertThat(index.getNodes()).isGreaterThan(5 * 10);
+            assertThat(index.getBytes()).isLessThan(json.length * 13L);
+            assertThatThrownBy(() -> LazyJsonDocument.parse(mapper, utf8("{}"), index))
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+        
+        @Test
+        @DisplayName("Should reject malformed documents")
+        void shouldRejectMalformedInput() {
+            String[] malformed = {"", "{", "{\"a\" 1}", "{\"a\": 1,}", "[1 2]", "[01]", "[1.]", "\"open",
+                                  "{\"a\": tru}", "[1] [2]", "{1: 2}", "\"tab\there\"", "-", "[1e]"};
+            for (String json : malformed) {
+                assertThatThrownBy(() -> example.readLazy(utf8(json)))
+                    .as(json)
+                    .isInstanceOf(JsonParseException.class);
+            }
+            String deep = "[".repeat(LazyJsonDocument.MAX_DEPTH + 1) + "]".repeat(LazyJsonDocument.MAX_DEPTH + 1);
+            assertThatThrownBy(() -> example.readLazy(utf8(deep))).hasMessageContaining("Nesting");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs NdjsonPipeline over a generated file (2 million records, about 200 MB, by
+ * default; pass a record count to change it) with ordered and unordered output
+ * and several worker counts. Reports throughput, lag and the peak heap in use,
+ * which stays flat however large the file is.
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.NdjsonPipelineBenchmark
+ */
+public class NdjsonPipelineBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        Path input = Files.createTempFile("pipeline-in", ".ndjson");
+        Path output = Files.createTempFile("pipeline-out", ".ndjson");
+        input.toFile().deleteOnExit();
+        output.toFile().deleteOnExit();
+        ObjectWriter writer = mapper.writer();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(input), 1 << 16)) {
+            LocalDateTime updated = LocalDateTime.of(2024, 1, 15, 10, 30);
+            for (int i = 0; i < records; i++) {
+                out.write(writer.writeValueAsBytes(new JsonPayloads.Item(i, "item-" + i, i * 1.25, i % 2 == 0,
+                                                                        updated.plusSeconds(i))));
+                out.write('\n');
+            }
+        }
+        long fileBytes = Files.size(input);
+        
+        System.out.printf("%nNDJSON pipeline benchmark (Java %s, %d cores, %d records, %.0f MB, max heap %.0f MB)%n",
+                          System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(), records,
+                          fileBytes / 1e6, Runtime.getRuntime().maxMemory() / 1e6);
+        System.out.printf("%-10s %8s %12s %10s %12s %12s %14s%n",
+                          "output", "workers", "records/s", "MB/s", "avg lag ms", "max lag ms", "peak heap MB");
+        for (boolean ordered : new boolean[] {true, false}) {
+            for (int workers : new int[] {1, 2, 4}) {
+                NdjsonPipeline<JsonPayloads.Item, JsonPayloads.Item> pipeline = new NdjsonPipeline<>(
+                    mapper, JsonPayloads.Item.class, item -> {
+                        item.setPrice(Math.round(item.getPrice() * 1.2 * 100) / 100.0);
+                        return item.isAvailable() || item.getId() % 3 == 0 ? item : null;
+                    }, workers, ordered);
+                System.gc();
+                HeapSampler heap = new HeapSampler();
+                NdjsonPipeline.Stats stats;
+                try {
+                    stats = pipeline.run(input, output);
+                } finally {
+                    heap.stop();
+                }
+                System.out.printf("%-10s %8d %12.0f %10.1f %12.1f %12.1f %14.0f%n",
+                                  ordered ? "ordered" : "unordered", workers, stats.getRecordsRead() * 1e9 / stats.getElapsedNanos(),
+                                  fileBytes * 1e3 / stats.getElapsedNanos(), stats.getAverageLagNanos() / 1e6,
+                                  stats.getMaxLagNanos() / 1e6, heap.peak() / 1e6);
+            }
+        }
+    }
+    
+    /**
+     * Samples heap usage every 10 ms
+     */
+    private static final class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        
+        HeapSampler() {
+            scheduler.scheduleAtFixedRate(() -> peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                                          0, 10, TimeUnit.MILLISECONDS);
+        }
+        
+        void stop() {
+            scheduler.shutdownNow();
+        }
+        
+        long peak() {
+            return peak.get();
+        }
+    }
+}
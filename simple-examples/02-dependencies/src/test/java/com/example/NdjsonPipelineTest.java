@@ -0,0 +1,190 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for NdjsonPipeline with in-memory streams and files
+ */
+class NdjsonPipelineTest {
+    
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    
+    @TempDir
+    Path directory;
+    
+    private byte[] ndjson(int records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < records; i++) {
+            out.write(mapper.writeValueAsBytes(item(i)));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+    
+    private static JsonPayloads.Item item(int id) {
+        return new JsonPayloads.Item(id, "item-" + id, id * 0.5, id % 3 == 0, LocalDateTime.of(2024, 1, 15, 10, 30));
+    }
+    
+    /** Doubles the price, sometimes slowly so batches complete out of order */
+    private static JsonPayloads.Item reprice(JsonPayloads.Item item) {
+        if (ThreadLocalRandom.current().nextInt(50) == 0) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        item.setPrice(item.getPrice() * 2);
+        return item;
+    }
+    
+    private List<JsonPayloads.Item> parse(byte[] ndjson) throws IOException {
+        return mapper.readerFor(JsonPayloads.Item.class).<JsonPayloads.Item>readValues(ndjson).readAll();
+    }
+    
+    @Nested
+    @DisplayName("Ordering Tests")
+    class OrderingTests {
+        
+        @Test
+        @DisplayName("Should write transformed records in input order")
+        void shouldKeepInputOrder() throws IOException {
+            NdjsonPipeline<JsonPayloads.Item, JsonPayloads.Item> pipeline = new NdjsonPipeline<>(
+                mapper, JsonPayloads.Item.class, NdjsonPipelineTest::reprice, 4, true, 16, 8);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            
+            NdjsonPipeline.Stats stats = pipeline.run(new ByteArrayInputStream(ndjson(10_000)), out);
+            
+            List<JsonPayloads.Item> items = parse(out.toByteArray());
+            assertThat(items).extracting(JsonPayloads.Item::getId)
+                .containsExactlyElementsOf(() -> LongStream.range(0, 10_000).iterator());
+            assertThat(items.get(7).getPrice()).isEqualTo(7.0);
+            assertThat(out.toString(StandardCharsets.UTF_8)).endsWith("}\n").doesNotContain("} {");
+            assertThat(stats.getRecordsRead()).isEqualTo(10_000);
+            assertThat(stats.getRecordsWritten()).isEqualTo(10_000);
+            assertThat(stats.getBatchesInFlight()).isZero();
+        }
+        
+        @Test
+        @DisplayName("Should write every record exactly once in unordered mode")
+        void shouldWriteEveryRecordUnordered() throws IOException {
+            NdjsonPipeline<JsonPayloads.Item, JsonPayloads.Item> pipeline = new NdjsonPipeline<>(
+                mapper, JsonPayloads.Item.class, NdjsonPipelineTest::reprice, 4, false, 16, 8);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            
+            pipeline.run(new ByteArrayInputStream(ndjson(10_000)), out);
+            
+            assertThat(parse(out.toByteArray())).extracting(JsonPayloads.Item::getId)
+                .doesNotHaveDuplicates().hasSize(10_000);
+        }
+        
+        @Test
+        @DisplayName("Should drop records the transform maps to null")
+        void shouldDropFilteredRecords() throws IOException {
+            NdjsonPipeline<JsonPayloads.Item, Map<String, Object>> pipeline = new DependencyExample().ndjsonPipeline(
+                JsonPayloads.Item.class, item -> item.isAvailable() ? Map.of("id", item.getId()) : null, 2, true);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            
+            NdjsonPipeline.Stats stats = pipeline.run(new ByteArrayInputStream(ndjson(9)), out);
+            
+            assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("{\"id\":0}\n{\"id\":3}\n{\"id\":6}\n");
+            assertThat(stats.getRecordsDropped()).isEqualTo(6);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Backpressure and Failure Tests")
+    class BackpressureTests {
+        
+        @Test
+        @DisplayName("Should never hold more batches than allowed and report lag")
+        void shouldBoundBatchesInFlight() throws IOException {
+            Path input = directory.resolve("in.ndjson");
+            Path output = directory.resolve("out.ndjson");
+            try (BufferedWriter writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < 100_000; i++) {
+                    writer.write(mapper.writeValueAsString(item(i)));
+                    writer.write('\n');
+                }
+            }
+            NdjsonPipeline<JsonPayloads.Item, JsonPayloads.Item> pipeline = new NdjsonPipeline<>(
+                mapper, JsonPayloads.Item.class, NdjsonPipelineTest::reprice, 3, true, 64, 4);
+            
+            NdjsonPipeline.Stats stats = pipeline.run(input, output);
+            System.out.println("NDJSON pipeline: " + stats);
+            
+            assertThat(stats.getMaxBatchesInFlight()).isBetween(1, 4);
+            assertThat(stats.getRecordsWritten()).isEqualTo(100_000);
+            assertThat(stats.getMaxLagNanos()).isGreaterThanOrEqualTo(stats.getAverageLagNanos()).isPositive();
+            assertThat(stats.getRecordsPerSecond()).isPositive();
+            try (var lines = Files.lines(output)) {
+                assertThat(lines.count()).isEqualTo(100_000);
+            }
+        }
+        
+        @Test
+        @DisplayName("Should fail with the parse error on malformed input")
+        void shouldFailOnMalformedInput() throws IOException {
+            byte[] input = (new String(ndjson(1000), StandardCharsets.UTF_8) + "{\"id\": oops}\n")
+                .getBytes(StandardCharsets.UTF_8);
+            NdjsonPipeline<JsonPayloads.Item, JsonPayloads.Item> pipeline = new NdjsonPipeline<>(
+                mapper, JsonPayloads.Item.class, item -> item, 2, true);
+            
+            assertThatThrownBy(() -> pipeline.run(new ByteArrayInputStream(input), new ByteArrayOutputStream()))
+                .isInstanceOf(JsonProcessingException.class);
+        }
+        
+        @Test
+        @DisplayName("Should rethrow the first transform failure")
+        void shouldRethrowTransformFailure() {
+            NdjsonPipeline<JsonPayloads.Item, JsonPayloads.Item> pipeline = new NdjsonPipeline<>(
+                mapper, JsonPayloads.Item.class, item -> {
+                    if (item.getId() == 500) {
+                        throw new IllegalArgumentException("bad item " + item.getId());
+                    }
+                    return item;
+                }, 4, false, 16, 4);
+            
+            assertThatThrownBy(() -> pipeline.run(new ByteArrayInputStream(ndjson(5000)), new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("bad item 500");
+        }
+    }
+    
+    @Test
+    @DisplayName("Should produce the same output for every worker count")
+    void shouldMatchSingleWorker() throws IOException {
+        byte[] input = ndjson(2000);
+        List<String> outputs = new ArrayList<>();
+        for (int workers : new int[] {1, 2, 8}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new NdjsonPipeline<>(mapper, JsonPayloads.Item.class, NdjsonPipelineTest::reprice, workers, true, 7, 3)
+                .run(new ByteArrayInputStream(input), out);
+            outputs.add(out.toString(StandardCharsets.UTF_8));
+        }
+        assertThat(outputs.stream().distinct().collect(Collectors.toList())).hasSize(1);
+    }
+}
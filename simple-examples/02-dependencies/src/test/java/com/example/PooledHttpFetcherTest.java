@@ -0,0 +1,119 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for PooledHttpFetcher against a local stub server
+ */
+class PooledHttpFetcherTest {
+    
+    private static StubHttpServer server;
+    
+    @BeforeAll
+    static void startServer() throws Exception {
+        server = new StubHttpServer(16)
+            .json("/item", "{\"id\":1,\"name\":\"item\"}")
+            .route("/slow", exchange -> {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                StubHttpServer.respond(exchange, 200, "{\"slow\":true}");
+            });
+    }
+    
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+    
+    @Test
+    @DisplayName("Should fetch every URI over a few reused connections")
+    void shouldReuseConnections() throws Exception {
+        int count = 2000;
+        List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            uris.add(server.uri("/item?n=" + i));
+        }
+        
+        try (PooledHttpFetcher fetcher = new PooledHttpFetcher(100, 8, 32, 10_000)) {
+            long start = System.nanoTime();
+            int succeeded = 0;
+            for (Iterator<PooledHttpFetcher.FetchResult> results = fetcher.fetchAll(uris); results.hasNext(); ) {
+                PooledHttpFetcher.FetchResult result = results.next();
+                assertThat(result.isSuccess()).as("%s: %s", result.getUri(), result.getError()).isTrue();
+                assertThat(new String(result.getBody(), StandardCharsets.UTF_8)).contains("\"name\":\"item\"");
+                succeeded++;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("fetchAll: %d requests in %.2f s (%.0f requests/s), %d connections, reuse ratio %.3f%n",
+                              count, seconds, count / seconds, fetcher.getConnectionsOpened(),
+                              fetcher.getConnectionReuseRatio());
+            
+            assertThat(succeeded).isEqualTo(count);
+            assertThat(fetcher.getConnectionsOpened()).isLessThanOrEqualTo(8);
+            assertThat(fetcher.getConnectionReuseRatio()).isGreaterThan(0.99);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should return results in completion order")
+    void shouldReturnInCompletionOrder() throws Exception {
+        List<URI> uris = List.of(server.uri("/slow"), server.uri("/item?a"), server.uri("/item?b"));
+        
+        try (PooledHttpFetcher fetcher = new PooledHttpFetcher()) {
+            List<String> order = new ArrayList<>();
+            fetcher.fetchAll(uris).forEachRemaining(result -> order.add(result.getUri().getPath()));
+            
+            assertThat(order).containsExactly("/item", "/item", "/slow");
+        }
+    }
+    
+    @Test
+    @DisplayName("Should report failed requests as results")
+    void shouldReportFailures() throws Exception {
+        URI unreachable;
+        try (StubHttpServer closed = new StubHttpServer(1)) {
+            unreachable = closed.uri("/gone");
+        }
+        
+        try (PooledHttpFetcher fetcher = new PooledHttpFetcher(10, 2, 2, 2_000)) {
+            List<PooledHttpFetcher.FetchResult> results = new ArrayList<>();
+            fetcher.fetchAll(List.of(unreachable, server.uri("/item"))).forEachRemaining(results::add);
+            
+            assertThat(results).hasSize(2);
+            assertThat(results).filteredOn(PooledHttpFetcher.FetchResult::isSuccess).hasSize(1);
+            assertThat(results).filteredOn(result -> result.getError() != null)
+                .singleElement().extracting(result -> result.getStatus()).isEqualTo(-1);
+            assertThat(fetcher.getFailures()).isEqualTo(1);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should respect a per-host connection limit")
+    void shouldRespectPerRouteLimit() throws Exception {
+        List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            uris.add(server.uri("/item?n=" + i));
+        }
+        
+        try (PooledHttpFetcher fetcher = new PooledHttpFetcher(100, 50, 16, 10_000)) {
+            fetcher.setMaxPerRoute(server.uri("/"), 2);
+            fetcher.fetchAll(uris).forEachRemaining(result -> assertThat(result.isSuccess()).isTrue());
+            
+            assertThat(fetcher.getConnectionsOpened()).isLessThanOrEqualTo(2);
+        }
+    }
+}
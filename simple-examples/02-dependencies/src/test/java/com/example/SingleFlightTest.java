@@ -0,0 +1,273 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for SingleFlight and RequestKey, including a stampede of concurrent fetches
+ */
+class SingleFlightTest {
+    
+    private static final int THREADS = 400;
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * Runs the task on THREADS threads released at the same moment
+     */
+    private static <T> List<T> stampede(ExecutorService threads, Callable<T> task) throws Exception {
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(threads.submit(() -> {
+                ready.countDown();
+                go.await();
+                return task.call();
+            }));
+        }
+        ready.await();
+        go.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(30, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+    
+    /**
+     * Waits inside a SingleFlight.Call, which may only throw IOException
+     */
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Contention Tests")
+    class ContentionTests {
+        
+        @Test
+        @DisplayName("Should send one upstream request for hundreds of concurrent fetchCached calls")
+        void shouldCollapseStampede() throws Exception {
+            ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+            try (StubHttpServer server = new StubHttpServer(32).delayed("/hot", 100, "{\"hot\":true}");
+                 PooledHttpFetcher pool = new PooledHttpFetcher();
+                 DependencyExample example = new DependencyExample(false, directory.resolve("example-cache"))) {
+                // Uncached responses, so every call that is not coalesced goes upstream
+                URI plainUri = server.uri("/hot?plain");
+                HttpResponseCache cache = new HttpResponseCache(pool.getClient(), 1 << 20, directory, 1 << 20,
+                                                                System::currentTimeMillis);
+                List<String> plain = stampede(threads, () -> cache.get(plainUri).bodyAsString());
+                long plainHits = server.hits("/hot");
+                
+                URI coalescedUri = server.uri("/hot?coalesced");
+                List<String> coalesced = stampede(threads, () -> example.fetchCached(coalescedUri).bodyAsString());
+                long coalescedHits = server.hits("/hot") - plainHits;
+                
+                System.out.printf("single flight: %d concurrent calls, %d upstream requests without coalescing,"
+                                  + " %d with%n", THREADS, plainHits, coalescedHits);
+                assertThat(plain).hasSize(THREADS).containsOnly("{\"hot\":true}");
+                assertThat(coalesced).hasSize(THREADS).containsOnly("{\"hot\":true}");
+                assertThat(plainHits).isEqualTo(THREADS);
+                assertThat(coalescedHits).isLessThanOrEqualTo(5);
+            } finally {
+                threads.shutdownNow();
+            }
+        }
+        
+        @Test
+        @DisplayName("Should share one execution per key and none across keys")
+        void shouldShareByKey() throws Exception {
+            SingleFlight<String, Integer> flight = new SingleFlight<>();
+            AtomicInteger executions = new AtomicInteger();
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+            try {
+                SingleFlight.Call<Integer> call = () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return 42;
+                };
+                CompletableFuture<List<Integer>> results = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return stampede(threads, () -> flight.execute("key-" + Thread.currentThread().getId() % 2,
+                                                                      call));
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                while (flight.getCalls() < THREADS) {
+                    Thread.sleep(10);
+                }
+                release.countDown();
+                
+                assertThat(results.get()).hasSize(THREADS).containsOnly(42);
+                assertThat(executions).hasValue(2);
+                assertThat(flight.getExecutions()).isEqualTo(2);
+                assertThat(flight.getShared()).isEqualTo(THREADS - 2);
+                assertThat(flight.getInFlight()).isZero();
+            } finally {
+                threads.shutdownNow();
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Failure Tests")
+    class FailureTests {
+        
+        @Test
+        @DisplayName("Should give every waiter the failure and run again afterwards")
+        void shouldPropagateFailures() throws Exception {
+            SingleFlight<String, String> flight = new SingleFlight<>();
+            CountDownLatch release = new CountDownLatch(1);
+            IOException failure = new IOException("upstream down");
+            ExecutorService threads = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<Throwable>> waiters = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    waiters.add(threads.submit(() -> catchThrowable(() -> flight.execute("key", () -> {
+                        await(release);
+                        throw failure;
+                    }))));
+                }
+                while (flight.getCalls() < 8) {
+                    Thread.sleep(10);
+                }
+                release.countDown();
+                
+                for (Future<Throwable> waiter : waiters) {
+                    assertThat(waiter.get()).isSameAs(failure);
+                }
+                assertThat(flight.getExecutions()).isEqualTo(1);
+                assertThat(flight.execute("key", () -> "recovered")).isEqualTo("recovered");
+                assertThat(flight.getExecutions()).isEqualTo(2);
+            } finally {
+                threads.shutdownNow();
+            }
+        }
+        
+        @Test
+        @DisplayName("Should keep the execution for the callers that stay when one cancels")
+        void shouldDetachCancelledCaller() throws Exception {
+            SingleFlight<String, String> flight = new SingleFlight<>();
+            CompletableFuture<String> source = new CompletableFuture<>();
+            
+            CompletableFuture<String> leaving = flight.submit("key", () -> source);
+            CompletableFuture<String> staying = flight.submit("key", () -> CompletableFuture.completedFuture("other"));
+            leaving.cancel(true);
+            source.complete("value");
+            
+            assertThat(staying.get()).isEqualTo("value");
+            assertThat(leaving).isCancelled();
+            assertThat(flight.getAbandoned()).isZero();
+        }
+        
+        @Test
+        @DisplayName("Should cancel the execution when every caller leaves and start afresh")
+        void shouldAbandonWhenEveryoneLeaves() throws Exception {
+            SingleFlight<String, String> flight = new SingleFlight<>();
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch interrupted = new CountDownLatch(1);
+            Thread caller = new Thread(() -> {
+                try {
+                    flight.execute("key", () -> {
+                        started.countDown();
+                        try {
+                            Thread.sleep(60_000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                        return "late";
+                    });
+                } catch (IOException e) {
+                    assertThat(e).isInstanceOf(InterruptedIOException.class);
+                }
+            });
+            caller.start();
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            
+            caller.interrupt();
+            
+            assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+            caller.join();
+            assertThat(flight.getAbandoned()).isEqualTo(1);
+            assertThat(flight.getInFlight()).isZero();
+            assertThat(flight.execute("key", () -> "fresh")).isEqualTo("fresh");
+        }
+        
+        @Test
+        @DisplayName("Should report cancelled sources to the callers that still wait")
+        void shouldPropagateSourceCancellation() {
+            SingleFlight<String, String> flight = new SingleFlight<>();
+            CompletableFuture<String> source = new CompletableFuture<>();
+            CompletableFuture<String> waiter = flight.submit("key", () -> source);
+            
+            source.cancel(true);
+            
+            assertThatThrownBy(waiter::get).isInstanceOf(CancellationException.class);
+            assertThat(flight.getInFlight()).isZero();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Request Key Tests")
+    class RequestKeyTests {
+        
+        @Test
+        @DisplayName("Should treat requests differing only in irrelevant details as equal")
+        void shouldNormalize() {
+            RequestKey key = RequestKey.of("get", URI.create("HTTP://Example.COM/a/./b?x=1#top"),
+                                           Map.of("Accept", "application/json", "User-Agent", "test",
+                                                  "X-Request-Id", "1"));
+            RequestKey same = RequestKey.of("GET", URI.create("http://example.com/a/b?x=1"),
+                                            Map.of("accept", " application/json", "X-Request-Id", "2"));
+            
+            assertThat(key).isEqualTo(same).hasSameHashCodeAs(same);
+            assertThat(key.getHeaders()).containsOnlyKeys("accept");
+            assertThat(RequestKey.get(URI.create("http://example.com"))).isEqualTo(
+                RequestKey.get(URI.create("http://example.com/")));
+        }
+        
+        @Test
+        @DisplayName("Should keep requests for different users, formats or methods apart")
+        void shouldSeparateRelevantDifferences() {
+            URI uri = URI.create("http://example.com/items");
+            RequestKey alice = RequestKey.of("GET", uri, Map.of("Authorization", "Bearer alice"));
+            
+            assertThat(alice).isNotEqualTo(RequestKey.of("GET", uri, Map.of("Authorization", "Bearer bob")));
+            assertThat(RequestKey.of("GET", uri, Map.of("Accept", "application/cbor")))
+                .isNotEqualTo(RequestKey.get(uri));
+            assertThat(RequestKey.of("HEAD", uri, Map.of())).isNotEqualTo(RequestKey.get(uri));
+            assertThat(RequestKey.get(URI.create("http://example.com/items?page=2"))).isNotEqualTo(RequestKey.get(uri));
+            assertThat(alice.toString()).doesNotContain("alice");
+        }
+    }
+}
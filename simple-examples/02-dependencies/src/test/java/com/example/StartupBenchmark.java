@@ -0,0 +1,167 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compares eager and lazy component creation for each demonstrate* entry point of
+ * DependencyExample, plus construction alone. Class loading and static
+ * initialization happen once per JVM, so every run is a fresh JVM: it creates the
+ * example (eager runs call initializeAll), calls one entry point and reports the
+ * time from construction until the entry point returned, the classes loaded and
+ * the components created. The table shows the median of RUNS runs.
+ *
+ * demonstrateHttpClient includes a request to httpbin.org; without a network it
+ * fails fast and only its setup is measured.
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.StartupBenchmark
+ */
+public class StartupBenchmark {
+    
+    private static final int RUNS = 5;
+    private static final String CONSTRUCT_ONLY = "(construct only)";
+    private static final String RESULT = "startup-result";
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2) {
+            runOnce(args[0], args[1]);
+            return;
+        }
+        List<String> entryPoints = new ArrayList<>();
+        entryPoints.add(CONSTRUCT_ONLY);
+        entryPoints.addAll(Arrays.stream(DependencyExample.class.getMethods())
+                               .filter(method -> method.getName().startsWith("demonstrate"))
+                               .filter(method -> !Modifier.isStatic(method.getModifiers()))
+                               .map(Method::getName)
+                               .sorted()
+                               .collect(Collectors.toList()));
+        
+        System.out.printf("%nStartup benchmark (Java %s, median of %d fresh JVMs)%n",
+                          System.getProperty("java.version"), RUNS);
+        System.out.printf("%-27s %-5s %9s %8s %s%n", "entry point", "mode", "ms", "classes", "components created");
+        for (String entryPoint : entryPoints) {
+            List<Result> eager = new ArrayList<>();
+            List<Result> lazy = new ArrayList<>();
+            for (int run = 0; run < RUNS; run++) {
+                // Alternate the order so neither mode always gets the warmer disk cache
+                if (run % 2 == 0) {
+                    eager.add(fork("eager", entryPoint));
+                    lazy.add(fork("lazy", entryPoint));
+                } else {
+                    lazy.add(fork("lazy", entryPoint));
+                    eager.add(fork("eager", entryPoint));
+                }
+            }
+            Result eagerMedian = median(eager);
+            Result lazyMedian = median(lazy);
+            print(entryPoint, "eager", eagerMedian);
+            print(entryPoint, "lazy", lazyMedian);
+            System.out.printf("%-27s %-5s %8.0f%%%n", "", "saved",
+                              100 * (1 - lazyMedian.nanos / (double) eagerMedian.nanos));
+        }
+    }
+    
+    /**
+     * Runs in the forked JVM
+     */
+    private static void runOnce(String mode, String entryPoint) throws Exception {
+        long start = System.nanoTime();
+        String trace;
+        try (DependencyExample example = new DependencyExample()) {
+            if (mode.equals("eager")) {
+                example.initializeAll();
+            }
+            if (!entryPoint.equals(CONSTRUCT_ONLY)) {
+                DependencyExample.class.getMethod(entryPoint).invoke(example);
+            }
+            trace = example.getStartupTrace().getEntries().stream()
+                .map(StartupTrace.Entry::getName)
+                .collect(Collectors.joining(","));
+        }
+        long nanos = System.nanoTime() - start;
+        int classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        System.out.printf("%s %d %d %s%n", RESULT, nanos, classes, trace);
+    }
+    
+    private static Result fork(String mode, String entryPoint) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", classPath(), StartupBenchmark.class.getName(), mode,
+                                             entryPoint)
+            .redirectErrorStream(true)
+            .start();
+        Result result = null;
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith(RESULT + " ")) {
+                    String[] fields = line.split(" ", 4);
+                    result = new Result(Long.parseLong(fields[1]), Integer.parseInt(fields[2]),
+                                        fields.length > 3 ? fields[3] : "");
+                }
+            }
+        }
+        int exit = process.waitFor();
+        if (result == null || exit != 0) {
+            throw new IllegalStateException(mode + " " + entryPoint + " exited with " + exit);
+        }
+        return result;
+    }
+    
+    /**
+     * The test classpath; under exec:java it is only known to the class loader, not java.class.path
+     */
+    private static String classPath() {
+        ClassLoader loader = StartupBenchmark.class.getClassLoader();
+        if (!(loader instanceof URLClassLoader)) {
+            return System.getProperty("java.class.path");
+        }
+        List<String> entries = new ArrayList<>();
+        for (URL url : ((URLClassLoader) loader).getURLs()) {
+            try {
+                entries.add(Paths.get(url.toURI()).toString());
+            } catch (URISyntaxException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+    
+    private static Result median(List<Result> results) {
+        List<Result> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingLong(result -> result.nanos));
+        return sorted.get(sorted.size() / 2);
+    }
+    
+    private static void print(String entryPoint, String mode, Result result) {
+        System.out.printf("%-27s %-5s %9.1f %8d %s%n", entryPoint, mode, result.nanos / 1e6, result.classes,
+                          result.components.isEmpty() ? "-" : result.components);
+    }
+    
+    private static final class Result {
+        final long nanos;
+        final int classes;
+        final String components;
+        
+        Result(long nanos, int classes, String components) {
+            this.nanos = nanos;
+            this.classes = classes;
+            this.components = components;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Local stand-in for upstream HTTP services, bound to a random free port.
+ * Counts the requests each path receives.
+ */
+class StubHttpServer implements AutoCloseable {
+    
+    static {
+        // The JDK server writes headers and body separately; without TCP_NODELAY every
+        // response waits for the client's delayed ACK (about 40 ms on Linux)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, AtomicLong> hits = new ConcurrentHashMap<>();
+    
+    StubHttpServer(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.start();
+    }
+    
+    /**
+     * Serves the handler under the path prefix
+     */
+    StubHttpServer route(String path, HttpHandler handler) {
+        server.createContext(path, exchange -> {
+            hit(path);
+            try {
+                handler.handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        return this;
+    }
+    
+    /**
+     * Serves a fixed JSON body under the path prefix
+     */
+    StubHttpServer json(String path, String body) {
+        return route(path, exchange -> respond(exchange, 200, body));
+    }
+    
+    /**
+     * Answers after a delay without holding a server thread meanwhile
+     */
+    StubHttpServer delayed(String path, long delayMillis, String body) {
+        return delayed(path, () -> delayMillis, body);
+    }
+    
+    /**
+     * Answers each request after a delay drawn from the supplier, to inject slow responses
+     */
+    StubHttpServer delayed(String path, LongSupplier delayMillis, String body) {
+        server.createContext(path, exchange -> {
+            hit(path);
+            long delay = delayMillis.getAsLong();
+            scheduler.schedule(() -> {
+                try {
+                    respond(exchange, 200, body);
+                } catch (IOException e) {
+                    // Client went away
+                } finally {
+                    exchange.close();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        });
+        return this;
+    }
+    
+    private void hit(String path) {
+        hits.computeIfAbsent(path, key -> new AtomicLong()).incrementAndGet();
+    }
+    
+    static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+    
+    long hits(String path) {
+        AtomicLong count = hits.get(path);
+        return count == null ? 0 : count.get();
+    }
+    
+    URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares StringUtils.split on every line with Tokenizer through a callback, a
+ * cursor, UTF-8 bytes and a memory-mapped file tokenized in parallel. Reports
+ * tokens per second and bytes allocated per token on the benchmark thread
+ * (the parallel row allocates on pool threads, so its figure covers only the
+ * coordination).
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.TokenizerBenchmark
+ */
+public class TokenizerBenchmark {
+    
+    private static final int LINES = 500_000;
+    private static final int ROUNDS = 5;
+    
+    private interface Pass {
+        long run() throws IOException;
+    }
+    
+    /** Counts tokens from UTF-8 input */
+    private static final class TokenCount implements Tokenizer.Utf8TokenHandler {
+        long value;
+        
+        @Override
+        public void onToken(ByteBuffer source, int start, int end) {
+            value++;
+        }
+        
+        TokenCount add(TokenCount other) {
+            value += other.value;
+            return this;
+        }
+    }
+    
+    public static void main(String[] args) throws IOException {
+        List<String> lines = lines(LINES);
+        Path file = Files.createTempFile("tokens", ".txt");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        ByteBuffer utf8 = ByteBuffer.wrap(Files.readAllBytes(file));
+        long tokens = 0;
+        for (String line : lines) {
+            tokens += StringUtils.split(line).length;
+        }
+        long expectedTokens = tokens;
+        
+        System.out.printf("%nTokenizer benchmark (Java %s, %d cores, %d lines, %d tokens)%n",
+                          System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(),
+                          LINES, expectedTokens);
+        System.out.printf("%-28s %16s %16s%n", "method", "tokens/s", "allocated/token");
+        report("StringUtils.split per line", expectedTokens, () -> {
+            long count = 0;
+            for (String line : lines) {
+                for (String token : StringUtils.split(line)) {
+                    count += token.isEmpty() ? 0 : 1;
+                }
+            }
+            return count;
+        });
+        report("tokenize(CharSequence)", expectedTokens, () -> {
+            long count = 0;
+            Tokenizer.CharTokenHandler ignore = (source, start, end) -> { };
+            for (String line : lines) {
+                count += Tokenizer.tokenize(line, ignore);
+            }
+            return count;
+        });
+        Tokenizer.CharCursor cursor = Tokenizer.cursor("");
+        report("CharCursor", expectedTokens, () -> {
+            long count = 0;
+            for (String line : lines) {
+                for (cursor.reset(line); cursor.next(); ) {
+                    count += cursor.length() > 0 ? 1 : 0;
+                }
+            }
+            return count;
+        });
+        report("tokenize(ByteBuffer)", expectedTokens,
+               () -> Tokenizer.tokenize(utf8, 0, utf8.limit(), (source, start, end) -> { }));
+        report("tokenize(Path) parallel", expectedTokens,
+               () -> Tokenizer.tokenize(file, 1 << 20, TokenCount::new, TokenCount::add).value);
+    }
+    
+    private static void report(String name, long tokens, Pass pass) throws IOException {
+        for (int i = 0; i <= ROUNDS; i++) {
+            pass.run();
+        }
+        
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            long found = pass.run();
+            if (found != tokens) {
+                throw new IllegalStateException(name + " found " + found + " tokens, not " + tokens);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        double total = (double) tokens * ROUNDS;
+        System.out.printf("%-28s %16.0f %16.2f%n", name, total * 1e9 / elapsed,
+                          allocatedBefore < 0 ? -1 : allocated / total);
+    }
+    
+    /**
+     * Log-like lines of 5 to 20 words, mostly ASCII, with tabs and the odd accented word
+     */
+    private static List<String> lines(int count) {
+        Random random = new Random(1);
+        String[] words = {"GET", "/api/items", "200", "dependency", "maven", "caf\u00e9", "INFO", "request",
+                          "completed", "in", "12ms", "user=42"};
+        String[] separators = {" ", " ", " ", "  ", "\t"};
+        List<String> lines = new ArrayList<>(count);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            line.setLength(0);
+            int length = 5 + random.nextInt(16);
+            for (int word = 0; word < length; word++) {
+                if (word > 0) {
+                    line.append(separators[random.nextInt(separators.length)]);
+                }
+                line.append(words[random.nextInt(words.length)]);
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+    
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests that Tokenizer finds the same tokens as StringUtils.split
+ */
+class TokenizerTest {
+    
+    /** Words plus ASCII, Unicode and non-whitespace separator candidates */
+    private static final String[] PIECES = {
+        "maven", "d\u00e9pendance", "\u4f9d\u8d56", "\ud83d\ude00", "a", " ", "  ", "\t", "\n", "\r\n",
+        "\u3000", "\u2003", "\u1680", "\u00a0", "\u0085", "\u2007"
+    };
+    
+    @TempDir
+    Path directory;
+    
+    static String randomText(Random random, int pieces) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return text.toString();
+    }
+    
+    /** Collects token texts, for comparison only */
+    static final class Collector implements Tokenizer.Utf8TokenHandler {
+        final List<String> tokens = new ArrayList<>();
+        int lines;
+        
+        @Override
+        public void onToken(ByteBuffer source, int start, int end) {
+            byte[] bytes = new byte[end - start];
+            source.get(start, bytes);
+            tokens.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        
+        @Override
+        public void onLineEnd() {
+            lines++;
+        }
+        
+        Collector add(Collector other) {
+            tokens.addAll(other.tokens);
+            lines += other.lines;
+            return this;
+        }
+    }
+    
+    @Nested
+    @DisplayName("Character Sequence Tests")
+    class CharSequenceTests {
+        
+        @Test
+        @DisplayName("Should find the tokens of StringUtils.split through the callback")
+        void shouldMatchSplitWithCallback() {
+            Random random = new Random(3);
+            for (int i = 0; i < 10_000; i++) {
+                String text = randomText(random, random.nextInt(12));
+                List<String> tokens = new ArrayList<>();
+                
+                int count = Tokenizer.tokenize(CharBuffer.wrap(text),
+                                               (source, start, end) -> tokens.add(source.subSequence(start, end).toString()));
+                
+                assertThat(tokens).as("'%s'", text).containsExactly(StringUtils.split(text));
+                assertThat(count).isEqualTo(tokens.size());
+            }
+        }
+        
+        @Test
+        @DisplayName("Should find the same tokens through a reusable cursor")
+        void shouldMatchSplitWithCursor() {
+            Random random = new Random(5);
+            Tokenizer.CharCursor cursor = Tokenizer.cursor("");
+            for (int i = 0; i < 10_000; i++) {
+                String text = randomText(random, random.nextInt(12));
+                List<String> tokens = new ArrayList<>();
+                
+                for (cursor.reset(text); cursor.next(); ) {
+                    assertThat(text.substring(cursor.start(), cursor.end())).isEqualTo(cursor.toString());
+                    tokens.add(cursor.toString());
+                }
+                
+                assertThat(tokens).as("'%s'", text).containsExactly(StringUtils.split(text));
+                assertThat(cursor.next()).isFalse();
+            }
+        }
+        
+        @Test
+        @DisplayName("Should compare tokens without copying them")
+        void shouldCompareInPlace() {
+            Tokenizer.CharCursor cursor = Tokenizer.cursor("  Maven Dependency  ");
+            
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.contentEquals("Maven")).isTrue();
+            assertThat(cursor.contentEquals("Mave")).isFalse();
+            assertThat(cursor.length()).isEqualTo(5);
+            assertThat(cursor.charAt(4)).isEqualTo('n');
+            assertThatThrownBy(() -> cursor.charAt(5)).isInstanceOf(IndexOutOfBoundsException.class);
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.subSequence(0, 3).toString()).isEqualTo("Dep");
+            assertThat(cursor.next()).isFalse();
+        }
+    }
+    
+    @Nested
+    @DisplayName("UTF-8 Tests")
+    class Utf8Tests {
+        
+        @Test
+        @DisplayName("Should find the tokens of StringUtils.split in UTF-8 bytes")
+        void shouldMatchSplitOnBytes() {
+            Random random = new Random(9);
+            for (int i = 0; i < 10_000; i++) {
+                String text = randomText(random, random.nextInt(12));
+                ByteBuffer utf8 = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+                Collector collector = new Collector();
+                
+                Tokenizer.tokenize(utf8, 0, utf8.limit(), collector);
+                
+                assertThat(collector.tokens).as("'%s'", text).containsExactly(StringUtils.split(text));
+                assertThat(collector.lines).isEqualTo(StringUtils.countMatches(text, '\n'));
+            }
+        }
+        
+        @Test
+        @DisplayName("Should keep malformed sequences that look like whitespace inside the token")
+        void shouldNotTreatMalformedBytesAsWhitespace() {
+            // E2 80 41 would decode to U+2001 if the continuation bytes were not checked
+            byte[] bytes = {'x', (byte) 0xE2, (byte) 0x80, 'A', ' ', 'y', (byte) 0xE3, 'B', (byte) 0x80};
+            List<int[]> ranges = new ArrayList<>();
+            
+            Tokenizer.tokenize(ByteBuffer.wrap(bytes), 0, bytes.length, (source, start, end) ->
+                ranges.add(new int[] {start, end}));
+            
+            assertThat(ranges).containsExactly(new int[] {0, 4}, new int[] {5, 9});
+        }
+        
+        @Test
+        @DisplayName("Should tokenize a file in parallel chunks in file order")
+        void shouldTokenizeFileInChunks() throws IOException {
+            Random random = new Random(13);
+            StringBuilder text = new StringBuilder();
+            for (int line = 0; line < 5000; line++) {
+                text.append(randomText(random, random.nextInt(10)).replace("\n", "")).append('\n');
+            }
+            Path file = directory.resolve("text.txt");
+            Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+            
+            Collector collector = Tokenizer.tokenize(file, 512, Collector::new, Collector::add);
+            
+            assertThat(collector.tokens).containsExactlyElementsOf(Arrays.asList(StringUtils.split(text.toString())));
+            assertThat(collector.lines).isEqualTo(5000);
+            assertThat(new DependencyExample().countTokens(file)).isEqualTo(collector.tokens.size());
+        }
+        
+        @Test
+        @DisplayName("Should return an empty handler for an empty file")
+        void shouldHandleEmptyFile() throws IOException {
+            Path file = Files.createFile(directory.resolve("empty.txt"));
+            
+            Collector collector = Tokenizer.tokenize(file, Collector::new, Collector::add);
+            
+            assertThat(collector.tokens).isEmpty();
+        }
+    }
+}
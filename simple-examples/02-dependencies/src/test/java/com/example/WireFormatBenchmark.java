@@ -0,0 +1,81 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Compares text JSON with Smile (with each string sharing option) and CBOR on the
+ * Map payloads of demonstrateJsonProcessing, which include LocalDateTime values:
+ * encoded size, encode throughput and decode throughput (back to a Map).
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.WireFormatBenchmark
+ */
+public class WireFormatBenchmark {
+    
+    private static final long WARMUP_NANOS = 500_000_000L;
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+    
+    private interface Operation {
+        void run() throws IOException;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        DependencyExample example = new DependencyExample();
+        String[] sizes = {"small", "medium", "large"};
+        Map<?, ?>[] payloads = {JsonPayloads.map(0), JsonPayloads.map(50), JsonPayloads.map(5000)};
+        
+        // Compile every encoder and decoder before measuring, so the first rows are not penalized
+        for (Map<?, ?> payload : payloads) {
+            for (WireFormat format : WireFormat.values()) {
+                for (WireFormat.StringSharing sharing : WireFormat.StringSharing.values()) {
+                    byte[] encoded = example.toBytes(payload, format, sharing);
+                    run(() -> example.toBytes(payload, format, sharing), WARMUP_NANOS / 10);
+                    run(() -> example.fromBytes(encoded, Map.class, format), WARMUP_NANOS / 10);
+                }
+            }
+        }
+        
+        System.out.printf("%nWire format benchmark (Java %s)%n", System.getProperty("java.version"));
+        System.out.printf("%-8s %-6s %-17s %9s %7s %13s %13s%n",
+                          "payload", "format", "sharing", "bytes", "vs json", "encode ops/s", "decode ops/s");
+        for (int size = 0; size < payloads.length; size++) {
+            Map<?, ?> payload = payloads[size];
+            int jsonLength = example.toBytes(payload, WireFormat.JSON).length;
+            for (WireFormat format : WireFormat.values()) {
+                WireFormat.StringSharing[] options = format == WireFormat.SMILE
+                    ? WireFormat.StringSharing.values()
+                    : new WireFormat.StringSharing[] {WireFormat.StringSharing.NAMES};
+                for (WireFormat.StringSharing sharing : options) {
+                    byte[] encoded = example.toBytes(payload, format, sharing);
+                    double encode = measure(() -> example.toBytes(payload, format, sharing));
+                    double decode = measure(() -> example.fromBytes(encoded, Map.class, format));
+                    System.out.printf("%-8s %-6s %-17s %9d %6.0f%% %13.0f %13.0f%n", sizes[size], format,
+                                      format == WireFormat.SMILE ? sharing : "-", encoded.length,
+                                      100.0 * encoded.length / jsonLength, encode, decode);
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return operations per second
+     */
+    private static double measure(Operation operation) throws IOException {
+        run(operation, WARMUP_NANOS);
+        long start = System.nanoTime();
+        long operations = run(operation, MEASURE_NANOS);
+        return operations * 1e9 / (System.nanoTime() - start);
+    }
+    
+    private static long run(Operation operation, long nanos) throws IOException {
+        long deadline = System.nanoTime() + nanos;
+        long operations = 0;
+        do {
+            for (int i = 0; i < 16; i++) {
+                operation.run();
+            }
+            operations += 16;
+        } while (System.nanoTime() < deadline);
+        return operations;
+    }
+}
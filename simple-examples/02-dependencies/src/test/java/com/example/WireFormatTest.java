@@ -0,0 +1,111 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for the binary wire formats and format negotiation
+ */
+class WireFormatTest {
+    
+    private final DependencyExample example = new DependencyExample();
+    
+    @Nested
+    @DisplayName("Negotiation Tests")
+    class NegotiationTests {
+        
+        @Test
+        @DisplayName("Should pick the format with the highest quality")
+        void shouldPickHighestQuality() {
+            assertThat(WireFormat.negotiate("application/json;q=0.5, application/x-jackson-smile"))
+                .isEqualTo(WireFormat.SMILE);
+            assertThat(WireFormat.negotiate("application/cbor;q=0.9, application/json")).isEqualTo(WireFormat.JSON);
+            assertThat(WireFormat.negotiate("Application/CBOR")).isEqualTo(WireFormat.CBOR);
+        }
+        
+        @Test
+        @DisplayName("Should prefer exact media types over wildcards and default to JSON")
+        void shouldHandleWildcardsAndDefaults() {
+            assertThat(WireFormat.negotiate("*/*, application/cbor")).isEqualTo(WireFormat.CBOR);
+            assertThat(WireFormat.negotiate("*/*")).isEqualTo(WireFormat.JSON);
+            assertThat(WireFormat.negotiate(null)).isEqualTo(WireFormat.JSON);
+            assertThat(WireFormat.negotiate("text/html, application/cbor;q=0")).isNull();
+        }
+        
+        @Test
+        @DisplayName("Should recognize content types with parameters")
+        void shouldRecognizeContentTypes() {
+            assertThat(WireFormat.forContentType("application/json; charset=UTF-8")).isEqualTo(WireFormat.JSON);
+            assertThat(WireFormat.forContentType("application/x-jackson-smile")).isEqualTo(WireFormat.SMILE);
+            assertThat(WireFormat.forContentType("text/plain")).isNull();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Encoding Tests")
+    class EncodingTests {
+        
+        @Test
+        @DisplayName("Should round-trip beans with LocalDateTime in every format and sharing option")
+        void shouldRoundTripBeans() throws IOException {
+            JsonPayloads.Order order = JsonPayloads.medium();
+            String json = example.toJson(order);
+            
+            for (WireFormat format : WireFormat.values()) {
+                for (WireFormat.StringSharing sharing : WireFormat.StringSharing.values()) {
+                    byte[] encoded = example.toBytes(order, format, sharing);
+                    JsonPayloads.Order decoded = example.fromBytes(encoded, JsonPayloads.Order.class, format);
+                    
+                    assertThat(decoded.getItems().get(49).getUpdated())
+                        .as("%s %s", format, sharing)
+                        .isEqualTo(LocalDateTime.of(2024, 1, 15, 10, 30).plusMinutes(49));
+                    assertThat(example.toJson(decoded)).as("%s %s", format, sharing).isEqualTo(json);
+                }
+            }
+        }
+        
+        @Test
+        @DisplayName("Should encode JSON exactly like toJsonBytes and Maps more compactly in binary")
+        void shouldEncodeCompactly() throws IOException {
+            Map<String, Object> payload = JsonPayloads.map(200);
+            byte[] json = example.toBytes(payload, WireFormat.JSON);
+            byte[] smile = example.toBytes(payload, WireFormat.SMILE, WireFormat.StringSharing.NONE);
+            byte[] sharedNames = example.toBytes(payload, WireFormat.SMILE);
+            byte[] sharedValues = example.toBytes(payload, WireFormat.SMILE, WireFormat.StringSharing.NAMES_AND_VALUES);
+            byte[] cbor = example.toBytes(payload, WireFormat.CBOR);
+            
+            assertThat(json).isEqualTo(example.toJsonBytes(payload));
+            assertThat(sharedNames.length).isLessThan(smile.length);
+            assertThat(sharedValues.length).isLessThan(sharedNames.length);
+            assertThat(cbor.length).isLessThan(json.length);
+            assertThat(sharedNames.length).isLessThan(cbor.length);
+        }
+        
+        @Test
+        @DisplayName("Should stream binary output without closing the stream")
+        void shouldStreamBinary() throws IOException {
+            Map<String, Object> payload = JsonPayloads.map(3);
+            ByteArrayOutputStream out = new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    throw new AssertionError("stream closed");
+                }
+            };
+            
+            example.toStream(payload, WireFormat.CBOR, out);
+            
+            assertThat(out.toByteArray()).isEqualTo(example.toBytes(payload, WireFormat.CBOR));
+            @SuppressWarnings("unchecked")
+            Map<String, Object> decoded = example.fromBytes(out.toByteArray(), Map.class, WireFormat.CBOR);
+            assertThat(decoded).containsEntry("active", true);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.example;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of the application.
+ * Requests first pass a per-client token bucket (ClientRateLimiter, 429 when
+ * empty), then a concurrency limit. A request that finds every slot taken waits
+ * in FIFO order for at most the queueing delay target; it is rejected at once
+ * with 503 when the wait queue is full or the expected delay (waiting requests
+ * times the average service time, spread over the slots) already exceeds the
+ * target. Admitted requests therefore never queue longer than the target, and
+ * an overloaded server sheds the excess cheaply instead of letting every
+ * request's latency grow with the container queue.
+ *
+ * Bulk transfers (paths listed in admission.bulk.paths, such as downloads, and
+ * request bodies of admission.bulk.min.bytes or more, or of unknown length, such
+ * as uploads) take seconds where a page takes milliseconds. They get slots and a
+ * service time average of their own, so a long transfer neither takes a page
+ * request's slot nor makes the page predictor reject every queued request.
+ */
+public class AdmissionControlFilter implements Filter {
+    
+    /** Init parameter: requests processed at the same time */
+    public static final String MAX_CONCURRENT_PARAM = "admission.max.concurrent";
+    /** Init parameter: requests waiting for a slot before new ones are rejected */
+    public static final String MAX_QUEUE_PARAM = "admission.max.queue";
+    /** Init parameter: longest time a request may wait for a slot, in milliseconds */
+    public static final String QUEUE_TARGET_PARAM = "admission.queue.target.millis";
+    /** Init parameter: sustained requests per second and client; 0 (default) disables rate limiting */
+    public static final String CLIENT_RATE_PARAM = "admission.client.rate";
+    /** Init parameter: requests a client may send at once */
+    public static final String CLIENT_BURST_PARAM = "admission.client.burst";
+    /** Init parameter: request header identifying the client (e.g. X-Forwarded-For); remote address when unset */
+    public static final String CLIENT_HEADER_PARAM = "admission.client.header";
+    /** Init parameter: most clients tracked by the rate limiter */
+    public static final String MAX_CLIENTS_PARAM = "admission.max.clients";
+    /** Init parameter: comma separated path prefixes below the context that are bulk transfers */
+    public static final String BULK_PATHS_PARAM = "admission.bulk.paths";
+    /** Init parameter: request bodies of this many bytes or more are bulk transfers */
+    public static final String BULK_MIN_BYTES_PARAM = "admission.bulk.min.bytes";
+    /** Init parameter: bulk transfers processed at the same time */
+    public static final String BULK_MAX_CONCURRENT_PARAM = "admission.bulk.max.concurrent";
+    
+    /** Not defined by HttpServletResponse in Servlet 4.0 */
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final long EWMA_WEIGHT_SHIFT = 4;
+    
+    private Limiter pages;
+    private Limiter bulk;
+    private long targetNanos;
+    private List<String> bulkPaths;
+    private long bulkMinBytes;
+    private ClientRateLimiter rateLimiter;
+    private String clientHeader;
+    
+    private final LongAdder rejectedRateLimited = new LongAdder();
+    
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        int maxConcurrent = (int) getLongParameter(config, MAX_CONCURRENT_PARAM, 64);
+        int maxQueue = (int) getLongParameter(config, MAX_QUEUE_PARAM, 2L * maxConcurrent);
+        this.pages = new Limiter(maxConcurrent, maxQueue);
+        int bulkMaxConcurrent = (int) getLongParameter(config, BULK_MAX_CONCURRENT_PARAM, 16);
+        this.bulk = new Limiter(bulkMaxConcurrent, 2 * bulkMaxConcurrent);
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(getLongParameter(config, QUEUE_TARGET_PARAM, 50));
+        this.bulkMinBytes = getLongParameter(config, BULK_MIN_BYTES_PARAM, 1024 * 1024);
+        String paths = config.getInitParameter(BULK_PATHS_PARAM);
+        this.bulkPaths = new ArrayList<>();
+        if (paths != null) {
+            for (String path : paths.split(",")) {
+                if (!path.trim().isEmpty()) {
+                    bulkPaths.add(path.trim());
+                }
+            }
+        }
+        
+        long rate = getLongParameter(config, CLIENT_RATE_PARAM, 0);
+        if (rate > 0) {
+            this.rateLimiter = new ClientRateLimiter(rate,
+                                                     (int) getLongParameter(config, CLIENT_BURST_PARAM, 20),
+                                                     (int) getLongParameter(config, MAX_CLIENTS_PARAM, 10_000),
+                                                     System::nanoTime);
+        }
+        String header = config.getInitParameter(CLIENT_HEADER_PARAM);
+        this.clientHeader = header == null || header.trim().isEmpty() ? null : header.trim();
+        
+        MetricsRegistry.forContext(config.getServletContext()).register("admission", this::getStats);
+    }
+    
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(req instanceof HttpServletRequest) || !(res instanceof HttpServletResponse)) {
+            chain.doFilter(req, res);
+            return;
+        }
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.acquire(clientKey(request));
+            if (waitNanos > 0) {
+                rejectedRateLimited.increment();
+                reject(response, SC_TOO_MANY_REQUESTS, waitNanos, "Client request rate exceeded");
+                return;
+            }
+        }
+        
+        Limiter limiter = isBulk(request) ? bulk : pages;
+        if (!limiter.admit()) {
+            reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, Math.max(targetNanos, 1),
+                   "Server overloaded");
+            return;
+        }
+        
+        Release release = new Release(limiter, System.nanoTime());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // Async requests keep their slot until the response completes
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(release);
+            } else {
+                release.run();
+            }
+        }
+    }
+    
+    /**
+     * A transfer under one of the bulk paths, or with a request body that is large
+     * or of unknown length (chunked)
+     */
+    private boolean isBulk(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String prefix : bulkPaths) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        long length = request.getContentLengthLong();
+        return length >= bulkMinBytes || (length < 0 && request.getHeader("Transfer-Encoding") != null);
+    }
+    
+    private String clientKey(HttpServletRequest request) {
+        if (clientHeader != null) {
+            String value = request.getHeader(clientHeader);
+            if (value != null && !value.trim().isEmpty()) {
+                int comma = value.indexOf(',');
+                return (comma >= 0 ? value.substring(0, comma) : value).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+    
+    private static void reject(HttpServletResponse response, int status, long retryNanos, String message)
+            throws IOException {
+        long seconds = Math.max(1, (retryNanos + 999_999_999L) / 1_000_000_000L);
+        response.setHeader("Retry-After", String.valueOf(seconds));
+        response.setHeader("Cache-Control", "no-store");
+        response.sendError(status, message);
+    }
+    
+    private static long getLongParameter(FilterConfig config, String name, long defaultValue)
+            throws ServletException {
+        String value = config.getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+    
+    /**
+     * Counter snapshot for dashboards
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = pages.getStats();
+        stats.put("rejectedRateLimited", rejectedRateLimited.sum());
+        stats.put("trackedClients", rateLimiter != null ? rateLimiter.getTrackedClients() : 0);
+        stats.put("bulk", bulk.getStats());
+        return stats;
+    }
+    
+    /**
+     * Slots, wait queue and service time average of one class of requests
+     */
+    private final class Limiter {
+        private final Semaphore permits;
+        private final int maxConcurrent;
+        private final int maxQueue;
+        
+        private final AtomicInteger waiting = new AtomicInteger();
+        /** Moving average of the time a request holds a slot; updated without locking, so approximate */
+        private final AtomicLong serviceNanos = new AtomicLong();
+        private final AtomicLong maxQueueDelayNanos = new AtomicLong();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder admittedAfterWait = new LongAdder();
+        private final LongAdder rejectedQueueFull = new LongAdder();
+        private final LongAdder rejectedPredicted = new LongAdder();
+        private final LongAdder rejectedTimeout = new LongAdder();
+        
+        private Limiter(int maxConcurrent, int maxQueue) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueue = maxQueue;
+            this.permits = new Semaphore(maxConcurrent, true);
+        }
+        
+        /**
+         * Takes a slot, waiting up to the queueing delay target when none is free
+         */
+        private boolean admit() {
+            if (tryAcquire(0)) {
+                admitted.increment();
+                return true;
+            }
+            int queued = waiting.incrementAndGet();
+            try {
+                if (queued > maxQueue) {
+                    rejectedQueueFull.increment();
+                    return false;
+                }
+                if (queued * serviceNanos.get() / maxConcurrent > targetNanos) {
+                    rejectedPredicted.increment();
+                    return false;
+                }
+                long start = System.nanoTime();
+                if (!tryAcquire(targetNanos)) {
+                    rejectedTimeout.increment();
+                    return false;
+                }
+                maxQueueDelayNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+                admitted.increment();
+                admittedAfterWait.increment();
+                return true;
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        
+        /**
+         * Timed tryAcquire also for the immediate attempt: the untimed variant would
+         * barge ahead of requests already waiting on the fair semaphore
+         */
+        private boolean tryAcquire(long timeoutNanos) {
+            try {
+                return permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        
+        private void release(long elapsed) {
+            long average = serviceNanos.get();
+            serviceNanos.set(average == 0 ? elapsed : average + ((elapsed - average) >> EWMA_WEIGHT_SHIFT));
+            permits.release();
+        }
+        
+        private Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("active", maxConcurrent - permits.availablePermits());
+            stats.put("waiting", waiting.get());
+            stats.put("admitted", admitted.sum());
+            stats.put("admittedAfterWait", admittedAfterWait.sum());
+            stats.put("rejectedQueueFull", rejectedQueueFull.sum());
+            stats.put("rejectedPredicted", rejectedPredicted.sum());
+            stats.put("rejectedTimeout", rejectedTimeout.sum());
+            stats.put("maxQueueDelayMillis", TimeUnit.NANOSECONDS.toMillis(maxQueueDelayNanos.get()));
+            stats.put("avgServiceMillis", serviceNanos.get() / 1_000_000.0);
+            return stats;
+        }
+    }
+    
+    /**
+     * Returns a slot exactly once, whether the request finishes on the filter
+     * thread or through its AsyncContext
+     */
+    private final class Release implements AsyncListener, Runnable {
+        private final Limiter limiter;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        private Release(Limiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+        
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - start);
+            }
+        }
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            run();
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            run();
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            run();
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
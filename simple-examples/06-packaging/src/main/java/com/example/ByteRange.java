@@ -0,0 +1,139 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An inclusive byte range of a representation, as requested by a Range header (RFC 7233)
+ */
+public final class ByteRange {
+    
+    private final long start;
+    private final long end;
+    
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+    
+    /**
+     * Parses a Range header against a representation of the given length.
+     * Overlapping and adjacent ranges are merged and the result is ordered by offset.
+     *
+     * @return the satisfiable ranges; an empty list when none is satisfiable (416),
+     *         or null when the header is missing, malformed, not in bytes or asks for
+     *         more than maxRanges ranges (the header is then ignored and the full
+     *         representation sent)
+     */
+    public static List<ByteRange> parse(String header, long length, int maxRanges) {
+        if (header == null) {
+            return null;
+        }
+        String value = header.trim();
+        if (!value.toLowerCase(Locale.ROOT).startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = value.substring("bytes=".length()).split(",");
+        if (specs.length > maxRanges) {
+            return null;
+        }
+        
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            String trimmed = spec.trim();
+            int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                if (dash == 0) {
+                    // Suffix range: the last N bytes
+                    long suffix = Long.parseLong(trimmed.substring(1));
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                    }
+                    continue;
+                }
+                long first = Long.parseLong(trimmed.substring(0, dash));
+                String lastText = trimmed.substring(dash + 1);
+                long last = lastText.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastText);
+                if (first < 0 || last < first) {
+                    return null;
+                }
+                if (first < length) {
+                    ranges.add(new ByteRange(first, Math.min(last, length - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+    
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::getStart));
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+        for (ByteRange next : sorted.subList(1, sorted.size())) {
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return Collections.unmodifiableList(merged);
+    }
+    
+    public long getStart() {
+        return start;
+    }
+    
+    public long getEnd() {
+        return end;
+    }
+    
+    public long getLength() {
+        return end - start + 1;
+    }
+    
+    /**
+     * Content-Range header value for this range of a representation of the given length
+     */
+    public String toContentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ByteRange)) {
+            return false;
+        }
+        ByteRange range = (ByteRange) other;
+        return start == range.start && end == range.end;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(start) * 31 + Long.hashCode(end);
+    }
+    
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
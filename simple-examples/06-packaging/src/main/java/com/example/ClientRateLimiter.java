@@ -0,0 +1,105 @@
+package com.example;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free per-client token buckets.
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time" (the
+ * generic cell rate algorithm): a request is allowed while that time is no more
+ * than the burst allowance ahead of now, and advances it by one token interval.
+ * Updates are one CAS, so concurrent requests from many clients never block.
+ *
+ * The table is bounded: once it holds maxClients keys, buckets that have fully
+ * refilled are swept (they are equivalent to a missing bucket), and clients that
+ * still find no room share one overflow bucket.
+ */
+public class ClientRateLimiter {
+    
+    static final String OVERFLOW_KEY = "";
+    
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxClients;
+    private final LongSupplier clock;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(Long.MIN_VALUE);
+    
+    /**
+     * @param ratePerSecond sustained requests per second and client
+     * @param burst         requests a client may send at once after being idle
+     * @param maxClients    most buckets kept before idle ones are swept
+     * @param clock         nanosecond clock, System::nanoTime outside tests
+     */
+    public ClientRateLimiter(double ratePerSecond, int burst, int maxClients, LongSupplier clock) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxClients = maxClients;
+        this.clock = clock;
+    }
+    
+    /**
+     * Takes a token for a client
+     *
+     * @return 0 when the request is allowed, otherwise the nanoseconds until it would be
+     */
+    public long acquire(String client) {
+        AtomicLong bucket = bucketFor(client);
+        long now = clock.getAsLong();
+        while (true) {
+            long stored = bucket.get();
+            long arrival = Math.max(stored, now);
+            long ahead = arrival - now;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (bucket.compareAndSet(stored, arrival + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+    
+    private AtomicLong bucketFor(String client) {
+        AtomicLong bucket = buckets.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxClients) {
+            sweep();
+            if (buckets.size() >= maxClients) {
+                return buckets.computeIfAbsent(OVERFLOW_KEY, key -> new AtomicLong(Long.MIN_VALUE));
+            }
+        }
+        return buckets.computeIfAbsent(client, key -> new AtomicLong(Long.MIN_VALUE));
+    }
+    
+    /**
+     * Drops buckets that have refilled completely; runs at most once per token interval
+     * (and at least once per second) so a full table of busy clients is not rescanned
+     * on every request. A request racing with the sweep may be charged to a dropped
+     * bucket, which only errs on the lenient side.
+     */
+    private void sweep() {
+        long now = clock.getAsLong();
+        long last = lastSweep.get();
+        if (last != Long.MIN_VALUE && now - last < Math.min(intervalNanos, 1_000_000_000L)) {
+            return;
+        }
+        if (!lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() <= now);
+    }
+    
+    /**
+     * Number of clients currently tracked
+     */
+    public int getTrackedClients() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,278 @@
+package com.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Byte-bounded LRU store of pre-compressed response bodies.
+ * Bodies are keyed by request path and the (identity) ETag the application
+ * sent for them, so a body is compressed at most once per encoding for as
+ * long as its ETag stays the same. Only "gzip" and "deflate" are supported.
+ */
+public class CompressedResponseStore {
+    
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    
+    /** Bodies smaller than this are not worth the compression framing overhead */
+    public static final int DEFAULT_MIN_SIZE = 1024;
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    
+    private final int minSize;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    
+    public CompressedResponseStore() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_BYTES);
+    }
+    
+    public CompressedResponseStore(int minSize, long maxBytes) {
+        this.minSize = minSize;
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Checks whether a body of the given size should be compressed at all
+     */
+    public boolean isWorthCompressing(int length) {
+        return length >= minSize;
+    }
+    
+    /**
+     * Returns the compressed variant of a body, compressing and storing it on a miss.
+     * A store hit does not look at the body bytes at all.
+     *
+     * @param path     request path (including query string) the body was served for
+     * @param etag     the identity ETag of the body
+     * @param encoding "gzip" or "deflate"
+     * @param body     the identity body
+     */
+    public byte[] getOrCompress(String path, String etag, String encoding, byte[] body, int length) {
+        String key = path + ' ' + etag;
+        byte[] compressed;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            compressed = entry != null && entry.identityLength == length ? entry.variant(encoding) : null;
+        }
+        
+        if (compressed != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            compressed = compress(encoding, body, length);
+            store(key, length, encoding, compressed);
+        }
+        recordServed(length, compressed.length);
+        return compressed;
+    }
+    
+    /**
+     * Records a response that went out uncompressed (too small, uncacheable or not negotiated)
+     */
+    public void recordSkipped() {
+        skipped.increment();
+    }
+    
+    /**
+     * Compresses a body that is not cacheable, without storing it
+     */
+    public byte[] compressUncached(String encoding, byte[] body, int length) {
+        byte[] compressed = compress(encoding, body, length);
+        misses.increment();
+        recordServed(length, compressed.length);
+        return compressed;
+    }
+    
+    private void recordServed(int identityLength, int compressedLength) {
+        bytesIn.add(identityLength);
+        bytesOut.add(compressedLength);
+    }
+    
+    private void store(String key, int identityLength, String encoding, byte[] compressed) {
+        if (compressed.length > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null || entry.identityLength != identityLength) {
+                if (entry != null) {
+                    storedBytes -= entry.size();
+                }
+                entry = new Entry(identityLength);
+                entries.put(key, entry);
+            }
+            storedBytes -= entry.size();
+            entry.setVariant(encoding, compressed);
+            storedBytes += entry.size();
+            
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (storedBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> evicted = eldest.next();
+                storedBytes -= evicted.getValue().size();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+    
+    /**
+     * Removes every stored body
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            storedBytes = 0;
+        }
+    }
+    
+    /**
+     * Counter snapshot for dashboards
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long in = bytesIn.sum();
+        long out = bytesOut.sum();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("bytesIn", in);
+        stats.put("bytesOut", out);
+        stats.put("bytesSaved", in - out);
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("storedBytes", storedBytes);
+        }
+        return stats;
+    }
+    
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getBytesSaved() { return bytesIn.sum() - bytesOut.sum(); }
+    public long getMaxBytes() { return maxBytes; }
+    
+    /**
+     * Compresses a body with the given content coding
+     */
+    static byte[] compress(String encoding, byte[] body, int length) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, length / 4));
+        try (OutputStream out = open(encoding, buffer)) {
+            out.write(body, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+    
+    private static OutputStream open(String encoding, OutputStream target) throws IOException {
+        switch (encoding) {
+            case GZIP:
+                return new GZIPOutputStream(target, 8192);
+            case DEFLATE:
+                // HTTP "deflate" is the zlib format, i.e. Deflater without nowrap
+                return new DeflaterOutputStream(target, new Deflater(Deflater.DEFAULT_COMPRESSION), 8192) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        def.end();
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+        }
+    }
+    
+    /**
+     * Picks the best supported content coding from an Accept-Encoding header,
+     * honoring q-values and "*". Prefers gzip over deflate on equal weight.
+     *
+     * @return "gzip", "deflate" or null for identity
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals(DEFLATE)) {
+                deflate = q;
+            } else if (coding.equals("*")) {
+                wildcard = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+    
+    /**
+     * Stored variants of one identity body
+     */
+    private static final class Entry {
+        private final int identityLength;
+        private byte[] gzip;
+        private byte[] deflate;
+        
+        private Entry(int identityLength) {
+            this.identityLength = identityLength;
+        }
+        
+        private byte[] variant(String encoding) {
+            return GZIP.equals(encoding) ? gzip : deflate;
+        }
+        
+        private void setVariant(String encoding, byte[] compressed) {
+            if (GZIP.equals(encoding)) {
+                gzip = compressed;
+            } else {
+                deflate = compressed;
+            }
+        }
+        
+        private long size() {
+            return (gzip != null ? gzip.length : 0) + (deflate != null ? deflate.length : 0);
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.example;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Response compression backed by a CompressedResponseStore.
+ * Buffers compressible responses, picks gzip or deflate from Accept-Encoding and
+ * serves the stored compressed variant when the body's ETag has been seen before.
+ * Bodies below the minimum size, non-200 responses and bodies that outgrow the
+ * capture buffer go out uncompressed.
+ *
+ * Compressed variants get their own ETag ("tag-gzip"); the suffix is stripped
+ * from conditional request headers so the application keeps answering 304.
+ */
+public class CompressionFilter implements Filter {
+    
+    /** Init parameter: minimum body size worth compressing, in bytes */
+    public static final String MIN_SIZE_PARAM = "compression.min.size";
+    /** Init parameter: upper bound for all stored compressed variants, in bytes */
+    public static final String STORE_MAX_BYTES_PARAM = "compression.store.max.bytes";
+    /** Init parameter: largest body buffered for compression; larger bodies stream through */
+    public static final String MAX_BUFFER_PARAM = "compression.max.buffer";
+    /** Init parameter: comma-separated compressible MIME types */
+    public static final String MIME_TYPES_PARAM = "compression.mime.types";
+    
+    private static final String DEFAULT_MIME_TYPES =
+        "text/html,text/plain,text/css,text/xml,application/json,application/javascript,application/xml";
+    
+    private CompressedResponseStore store;
+    private Set<String> mimeTypes;
+    private int maxBuffer;
+    private ServletContext servletContext;
+    
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        int minSize = getIntParameter(config, MIN_SIZE_PARAM, CompressedResponseStore.DEFAULT_MIN_SIZE);
+        long maxBytes = getLongParameter(config, STORE_MAX_BYTES_PARAM, CompressedResponseStore.DEFAULT_MAX_BYTES);
+        this.maxBuffer = getIntParameter(config, MAX_BUFFER_PARAM, 1024 * 1024);
+        this.store = new CompressedResponseStore(minSize, maxBytes);
+        
+        String types = config.getInitParameter(MIME_TYPES_PARAM);
+        this.mimeTypes = new HashSet<>(Arrays.asList(
+            (types != null ? types : DEFAULT_MIME_TYPES).toLowerCase(Locale.ROOT).split("\\s*,\\s*")));
+        
+        this.servletContext = config.getServletContext();
+        MetricsRegistry.forContext(servletContext).register("compression", store::getStats);
+    }
+    
+    /**
+     * Drops the stored variants so a stopped or redeployed application does not keep
+     * them reachable through the metrics registry
+     */
+    @Override
+    public void destroy() {
+        if (servletContext != null) {
+            MetricsRegistry.forContext(servletContext).unregister("compression");
+        }
+        if (store != null) {
+            store.clear();
+        }
+    }
+    
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(req instanceof HttpServletRequest) || !(res instanceof HttpServletResponse)) {
+            chain.doFilter(req, res);
+            return;
+        }
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        
+        String encoding = CompressedResponseStore.negotiate(request.getHeader("Accept-Encoding"));
+        if (encoding == null || "HEAD".equals(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        String path = request.getQueryString() == null
+            ? request.getRequestURI()
+            : request.getRequestURI() + '?' + request.getQueryString();
+        CapturingResponse capture = new CapturingResponse(response, path, encoding,
+                                                          request.getHeader("If-None-Match"));
+        EncodingAwareRequest wrappedRequest = new EncodingAwareRequest(request);
+        chain.doFilter(wrappedRequest, capture);
+        
+        // Async requests finish when the application closes the output stream,
+        // which it also does for a bodiless 304
+        if (!wrappedRequest.isAsyncStarted()) {
+            capture.finish();
+        }
+    }
+    
+    /**
+     * Gets the store backing this filter
+     */
+    public CompressedResponseStore getStore() {
+        return store;
+    }
+    
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int separator = contentType.indexOf(';');
+        String mimeType = (separator >= 0 ? contentType.substring(0, separator) : contentType)
+            .trim().toLowerCase(Locale.ROOT);
+        return mimeTypes.contains(mimeType);
+    }
+    
+    private static int getIntParameter(FilterConfig config, String name, int defaultValue)
+            throws ServletException {
+        String value = config.getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+    
+    private static long getLongParameter(FilterConfig config, String name, long defaultValue)
+            throws ServletException {
+        String value = config.getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+    
+    /**
+     * Appends the content coding to an entity tag: "abc" becomes "abc-gzip"
+     */
+    static String encodedEtag(String etag, String encoding) {
+        int quote = etag.lastIndexOf('"');
+        if (quote <= 0) {
+            return etag;
+        }
+        return etag.substring(0, quote) + '-' + encoding + etag.substring(quote);
+    }
+    
+    /**
+     * Removes content-coding suffixes from the entity tags of a conditional header
+     */
+    static String stripEncodingSuffixes(String header) {
+        if (header == null) {
+            return null;
+        }
+        return header.replace("-" + CompressedResponseStore.GZIP + "\"", "\"")
+                     .replace("-" + CompressedResponseStore.DEFLATE + "\"", "\"");
+    }
+    
+    /**
+     * Presents conditional headers with the identity entity tags the application issued
+     */
+    static final class EncodingAwareRequest extends HttpServletRequestWrapper {
+        
+        EncodingAwareRequest(HttpServletRequest request) {
+            super(request);
+        }
+        
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            if ("If-None-Match".equalsIgnoreCase(name) || "If-Match".equalsIgnoreCase(name)) {
+                return stripEncodingSuffixes(value);
+            }
+            return value;
+        }
+    }
+    
+    /**
+     * Buffers the body until the response is finished, then writes the identity
+     * or compressed representation to the wrapped response
+     */
+    final class CapturingResponse extends HttpServletResponseWrapper {
+        private final HttpServletResponse target;
+        private final String path;
+        private final String encoding;
+        private final String ifNoneMatch;
+        private final CaptureBuffer buffer = new CaptureBuffer();
+        private CaptureStream stream;
+        private PrintWriter writer;
+        private boolean passthrough;
+        private boolean finished;
+        
+        CapturingResponse(HttpServletResponse target, String path, String encoding, String ifNoneMatch) {
+            super(target);
+            this.target = target;
+            this.path = path;
+            this.encoding = encoding;
+            this.ifNoneMatch = ifNoneMatch;
+        }
+        
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            if (stream == null) {
+                stream = new CaptureStream();
+            }
+            return stream;
+        }
+        
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (stream != null && writer == null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            if (writer == null) {
+                stream = new CaptureStream();
+                Charset charset = Charset.forName(getCharacterEncoding());
+                writer = new PrintWriter(new OutputStreamWriter(stream, charset));
+            }
+            return writer;
+        }
+        
+        @Override
+        public void setContentLength(int len) {
+            // Decided when the body is finished
+        }
+        
+        @Override
+        public void setContentLengthLong(long len) {
+            // Decided when the body is finished
+        }
+        
+        @Override
+        public void flushBuffer() throws IOException {
+            if (passthrough) {
+                target.flushBuffer();
+            }
+        }
+        
+        @Override
+        public void resetBuffer() {
+            if (!passthrough) {
+                buffer.reset();
+            }
+            super.resetBuffer();
+        }
+        
+        @Override
+        public void reset() {
+            if (!passthrough) {
+                buffer.reset();
+            }
+            super.reset();
+        }
+        
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            if (finished) {
+                throw new IOException("Response already finished");
+            }
+            if (!passthrough && buffer.size() + length > maxBuffer) {
+                startPassthrough();
+            }
+            if (passthrough) {
+                target.getOutputStream().write(bytes, offset, length);
+            } else {
+                buffer.write(bytes, offset, length);
+            }
+        }
+        
+        private void startPassthrough() throws IOException {
+            passthrough = true;
+            store.recordSkipped();
+            buffer.writeTo(target.getOutputStream());
+            buffer.reset();
+        }
+        
+        /**
+         * Writes the buffered body to the wrapped response, compressing it if possible
+         */
+        synchronized void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            if (writer != null) {
+                writer.flush();
+            }
+            finished = true;
+            if (passthrough) {
+                return;
+            }
+            
+            int length = buffer.size();
+            String etag = target.getHeader("ETag");
+            if (target.getStatus() == HttpServletResponse.SC_NOT_MODIFIED && etag != null
+                    && ifNoneMatch != null && ifNoneMatch.contains(encodedEtag(etag, encoding))) {
+                // The client validated its compressed variant, so confirm that tag
+                target.setHeader("ETag", encodedEtag(etag, encoding));
+                target.addHeader("Vary", "Accept-Encoding");
+            }
+            if (length == 0 || target.getStatus() != HttpServletResponse.SC_OK
+                    || target.containsHeader("Content-Encoding") || !isCompressible(target.getContentType())) {
+                writeIdentity(length);
+                return;
+            }
+            
+            target.addHeader("Vary", "Accept-Encoding");
+            if (!store.isWorthCompressing(length)) {
+                store.recordSkipped();
+                writeIdentity(length);
+                return;
+            }
+            
+            byte[] compressed = etag != null
+                ? store.getOrCompress(path, etag, encoding, buffer.array(), length)
+                : store.compressUncached(encoding, buffer.array(), length);
+            
+            target.setHeader("Content-Encoding", encoding);
+            if (etag != null) {
+                target.setHeader("ETag", encodedEtag(etag, encoding));
+            }
+            target.setContentLength(compressed.length);
+            target.getOutputStream().write(compressed);
+        }
+        
+        private void writeIdentity(int length) throws IOException {
+            if (length > 0) {
+                target.setContentLength(length);
+                buffer.writeTo(target.getOutputStream());
+            }
+        }
+        
+        /**
+         * Output stream handed to the application; closing it finishes the response
+         */
+        private final class CaptureStream extends ServletOutputStream {
+            
+            @Override
+            public void write(int b) throws IOException {
+                CapturingResponse.this.write(new byte[] {(byte) b}, 0, 1);
+            }
+            
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                CapturingResponse.this.write(bytes, offset, length);
+            }
+            
+            @Override
+            public void close() throws IOException {
+                finish();
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException("Non-blocking writes are not supported while compressing");
+            }
+        }
+    }
+    
+    /**
+     * Growable byte buffer exposing its backing array, so bodies are not copied
+     * again before compression
+     */
+    private static final class CaptureBuffer {
+        private byte[] bytes = new byte[8192];
+        private int size;
+        
+        void write(byte[] source, int offset, int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+        
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+        
+        void reset() {
+            size = 0;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        byte[] array() {
+            return bytes;
+        }
+    }
+}
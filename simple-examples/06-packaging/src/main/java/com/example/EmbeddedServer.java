@@ -0,0 +1,258 @@
+package com.example;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.startup.Constants;
+import org.apache.catalina.startup.ContextConfig;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Self-contained launcher used by the executable profile: boots the web
+ * application (the servlets and filters of web.xml plus the static webapp
+ * content) in an embedded Tomcat, so the JAR runs without an external container.
+ *
+ * Settings are read from defaults, then an optional properties file (first
+ * argument or -Dserver.config=...), then system properties:
+ * - server.port, server.context.path, server.base.dir
+ * - server.accept.count: connections the OS queues while the acceptor is busy
+ * - server.max.connections: connections the acceptor keeps open at once
+ * - server.threads.max, server.threads.min.spare: request worker pool
+ * - server.queue.max: requests waiting for a worker before new ones are refused
+ * - server.connection.timeout.millis
+ * - server.webapp.dir: serve this directory instead of the packaged webapp/ resources
+ */
+public class EmbeddedServer {
+    
+    public static final String CONFIG_PROPERTY = "server.config";
+    public static final String PORT = "server.port";
+    public static final String CONTEXT_PATH = "server.context.path";
+    public static final String BASE_DIR = "server.base.dir";
+    public static final String ACCEPT_COUNT = "server.accept.count";
+    public static final String MAX_CONNECTIONS = "server.max.connections";
+    public static final String MAX_THREADS = "server.threads.max";
+    public static final String MIN_SPARE_THREADS = "server.threads.min.spare";
+    public static final String MAX_QUEUE = "server.queue.max";
+    public static final String CONNECTION_TIMEOUT = "server.connection.timeout.millis";
+    public static final String WEBAPP_DIR = "server.webapp.dir";
+    
+    /** Classpath location of web.xml and the static content in the executable JAR */
+    static final String WEBAPP_RESOURCE = "webapp";
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedServer.class);
+    
+    private final Properties settings;
+    private Tomcat tomcat;
+    private Connector connector;
+    private StandardThreadExecutor executor;
+    
+    public EmbeddedServer(Properties settings) {
+        this.settings = settings;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        EmbeddedServer server = new EmbeddedServer(loadSettings(args.length > 0 ? args[0] : null));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stopQuietly, "embedded-server-shutdown"));
+        logger.info("Started on port {} in {} ms (JVM uptime)",
+                    server.getPort(), ManagementFactory.getRuntimeMXBean().getUptime());
+        server.tomcat.getServer().await();
+    }
+    
+    /**
+     * Defaults, overridden by the properties file (if any), overridden by system properties
+     */
+    static Properties loadSettings(String file) throws IOException {
+        Properties settings = new Properties();
+        settings.setProperty(PORT, "8080");
+        settings.setProperty(CONTEXT_PATH, "");
+        settings.setProperty(ACCEPT_COUNT, "100");
+        settings.setProperty(MAX_CONNECTIONS, "10000");
+        settings.setProperty(MAX_THREADS, "200");
+        settings.setProperty(MIN_SPARE_THREADS, "10");
+        settings.setProperty(MAX_QUEUE, String.valueOf(Integer.MAX_VALUE));
+        settings.setProperty(CONNECTION_TIMEOUT, "20000");
+        
+        String config = file != null ? file : System.getProperty(CONFIG_PROPERTY);
+        if (config != null && !config.trim().isEmpty()) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(config.trim()), StandardCharsets.UTF_8)) {
+                settings.load(reader);
+            }
+        }
+        for (String key : settings.stringPropertyNames()) {
+            String value = System.getProperty(key);
+            if (value != null) {
+                settings.setProperty(key, value);
+            }
+        }
+        for (String key : new String[] {BASE_DIR, WEBAPP_DIR}) {
+            String value = System.getProperty(key);
+            if (value != null) {
+                settings.setProperty(key, value);
+            }
+        }
+        return settings;
+    }
+    
+    /**
+     * Starts the container and every load-on-startup servlet; returns once the port is open
+     */
+    public void start() throws IOException, LifecycleException {
+        String baseValue = settings.getProperty(BASE_DIR);
+        Path baseDir = baseValue != null ? Paths.get(baseValue) : Files.createTempDirectory("embedded-server");
+        Files.createDirectories(baseDir);
+        
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        
+        executor = new StandardThreadExecutor();
+        executor.setName("embedded-server-exec");
+        executor.setNamePrefix("http-exec-");
+        executor.setMaxThreads(getInt(MAX_THREADS));
+        executor.setMinSpareThreads(getInt(MIN_SPARE_THREADS));
+        executor.setMaxQueueSize(getInt(MAX_QUEUE));
+        tomcat.getService().addExecutor(executor);
+        
+        connector = new Connector("HTTP/1.1");
+        connector.setPort(getInt(PORT));
+        connector.setProperty("acceptCount", settings.getProperty(ACCEPT_COUNT));
+        connector.setProperty("maxConnections", settings.getProperty(MAX_CONNECTIONS));
+        connector.setProperty("connectionTimeout", settings.getProperty(CONNECTION_TIMEOUT));
+        ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor);
+        tomcat.setConnector(connector);
+        
+        // No JSP engine on the classpath, so skip Tomcat's default web.xml (it maps *.jsp)
+        // and add only the static file servlet it would have provided
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+        ContextConfig contextConfig = new ContextConfig();
+        contextConfig.setDefaultWebXml(Constants.NoDefaultWebXml);
+        Context context = tomcat.addWebapp(tomcat.getHost(), settings.getProperty(CONTEXT_PATH),
+                                           resolveDocBase(baseDir).toString(), contextConfig);
+        // Application classes come from this class loader (inside the executable JAR
+        // it is Spring Boot's), not the system class loader Tomcat uses by default
+        context.setParentClassLoader(EmbeddedServer.class.getClassLoader());
+        Tomcat.addDefaultMimeTypeMappings(context);
+        Wrapper defaultServlet = Tomcat.addServlet(context, "default", "org.apache.catalina.servlets.DefaultServlet");
+        defaultServlet.setLoadOnStartup(1);
+        context.addServletMappingDecoded("/", "default");
+        
+        // Every servlet and filter is declared in web.xml; scanning the classpath for
+        // annotations, fragments and TLDs would only cost startup time
+        StandardJarScanner jarScanner = new StandardJarScanner();
+        jarScanner.setScanClassPath(false);
+        jarScanner.setScanManifest(false);
+        context.setJarScanner(jarScanner);
+        
+        tomcat.start();
+    }
+    
+    /**
+     * Uses server.webapp.dir or webapp/ as a directory when available; from inside
+     * a JAR the webapp/ entries are extracted below the base directory first
+     */
+    private Path resolveDocBase(Path baseDir) throws IOException {
+        String configured = settings.getProperty(WEBAPP_DIR);
+        if (configured != null) {
+            return Paths.get(configured).toAbsolutePath();
+        }
+        URL webXml = EmbeddedServer.class.getClassLoader().getResource(WEBAPP_RESOURCE + "/WEB-INF/web.xml");
+        if (webXml == null) {
+            throw new IOException("No " + WEBAPP_RESOURCE + "/WEB-INF/web.xml on the classpath; build with -Pexecutable"
+                                  + " or set " + WEBAPP_DIR);
+        }
+        if ("file".equals(webXml.getProtocol())) {
+            try {
+                return Paths.get(webXml.toURI()).getParent().getParent();
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid webapp location " + webXml, e);
+            }
+        }
+        
+        Path docBase = baseDir.resolve(WEBAPP_RESOURCE);
+        JarURLConnection connection = (JarURLConnection) webXml.openConnection();
+        connection.setUseCaches(false);
+        String prefix = WEBAPP_RESOURCE + "/";
+        String entryName = connection.getEntryName();
+        if (entryName != null && entryName.endsWith("WEB-INF/web.xml")) {
+            prefix = entryName.substring(0, entryName.length() - "WEB-INF/web.xml".length());
+        }
+        try (JarFile jar = connection.getJarFile()) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().startsWith(prefix)) {
+                    continue;
+                }
+                Path target = docBase.resolve(entry.getName().substring(prefix.length())).normalize();
+                if (!target.startsWith(docBase)) {
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                try (InputStream in = jar.getInputStream(entry)) {
+                    Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        return docBase;
+    }
+    
+    private int getInt(String key) {
+        String value = settings.getProperty(key);
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+        }
+    }
+    
+    /**
+     * Port the connector is bound to (useful with server.port=0)
+     */
+    public int getPort() {
+        return connector.getLocalPort();
+    }
+    
+    Connector getConnector() {
+        return connector;
+    }
+    
+    StandardThreadExecutor getExecutor() {
+        return executor;
+    }
+    
+    public void stop() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+    
+    private void stopQuietly() {
+        try {
+            stop();
+        } catch (LifecycleException e) {
+            logger.warn("Error stopping embedded server", e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Resolves environment settings such as upload.directory and data.directory,
+ * the file locations defined by the 08-profiles environment files.
+ * A key is looked up in this order:
+ * 1. Servlet init parameter
+ * 2. System property (e.g. -Dupload.directory=/srv/uploads)
+ * 3. The environment properties file named by "environment.file" (init parameter,
+ *    system property or context parameter), e.g. environments/production.properties
+ * 4. Context parameter in web.xml
+ *
+ * The fallback directories below java.io.tmpdir have predictable names in a
+ * directory every local user can write to. Another user could create them first,
+ * or plant a symbolic link, and so choose where uploads land and what downloads
+ * serve. They are therefore created readable by their owner only, and an existing
+ * one is only used if it is not a symbolic link, belongs to the current user and
+ * grants nothing to group or others.
+ */
+public class EnvironmentSettings {
+    
+    /** Path of an environment properties file, as found in 08-profiles/src/main/resources/environments */
+    public static final String ENVIRONMENT_FILE = "environment.file";
+    
+    private static final Set<PosixFilePermission> OWNER_ONLY = EnumSet.of(
+        PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+    
+    private static final Logger logger = LoggerFactory.getLogger(EnvironmentSettings.class);
+    
+    private final ServletConfig config;
+    private final ServletContext context;
+    private final Properties environment;
+    
+    public EnvironmentSettings(ServletConfig config) {
+        this.config = config;
+        this.context = config.getServletContext();
+        this.environment = loadEnvironmentFile();
+    }
+    
+    /**
+     * Gets a setting, or the default when no source defines it
+     */
+    public String get(String key, String defaultValue) {
+        String value = config.getInitParameter(key);
+        if (isBlank(value)) {
+            value = System.getProperty(key);
+        }
+        if (isBlank(value)) {
+            value = environment.getProperty(key);
+        }
+        if (isBlank(value)) {
+            value = context.getInitParameter(key);
+        }
+        return isBlank(value) ? defaultValue : value.trim();
+    }
+    
+    /**
+     * Gets a directory setting. Without a configured value, a private directory
+     * named after the key below java.io.tmpdir/packaging-demo is used.
+     *
+     * @throws ServletException when the fallback directory cannot be created or
+     *         exists but could have been prepared by another user
+     */
+    public Path getDirectory(String key) throws ServletException {
+        String value = get(key, null);
+        if (value != null) {
+            return Paths.get(value);
+        }
+        Path shared = Paths.get(System.getProperty("java.io.tmpdir"), "packaging-demo");
+        Path directory = shared.resolve(key.replace(".directory", ""));
+        try {
+            createPrivateDirectory(shared);
+            createPrivateDirectory(directory);
+        } catch (IOException e) {
+            throw new ServletException("Cannot use " + directory + " for " + key + " (" + e.getMessage()
+                                       + "); configure " + key + " instead", e);
+        }
+        return directory;
+    }
+    
+    /**
+     * Creates a directory for the owner only, or checks an existing one
+     *
+     * @throws IOException when it cannot be created or must not be trusted
+     */
+    static void createPrivateDirectory(Path directory) throws IOException {
+        if (Files.notExists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                if (isPosix(directory)) {
+                    Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                } else {
+                    Files.createDirectory(directory);
+                }
+                return;
+            } catch (FileAlreadyExistsException e) {
+                // Created by someone else in the meantime; check it like any other
+            }
+        }
+        String problem = problemWithDirectory(directory);
+        if (problem != null) {
+            throw new IOException(directory + " " + problem);
+        }
+    }
+    
+    /**
+     * @return why an existing directory must not be trusted, or null
+     */
+    private static String problemWithDirectory(Path directory) throws IOException {
+        BasicFileAttributes attributes =
+            Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory()) {
+            return attributes.isSymbolicLink() ? "is a symbolic link" : "is not a directory";
+        }
+        if (Files.getFileAttributeView(directory, FileOwnerAttributeView.class, LinkOption.NOFOLLOW_LINKS) != null) {
+            UserPrincipal owner = Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS);
+            UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!owner.equals(user)) {
+                return "belongs to " + owner.getName();
+            }
+        }
+        if (isPosix(directory)) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS);
+            if (!OWNER_ONLY.containsAll(permissions)) {
+                return "has permissions " + PosixFilePermissions.toString(permissions) + " instead of owner-only";
+            }
+        }
+        return null;
+    }
+    
+    private static boolean isPosix(Path directory) {
+        return directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+    
+    private Properties loadEnvironmentFile() {
+        Properties properties = new Properties();
+        String file = config.getInitParameter(ENVIRONMENT_FILE);
+        if (isBlank(file)) {
+            file = System.getProperty(ENVIRONMENT_FILE);
+        }
+        if (isBlank(file)) {
+            file = context.getInitParameter(ENVIRONMENT_FILE);
+        }
+        if (isBlank(file)) {
+            return properties;
+        }
+        
+        Path path = Paths.get(file.trim());
+        try (InputStream stream = Files.newInputStream(path)) {
+            properties.load(stream);
+            logger.info("Loaded environment settings from {}", path);
+        } catch (IOException e) {
+            logger.warn("Could not load environment file {}", path, e);
+        }
+        return properties;
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
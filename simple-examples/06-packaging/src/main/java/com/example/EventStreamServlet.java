@@ -0,0 +1,120 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Server-sent events endpoint for live metrics, the push alternative to polling
+ * /metrics or re-rendering /packaging. GET /events opens a text/event-stream that
+ * starts with a "snapshot" event of every MetricsRegistry value (flattened to
+ * "source.key") and continues with coalesced "update" events holding only what
+ * changed. See MetricsEventStream for batching and slow-consumer handling.
+ *
+ * Each subscriber is an async request written with non-blocking I/O, so the
+ * number of open streams is bounded by the connector's maxConnections (raise it
+ * to at least 10000 for 10k subscribers) rather than by threads.
+ */
+@WebServlet(name = "EventStreamServlet", urlPatterns = {"/events"}, asyncSupported = true, loadOnStartup = 1)
+public class EventStreamServlet extends HttpServlet {
+    
+    /** Init parameter: milliseconds between snapshots; changes within one interval form one event */
+    public static final String INTERVAL_PARAM = "events.interval.millis";
+    /** Init parameter: longest silence before a keep-alive comment, in milliseconds */
+    public static final String KEEP_ALIVE_PARAM = "events.keepalive.millis";
+    /** Init parameter: events queued per subscriber before its backlog is replaced by a snapshot */
+    public static final String MAX_PENDING_PARAM = "events.max.pending";
+    /** Init parameter: milliseconds a subscriber may make no write progress before it is dropped */
+    public static final String MAX_STALL_PARAM = "events.max.stall.millis";
+    /** Init parameter: comma-separated counters ("source.key") that also get a per-second rate */
+    public static final String RATE_KEYS_PARAM = "events.rate.keys";
+    
+    static final String DEFAULT_RATE_KEYS =
+        "packaging.pageRequests,packaging.jsonRequests,admission.admitted,downloads.requests,batch.items";
+    
+    private static final Logger logger = LoggerFactory.getLogger(EventStreamServlet.class);
+    
+    private MetricsEventStream stream;
+    
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        MetricsRegistry registry = MetricsRegistry.forContext(getServletContext());
+        String rateKeys = getInitParameter(RATE_KEYS_PARAM);
+        List<String> keys = Arrays.stream((rateKeys == null ? DEFAULT_RATE_KEYS : rateKeys).split(","))
+            .map(String::trim)
+            .filter(key -> !key.isEmpty())
+            .collect(Collectors.toList());
+        
+        this.stream = new MetricsEventStream(() -> {
+            // The stream's own counters would change on every tick and defeat coalescing
+            Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>(registry.snapshot());
+            snapshot.remove("events");
+            return snapshot;
+        }, keys,
+            getLongParameter(KEEP_ALIVE_PARAM, 15_000),
+            (int) getLongParameter(MAX_PENDING_PARAM, 32),
+            getLongParameter(MAX_STALL_PARAM, 30_000),
+            System::nanoTime);
+        long intervalMillis = Math.max(1, getLongParameter(INTERVAL_PARAM, 1000));
+        stream.start(intervalMillis);
+        registry.register("events", stream::getStats);
+        logger.info("Publishing metrics events every {} ms", intervalMillis);
+    }
+    
+    @Override
+    public void destroy() {
+        MetricsRegistry.forContext(getServletContext()).unregister("events");
+        stream.close();
+        super.destroy();
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!request.isAsyncSupported()) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Async support required");
+            return;
+        }
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        // Keeps reverse proxies such as nginx from buffering the stream
+        response.setHeader("X-Accel-Buffering", "no");
+        
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        stream.subscribe(asyncContext);
+    }
+    
+    /**
+     * Gets the stream backing this servlet
+     */
+    public MetricsEventStream getStream() {
+        return stream;
+    }
+    
+    private long getLongParameter(String name, long defaultValue) throws ServletException {
+        String value = getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves files below the data directory (data.directory, see EnvironmentSettings)
+ * with validators, conditional requests and byte ranges, including multipart/byteranges.
+ *
+ * A single region is zero-copy only when the connector's sendfile support takes it
+ * (Tomcat with sendfile enabled): the servlet hands over the file region and writes
+ * nothing itself. Otherwise, and for every multipart/byteranges body, the region goes
+ * through FileChannel.transferTo into a channel over the servlet output stream; that
+ * is a copy through heap buffers (the JDK's transfer buffer and the connector's
+ * output buffer), only without loading the whole file.
+ */
+@WebServlet(name = "FileDownloadServlet", urlPatterns = {"/files/*"})
+public class FileDownloadServlet extends HttpServlet {
+    
+    /** Setting (see EnvironmentSettings): directory files are served from */
+    public static final String DATA_DIRECTORY = "data.directory";
+    /** Init parameter: "true" (default) to use the container's sendfile support when available */
+    public static final String SENDFILE_PARAM = "download.sendfile";
+    /** Init parameter: most ranges honoured in one request; more are answered with the full file */
+    public static final String MAX_RANGES_PARAM = "download.max.ranges";
+    
+    public static final int DEFAULT_MAX_RANGES = 16;
+    
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    private static final Logger logger = LoggerFactory.getLogger(FileDownloadServlet.class);
+    
+    private Path directory;
+    private boolean sendfileEnabled;
+    private int maxRanges;
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rangeRequests = new LongAdder();
+    private final LongAdder multiRangeRequests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder preconditionFailed = new LongAdder();
+    private final LongAdder unsatisfiable = new LongAdder();
+    private final LongAdder sendfileTransfers = new LongAdder();
+    private final LongAdder channelTransfers = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        this.directory = new EnvironmentSettings(getServletConfig()).getDirectory(DATA_DIRECTORY)
+            .toAbsolutePath().normalize();
+        this.sendfileEnabled = !"false".equalsIgnoreCase(getInitParameter(SENDFILE_PARAM));
+        
+        String ranges = getInitParameter(MAX_RANGES_PARAM);
+        try {
+            this.maxRanges = ranges == null || ranges.trim().isEmpty()
+                ? DEFAULT_MAX_RANGES : Integer.parseInt(ranges.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + MAX_RANGES_PARAM + ": " + ranges, e);
+        }
+        
+        MetricsRegistry.forContext(getServletContext()).register("downloads", this::getStats);
+        logger.info("Serving downloads from {}", directory);
+    }
+    
+    @Override
+    public void destroy() {
+        MetricsRegistry.forContext(getServletContext()).unregister("downloads");
+        super.destroy();
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        serve(request, response, true);
+    }
+    
+    @Override
+    protected void doHead(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        serve(request, response, false);
+    }
+    
+    private void serve(HttpServletRequest request, HttpServletResponse response, boolean sendBody)
+            throws IOException {
+        requests.increment();
+        Path file = resolve(request.getPathInfo());
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        long length = attributes.size();
+        // HTTP dates have second precision; validators must agree with the header
+        long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Cache-Control", "no-cache");
+        
+        if (!checkPreconditions(request, response, etag, lastModified)) {
+            return;
+        }
+        
+        String contentType = getServletContext().getMimeType(file.getFileName().toString());
+        if (contentType == null) {
+            contentType = "application/octet-stream";
+        }
+        
+        List<ByteRange> ranges = null;
+        if (ifRangeMatches(request.getHeader("If-Range"), etag, lastModified)) {
+            ranges = ByteRange.parse(request.getHeader("Range"), length, maxRanges);
+        }
+        
+        if (ranges == null) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (sendBody) {
+                sendRegion(request, response, file, 0, length);
+            }
+        } else if (ranges.isEmpty()) {
+            unsatisfiable.increment();
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        } else if (ranges.size() == 1) {
+            rangeRequests.increment();
+            ByteRange range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader("Content-Range", range.toContentRange(length));
+            response.setContentLengthLong(range.getLength());
+            if (sendBody) {
+                sendRegion(request, response, file, range.getStart(), range.getLength());
+            }
+        } else {
+            rangeRequests.increment();
+            multiRangeRequests.increment();
+            sendMultipart(response, file, contentType, length, ranges, sendBody);
+        }
+    }
+    
+    /**
+     * Maps the request path onto a file, refusing anything that escapes the data
+     * directory. The lexical check catches "..", the real paths catch symbolic links
+     * inside the directory that point outside it.
+     *
+     * @return the real path of the file, or null when it is missing or outside
+     */
+    private Path resolve(String pathInfo) {
+        if (pathInfo == null || pathInfo.equals("/") || pathInfo.indexOf('\0') >= 0) {
+            return null;
+        }
+        Path file = directory.resolve(pathInfo.substring(1)).normalize();
+        if (!file.startsWith(directory) || file.equals(directory)) {
+            return null;
+        }
+        try {
+            Path real = file.toRealPath();
+            Path root = directory.toRealPath();
+            return real.startsWith(root) && !real.equals(root) ? real : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Evaluates If-Match, If-Unmodified-Since, If-None-Match and If-Modified-Since
+     * in the order of RFC 7232 section 6
+     *
+     * @return true when the request should proceed
+     */
+    private boolean checkPreconditions(HttpServletRequest request, HttpServletResponse response,
+                                       String etag, long lastModified) throws IOException {
+        String ifMatch = request.getHeader("If-Match");
+        if (ifMatch != null) {
+            if (!matchesAny(ifMatch, etag, false)) {
+                return fail(response);
+            }
+        } else {
+            long ifUnmodifiedSince = dateHeader(request, "If-Unmodified-Since");
+            if (ifUnmodifiedSince >= 0 && lastModified > ifUnmodifiedSince) {
+                return fail(response);
+            }
+        }
+        
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (matchesAny(ifNoneMatch, etag, true)) {
+                notModified.increment();
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return false;
+            }
+        } else {
+            long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+            if (ifModifiedSince >= 0 && lastModified <= ifModifiedSince) {
+                notModified.increment();
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean fail(HttpServletResponse response) throws IOException {
+        preconditionFailed.increment();
+        response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+        return false;
+    }
+    
+    /**
+     * A Range header only applies when If-Range is absent or still names the current
+     * representation: a strong ETag match or an exact Last-Modified date
+     */
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return value.equals(etag);
+        }
+        return parseDate(value) == lastModified;
+    }
+    
+    private static boolean matchesAny(String header, String etag, boolean weak) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (weak && tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static long dateHeader(HttpServletRequest request, String name) {
+        String value = request.getHeader(name);
+        return value == null ? -1 : parseDate(value);
+    }
+    
+    /**
+     * Parses an IMF-fixdate, or returns -1 so an unparseable date is ignored
+     */
+    private static long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Sends one contiguous region, through sendfile when the container offers it
+     */
+    private void sendRegion(HttpServletRequest request, HttpServletResponse response, Path file,
+                            long start, long length) throws IOException {
+        bytes.add(length);
+        if (sendfileEnabled && length > 0 && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the region straight from the page cache after the servlet returns
+            sendfileTransfers.increment();
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        channelTransfers.increment();
+        try (FileChannel channel = FileChannel.open(file)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            transfer(channel, start, length, out);
+        }
+    }
+    
+    /**
+     * Writes a multipart/byteranges body. The Content-Length is computed up front
+     * from the part headers, and each part body is transferred from the file channel;
+     * sendfile covers one region per response, so parts are always copied.
+     */
+    private void sendMultipart(HttpServletResponse response, Path file, String contentType, long length,
+                               List<ByteRange> ranges, boolean sendBody) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        byte[][] partHeaders = new byte[ranges.size()][];
+        long contentLength = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                              + "Content-Type: " + contentType + "\r\n"
+                              + "Content-Range: " + range.toContentRange(length) + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+            contentLength += partHeaders[i].length + range.getLength();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        contentLength += closing.length;
+        
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (!sendBody) {
+            return;
+        }
+        
+        channelTransfers.increment();
+        try (FileChannel channel = FileChannel.open(file)) {
+            ServletOutputStream stream = response.getOutputStream();
+            WritableByteChannel out = Channels.newChannel(stream);
+            for (int i = 0; i < ranges.size(); i++) {
+                ByteRange range = ranges.get(i);
+                stream.write(partHeaders[i]);
+                transfer(channel, range.getStart(), range.getLength(), out);
+                bytes.add(range.getLength());
+            }
+            stream.write(closing);
+        }
+    }
+    
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel out)
+            throws IOException {
+        while (count > 0) {
+            long transferred = channel.transferTo(position, count, out);
+            if (transferred <= 0) {
+                // The file shrank underneath us; the declared Content-Length can no longer be met
+                throw new EOFException("File ended before " + count + " remaining bytes were sent");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+    
+    /**
+     * Gets the directory files are served from
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Counter snapshot for dashboards
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.sum());
+        stats.put("rangeRequests", rangeRequests.sum());
+        stats.put("multiRangeRequests", multiRangeRequests.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("preconditionFailed", preconditionFailed.sum());
+        stats.put("unsatisfiable", unsatisfiable.sum());
+        stats.put("sendfileTransfers", sendfileTransfers.sum());
+        stats.put("channelTransfers", channelTransfers.sum());
+        stats.put("bytes", bytes.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs a workload in rounds until the JIT compiler has settled or a time budget
+ * runs out. A round counts as quiet when the JVM's accumulated compilation time
+ * grew by no more than the settle threshold during it; the warm-up ends after
+ * the configured number of consecutive quiet rounds. When the JVM does not
+ * report compilation time, rounds simply run until the budget is spent.
+ */
+public class JitWarmup {
+    
+    private final long budgetMillis;
+    private final int roundIterations;
+    private final int stableRounds;
+    private final long settleMillis;
+    private final LongSupplier compilationMillis;
+    private final LongSupplier clock;
+    
+    /**
+     * @param budgetMillis      longest time the warm-up may take
+     * @param roundIterations   workload runs per round
+     * @param stableRounds      consecutive quiet rounds that end the warm-up
+     * @param settleMillis      compilation time a round may add and still count as quiet
+     * @param compilationMillis accumulated JIT compilation time, negative when unknown
+     * @param clock             millisecond clock
+     */
+    public JitWarmup(long budgetMillis, int roundIterations, int stableRounds, long settleMillis,
+                     LongSupplier compilationMillis, LongSupplier clock) {
+        this.budgetMillis = budgetMillis;
+        this.roundIterations = Math.max(1, roundIterations);
+        this.stableRounds = Math.max(1, stableRounds);
+        this.settleMillis = settleMillis;
+        this.compilationMillis = compilationMillis;
+        this.clock = clock;
+    }
+    
+    /**
+     * Accumulated compilation time of this JVM, or -1 when it is not monitored
+     */
+    public static LongSupplier jvmCompilationTime() {
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        if (compiler == null || !compiler.isCompilationTimeMonitoringSupported()) {
+            return () -> -1L;
+        }
+        return compiler::getTotalCompilationTime;
+    }
+    
+    /**
+     * Runs the workload until compilation settles or the budget is spent.
+     * Exceptions thrown by the workload abort the warm-up.
+     */
+    public Result run(Runnable workload) {
+        long start = clock.getAsLong();
+        long compilationAtStart = compilationMillis.getAsLong();
+        long previous = compilationAtStart;
+        int quietRounds = 0;
+        int rounds = 0;
+        
+        while (clock.getAsLong() - start < budgetMillis) {
+            for (int i = 0; i < roundIterations; i++) {
+                workload.run();
+            }
+            rounds++;
+            
+            long compiled = compilationMillis.getAsLong();
+            if (compiled >= 0) {
+                quietRounds = compiled - previous <= settleMillis ? quietRounds + 1 : 0;
+                previous = compiled;
+                if (quietRounds >= stableRounds) {
+                    break;
+                }
+            }
+        }
+        
+        return new Result(rounds, (long) rounds * roundIterations, clock.getAsLong() - start,
+                          compilationAtStart < 0 ? -1 : previous - compilationAtStart,
+                          quietRounds >= stableRounds);
+    }
+    
+    /**
+     * Outcome of one warm-up
+     */
+    public static final class Result {
+        private final int rounds;
+        private final long iterations;
+        private final long elapsedMillis;
+        private final long compilationMillis;
+        private final boolean settled;
+        
+        private Result(int rounds, long iterations, long elapsedMillis, long compilationMillis, boolean settled) {
+            this.rounds = rounds;
+            this.iterations = iterations;
+            this.elapsedMillis = elapsedMillis;
+            this.compilationMillis = compilationMillis;
+            this.settled = settled;
+        }
+        
+        public int getRounds() { return rounds; }
+        public long getIterations() { return iterations; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public long getCompilationMillis() { return compilationMillis; }
+        /** False when the budget ran out before compilation settled */
+        public boolean isSettled() { return settled; }
+        
+        /**
+         * Fields for MetricsRegistry
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("rounds", rounds);
+            map.put("iterations", iterations);
+            map.put("elapsedMillis", elapsedMillis);
+            map.put("compilationMillis", compilationMillis);
+            map.put("settled", settled);
+            return map;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d rounds (%d iterations) in %d ms, %d ms compiling, %s",
+                                 rounds, iterations, elapsedMillis, compilationMillis,
+                                 settled ? "settled" : "budget exhausted");
+        }
+    }
+}
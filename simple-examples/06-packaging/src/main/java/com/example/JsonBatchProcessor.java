@@ -0,0 +1,363 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs PackagingDemo.processJson over a batch of documents in parallel.
+ * Documents are read one at a time from an NDJSON or JSON array body and handed
+ * to a ForkJoinPool as soon as they are complete. Results are written back as a
+ * JSON array in input order, each as {"index":n,"result":...} or
+ * {"index":n,"error":"..."}, so a bad document never fails the whole batch.
+ *
+ * At most "window" documents are in flight: once the window is full the reader
+ * waits for the oldest one, writes every finished result in order and flushes,
+ * so results stream out while the request body is still arriving and memory use
+ * does not grow with the batch size.
+ */
+public class JsonBatchProcessor {
+    
+    public static final int DEFAULT_MAX_ITEMS = 100_000;
+    public static final int DEFAULT_MAX_ITEM_BYTES = 1024 * 1024;
+    
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+        .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+        .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+        .build();
+    
+    private final PackagingDemo packagingDemo;
+    private final ForkJoinPool pool;
+    private final int window;
+    private final int maxItems;
+    private final int maxItemBytes;
+    
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder itemErrors = new LongAdder();
+    
+    /**
+     * @param pool         pool the documents are processed on
+     * @param window       documents in flight before the reader waits for the oldest
+     * @param maxItems     documents accepted per batch; the rest is answered with one error entry
+     * @param maxItemBytes largest single document
+     */
+    public JsonBatchProcessor(PackagingDemo packagingDemo, ForkJoinPool pool, int window,
+                              int maxItems, int maxItemBytes) {
+        this.packagingDemo = packagingDemo;
+        this.pool = pool;
+        this.window = Math.max(1, window);
+        this.maxItems = maxItems;
+        this.maxItemBytes = maxItemBytes;
+    }
+    
+    /**
+     * Processes a whole batch. The output stream is flushed but not closed.
+     *
+     * @param ndjson true for newline-delimited documents, false for a JSON array
+     */
+    public void process(InputStream input, boolean ndjson, OutputStream output) throws IOException {
+        batches.increment();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            Pipeline pipeline = new Pipeline(generator);
+            if (ndjson) {
+                readLines(input, pipeline);
+            } else {
+                readArray(input, pipeline);
+            }
+            pipeline.drain();
+            generator.writeEndArray();
+        }
+        output.flush();
+    }
+    
+    private void readLines(InputStream input, Pipeline pipeline) throws IOException {
+        byte[] chunk = new byte[16 * 1024];
+        LineBuffer line = new LineBuffer();
+        int read;
+        while ((read = input.read(chunk)) >= 0) {
+            int from = 0;
+            for (int i = 0; i < read; i++) {
+                if (chunk[i] == '\n') {
+                    line.append(chunk, from, i);
+                    if (!line.submitTo(pipeline)) {
+                        return;
+                    }
+                    from = i + 1;
+                }
+            }
+            line.append(chunk, from, read);
+        }
+        line.submitTo(pipeline);
+    }
+    
+    private void readArray(InputStream input, Pipeline pipeline) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                pipeline.fail("Expected a JSON array or NDJSON body");
+                return;
+            }
+            JsonStreamContext array = parser.getParsingContext();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    pipeline.fail("Unexpected end of array");
+                    return;
+                }
+                BoundedDocument document = new BoundedDocument(maxItemBytes);
+                boolean accepted;
+                try {
+                    try (JsonGenerator copy = JSON_FACTORY.createGenerator(document, JsonEncoding.UTF8)) {
+                        copy.copyCurrentStructure(parser);
+                    }
+                    accepted = pipeline.submit(document.toByteArray());
+                } catch (DocumentTooLargeException e) {
+                    // Read past the rest of the element without keeping it
+                    while (parser.getParsingContext() != array && parser.nextToken() != null) {
+                        // skip
+                    }
+                    accepted = pipeline.fail("Document exceeds " + maxItemBytes + " bytes");
+                }
+                if (!accepted) {
+                    return;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // A syntax error leaves no way to find the next element
+            pipeline.fail("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+    
+    private Result processOne(int index, byte[] document) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(document.length * 2);
+        try {
+            packagingDemo.processJson(new ByteArrayInputStream(document), output);
+            return Result.success(index, output.toString(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            return Result.failure(index, "Invalid JSON: " + e.getOriginalMessage());
+        } catch (IOException | RuntimeException e) {
+            return Result.failure(index, e.toString());
+        }
+    }
+    
+    /**
+     * Counter snapshot for dashboards
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches.sum());
+        stats.put("items", items.sum());
+        stats.put("itemErrors", itemErrors.sum());
+        stats.put("parallelism", pool.getParallelism());
+        stats.put("activeThreads", pool.getActiveThreadCount());
+        return stats;
+    }
+    
+    /**
+     * The in-flight window of one batch, owned by the request thread
+     */
+    private final class Pipeline {
+        private final JsonGenerator generator;
+        private final Deque<CompletableFuture<Result>> inFlight = new ArrayDeque<>();
+        private int next;
+        
+        private Pipeline(JsonGenerator generator) {
+            this.generator = generator;
+        }
+        
+        /**
+         * Queues a document for processing
+         *
+         * @return false once the batch has reached its item limit
+         */
+        boolean submit(byte[] document) throws IOException {
+            if (next >= maxItems) {
+                return fail("Batch exceeds " + maxItems + " documents");
+            }
+            int index = next++;
+            enqueue(CompletableFuture.supplyAsync(() -> processOne(index, document), pool));
+            return true;
+        }
+        
+        /**
+         * Records an error entry in order with the processed documents
+         *
+         * @return false when reading should stop
+         */
+        boolean fail(String message) throws IOException {
+            enqueue(CompletableFuture.completedFuture(Result.failure(next++, message)));
+            return next <= maxItems;
+        }
+        
+        private void enqueue(CompletableFuture<Result> result) throws IOException {
+            inFlight.addLast(result);
+            writeCompleted();
+            if (inFlight.size() >= window) {
+                generator.flush();
+                write(await(inFlight.removeFirst()));
+                writeCompleted();
+            }
+        }
+        
+        private void writeCompleted() throws IOException {
+            while (!inFlight.isEmpty() && inFlight.peekFirst().isDone()) {
+                write(await(inFlight.removeFirst()));
+            }
+        }
+        
+        void drain() throws IOException {
+            while (!inFlight.isEmpty()) {
+                if (!inFlight.peekFirst().isDone()) {
+                    generator.flush();
+                }
+                write(await(inFlight.removeFirst()));
+            }
+        }
+        
+        private Result await(CompletableFuture<Result> future) throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for batch results", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Batch item failed", e.getCause());
+            }
+        }
+        
+        private void write(Result result) throws IOException {
+            items.increment();
+            generator.writeStartObject();
+            generator.writeNumberField("index", result.index);
+            if (result.error == null) {
+                generator.writeFieldName("result");
+                generator.writeRawValue(result.output);
+            } else {
+                itemErrors.increment();
+                generator.writeStringField("error", result.error);
+            }
+            generator.writeEndObject();
+        }
+    }
+    
+    /**
+     * Collects one NDJSON line; bytes beyond the document limit are dropped and
+     * the line is reported as oversized
+     */
+    private final class LineBuffer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private boolean content;
+        private boolean oversized;
+        
+        void append(byte[] chunk, int from, int to) {
+            for (int i = from; i < to && !content; i++) {
+                byte b = chunk[i];
+                content = b != ' ' && b != '\t' && b != '\r';
+            }
+            int room = maxItemBytes - bytes.size();
+            if (to - from > room) {
+                oversized = true;
+            }
+            bytes.write(chunk, from, Math.max(0, Math.min(to - from, room)));
+        }
+        
+        /**
+         * Hands the line to the pipeline (blank lines are skipped) and starts a new one
+         *
+         * @return false when reading should stop
+         */
+        boolean submitTo(Pipeline pipeline) throws IOException {
+            boolean proceed = true;
+            if (oversized) {
+                proceed = pipeline.fail("Document exceeds " + maxItemBytes + " bytes");
+            } else if (content) {
+                proceed = pipeline.submit(bytes.toByteArray());
+            }
+            bytes.reset();
+            content = false;
+            oversized = false;
+            return proceed;
+        }
+    }
+    
+    /**
+     * Collects one array element and fails as soon as it passes the document limit,
+     * so an oversized element costs at most the limit plus one generator buffer
+     */
+    private static final class BoundedDocument extends OutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final int limit;
+        
+        BoundedDocument(int limit) {
+            this.limit = limit;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            reserve(1);
+            bytes.write(b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            reserve(len);
+            bytes.write(b, off, len);
+        }
+        
+        private void reserve(int length) throws DocumentTooLargeException {
+            if (length > limit - bytes.size()) {
+                throw new DocumentTooLargeException();
+            }
+        }
+        
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+    
+    private static final class DocumentTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+    
+    private static final class Result {
+        private final int index;
+        private final String output;
+        private final String error;
+        
+        private Result(int index, String output, String error) {
+            this.index = index;
+            this.output = output;
+            this.error = error;
+        }
+        
+        static Result success(int index, String output) {
+            return new Result(index, output, null);
+        }
+        
+        static Result failure(int index, String error) {
+            return new Result(index, null, error);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Batch endpoint for PackagingDemo.processJson.
+ * POST an NDJSON body (application/x-ndjson) or a JSON array (application/json)
+ * and receive a JSON array with one entry per document, in input order, streamed
+ * while the batch is processed. See JsonBatchProcessor for the result format.
+ */
+@WebServlet(name = "JsonBatchServlet", urlPatterns = {"/batch"})
+public class JsonBatchServlet extends HttpServlet {
+    
+    /** Init parameter: worker threads of the fork/join pool; defaults to the available processors */
+    public static final String PARALLELISM_PARAM = "batch.parallelism";
+    /** Init parameter: documents in flight per request; defaults to four per worker */
+    public static final String WINDOW_PARAM = "batch.window";
+    /** Init parameter: documents accepted per request */
+    public static final String MAX_ITEMS_PARAM = "batch.max.items";
+    /** Init parameter: largest single document in bytes */
+    public static final String MAX_ITEM_BYTES_PARAM = "batch.max.item.bytes";
+    
+    private static final Logger logger = LoggerFactory.getLogger(JsonBatchServlet.class);
+    
+    private ForkJoinPool pool;
+    private JsonBatchProcessor processor;
+    
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        int parallelism = getIntParameter(PARALLELISM_PARAM, Runtime.getRuntime().availableProcessors());
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.processor = new JsonBatchProcessor(new PackagingDemo(), pool,
+                                                getIntParameter(WINDOW_PARAM, 4 * pool.getParallelism()),
+                                                getIntParameter(MAX_ITEMS_PARAM, JsonBatchProcessor.DEFAULT_MAX_ITEMS),
+                                                getIntParameter(MAX_ITEM_BYTES_PARAM,
+                                                                JsonBatchProcessor.DEFAULT_MAX_ITEM_BYTES));
+        MetricsRegistry.forContext(getServletContext()).register("batch", processor::getStats);
+        logger.info("Processing JSON batches with parallelism {}", pool.getParallelism());
+    }
+    
+    @Override
+    public void destroy() {
+        MetricsRegistry.forContext(getServletContext()).unregister("batch");
+        pool.shutdown();
+        super.destroy();
+    }
+    
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String contentType = request.getContentType() == null
+            ? "" : request.getContentType().toLowerCase(Locale.ROOT);
+        boolean ndjson = contentType.startsWith("application/x-ndjson")
+            || contentType.startsWith("application/ndjson")
+            || contentType.startsWith("application/jsonl");
+        if (!ndjson && !contentType.startsWith("application/json")) {
+            response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                               "Expected application/x-ndjson or application/json");
+            return;
+        }
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        OutputStream out = response.getOutputStream();
+        processor.process(request.getInputStream(), ndjson, out);
+        out.close();
+    }
+    
+    /**
+     * Gets the processor backing this servlet
+     */
+    public JsonBatchProcessor getProcessor() {
+        return processor;
+    }
+    
+    private int getIntParameter(String name, int defaultValue) throws ServletException {
+        String value = getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * One shared producer of server-sent events for any number of subscribers.
+ * Every tick the producer takes one snapshot of its source, flattened to
+ * "source.key" values, and compares it with the previous one. All changes of
+ * the interval are coalesced into a single "update" event (absolute values, so
+ * applying one twice is harmless) that is serialized once and queued for every
+ * subscriber; when nothing changed, only a keep-alive comment is sent now and
+ * then. Configured counters additionally get a "...PerSecond" rate.
+ *
+ * Subscribers are written with non-blocking I/O (WriteListener), so an idle
+ * connection costs a queue and a socket but no thread. A subscriber whose queue
+ * reaches maxPending has its backlog discarded and is sent the latest full
+ * "snapshot" instead once it can take data again; one that makes no progress
+ * for maxStallMillis is disconnected.
+ */
+public class MetricsEventStream implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MetricsEventStream.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] KEEP_ALIVE = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PREAMBLE = "retry: 3000\n\n".getBytes(StandardCharsets.UTF_8);
+    
+    private final Supplier<Map<String, Map<String, Object>>> source;
+    private final Set<String> rateKeys;
+    private final long keepAliveNanos;
+    private final int maxPending;
+    private final long maxStallNanos;
+    private final LongSupplier clock;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+    
+    // Producer state, only touched under the tick lock
+    private Map<String, Object> current;
+    private final Map<String, Long> lastCounters = new HashMap<>();
+    private long lastTickNanos;
+    private long lastSendNanos;
+    private long sequence;
+    private volatile byte[] snapshotEvent;
+    
+    private final LongAdder events = new LongAdder();
+    private final LongAdder subscribed = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    
+    /**
+     * @param source          snapshot of named metric maps, e.g. MetricsRegistry::snapshot
+     * @param rateKeys        flattened counter keys ("source.key") to derive per-second rates for
+     * @param keepAliveMillis longest silence before a keep-alive comment is sent
+     * @param maxPending      queued events per subscriber before its backlog is replaced by a snapshot
+     * @param maxStallMillis  time a subscriber may stay without write progress before it is dropped
+     * @param clock           nanosecond clock, System::nanoTime outside tests
+     */
+    public MetricsEventStream(Supplier<Map<String, Map<String, Object>>> source, Collection<String> rateKeys,
+                              long keepAliveMillis, int maxPending, long maxStallMillis, LongSupplier clock) {
+        this.source = source;
+        this.rateKeys = Set.copyOf(rateKeys);
+        this.keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(keepAliveMillis);
+        this.maxPending = Math.max(1, maxPending);
+        this.maxStallNanos = TimeUnit.MILLISECONDS.toNanos(maxStallMillis);
+        this.clock = clock;
+    }
+    
+    /**
+     * Ticks every interval on a daemon thread until closed
+     */
+    public synchronized void start(long intervalMillis) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Event stream already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-event-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                // A failing metrics source must not end the schedule
+                logger.warn("Metrics event tick failed", e);
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Disconnects every subscriber and stops the producer
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+    
+    /**
+     * Takes one snapshot and publishes what changed since the previous one
+     */
+    public void tick() {
+        byte[] event;
+        long now = clock.getAsLong();
+        synchronized (this) {
+            Map<String, Object> values = flatten(source.get());
+            addRates(values, now);
+            
+            if (current == null) {
+                event = null;
+                publishSnapshot(values, now);
+            } else {
+                Map<String, Object> changed = new LinkedHashMap<>();
+                values.forEach((key, value) -> {
+                    if (!Objects.equals(current.get(key), value)) {
+                        changed.put(key, value);
+                    }
+                });
+                for (String key : current.keySet()) {
+                    if (!values.containsKey(key)) {
+                        changed.put(key, null);
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    publishSnapshot(values, now);
+                    event = encode("update", changed);
+                } else if (now - lastSendNanos >= keepAliveNanos) {
+                    lastSendNanos = now;
+                    event = KEEP_ALIVE;
+                } else {
+                    event = null;
+                }
+            }
+            current = values;
+            lastTickNanos = now;
+        }
+        
+        for (Subscriber subscriber : subscribers) {
+            if (event != null) {
+                subscriber.offer(event);
+            }
+            if (subscriber.hasPending()) {
+                subscriber.drain();
+                subscriber.dropIfStalled(now);
+            }
+        }
+    }
+    
+    private void publishSnapshot(Map<String, Object> values, long now) {
+        sequence++;
+        snapshotEvent = encode("snapshot", values);
+        lastSendNanos = now;
+        events.increment();
+    }
+    
+    private static Map<String, Object> flatten(Map<String, Map<String, Object>> snapshot) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        snapshot.forEach((name, metrics) -> metrics.forEach((key, value) -> values.put(name + "." + key, value)));
+        return values;
+    }
+    
+    private void addRates(Map<String, Object> values, long now) {
+        double seconds = (now - lastTickNanos) / 1e9;
+        for (String key : rateKeys) {
+            Object value = values.get(key);
+            if (!(value instanceof Number)) {
+                continue;
+            }
+            long counter = ((Number) value).longValue();
+            Long previous = lastCounters.put(key, counter);
+            if (previous != null && seconds > 0) {
+                values.put(key + "PerSecond", Math.round(Math.max(0, counter - previous) / seconds * 10) / 10.0);
+            }
+        }
+    }
+    
+    private byte[] encode(String type, Map<String, Object> values) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(data, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                generator.writeFieldName(entry.getKey());
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String header = "id: " + sequence + "\nevent: " + type + "\ndata: ";
+        ByteArrayOutputStream event = new ByteArrayOutputStream(header.length() + data.size() + 2);
+        event.writeBytes(header.getBytes(StandardCharsets.UTF_8));
+        event.writeBytes(data.toByteArray());
+        event.writeBytes(new byte[] {'\n', '\n'});
+        return event.toByteArray();
+    }
+    
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isFinite(number)) {
+                generator.writeNumber(number);
+            } else {
+                generator.writeNull();
+            }
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+    
+    /**
+     * Registers the request behind an async context as a subscriber. The
+     * response must already carry the event-stream headers.
+     */
+    public Subscriber subscribe(AsyncContext asyncContext) throws IOException {
+        Subscriber subscriber = new Subscriber(asyncContext, asyncContext.getResponse().getOutputStream());
+        subscribers.add(subscriber);
+        subscribed.increment();
+        asyncContext.addListener(subscriber);
+        subscriber.output.setWriteListener(subscriber);
+        return subscriber;
+    }
+    
+    /**
+     * Counter snapshot for dashboards
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("subscribed", subscribed.sum());
+        stats.put("events", events.sum());
+        stats.put("resyncs", resyncs.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+    
+    /**
+     * One connected client: a bounded queue of encoded events drained by
+     * whichever thread finds the connection writable
+     */
+    public final class Subscriber implements WriteListener, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream output;
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private boolean preamble = true;
+        private boolean resync = true;
+        private volatile long lastProgressNanos = clock.getAsLong();
+        
+        private Subscriber(AsyncContext asyncContext, ServletOutputStream output) {
+            this.asyncContext = asyncContext;
+            this.output = output;
+        }
+        
+        void offer(byte[] event) {
+            synchronized (queue) {
+                if (resync) {
+                    return;
+                }
+                if (queue.size() >= maxPending) {
+                    queue.clear();
+                    resync = true;
+                    resyncs.increment();
+                    return;
+                }
+                queue.addLast(event);
+            }
+        }
+        
+        private byte[] poll() {
+            synchronized (queue) {
+                if (preamble) {
+                    preamble = false;
+                    return PREAMBLE;
+                }
+                byte[] snapshot = snapshotEvent;
+                if (resync && snapshot != null) {
+                    resync = false;
+                    queue.clear();
+                    return snapshot;
+                }
+                return queue.pollFirst();
+            }
+        }
+        
+        private boolean hasPending() {
+            synchronized (queue) {
+                return preamble || !queue.isEmpty() || (resync && snapshotEvent != null);
+            }
+        }
+        
+        /**
+         * Writes queued events while the connection accepts data. Only one
+         * thread drains at a time; a thread that finds another one draining
+         * leaves the work to it, and the container calls onWritePossible once
+         * a connection that reported not ready can take data again.
+         */
+        void drain() {
+            while (!closed.get() && draining.compareAndSet(false, true)) {
+                boolean caughtUp = false;
+                try {
+                    while (output.isReady()) {
+                        byte[] event = poll();
+                        if (event == null) {
+                            output.flush();
+                            caughtUp = true;
+                            break;
+                        }
+                        output.write(event);
+                        // A subscriber that keeps taking data is not stalled, even if
+                        // large events keep its queue from ever running empty
+                        lastProgressNanos = clock.getAsLong();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    close();
+                    return;
+                } finally {
+                    draining.set(false);
+                }
+                if (!caughtUp) {
+                    return;
+                }
+                lastProgressNanos = clock.getAsLong();
+                if (!hasPending()) {
+                    return;
+                }
+            }
+        }
+        
+        void dropIfStalled(long now) {
+            if (now - lastProgressNanos > maxStallNanos) {
+                dropped.increment();
+                close();
+            }
+        }
+        
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException e) {
+                    // Already completed by the container
+                }
+            }
+        }
+        
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+        
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed.set(true);
+            subscribers.remove(this);
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example;
+
+import javax.servlet.ServletContext;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Per-web-application registry of named counter sources.
+ * Components register a snapshot supplier under a name, and MetricsServlet
+ * renders all of them as one JSON document for dashboards.
+ */
+public class MetricsRegistry {
+    
+    public static final String CONTEXT_ATTRIBUTE = MetricsRegistry.class.getName();
+    
+    private final Map<String, Supplier<Map<String, Object>>> sources = new ConcurrentSkipListMap<>();
+    
+    /**
+     * Gets (creating on first use) the registry of a web application
+     */
+    public static MetricsRegistry forContext(ServletContext context) {
+        synchronized (context) {
+            MetricsRegistry registry = (MetricsRegistry) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (registry == null) {
+                registry = new MetricsRegistry();
+                context.setAttribute(CONTEXT_ATTRIBUTE, registry);
+            }
+            return registry;
+        }
+    }
+    
+    public void register(String name, Supplier<Map<String, Object>> source) {
+        sources.put(name, source);
+    }
+    
+    public void unregister(String name) {
+        sources.remove(name);
+    }
+    
+    /**
+     * Takes a snapshot of every registered source, ordered by name
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        sources.forEach((name, source) -> snapshot.put(name, source.get()));
+        return snapshot;
+    }
+}
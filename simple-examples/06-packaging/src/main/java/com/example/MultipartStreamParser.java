@@ -0,0 +1,248 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming multipart/form-data parser.
+ * Part bodies are handed to a channel chunk by chunk as they arrive, so memory use
+ * is bounded by the parse buffer no matter how large the parts are.
+ */
+public class MultipartStreamParser {
+    
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+    
+    /**
+     * Receives the parts of a multipart body
+     */
+    public interface PartListener {
+        /**
+         * Called for every part with its headers (names in lower case).
+         *
+         * @return the channel to write the part body to, or null to discard it
+         */
+        WritableByteChannel startPart(Map<String, String> headers) throws IOException;
+        
+        /**
+         * Called after the whole body of the current part has been written
+         */
+        void endPart() throws IOException;
+    }
+    
+    private final InputStream input;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    /** Reusable view of the buffer, so emitting a chunk allocates nothing */
+    private final ByteBuffer view;
+    private int start;
+    private int end;
+    
+    /**
+     * @param input      the request body
+     * @param boundary   the boundary parameter of the Content-Type header
+     * @param bufferSize parse buffer size; bounds the memory used per request
+     */
+    public MultipartStreamParser(InputStream input, String boundary, int bufferSize) {
+        this.input = input;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(bufferSize, MAX_HEADER_BYTES + delimiter.length)];
+        this.view = ByteBuffer.wrap(buffer);
+        // A leading CRLF lets the first boundary match the same delimiter as the others
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        this.end = 2;
+    }
+    
+    /**
+     * Extracts the boundary parameter from a multipart Content-Type header
+     *
+     * @return the boundary, or null when the header has none
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("boundary=")) {
+                String boundary = trimmed.substring("boundary=".length());
+                if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                return boundary.isEmpty() ? null : boundary;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Extracts a parameter (e.g. filename) from a Content-Disposition header
+     */
+    public static String dispositionParameter(String disposition, String name) {
+        if (disposition == null) {
+            return null;
+        }
+        for (String parameter : disposition.split(";")) {
+            String trimmed = parameter.trim();
+            int equals = trimmed.indexOf('=');
+            if (equals > 0 && trimmed.substring(0, equals).trim().equalsIgnoreCase(name)) {
+                String value = trimmed.substring(equals + 1).trim();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Parses the whole body, calling the listener for every part
+     */
+    public void parse(PartListener listener) throws IOException {
+        copyUntilDelimiter(null);
+        while (true) {
+            ensure(2);
+            if (buffer[start] == '-' && buffer[start + 1] == '-') {
+                return;
+            }
+            skipLineEnd();
+            
+            Map<String, String> headers = readHeaders();
+            WritableByteChannel channel = listener.startPart(headers);
+            copyUntilDelimiter(channel);
+            listener.endPart();
+        }
+    }
+    
+    private void skipLineEnd() throws IOException {
+        // Transport padding (spaces/tabs) may follow the boundary before the CRLF
+        while (true) {
+            ensure(1);
+            byte b = buffer[start];
+            if (b == ' ' || b == '\t') {
+                start++;
+            } else {
+                break;
+            }
+        }
+        ensure(2);
+        if (buffer[start] != '\r' || buffer[start + 1] != '\n') {
+            throw new MalformedMultipartException("Expected CRLF after boundary");
+        }
+        start += 2;
+    }
+    
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        ensure(2);
+        if (buffer[start] == '\r' && buffer[start + 1] == '\n') {
+            start += 2;
+            return headers;
+        }
+        
+        int headerEnd;
+        while ((headerEnd = indexOf(HEADER_END, start, end)) < 0) {
+            if (end - start >= MAX_HEADER_BYTES) {
+                throw new MalformedMultipartException("Part headers exceed " + MAX_HEADER_BYTES + " bytes");
+            }
+            fillOrFail();
+        }
+        
+        String block = new String(buffer, start, headerEnd - start, StandardCharsets.UTF_8);
+        for (String line : block.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                            line.substring(colon + 1).trim());
+            }
+        }
+        start = headerEnd + HEADER_END.length;
+        return headers;
+    }
+    
+    /**
+     * Writes everything up to the next delimiter to the channel (or discards it)
+     * and consumes the delimiter
+     */
+    private void copyUntilDelimiter(WritableByteChannel channel) throws IOException {
+        while (true) {
+            int index = indexOf(delimiter, start, end);
+            if (index >= 0) {
+                emit(channel, start, index);
+                start = index + delimiter.length;
+                return;
+            }
+            // Bytes before this point cannot be the beginning of a delimiter
+            int safe = end - (delimiter.length - 1);
+            if (safe > start) {
+                emit(channel, start, safe);
+                start = safe;
+            }
+            fillOrFail();
+        }
+    }
+    
+    private void emit(WritableByteChannel channel, int from, int to) throws IOException {
+        if (channel == null || to <= from) {
+            return;
+        }
+        view.limit(to).position(from);
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+    }
+    
+    private void ensure(int bytes) throws IOException {
+        while (end - start < bytes) {
+            fillOrFail();
+        }
+    }
+    
+    private void fillOrFail() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        int read = input.read(buffer, end, buffer.length - end);
+        if (read < 0) {
+            throw new MalformedMultipartException("Unexpected end of multipart body");
+        }
+        end += read;
+    }
+    
+    private int indexOf(byte[] pattern, int from, int to) {
+        int last = to - pattern.length;
+        byte first = pattern[0];
+        for (int i = from; i <= last; i++) {
+            if (buffer[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < pattern.length && buffer[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Signals a body that does not follow the multipart format
+     */
+    public static class MalformedMultipartException extends IOException {
+        public MalformedMultipartException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,11 +1,25 @@
 package com.example;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Properties;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
@@ -23,6 +37,16 @@ public class PackagingDemo {
     
     private static final Logger logger = LoggerFactory.getLogger(PackagingDemo.class);
     
+    // Shared, thread-safe JSON reader/writer; callers own (and flush/close) the streams they pass in
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper(JsonFactory.builder()
+        .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+        .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+        .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+        .disable(StreamWriteFeature.FLUSH_PASSED_TO_STREAM)
+        .build());
+    private static final ObjectReader JSON_READER = JSON_MAPPER.readerFor(Object.class);
+    private static final ObjectWriter JSON_WRITER = JSON_MAPPER.writerWithDefaultPrettyPrinter();
+    
     public static void main(String[] args) {
         PackagingDemo demo = new PackagingDemo();
         
@@ -111,6 +135,11 @@ public class PackagingDemo {
         System.out.println("- Max Memory: " + (Runtime.getRuntime().maxMemory() / (1024 * 1024)) + " MB");
         System.out.println("- Free Memory: " + (Runtime.getRuntime().freeMemory() / (1024 * 1024)) + " MB");
         
+        // One reading of the same figures RuntimeTelemetryServlet samples continuously
+        RuntimeSampler sampler = new RuntimeSampler(1);
+        sampler.sample();
+        System.out.println("- Telemetry: " + sampler.describeLatest());
+        
         System.out.println();
     }
     
@@ -219,15 +248,48 @@ public class PackagingDemo {
      */
     public String processJson(String jsonString) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            Object jsonObject = mapper.readValue(jsonString, Object.class);
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(jsonObject);
+            StringWriter output = new StringWriter(jsonString.length() * 2);
+            processJson(new StringReader(jsonString), output);
+            return output.toString();
         } catch (Exception e) {
             logger.error("Error processing JSON", e);
             return "Error: " + e.getMessage();
         }
     }
     
+    /**
+     * Pretty-prints JSON from a byte stream to a byte stream (UTF-8 output).
+     * Tokens are copied one at a time from the parser to the generator, so memory
+     * use is bounded by the largest single token rather than the document size.
+     * Neither stream is flushed or closed.
+     */
+    public void processJson(InputStream input, OutputStream output) throws IOException {
+        try (JsonParser parser = JSON_READER.createParser(input);
+             JsonGenerator generator = JSON_WRITER.createGenerator(output, JsonEncoding.UTF8)) {
+            copyTokens(parser, generator);
+        }
+    }
+    
+    /**
+     * Pretty-prints JSON from a character stream to a character stream.
+     * Same streaming behavior as the byte stream variant; neither stream is flushed or closed.
+     */
+    public void processJson(Reader input, Writer output) throws IOException {
+        try (JsonParser parser = JSON_READER.createParser(input);
+             JsonGenerator generator = JSON_WRITER.createGenerator(output)) {
+            copyTokens(parser, generator);
+        }
+    }
+    
+    private static void copyTokens(JsonParser parser, JsonGenerator generator) throws IOException {
+        if (parser.nextToken() == null) {
+            throw MismatchedInputException.from(parser, Object.class,
+                "No content to map due to end-of-input");
+        }
+        // Like readValue, only the first root value is processed; anything after it is ignored
+        generator.copyCurrentStructure(parser);
+    }
+    
     /**
      * Loads application properties
      */
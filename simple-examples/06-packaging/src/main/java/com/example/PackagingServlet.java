@@ -1,110 +1,450 @@
 package com.example;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Simple servlet demonstration for WAR packaging
  * This servlet shows how the same application can be packaged as a WAR
- * and deployed to a servlet container like Tomcat
+ * and deployed to a servlet container like Tomcat.
+ * The page is served from a PageRenderCache with a strong ETag, so polling
+ * clients that send If-None-Match receive 304 Not Modified.
+ * With execution.mode=async the page is rendered on a separate executor
+ * through AsyncContext, releasing the container thread while it runs.
+ * POSTed application/json documents are pretty-printed and streamed back;
+ * any other POST body (raw or multipart) is streamed into the upload directory.
+ * With warmup.enabled=true, init() first drives synthetic requests through the
+ * render and processJson paths until JIT compilation settles, so the servlet
+ * (and with load-on-startup the whole application) only becomes ready warm.
  */
-@WebServlet(name = "PackagingServlet", urlPatterns = {"/packaging", "/demo"})
+@WebServlet(name = "PackagingServlet", urlPatterns = {"/packaging", "/demo"}, asyncSupported = true)
 public class PackagingServlet extends HttpServlet {
     
+    /** Init parameter: lifetime of the cached JSON processing section, in seconds */
+    public static final String JSON_TTL_PARAM = "render.json.ttl.seconds";
+    /** Init parameter: "blocking" (default) or "async" */
+    public static final String EXECUTION_MODE_PARAM = "execution.mode";
+    /** Init parameter: "virtual" (default, falls back to bounded) or "bounded" */
+    public static final String ASYNC_EXECUTOR_PARAM = "async.executor";
+    /** Init parameter: worker threads of the bounded async executor */
+    public static final String ASYNC_POOL_SIZE_PARAM = "async.pool.size";
+    /** Init parameter: queued requests of the bounded async executor */
+    public static final String ASYNC_QUEUE_CAPACITY_PARAM = "async.queue.capacity";
+    /** Init parameter: async request timeout in milliseconds */
+    public static final String ASYNC_TIMEOUT_PARAM = "async.timeout.millis";
+    /** Setting (see EnvironmentSettings): directory uploads are stored in */
+    public static final String UPLOAD_DIRECTORY = "upload.directory";
+    /** Init parameter: largest accepted upload in bytes */
+    public static final String UPLOAD_MAX_BYTES_PARAM = "upload.max.bytes";
+    /** Init parameter: uploads received at the same time before answering 503 */
+    public static final String UPLOAD_MAX_CONCURRENT_PARAM = "upload.max.concurrent";
+    /** Init parameter: "true" to warm up the JIT in init() (default false) */
+    public static final String WARMUP_ENABLED_PARAM = "warmup.enabled";
+    /** Init parameter: longest time the warm-up may take, in milliseconds */
+    public static final String WARMUP_BUDGET_PARAM = "warmup.budget.millis";
+    /** Init parameter: synthetic requests per warm-up round */
+    public static final String WARMUP_ROUND_ITERATIONS_PARAM = "warmup.round.iterations";
+    /** Init parameter: consecutive rounds without new compilation work that end the warm-up */
+    public static final String WARMUP_STABLE_ROUNDS_PARAM = "warmup.stable.rounds";
+    /** Init parameter: compilation time (ms) a round may add and still count as settled */
+    public static final String WARMUP_SETTLE_MILLIS_PARAM = "warmup.settle.millis";
+    
+    /** Documents of different shapes, so the warm-up does not specialize on one */
+    private static final String[] WARMUP_DOCUMENTS = {
+        "{\"message\":\"warm-up\",\"count\":42,\"ratio\":0.5,\"enabled\":true,\"missing\":null}",
+        "[1,2,3,{\"nested\":{\"list\":[\"a\",\"b\",\"c\"],\"depth\":2}},[4.25,-7,1e3]]",
+        "{\"artifact\":{\"groupId\":\"com.example\",\"artifactId\":\"packaging-demo\","
+            + "\"packaging\":\"war\",\"dependencies\":[{\"id\":\"jackson\"},{\"id\":\"slf4j\"}]}}"
+    };
+    
+    private static final Logger logger = LoggerFactory.getLogger(PackagingServlet.class);
+    
     private PackagingDemo packagingDemo;
+    private PageRenderCache renderCache;
+    private ExecutorService asyncExecutor;
+    private long asyncTimeoutMillis;
+    private StreamingUploadHandler uploadHandler;
+    private volatile JitWarmup.Result warmupResult;
+    private volatile boolean ready;
+    private final LongAdder pageRequests = new LongAdder();
+    private final LongAdder jsonRequests = new LongAdder();
     
     @Override
     public void init() throws ServletException {
         super.init();
         this.packagingDemo = new PackagingDemo();
+        
+        long ttlMillis = getLongParameter(JSON_TTL_PARAM, PageRenderCache.DEFAULT_JSON_TTL_MILLIS / 1000L) * 1000L;
+        this.renderCache = new PageRenderCache(packagingDemo, ttlMillis, System::currentTimeMillis);
+        
+        String mode = getStringParameter(EXECUTION_MODE_PARAM, "blocking");
+        if ("async".equalsIgnoreCase(mode)) {
+            this.asyncTimeoutMillis = getLongParameter(ASYNC_TIMEOUT_PARAM, 10_000L);
+            this.asyncExecutor = RequestExecutors.create(
+                getStringParameter(ASYNC_EXECUTOR_PARAM, RequestExecutors.VIRTUAL),
+                (int) getLongParameter(ASYNC_POOL_SIZE_PARAM, 64L),
+                (int) getLongParameter(ASYNC_QUEUE_CAPACITY_PARAM, 1000L),
+                getServletName() + "-async");
+        } else if (!"blocking".equalsIgnoreCase(mode)) {
+            throw new ServletException("Unknown " + EXECUTION_MODE_PARAM + ": " + mode);
+        }
+        
+        this.uploadHandler = new StreamingUploadHandler(
+            new EnvironmentSettings(getServletConfig()).getDirectory(UPLOAD_DIRECTORY),
+            getLongParameter(UPLOAD_MAX_BYTES_PARAM, StreamingUploadHandler.DEFAULT_MAX_BYTES),
+            (int) getLongParameter(UPLOAD_MAX_CONCURRENT_PARAM, StreamingUploadHandler.DEFAULT_MAX_CONCURRENT));
+        MetricsRegistry.forContext(getServletContext()).register("uploads", uploadHandler::getStats);
+        logger.info("Storing uploads in {}", uploadHandler.getDirectory());
+        
+        MetricsRegistry.forContext(getServletContext()).register("packaging", this::getPackagingStats);
+        MetricsRegistry.forContext(getServletContext()).register("warmup", this::getWarmupStats);
+        if (Boolean.parseBoolean(getStringParameter(WARMUP_ENABLED_PARAM, "false"))) {
+            warmUp();
+        }
+        this.ready = true;
+    }
+    
+    /**
+     * Drives synthetic requests through the page render and processJson paths.
+     * Pages are rendered by a scratch cache whose JSON section never stays fresh,
+     * so every iteration really renders and assembles a page; the cache serving
+     * clients is left untouched.
+     */
+    private void warmUp() throws ServletException {
+        JitWarmup warmup = new JitWarmup(
+            getLongParameter(WARMUP_BUDGET_PARAM, 10_000L),
+            (int) getLongParameter(WARMUP_ROUND_ITERATIONS_PARAM, 500L),
+            (int) getLongParameter(WARMUP_STABLE_ROUNDS_PARAM, 3L),
+            getLongParameter(WARMUP_SETTLE_MILLIS_PARAM, 2L),
+            JitWarmup.jvmCompilationTime(),
+            System::currentTimeMillis);
+        
+        PageRenderCache scratch = new PageRenderCache(packagingDemo, 0L, System::currentTimeMillis);
+        String contextPath = getServletContext().getContextPath();
+        String serverInfo = getServletContext().getServerInfo();
+        byte[][] documents = new byte[WARMUP_DOCUMENTS.length][];
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = WARMUP_DOCUMENTS[i].getBytes(StandardCharsets.UTF_8);
+        }
+        OutputStream discard = OutputStream.nullOutputStream();
+        int[] iteration = {0};
+        
+        this.warmupResult = warmup.run(() -> {
+            int n = iteration[0]++;
+            try {
+                PageRenderCache.RenderedPage page = scratch.render(contextPath, "/warmup-" + (n & 7), serverInfo);
+                page.matches(page.getEtag());
+                page.writeTo(discard);
+                packagingDemo.processJson(new ByteArrayInputStream(documents[n % documents.length]), discard);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        logger.info("JIT warm-up: {}", warmupResult);
     }
     
     @Override
-    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+    public void destroy() {
+        if (asyncExecutor != null) {
+            // Work still running after the async timeout has already been answered
+            RequestExecutors.shutdown(asyncExecutor, asyncTimeoutMillis);
+        }
+        MetricsRegistry.forContext(getServletContext()).unregister("uploads");
+        MetricsRegistry.forContext(getServletContext()).unregister("packaging");
+        MetricsRegistry.forContext(getServletContext()).unregister("warmup");
+        super.destroy();
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
+        pageRequests.increment();
+        PageRequest pageRequest = new PageRequest(request, getServletContext().getServerInfo());
         
+        if (asyncExecutor != null && request.isAsyncSupported()) {
+            dispatchAsync(request, response, pageRequest);
+        } else {
+            writePage(pageRequest, renderPage(pageRequest), response);
+        }
+    }
+    
+    /**
+     * Renders the page on the async executor. The worker renders first and only
+     * touches the response after claiming completion, so a request that has
+     * already timed out (and been answered with 503) is never written twice.
+     */
+    private void dispatchAsync(HttpServletRequest request, HttpServletResponse response,
+                               PageRequest pageRequest) {
+        // Keep filter wrappers (e.g. CompressionFilter) in place for the async write
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(asyncTimeoutMillis);
+        AtomicBoolean finished = new AtomicBoolean();
+        asyncContext.addListener(new TimeoutListener(finished));
+        
+        try {
+            asyncExecutor.execute(() -> {
+                try {
+                    PageRenderCache.RenderedPage page = renderPage(pageRequest);
+                    if (finished.compareAndSet(false, true)) {
+                        try {
+                            writePage(pageRequest, page, (HttpServletResponse) asyncContext.getResponse());
+                        } finally {
+                            asyncContext.complete();
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.error("Async request processing failed", e);
+                    finishWithError(asyncContext, finished, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Async executor saturated, rejecting request");
+            finishWithError(asyncContext, finished, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+    }
+    
+    private static void finishWithError(AsyncContext asyncContext, AtomicBoolean finished, int status) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            if (!response.isCommitted()) {
+                response.sendError(status);
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Could not send error status {}", status, e);
+        } finally {
+            asyncContext.complete();
+        }
+    }
+    
+    /**
+     * Renders (or fetches from the cache) the page for a request.
+     * Runs on the async executor in async mode and must not touch the request.
+     */
+    protected PageRenderCache.RenderedPage renderPage(PageRequest pageRequest) {
+        return renderCache.render(pageRequest.contextPath, pageRequest.servletPath, pageRequest.serverInfo);
+    }
+    
+    private void writePage(PageRequest pageRequest, PageRenderCache.RenderedPage page,
+                           HttpServletResponse response) throws IOException {
         response.setContentType("text/html");
         response.setCharacterEncoding("UTF-8");
         
-        try (PrintWriter out = response.getWriter()) {
-            out.println("<!DOCTYPE html>");
-            out.println("<html>");
-            out.println("<head>");
-            out.println("    <title>Maven Packaging Demo - Web Interface</title>");
-            out.println("    <style>");
-            out.println("        body { font-family: Arial, sans-serif; margin: 40px; }");
-            out.println("        .section { margin: 20px 0; padding: 15px; border: 1px solid #ddd; }");
-            out.println("        .success { color: green; }");
-            out.println("        .info { color: blue; }");
-            out.println("        pre { background: #f5f5f5; padding: 10px; }");
-            out.println("    </style>");
-            out.println("</head>");
-            out.println("<body>");
-            
-            out.println("<h1>Maven Packaging Demonstration - Web Interface</h1>");
+        // Error dispatches (e.g. the 404 page) keep their status and skip validators
+        if (!pageRequest.errorDispatch) {
+            response.setHeader("ETag", page.getEtag());
+            response.setHeader("Cache-Control", "no-cache");
             
-            out.println("<div class='section'>");
-            out.println("<h2>Application Information</h2>");
-            out.println("<p><strong>Packaging Type:</strong> <span class='info'>" + 
-                       packagingDemo.getPackagingType() + "</span></p>");
-            out.println("<p><strong>Execution Mode:</strong> " + packagingDemo.getExecutionMode() + "</p>");
-            out.println("<p><strong>Web Context:</strong> <span class='success'>✓ Running in Servlet Container</span></p>");
-            out.println("<p><strong>JAR Location:</strong> " + packagingDemo.getJarLocation() + "</p>");
-            out.println("</div>");
-            
-            out.println("<div class='section'>");
-            out.println("<h2>Runtime Environment</h2>");
-            out.println("<p><strong>Java Version:</strong> " + System.getProperty("java.version") + "</p>");
-            out.println("<p><strong>Servlet Container:</strong> " + getServletContext().getServerInfo() + "</p>");
-            out.println("<p><strong>Context Path:</strong> " + request.getContextPath() + "</p>");
-            out.println("<p><strong>Servlet Path:</strong> " + request.getServletPath() + "</p>");
-            out.println("</div>");
-            
-            out.println("<div class='section'>");
-            out.println("<h2>Packaging Comparison</h2>");
-            out.println("<ul>");
-            out.println("<li><strong>JAR:</strong> Standalone application, run with 'java -jar'</li>");
-            out.println("<li><strong>WAR:</strong> Web application, deployed to servlet container</li>");
-            out.println("<li><strong>Fat JAR:</strong> All dependencies included, single file deployment</li>");
-            out.println("<li><strong>Executable JAR:</strong> Self-contained with embedded server</li>");
-            out.println("</ul>");
-            out.println("</div>");
-            
-            out.println("<div class='section'>");
-            out.println("<h2>JSON Processing Test</h2>");
-            String testJson = "{\"message\":\"Hello from WAR deployment!\",\"timestamp\":\"" + 
-                             new java.util.Date() + "\"}";
-            String processedJson = packagingDemo.processJson(testJson);
-            out.println("<p><strong>Input JSON:</strong></p>");
-            out.println("<pre>" + testJson + "</pre>");
-            out.println("<p><strong>Processed JSON:</strong></p>");
-            out.println("<pre>" + processedJson + "</pre>");
-            out.println("</div>");
-            
-            out.println("<div class='section'>");
-            out.println("<h2>Maven Profiles</h2>");
-            out.println("<p>This application can be built with different Maven profiles:</p>");
-            out.println("<ul>");
-            out.println("<li><code>mvn clean package</code> - Standard JAR</li>");
-            out.println("<li><code>mvn clean package -Pwar</code> - WAR file</li>");
-            out.println("<li><code>mvn clean package -Pfat-jar</code> - Fat JAR</li>");
-            out.println("<li><code>mvn clean package -Pexecutable</code> - Executable JAR</li>");
-            out.println("</ul>");
-            out.println("</div>");
-            
-            out.println("</body>");
-            out.println("</html>");
+            if (pageRequest.conditionalGet && page.matches(pageRequest.ifNoneMatch)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                // Closing the empty body finishes the response for wrapping filters in async mode
+                response.getOutputStream().close();
+                return;
+            }
+        }
+        
+        response.setContentLength(page.getContentLength());
+        try (OutputStream out = response.getOutputStream()) {
+            page.writeTo(out);
+        }
+    }
+    
+    /**
+     * Gets the render cache backing this servlet
+     */
+    public PageRenderCache getRenderCache() {
+        return renderCache;
+    }
+    
+    /**
+     * Gets the handler that receives uploaded bodies
+     */
+    public StreamingUploadHandler getUploadHandler() {
+        return uploadHandler;
+    }
+    
+    /**
+     * Checks whether init() has finished, including the warm-up when enabled
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Gets the outcome of the warm-up, or null when it did not run
+     */
+    public JitWarmup.Result getWarmupResult() {
+        return warmupResult;
+    }
+    
+    private Map<String, Object> getPackagingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pageRequests", pageRequests.sum());
+        stats.put("jsonRequests", jsonRequests.sum());
+        stats.put("packagingType", packagingDemo.getPackagingType());
+        stats.put("executionMode", asyncExecutor != null ? "async" : "blocking");
+        return stats;
+    }
+    
+    private Map<String, Object> getWarmupStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        JitWarmup.Result result = warmupResult;
+        stats.put("enabled", result != null);
+        if (result != null) {
+            stats.putAll(result.toMap());
+        }
+        return stats;
+    }
+    
+    /**
+     * Checks whether requests are rendered off the container thread
+     */
+    public boolean isAsyncMode() {
+        return asyncExecutor != null;
+    }
+    
+    private String getStringParameter(String name, String defaultValue) {
+        String value = getInitParameter(name);
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+    
+    private long getLongParameter(String name, long defaultValue) throws ServletException {
+        String value = getStringParameter(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + name + ": " + value, e);
         }
     }
     
     @Override
-    protected void doPost(HttpServletRequest request, HttpServletResponse response) 
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        doGet(request, response);
+        // An error page dispatch keeps the method of the failed request: a POST to an
+        // unmapped URL gets the 404 page, never the upload or JSON handling
+        if (request.getDispatcherType() == DispatcherType.ERROR) {
+            doGet(request, response);
+        } else if (isJsonRequest(request)) {
+            jsonRequests.increment();
+            processJson(request, response);
+        } else if (request.getDispatcherType() == DispatcherType.REQUEST) {
+            // Only direct requests have been through AdmissionControlFilter
+            uploadHandler.handle(request, response);
+        } else {
+            doGet(request, response);
+        }
+    }
+    
+    private static boolean isJsonRequest(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("application/json");
+    }
+    
+    /**
+     * Streams a posted JSON document through PackagingDemo.processJson straight
+     * into the response, without buffering the document on either side
+     */
+    private void processJson(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        
+        OutputStream out = response.getOutputStream();
+        try {
+            packagingDemo.processJson(request.getInputStream(), out);
+        } catch (JsonProcessingException e) {
+            // Errors within the first buffer still get a proper status; later ones truncate the body
+            logger.warn("Rejected invalid JSON: {}", e.getOriginalMessage());
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid JSON: " + e.getOriginalMessage());
+                return;
+            }
+        }
+        out.close();
+    }
+    
+    /**
+     * Request data captured on the container thread, so rendering can run
+     * elsewhere without holding on to the (recyclable) request object
+     */
+    protected static final class PageRequest {
+        private final String contextPath;
+        private final String servletPath;
+        private final String serverInfo;
+        private final String ifNoneMatch;
+        private final boolean conditionalGet;
+        private final boolean errorDispatch;
+        
+        private PageRequest(HttpServletRequest request, String serverInfo) {
+            this.contextPath = request.getContextPath();
+            this.servletPath = request.getServletPath();
+            this.serverInfo = serverInfo;
+            this.ifNoneMatch = request.getHeader("If-None-Match");
+            String method = request.getMethod();
+            this.conditionalGet = "GET".equals(method) || "HEAD".equals(method);
+            this.errorDispatch = request.getDispatcherType() == DispatcherType.ERROR;
+        }
+        
+        public String getServletPath() { return servletPath; }
+    }
+    
+    /**
+     * Answers timed-out async requests with 503 unless the worker got there first
+     */
+    private static final class TimeoutListener implements AsyncListener {
+        private final AtomicBoolean finished;
+        
+        private TimeoutListener(AtomicBoolean finished) {
+            this.finished = finished;
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            logger.warn("Async request timed out");
+            finishWithError(event.getAsyncContext(), finished, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            finishWithError(event.getAsyncContext(), finished, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
     }
 }
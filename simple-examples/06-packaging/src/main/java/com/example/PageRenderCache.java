@@ -0,0 +1,323 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Render cache for the PackagingServlet web interface.
+ * The static parts of the page are encoded to UTF-8 once and shared by every
+ * rendered page. Only the dynamic sections are re-rendered:
+ * - Application information, until explicitly invalidated
+ * - JSON processing sample, after its time-to-live expires
+ * - Runtime environment, once per context/servlet path combination
+ * Every assembled page carries a strong ETag computed from its bytes.
+ */
+public class PageRenderCache {
+    
+    /** Default lifetime of the JSON processing section */
+    public static final long DEFAULT_JSON_TTL_MILLIS = 60_000L;
+    
+    private static final byte[] PAGE_HEAD = utf8(
+        "<!DOCTYPE html>\n" +
+        "<html>\n" +
+        "<head>\n" +
+        "    <title>Maven Packaging Demo - Web Interface</title>\n" +
+        "    <style>\n" +
+        "        body { font-family: Arial, sans-serif; margin: 40px; }\n" +
+        "        .section { margin: 20px 0; padding: 15px; border: 1px solid #ddd; }\n" +
+        "        .success { color: green; }\n" +
+        "        .info { color: blue; }\n" +
+        "        pre { background: #f5f5f5; padding: 10px; }\n" +
+        "    </style>\n" +
+        "</head>\n" +
+        "<body>\n" +
+        "<h1>Maven Packaging Demonstration - Web Interface</h1>\n");
+    
+    private static final byte[] PACKAGING_COMPARISON = utf8(
+        "<div class='section'>\n" +
+        "<h2>Packaging Comparison</h2>\n" +
+        "<ul>\n" +
+        "<li><strong>JAR:</strong> Standalone application, run with 'java -jar'</li>\n" +
+        "<li><strong>WAR:</strong> Web application, deployed to servlet container</li>\n" +
+        "<li><strong>Fat JAR:</strong> All dependencies included, single file deployment</li>\n" +
+        "<li><strong>Executable JAR:</strong> Self-contained with embedded server</li>\n" +
+        "</ul>\n" +
+        "</div>\n");
+    
+    private static final byte[] MAVEN_PROFILES = utf8(
+        "<div class='section'>\n" +
+        "<h2>Maven Profiles</h2>\n" +
+        "<p>This application can be built with different Maven profiles:</p>\n" +
+        "<ul>\n" +
+        "<li><code>mvn clean package</code> - Standard JAR</li>\n" +
+        "<li><code>mvn clean package -Pwar</code> - WAR file</li>\n" +
+        "<li><code>mvn clean package -Pfat-jar</code> - Fat JAR</li>\n" +
+        "<li><code>mvn clean package -Pexecutable</code> - Executable JAR</li>\n" +
+        "</ul>\n" +
+        "</div>\n");
+    
+    private static final byte[] PAGE_FOOTER = utf8(
+        "</body>\n" +
+        "</html>\n");
+    
+    private final PackagingDemo packagingDemo;
+    private final long jsonTtlMillis;
+    private final LongSupplier clock;
+    private final ConcurrentMap<String, RenderedPage> pages = new ConcurrentHashMap<>();
+    
+    private volatile Section applicationSection;
+    private volatile Section jsonSection;
+    
+    public PageRenderCache(PackagingDemo packagingDemo) {
+        this(packagingDemo, DEFAULT_JSON_TTL_MILLIS, System::currentTimeMillis);
+    }
+    
+    public PageRenderCache(PackagingDemo packagingDemo, long jsonTtlMillis, LongSupplier clock) {
+        this.packagingDemo = packagingDemo;
+        this.jsonTtlMillis = jsonTtlMillis;
+        this.clock = clock;
+    }
+    
+    /**
+     * Returns the page for the given request coordinates, re-assembling it only
+     * when one of its dynamic sections has been invalidated or has expired
+     */
+    public RenderedPage render(String contextPath, String servletPath, String serverInfo) {
+        Section application = currentApplicationSection();
+        Section json = currentJsonSection();
+        String key = contextPath + '\n' + servletPath + '\n' + serverInfo;
+        
+        RenderedPage page = pages.get(key);
+        if (page != null && page.isBuiltFrom(application, json)) {
+            return page;
+        }
+        
+        byte[] runtime = page != null ? page.runtimeSection
+                                      : renderRuntimeSection(contextPath, servletPath, serverInfo);
+        RenderedPage rebuilt = new RenderedPage(application, json, runtime);
+        pages.put(key, rebuilt);
+        return rebuilt;
+    }
+    
+    /**
+     * Discards the cached application information (packaging type, execution
+     * mode and JAR location), e.g. after a redeploy of the same context
+     */
+    public void invalidateApplicationInfo() {
+        applicationSection = null;
+    }
+    
+    /**
+     * Discards the cached JSON processing sample before its TTL expires
+     */
+    public void invalidateJsonSection() {
+        jsonSection = null;
+    }
+    
+    /**
+     * Discards every dynamic section and assembled page
+     */
+    public void invalidateAll() {
+        applicationSection = null;
+        jsonSection = null;
+        pages.clear();
+    }
+    
+    private Section currentApplicationSection() {
+        Section section = applicationSection;
+        if (section == null) {
+            synchronized (this) {
+                section = applicationSection;
+                if (section == null) {
+                    section = new Section(renderApplicationSection(), clock.getAsLong());
+                    applicationSection = section;
+                }
+            }
+        }
+        return section;
+    }
+    
+    private Section currentJsonSection() {
+        Section section = jsonSection;
+        if (section == null || isExpired(section)) {
+            synchronized (this) {
+                section = jsonSection;
+                if (section == null || isExpired(section)) {
+                    long now = clock.getAsLong();
+                    section = new Section(renderJsonSection(now), now);
+                    jsonSection = section;
+                }
+            }
+        }
+        return section;
+    }
+    
+    private boolean isExpired(Section section) {
+        return clock.getAsLong() - section.renderedAt >= jsonTtlMillis;
+    }
+    
+    private byte[] renderApplicationSection() {
+        PackagingDemo.PackagingInfo info = packagingDemo.getPackagingInfo();
+        return utf8(
+            "<div class='section'>\n" +
+            "<h2>Application Information</h2>\n" +
+            "<p><strong>Packaging Type:</strong> <span class='info'>" + info.getType() + "</span></p>\n" +
+            "<p><strong>Execution Mode:</strong> " + info.getExecutionMode() + "</p>\n" +
+            "<p><strong>Web Context:</strong> <span class='success'>✓ Running in Servlet Container</span></p>\n" +
+            "<p><strong>JAR Location:</strong> " + info.getLocation() + "</p>\n" +
+            "</div>\n");
+    }
+    
+    private byte[] renderRuntimeSection(String contextPath, String servletPath, String serverInfo) {
+        return utf8(
+            "<div class='section'>\n" +
+            "<h2>Runtime Environment</h2>\n" +
+            "<p><strong>Java Version:</strong> " + System.getProperty("java.version") + "</p>\n" +
+            "<p><strong>Servlet Container:</strong> " + serverInfo + "</p>\n" +
+            "<p><strong>Context Path:</strong> " + contextPath + "</p>\n" +
+            "<p><strong>Servlet Path:</strong> " + servletPath + "</p>\n" +
+            "</div>\n");
+    }
+    
+    private byte[] renderJsonSection(long timestamp) {
+        String testJson = "{\"message\":\"Hello from WAR deployment!\",\"timestamp\":\"" +
+                          new Date(timestamp) + "\"}";
+        String processedJson = packagingDemo.processJson(testJson);
+        return utf8(
+            "<div class='section'>\n" +
+            "<h2>JSON Processing Test</h2>\n" +
+            "<p><strong>Input JSON:</strong></p>\n" +
+            "<pre>" + testJson + "</pre>\n" +
+            "<p><strong>Processed JSON:</strong></p>\n" +
+            "<pre>" + processedJson + "</pre>\n" +
+            "</div>\n");
+    }
+    
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * A rendered dynamic section together with its render time
+     */
+    private static final class Section {
+        private final byte[] bytes;
+        private final long renderedAt;
+        
+        private Section(byte[] bytes, long renderedAt) {
+            this.bytes = bytes;
+            this.renderedAt = renderedAt;
+        }
+    }
+    
+    /**
+     * An assembled page: the ordered list of pre-encoded segments plus its ETag.
+     * Segments are written one after another, so static parts are never copied.
+     */
+    public static final class RenderedPage {
+        private final Section application;
+        private final Section json;
+        private final byte[] runtimeSection;
+        private final byte[][] segments;
+        private final int contentLength;
+        private final String etag;
+        
+        private RenderedPage(Section application, Section json, byte[] runtimeSection) {
+            this.application = application;
+            this.json = json;
+            this.runtimeSection = runtimeSection;
+            this.segments = new byte[][] {
+                PAGE_HEAD, application.bytes, runtimeSection,
+                PACKAGING_COMPARISON, json.bytes, MAVEN_PROFILES, PAGE_FOOTER
+            };
+            
+            int length = 0;
+            for (byte[] segment : segments) {
+                length += segment.length;
+            }
+            this.contentLength = length;
+            this.etag = computeEtag(segments);
+        }
+        
+        private boolean isBuiltFrom(Section application, Section json) {
+            return this.application == application && this.json == json;
+        }
+        
+        /**
+         * Strong entity tag, quoted as required in the ETag header
+         */
+        public String getEtag() { return etag; }
+        
+        public int getContentLength() { return contentLength; }
+        
+        /**
+         * Writes the page body without re-encoding any segment
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            for (byte[] segment : segments) {
+                out.write(segment);
+            }
+        }
+        
+        /**
+         * Returns a copy of the full page body
+         */
+        public byte[] toByteArray() {
+            byte[] body = new byte[contentLength];
+            int offset = 0;
+            for (byte[] segment : segments) {
+                System.arraycopy(segment, 0, body, offset, segment.length);
+                offset += segment.length;
+            }
+            return body;
+        }
+        
+        /**
+         * Checks an If-None-Match header value against this page's ETag.
+         * Uses the weak comparison required for If-None-Match (RFC 7232).
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*")) {
+                    return true;
+                }
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private static String computeEtag(byte[][] segments) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (byte[] segment : segments) {
+                    digest.update(segment);
+                }
+                byte[] hash = digest.digest();
+                StringBuilder tag = new StringBuilder(34).append('"');
+                for (int i = 0; i < 16; i++) {
+                    tag.append(Character.forDigit((hash[i] >> 4) & 0xF, 16))
+                       .append(Character.forDigit(hash[i] & 0xF, 16));
+                }
+                return tag.append('"').toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
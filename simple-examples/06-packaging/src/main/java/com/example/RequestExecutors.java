@@ -0,0 +1,117 @@
+package com.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory for the executors that run asynchronous servlet work off the
+ * container thread pool.
+ * - "virtual": one virtual thread per task, when the runtime supports it (Java 21+)
+ * - "bounded": fixed worker pool with a bounded queue that rejects when full
+ * The project compiles for Java 11, so virtual threads are looked up reflectively
+ * and the bounded pool is used as a fallback on older runtimes.
+ */
+public final class RequestExecutors {
+    
+    public static final String VIRTUAL = "virtual";
+    public static final String BOUNDED = "bounded";
+    
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutors.class);
+    
+    private RequestExecutors() {
+    }
+    
+    /**
+     * Creates an executor of the requested kind
+     *
+     * @param kind          "virtual" or "bounded"
+     * @param poolSize      worker threads for the bounded pool
+     * @param queueCapacity queued tasks for the bounded pool before rejecting
+     * @param namePrefix    thread name prefix for the bounded pool
+     */
+    public static ExecutorService create(String kind, int poolSize, int queueCapacity, String namePrefix) {
+        if (VIRTUAL.equalsIgnoreCase(kind)) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            logger.info("Virtual threads not available on Java {}, using bounded pool of {}",
+                        System.getProperty("java.version"), poolSize);
+        } else if (!BOUNDED.equalsIgnoreCase(kind)) {
+            throw new IllegalArgumentException("Unknown executor kind: " + kind);
+        }
+        return newBoundedExecutor(poolSize, queueCapacity, namePrefix);
+    }
+    
+    /**
+     * Stops an executor and waits for its threads, so an undeployed application
+     * does not leave them running: tasks in progress get up to the timeout to
+     * finish, then they are interrupted
+     *
+     * @return true when every task finished within the timeout
+     */
+    public static boolean shutdown(ExecutorService executor, long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            logger.warn("Executor still busy after {} ms, interrupting its tasks", timeoutMillis);
+            executor.shutdownNow();
+            // Interrupted tasks need a moment to unwind
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+    
+    /**
+     * Checks whether the running JVM can create virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return findVirtualFactoryMethod() != null;
+    }
+    
+    private static ExecutorService newVirtualThreadExecutor() {
+        Method factory = findVirtualFactoryMethod();
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Could not create virtual thread executor", e);
+            return null;
+        }
+    }
+    
+    private static Method findVirtualFactoryMethod() {
+        try {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+    
+    private static ExecutorService newBoundedExecutor(int poolSize, int queueCapacity, String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                                      new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                                      new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,303 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples heap, GC, thread, allocation and CPU figures of this JVM into a
+ * fixed-size ring buffer of primitive arrays.
+ * Everything a sample needs (MXBeans, collector list, method handles) is looked
+ * up once in the constructor, and every reading is a native call returning a
+ * primitive, so taking a sample allocates nothing; the buffer keeps the most
+ * recent capacity samples and overwrites the oldest.
+ *
+ * The container-aware getProcessCpuLoad/getSystemCpuLoad read cgroup files and
+ * allocate on every call, so process CPU load is derived from the process CPU
+ * time instead, and system load is the load average. The allocation rate is
+ * exact on Java 21+ (getTotalThreadAllocatedBytes); older JVMs estimate it from
+ * heap growth in intervals without a collection and repeat the last estimate
+ * otherwise. Figures the running JVM does not provide are recorded as -1.
+ */
+public class RuntimeSampler implements AutoCloseable {
+    
+    public static final String CONTEXT_ATTRIBUTE = RuntimeSampler.class.getName();
+    
+    /**
+     * The recorded series. GC counts and pauses cover the time since the previous
+     * sample (since JVM start for the first one); CPU load is a fraction of all
+     * available processors.
+     */
+    public enum Series {
+        HEAP_USED("heapUsedBytes"),
+        HEAP_COMMITTED("heapCommittedBytes"),
+        GC_COUNT("gcCount"),
+        GC_PAUSE("gcPauseMillis"),
+        THREADS("threads"),
+        ALLOCATION_RATE("allocatedBytesPerSecond"),
+        PROCESS_CPU("processCpuLoad"),
+        SYSTEM_LOAD("systemLoadAverage");
+        
+        private final String jsonName;
+        
+        Series(String jsonName) {
+            this.jsonName = jsonName;
+        }
+        
+        public String jsonName() {
+            return jsonName;
+        }
+    }
+    
+    private static final Series[] SERIES = Series.values();
+    
+    private final int capacity;
+    private final long[] timestamps;
+    private final double[][] values;
+    private long count;
+    
+    private final Runtime runtime = Runtime.getRuntime();
+    private final GarbageCollectorMXBean[] collectors;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.OperatingSystemMXBean os;
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    /** ThreadMXBean.getTotalThreadAllocatedBytes, which only exists from Java 21 on */
+    private final MethodHandle totalAllocatedBytes;
+    
+    private long lastNanos;
+    private long lastGcCount;
+    private long lastGcMillis;
+    private long lastAllocatedBytes = -1;
+    private long lastCpuNanos = -1;
+    private long lastHeapUsed = -1;
+    private double lastAllocationRate = -1;
+    
+    private ScheduledExecutorService scheduler;
+    
+    public RuntimeSampler(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.values = new double[SERIES.length][capacity];
+        
+        List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+        this.collectors = gcBeans.toArray(new GarbageCollectorMXBean[0]);
+        java.lang.management.OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        this.os = osBean instanceof com.sun.management.OperatingSystemMXBean
+            ? (com.sun.management.OperatingSystemMXBean) osBean : null;
+        this.totalAllocatedBytes = findTotalAllocatedBytes(threads);
+    }
+    
+    private static MethodHandle findTotalAllocatedBytes(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        try {
+            return MethodHandles.publicLookup()
+                .findVirtual(com.sun.management.ThreadMXBean.class, "getTotalThreadAllocatedBytes",
+                             MethodType.methodType(long.class))
+                .bindTo(bean);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Samples every interval on a daemon thread until closed
+     */
+    public synchronized void start(long intervalMillis) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Sampler already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "runtime-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+    
+    /**
+     * Records one sample, overwriting the oldest once the buffer is full
+     */
+    public synchronized void sample() {
+        long nanos = System.nanoTime();
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        long allocated = readAllocatedBytes();
+        long cpuNanos = os != null ? os.getProcessCpuTime() : -1;
+        long total = runtime.totalMemory();
+        long heapUsed = total - runtime.freeMemory();
+        boolean first = count == 0;
+        double elapsedNanos = Math.max(1, nanos - lastNanos);
+        
+        double allocationRate;
+        if (first) {
+            allocationRate = -1;
+        } else if (allocated >= 0 && lastAllocatedBytes >= 0) {
+            allocationRate = (allocated - lastAllocatedBytes) * 1e9 / elapsedNanos;
+        } else if (gcCount == lastGcCount && heapUsed >= lastHeapUsed) {
+            allocationRate = (heapUsed - lastHeapUsed) * 1e9 / elapsedNanos;
+        } else {
+            allocationRate = lastAllocationRate;
+        }
+        
+        int slot = (int) (count % capacity);
+        timestamps[slot] = System.currentTimeMillis();
+        values[Series.HEAP_USED.ordinal()][slot] = heapUsed;
+        values[Series.HEAP_COMMITTED.ordinal()][slot] = total;
+        values[Series.GC_COUNT.ordinal()][slot] = gcCount - lastGcCount;
+        values[Series.GC_PAUSE.ordinal()][slot] = gcMillis - lastGcMillis;
+        values[Series.THREADS.ordinal()][slot] = threads.getThreadCount();
+        values[Series.ALLOCATION_RATE.ordinal()][slot] = allocationRate;
+        values[Series.PROCESS_CPU.ordinal()][slot] = first || cpuNanos < 0 || lastCpuNanos < 0
+            ? -1 : Math.min(1.0, (cpuNanos - lastCpuNanos) / (elapsedNanos * processors));
+        values[Series.SYSTEM_LOAD.ordinal()][slot] = os != null ? os.getSystemLoadAverage() : -1;
+        count++;
+        
+        lastNanos = nanos;
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+        lastAllocatedBytes = allocated;
+        lastCpuNanos = cpuNanos;
+        lastHeapUsed = heapUsed;
+        lastAllocationRate = allocationRate;
+    }
+    
+    private long readAllocatedBytes() {
+        if (totalAllocatedBytes == null) {
+            return -1;
+        }
+        try {
+            return (long) totalAllocatedBytes.invokeExact();
+        } catch (Throwable e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Number of samples currently held
+     */
+    public synchronized int size() {
+        return (int) Math.min(count, capacity);
+    }
+    
+    /**
+     * Latest value of a series, or NaN before the first sample
+     */
+    public synchronized double latest(Series series) {
+        return count == 0 ? Double.NaN : values[series.ordinal()][(int) ((count - 1) % capacity)];
+    }
+    
+    /**
+     * Timestamp of the latest sample, or 0 before the first one
+     */
+    public synchronized long latestTimestamp() {
+        return count == 0 ? 0 : timestamps[(int) ((count - 1) % capacity)];
+    }
+    
+    /**
+     * Writes the samples taken after sinceMillis, oldest first, as one object with
+     * a "timestamps" array and one array per series
+     */
+    public void writeJson(JsonGenerator generator, long sinceMillis) throws IOException {
+        long[] times;
+        double[][] copy;
+        synchronized (this) {
+            int size = size();
+            long first = count - size;
+            int skip = 0;
+            while (skip < size && timestamps[(int) ((first + skip) % capacity)] <= sinceMillis) {
+                skip++;
+            }
+            times = new long[size - skip];
+            copy = new double[SERIES.length][times.length];
+            for (int i = 0; i < times.length; i++) {
+                int slot = (int) ((first + skip + i) % capacity);
+                times[i] = timestamps[slot];
+                for (Series series : SERIES) {
+                    copy[series.ordinal()][i] = values[series.ordinal()][slot];
+                }
+            }
+        }
+        
+        generator.writeStartObject();
+        generator.writeNumberField("capacity", capacity);
+        generator.writeNumberField("samples", times.length);
+        generator.writeArrayFieldStart("timestamps");
+        for (long time : times) {
+            generator.writeNumber(time);
+        }
+        generator.writeEndArray();
+        for (Series series : SERIES) {
+            generator.writeArrayFieldStart(series.jsonName());
+            boolean decimal = series == Series.PROCESS_CPU || series == Series.SYSTEM_LOAD;
+            for (double value : copy[series.ordinal()]) {
+                if (decimal) {
+                    generator.writeNumber(value);
+                } else {
+                    generator.writeNumber(Math.round(value));
+                }
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+    
+    /**
+     * Latest sample for MetricsRegistry
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("samples", size());
+        for (Series series : SERIES) {
+            stats.put(series.jsonName(), latest(series));
+        }
+        return stats;
+    }
+    
+    /**
+     * One-line summary of the latest sample
+     */
+    public String describeLatest() {
+        return String.format(Locale.ROOT,
+                             "heap %d/%d MB, %d threads, %d GCs (%d ms), process CPU %.1f%%",
+                             (long) latest(Series.HEAP_USED) / (1024 * 1024),
+                             (long) latest(Series.HEAP_COMMITTED) / (1024 * 1024),
+                             (long) latest(Series.THREADS),
+                             (long) latest(Series.GC_COUNT),
+                             (long) latest(Series.GC_PAUSE),
+                             latest(Series.PROCESS_CPU) * 100);
+    }
+}
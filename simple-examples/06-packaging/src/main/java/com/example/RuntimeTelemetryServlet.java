@@ -0,0 +1,102 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves the RuntimeSampler ring buffer as a JSON time series.
+ * GET /telemetry returns every sample held; ?since=<epoch millis> only the
+ * newer ones, so a dashboard can poll incrementally. The sampler runs for the
+ * lifetime of the servlet and is also published as a context attribute.
+ */
+@WebServlet(name = "RuntimeTelemetryServlet", urlPatterns = {"/telemetry"}, loadOnStartup = 1)
+public class RuntimeTelemetryServlet extends HttpServlet {
+    
+    /** Init parameter: milliseconds between samples */
+    public static final String INTERVAL_PARAM = "telemetry.interval.millis";
+    /** Init parameter: samples kept in the ring buffer */
+    public static final String CAPACITY_PARAM = "telemetry.capacity";
+    
+    private static final Logger logger = LoggerFactory.getLogger(RuntimeTelemetryServlet.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    
+    private RuntimeSampler sampler;
+    private long intervalMillis;
+    
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        this.intervalMillis = Math.max(1, getLongParameter(INTERVAL_PARAM, 1000));
+        int capacity = (int) getLongParameter(CAPACITY_PARAM, 3600);
+        try {
+            this.sampler = new RuntimeSampler(capacity);
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("Invalid value for " + CAPACITY_PARAM + ": " + capacity, e);
+        }
+        sampler.start(intervalMillis);
+        getServletContext().setAttribute(RuntimeSampler.CONTEXT_ATTRIBUTE, sampler);
+        MetricsRegistry.forContext(getServletContext()).register("runtime", sampler::getStats);
+        logger.info("Sampling runtime telemetry every {} ms, keeping {} samples", intervalMillis, capacity);
+    }
+    
+    @Override
+    public void destroy() {
+        MetricsRegistry.forContext(getServletContext()).unregister("runtime");
+        getServletContext().removeAttribute(RuntimeSampler.CONTEXT_ATTRIBUTE);
+        sampler.close();
+        super.destroy();
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        long since;
+        try {
+            String value = request.getParameter("since");
+            since = value == null || value.isEmpty() ? Long.MIN_VALUE : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "since must be epoch milliseconds");
+            return;
+        }
+        
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("intervalMillis", intervalMillis);
+            generator.writeFieldName("series");
+            sampler.writeJson(generator, since);
+            generator.writeEndObject();
+        }
+    }
+    
+    /**
+     * Gets the sampler backing this servlet
+     */
+    public RuntimeSampler getSampler() {
+        return sampler;
+    }
+    
+    private long getLongParameter(String name, long defaultValue) throws ServletException {
+        String value = getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("Invalid value for " + name + ": " + value, e);
+        }
+    }
+}
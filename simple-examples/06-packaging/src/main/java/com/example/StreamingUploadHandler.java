@@ -0,0 +1,416 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams uploaded request bodies to the upload directory.
+ * Raw bodies are moved into the file with FileChannel.transferFrom; multipart
+ * bodies go through MultipartStreamParser with one bounded buffer, so memory use
+ * per upload is constant regardless of the upload size. Files are written under
+ * a temporary name and only moved into place once the whole request succeeded.
+ * An upload never replaces an existing file: when the client's file name is
+ * taken, a numbered name ("report-1.pdf") is used and reported in the summary.
+ */
+public class StreamingUploadHandler {
+    
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENT = 16;
+    
+    /** Largest chunk handed to a single FileChannel.transferFrom call */
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    private static final int MULTIPART_BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".part";
+    /** Numbered names tried before falling back to a random one */
+    private static final int MAX_NAME_ATTEMPTS = 100;
+    
+    private static final Logger logger = LoggerFactory.getLogger(StreamingUploadHandler.class);
+    private static final ObjectWriter JSON_WRITER = new ObjectMapper().writerWithDefaultPrettyPrinter();
+    
+    private final Path directory;
+    private final long maxBytes;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    
+    private final LongAdder uploads = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder rejectedTooLarge = new LongAdder();
+    private final LongAdder rejectedBusy = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong maxAllocatedBytes = new AtomicLong();
+    
+    public StreamingUploadHandler(Path directory, long maxBytes, int maxConcurrent) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Receives the body of an upload request and answers with a JSON summary:
+     * 201 on success, 413 above the size limit, 503 when all upload slots are
+     * taken and 400 for malformed multipart bodies
+     */
+    public void handle(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!permits.tryAcquire()) {
+            rejectedBusy.increment();
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many concurrent uploads");
+            return;
+        }
+        try {
+            long declared = request.getContentLengthLong();
+            if (declared > maxBytes) {
+                rejectedTooLarge.increment();
+                response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                                   "Upload exceeds " + maxBytes + " bytes");
+                return;
+            }
+            receive(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private void receive(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long allocatedBefore = allocatedBytes();
+        long startNanos = System.nanoTime();
+        
+        List<PendingFile> pending = new ArrayList<>();
+        LimitedInputStream body = new LimitedInputStream(request.getInputStream(), maxBytes);
+        Map<String, Long> stored = new LinkedHashMap<>();
+        try {
+            Files.createDirectories(directory);
+            String boundary = MultipartStreamParser.boundaryOf(request.getContentType());
+            if (isMultipart(request) && boundary != null) {
+                receiveMultipart(body, boundary, pending);
+            } else if (isMultipart(request)) {
+                throw new MultipartStreamParser.MalformedMultipartException("Missing multipart boundary");
+            } else {
+                receiveRaw(body, fileName(request), pending);
+            }
+            for (PendingFile file : pending) {
+                stored.put(place(file).getFileName().toString(), file.size);
+            }
+            pending.clear();
+        } catch (UploadTooLargeException e) {
+            rejectedTooLarge.increment();
+            sendErrorIfPossible(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+            return;
+        } catch (MultipartStreamParser.MalformedMultipartException e) {
+            failures.increment();
+            sendErrorIfPossible(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (IOException e) {
+            failures.increment();
+            logger.warn("Upload failed after {} bytes", body.getCount(), e);
+            sendErrorIfPossible(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Upload failed");
+            return;
+        } finally {
+            for (PendingFile file : pending) {
+                Files.deleteIfExists(file.temp);
+            }
+        }
+        
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        long allocated = allocatedBefore >= 0 ? allocatedBytes() - allocatedBefore : -1;
+        long received = body.getCount();
+        uploads.increment();
+        files.add(stored.size());
+        bytes.add(received);
+        maxAllocatedBytes.accumulateAndGet(allocated, Math::max);
+        
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("files", stored);
+        summary.put("bytes", received);
+        summary.put("millis", elapsedNanos / 1_000_000);
+        summary.put("mbPerSecond", received / 1_048_576.0 / (elapsedNanos / 1e9));
+        summary.put("heapAllocatedBytes", allocated);
+        logger.info("Stored {} bytes in {} file(s) at {} MB/s, {} bytes allocated",
+                    received, stored.size(), String.format("%.1f", summary.get("mbPerSecond")), allocated);
+        
+        response.setStatus(HttpServletResponse.SC_CREATED);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        JSON_WRITER.writeValue(response.getOutputStream(), summary);
+    }
+    
+    private void receiveRaw(InputStream body, String name, List<PendingFile> pending) throws IOException {
+        PendingFile file = new PendingFile(tempFile(), name);
+        pending.add(file);
+        
+        ReadableByteChannel source = Channels.newChannel(body);
+        long position = 0;
+        try (FileChannel channel = FileChannel.open(file.temp, StandardOpenOption.CREATE_NEW,
+                                                    StandardOpenOption.WRITE)) {
+            long transferred;
+            while ((transferred = channel.transferFrom(source, position, TRANSFER_CHUNK)) > 0) {
+                position += transferred;
+            }
+        }
+        file.size = position;
+    }
+    
+    private void receiveMultipart(InputStream body, String boundary, List<PendingFile> pending) throws IOException {
+        MultipartStreamParser parser = new MultipartStreamParser(body, boundary, MULTIPART_BUFFER_SIZE);
+        FilePartWriter writer = new FilePartWriter(pending);
+        try {
+            parser.parse(writer);
+        } finally {
+            writer.endPart();
+        }
+    }
+    
+    private Path tempFile() {
+        return directory.resolve("." + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+    
+    /**
+     * Gives a received file its final name. A hard link fails atomically when the
+     * name exists, where a rename would silently replace the other file, so a
+     * concurrent upload of the same name gets the next numbered name instead.
+     *
+     * @return the stored file
+     */
+    private Path place(PendingFile file) throws IOException {
+        int dot = file.name.lastIndexOf('.');
+        String base = dot > 0 ? file.name.substring(0, dot) : file.name;
+        String extension = dot > 0 ? file.name.substring(dot) : "";
+        for (int attempt = 0; attempt <= MAX_NAME_ATTEMPTS; attempt++) {
+            String name = attempt == 0 ? file.name
+                : attempt < MAX_NAME_ATTEMPTS ? base + "-" + attempt + extension
+                : base + "-" + UUID.randomUUID() + extension;
+            Path target = directory.resolve(name);
+            try {
+                Files.createLink(target, file.temp);
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            }
+            Files.delete(file.temp);
+            return target;
+        }
+        throw new FileAlreadyExistsException(directory.resolve(file.name).toString());
+    }
+    
+    private static void sendErrorIfPossible(HttpServletResponse response, int status, String message)
+            throws IOException {
+        if (!response.isCommitted()) {
+            response.reset();
+            response.sendError(status, message);
+        }
+    }
+    
+    private static boolean isMultipart(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("multipart/");
+    }
+    
+    /**
+     * Takes the file name of a raw upload from the X-File-Name header or the
+     * "name" query parameter. The query string is parsed by hand because
+     * getParameter would consume form-encoded bodies.
+     */
+    private static String fileName(HttpServletRequest request) throws UnsupportedEncodingException {
+        String name = request.getHeader("X-File-Name");
+        String query = request.getQueryString();
+        if (name == null && query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith("name=")) {
+                    name = URLDecoder.decode(pair.substring("name=".length()), "UTF-8");
+                }
+            }
+        }
+        return sanitize(name);
+    }
+    
+    /**
+     * Reduces a client supplied file name to a safe single path segment
+     */
+    static String sanitize(String name) {
+        if (name != null) {
+            name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1)
+                       .replaceAll("[\\p{Cntrl}:*?\"<>|]", "_")
+                       .trim();
+        }
+        if (name == null || name.isEmpty() || name.startsWith(".")) {
+            return "upload-" + UUID.randomUUID();
+        }
+        return name;
+    }
+    
+    /**
+     * Bytes allocated on the heap by the current thread so far, or -1 when the JVM cannot tell
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Counter snapshot for dashboards
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("uploads", uploads.sum());
+        stats.put("files", files.sum());
+        stats.put("bytes", bytes.sum());
+        stats.put("active", maxConcurrent - permits.availablePermits());
+        stats.put("rejectedTooLarge", rejectedTooLarge.sum());
+        stats.put("rejectedBusy", rejectedBusy.sum());
+        stats.put("failures", failures.sum());
+        stats.put("maxHeapAllocatedBytes", maxAllocatedBytes.get());
+        return stats;
+    }
+    
+    /**
+     * Writes every file part of a multipart body to its own temporary file;
+     * plain form fields are skipped
+     */
+    private final class FilePartWriter implements MultipartStreamParser.PartListener {
+        private final List<PendingFile> pending;
+        private FileChannel channel;
+        private PendingFile file;
+        
+        private FilePartWriter(List<PendingFile> pending) {
+            this.pending = pending;
+        }
+        
+        @Override
+        public WritableByteChannel startPart(Map<String, String> headers) throws IOException {
+            String fileName = MultipartStreamParser.dispositionParameter(
+                headers.get("content-disposition"), "filename");
+            if (fileName == null) {
+                return null;
+            }
+            file = new PendingFile(tempFile(), sanitize(fileName));
+            pending.add(file);
+            channel = FileChannel.open(file.temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return channel;
+        }
+        
+        @Override
+        public void endPart() throws IOException {
+            if (channel != null) {
+                try {
+                    file.size = channel.size();
+                } finally {
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+    }
+    
+    /**
+     * A received file waiting under its temporary name for the request to succeed
+     */
+    private static final class PendingFile {
+        final Path temp;
+        final String name;
+        long size;
+        
+        PendingFile(Path temp, String name) {
+            this.temp = temp;
+            this.name = name;
+        }
+    }
+    
+    /**
+     * Signals a body that grew past the configured size limit
+     */
+    public static class UploadTooLargeException extends IOException {
+        public UploadTooLargeException(long limit) {
+            super("Upload exceeds " + limit + " bytes");
+        }
+    }
+    
+    /**
+     * Counts the bytes read and fails as soon as they pass the limit,
+     * which also covers chunked bodies without a Content-Length
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+        
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+        
+        private void count(long read) throws UploadTooLargeException {
+            count += read;
+            if (count > limit) {
+                throw new UploadTooLargeException(limit);
+            }
+        }
+        
+        private long getCount() {
+            return count;
+        }
+    }
+}
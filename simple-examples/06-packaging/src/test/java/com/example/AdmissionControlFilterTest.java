@@ -0,0 +1,231 @@
+package com.example;
+
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for AdmissionControlFilter. The overload test drives a
+ * servlet with a fixed service time at five times the rate its concurrency
+ * limit can serve and checks that the requests that get in stay fast.
+ */
+class AdmissionControlFilterTest {
+    
+    // A long service time keeps absolute request rates low, so the client and the
+    // container sharing a small test machine do not become the bottleneck
+    private static final long SERVICE_MILLIS = 100;
+    private static final int MAX_CONCURRENT = 2;
+    private static final long QUEUE_TARGET_MILLIS = 200;
+    /** Requests per second the limited path can serve */
+    private static final int CAPACITY = (int) (MAX_CONCURRENT * 1000 / SERVICE_MILLIS);
+    
+    private static EmbeddedTomcat tomcat;
+    private static AdmissionControlFilter overloadFilter;
+    private static AdmissionControlFilter mixedFilter;
+    private static final CountDownLatch release = new CountDownLatch(1);
+    private static final CountDownLatch holding = new CountDownLatch(1);
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        tomcat = new EmbeddedTomcat(64);
+        tomcat.addServlet("service", new FixedServiceTimeServlet(), new HashMap<>(), "/service");
+        tomcat.addServlet("held", new HeldServlet(), new HashMap<>(), "/held", "/single");
+        tomcat.addServlet("limited", new FixedServiceTimeServlet(), new HashMap<>(), "/limited");
+        tomcat.addServlet("mixed", new FixedServiceTimeServlet(), new HashMap<>(), "/mixed");
+        
+        Map<String, String> overloadParams = new HashMap<>();
+        overloadParams.put(AdmissionControlFilter.MAX_CONCURRENT_PARAM, String.valueOf(MAX_CONCURRENT));
+        overloadParams.put(AdmissionControlFilter.MAX_QUEUE_PARAM, "16");
+        overloadParams.put(AdmissionControlFilter.QUEUE_TARGET_PARAM, String.valueOf(QUEUE_TARGET_MILLIS));
+        overloadFilter = new AdmissionControlFilter();
+        tomcat.addFilter("overload", overloadFilter, overloadParams, "/service");
+        
+        Map<String, String> singleParams = new HashMap<>();
+        singleParams.put(AdmissionControlFilter.MAX_CONCURRENT_PARAM, "1");
+        singleParams.put(AdmissionControlFilter.MAX_QUEUE_PARAM, "0");
+        tomcat.addFilter("single", new AdmissionControlFilter(), singleParams, "/held", "/single");
+        
+        Map<String, String> rateParams = new HashMap<>();
+        rateParams.put(AdmissionControlFilter.CLIENT_RATE_PARAM, "1");
+        rateParams.put(AdmissionControlFilter.CLIENT_BURST_PARAM, "3");
+        rateParams.put(AdmissionControlFilter.CLIENT_HEADER_PARAM, "X-Client-Id");
+        tomcat.addFilter("rate", new AdmissionControlFilter(), rateParams, "/limited");
+        
+        mixedFilter = new AdmissionControlFilter();
+        tomcat.addFilter("mixed", mixedFilter, overloadParams, "/mixed");
+        tomcat.start();
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        release.countDown();
+        tomcat.close();
+    }
+    
+    private HttpResponse<String> get(String path, String... headers) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(tomcat.uri(path)).GET();
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+    
+    @Test
+    @DisplayName("Should keep p99 of admitted requests bounded at 5x overload")
+    void shouldBoundLatencyUnderOverload() {
+        HttpLoad.constantRate(tomcat.uri("/service"), CAPACITY / 2, 1000);
+        
+        HttpLoad.Result result = HttpLoad.constantRate(tomcat.uri("/service"), CAPACITY * 5, 5000);
+        
+        long admitted = result.count(200);
+        long shed = result.count(503);
+        long p99 = result.percentileMillis(99, 200);
+        System.out.printf("Admission control at 5x overload (%d req/s offered, capacity %d req/s): "
+                          + "admitted=%d shed=%d admitted p50=%dms p99=%dms%n",
+                          CAPACITY * 5, CAPACITY, admitted, shed,
+                          result.percentileMillis(50, 200), p99);
+        System.out.println(overloadFilter.getStats());
+        
+        assertThat(admitted + shed).isEqualTo(CAPACITY * 5 * 5);
+        assertThat(shed).isPositive();
+        // Most of the capacity is still used for real work
+        assertThat(admitted).isGreaterThan(CAPACITY * 5 / 2);
+        // Service time plus at most the queueing target, with headroom for the client and container
+        assertThat(p99).isLessThan(SERVICE_MILLIS + QUEUE_TARGET_MILLIS + 200);
+    }
+    
+    @Test
+    @DisplayName("Should keep admitting page requests while a slow upload runs")
+    void shouldNotLetUploadsStarvePages() throws Exception {
+        // A chunked body that takes about 3 s to arrive: 30 times the page service time
+        InputStream slowBody = new InputStream() {
+            private int chunks;
+            
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (chunks++ == 30) {
+                    return -1;
+                }
+                try {
+                    Thread.sleep(SERVICE_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Math.min(length, 1024);
+            }
+        };
+        CompletableFuture<HttpResponse<String>> upload = client.sendAsync(
+            HttpRequest.newBuilder(tomcat.uri("/mixed"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> slowBody)).build(),
+            HttpResponse.BodyHandlers.ofString());
+        
+        // Below the page capacity, during and after the upload
+        HttpLoad.Result result = HttpLoad.constantRate(tomcat.uri("/mixed"), CAPACITY * 3 / 4, 5000);
+        
+        assertThat(upload.get(10, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        long admitted = result.count(200);
+        long shed = result.count(503);
+        System.out.printf("Pages next to a slow upload: admitted=%d shed=%d p99=%dms%n",
+                          admitted, shed, result.percentileMillis(99, 200));
+        // A shared service time average would reject nearly every request that has to queue
+        assertThat(shed).isLessThanOrEqualTo((admitted + shed) / 10);
+        assertThat(mixedFilter.getStats().get("bulk")).asInstanceOf(InstanceOfAssertFactories.MAP)
+            .containsEntry("admitted", 1L);
+    }
+    
+    @Test
+    @DisplayName("Should reject with 503 and Retry-After when no slot is free")
+    void shouldRejectWhenSaturated() throws Exception {
+        CompletableFuture<HttpResponse<String>> held = client.sendAsync(
+            HttpRequest.newBuilder(tomcat.uri("/held")).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(holding.await(10, TimeUnit.SECONDS)).isTrue();
+        
+        HttpResponse<String> rejected = get("/single");
+        release.countDown();
+        
+        assertThat(rejected.statusCode()).isEqualTo(503);
+        assertThat(rejected.headers().firstValue("Retry-After")).contains("1");
+        assertThat(held.get(10, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(get("/single").statusCode()).isEqualTo(200);
+    }
+    
+    @Test
+    @DisplayName("Should rate limit each client separately with 429")
+    void shouldRateLimitPerClient() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(get("/limited", "X-Client-Id", "alpha").statusCode()).isEqualTo(200);
+        }
+        HttpResponse<String> limited = get("/limited", "X-Client-Id", "alpha");
+        
+        assertThat(limited.statusCode()).isEqualTo(429);
+        assertThat(limited.headers().firstValue("Retry-After")).contains("1");
+        assertThat(get("/limited", "X-Client-Id", "beta").statusCode()).isEqualTo(200);
+    }
+    
+    /**
+     * Stands in for a request with a fixed amount of work
+     */
+    static class FixedServiceTimeServlet extends HttpServlet {
+        @Override
+        protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            request.getInputStream().transferTo(OutputStream.nullOutputStream());
+            response.setContentType("text/plain");
+            response.getWriter().write("stored");
+        }
+        
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            try {
+                Thread.sleep(SERVICE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setContentType("text/plain");
+            response.getWriter().write("done");
+        }
+    }
+    
+    /**
+     * Holds "/held" until the test releases it, so the single slot stays taken
+     */
+    static class HeldServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            if ("/held".equals(request.getServletPath())) {
+                holding.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            response.setContentType("text/plain");
+            response.getWriter().write("done");
+        }
+    }
+}
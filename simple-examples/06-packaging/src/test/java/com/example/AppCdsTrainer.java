@@ -0,0 +1,75 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produces an Application Class-Data Sharing archive for every packaged JAR.
+ * Run by the "appcds" Maven profile after packaging:
+ * 1. Training pass: runs PackagingDemo once and records the loaded classes
+ * 2. Dump: writes the recorded classes into {@code <jar name>.jsa} next to the JAR
+ * Start the application with {@code -XX:SharedArchiveFile=<jar name>.jsa} to use it.
+ *
+ * The static dump (-Xshare:dump) works on Java 11 and later. Classes loaded from
+ * nested JARs by the Spring Boot launcher cannot be archived, so the executable
+ * variant only benefits for JDK and launcher classes.
+ */
+public class AppCdsTrainer {
+    
+    private static final long PROCESS_TIMEOUT_SECONDS = 120;
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: AppCdsTrainer <target directory> <final name>");
+            System.exit(2);
+        }
+        Path targetDir = Path.of(args[0]);
+        String finalName = args[1];
+        Files.createDirectories(targetDir.resolve("cds"));
+        
+        for (PackagingVariant variant : PackagingVariant.values()) {
+            if (!variant.isBuilt(targetDir, finalName)) {
+                System.out.println("[appcds] " + variant.label() + ": no JAR, skipping");
+                continue;
+            }
+            Path jar = variant.jar(targetDir, finalName);
+            Path classList = variant.classList(targetDir, finalName);
+            Path archive = variant.archive(targetDir, finalName);
+            
+            run(targetDir, variant.label() + "-training",
+                "-Xshare:off", "-XX:DumpLoadedClassList=" + classList, "-jar", jar.toString());
+            run(targetDir, variant.label() + "-dump",
+                "-Xshare:dump", "-XX:SharedClassListFile=" + classList,
+                "-XX:SharedArchiveFile=" + archive, "-cp", jar.toString());
+            
+            System.out.printf("[appcds] %s: %s (%d KB)%n",
+                              variant.label(), archive.getFileName(), Files.size(archive) / 1024);
+        }
+    }
+    
+    private static void run(Path targetDir, String step, String... jvmArgs)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(PackagingVariant.javaExecutable().toString());
+        command.addAll(Arrays.asList(jvmArgs));
+        
+        Path log = targetDir.resolve("cds").resolve(step + ".log");
+        Process process = new ProcessBuilder(command)
+            .directory(targetDir.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        if (!process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException(step + " timed out, see " + log);
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException(step + " failed with exit code " + process.exitValue() + ", see " + log);
+        }
+    }
+}
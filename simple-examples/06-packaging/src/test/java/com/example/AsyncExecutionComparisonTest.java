@@ -0,0 +1,85 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Compares blocking and async execution of PackagingServlet under a burst of
+ * concurrent connections. A small container pool and a simulated slow render
+ * section make the difference visible: in blocking mode every in-flight
+ * request holds a container thread, in async mode the thread is released.
+ */
+class AsyncExecutionComparisonTest {
+    
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 1000);
+    private static final int CONTAINER_THREADS = 16;
+    private static final long SLOW_SECTION_MILLIS = 100;
+    
+    private static EmbeddedTomcat tomcat;
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        tomcat = new EmbeddedTomcat(CONTAINER_THREADS);
+        
+        tomcat.addServlet("blocking", new SlowSectionServlet(), new HashMap<>(), "/blocking");
+        
+        Map<String, String> asyncParams = new HashMap<>();
+        asyncParams.put(PackagingServlet.EXECUTION_MODE_PARAM, "async");
+        asyncParams.put(PackagingServlet.ASYNC_EXECUTOR_PARAM, RequestExecutors.VIRTUAL);
+        asyncParams.put(PackagingServlet.ASYNC_POOL_SIZE_PARAM, "256");
+        asyncParams.put(PackagingServlet.ASYNC_QUEUE_CAPACITY_PARAM, String.valueOf(CONCURRENCY));
+        asyncParams.put(PackagingServlet.ASYNC_TIMEOUT_PARAM, "60000");
+        tomcat.addServlet("async", new SlowSectionServlet(), asyncParams, "/async");
+        
+        tomcat.start();
+        
+        // Warm up both paths so class loading does not skew the first burst
+        HttpLoad.burst(tomcat.uri("/blocking"), 20);
+        HttpLoad.burst(tomcat.uri("/async"), 20);
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        tomcat.close();
+    }
+    
+    @Test
+    @DisplayName("Should report throughput and p99 for blocking and async modes")
+    void shouldCompareBlockingAndAsyncModes() {
+        HttpLoad.Result blocking = HttpLoad.burst(tomcat.uri("/blocking"), CONCURRENCY);
+        HttpLoad.Result async = HttpLoad.burst(tomcat.uri("/async"), CONCURRENCY);
+        
+        System.out.println("Execution mode comparison (" + CONCURRENCY + " concurrent connections, "
+                           + CONTAINER_THREADS + " container threads, virtual threads "
+                           + (RequestExecutors.isVirtualThreadSupported() ? "available" : "unavailable") + "):");
+        System.out.println(blocking.summary("blocking"));
+        System.out.println(async.summary("async"));
+        
+        assertThat(blocking.count(200)).isEqualTo(CONCURRENCY);
+        assertThat(async.count(200)).isEqualTo(CONCURRENCY);
+        assertThat(async.throughput()).isGreaterThan(blocking.throughput());
+    }
+    
+    /**
+     * PackagingServlet with a slow render step standing in for JSON processing
+     * or manifest reads
+     */
+    static class SlowSectionServlet extends PackagingServlet {
+        @Override
+        protected PageRenderCache.RenderedPage renderPage(PageRequest pageRequest) {
+            try {
+                Thread.sleep(SLOW_SECTION_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.renderPage(pageRequest);
+        }
+    }
+}
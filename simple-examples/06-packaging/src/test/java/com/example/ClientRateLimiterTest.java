@@ -0,0 +1,111 @@
+package com.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for ClientRateLimiter buckets, driven by a manual clock
+ */
+class ClientRateLimiterTest {
+    
+    private static final long SECOND = 1_000_000_000L;
+    
+    private final AtomicLong clock = new AtomicLong(42 * SECOND);
+    private ClientRateLimiter limiter;
+    
+    @BeforeEach
+    void setUp() {
+        // 10 requests per second, bursts of 3
+        limiter = new ClientRateLimiter(10, 3, 4, clock::get);
+    }
+    
+    @Test
+    @DisplayName("Should allow a burst and then report the wait for the next token")
+    void shouldAllowBurstThenThrottle() {
+        assertThat(limiter.acquire("a")).isZero();
+        assertThat(limiter.acquire("a")).isZero();
+        assertThat(limiter.acquire("a")).isZero();
+        
+        assertThat(limiter.acquire("a")).isEqualTo(SECOND / 10);
+    }
+    
+    @Test
+    @DisplayName("Should refill at the configured rate")
+    void shouldRefillAtRate() {
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("a");
+        }
+        clock.addAndGet(SECOND / 10);
+        
+        assertThat(limiter.acquire("a")).isZero();
+        assertThat(limiter.acquire("a")).isPositive();
+    }
+    
+    @Test
+    @DisplayName("Should keep clients independent")
+    void shouldKeepClientsIndependent() {
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("a");
+        }
+        
+        assertThat(limiter.acquire("a")).isPositive();
+        assertThat(limiter.acquire("b")).isZero();
+    }
+    
+    @Test
+    @DisplayName("Should sweep refilled buckets and share an overflow bucket when full")
+    void shouldBoundTrackedClients() {
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire("client-" + i);
+        }
+        assertThat(limiter.getTrackedClients()).isEqualTo(4);
+        
+        // All buckets are still draining, so a fifth client lands in the overflow bucket
+        limiter.acquire("client-4");
+        assertThat(limiter.getTrackedClients()).isEqualTo(5);
+        
+        clock.addAndGet(SECOND);
+        limiter.acquire("client-5");
+        assertThat(limiter.getTrackedClients()).isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("Should hand out exactly the burst under contention")
+    void shouldHandOutBurstUnderContention() throws Exception {
+        ClientRateLimiter shared = new ClientRateLimiter(1, 100, 10, clock::get);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 50; i++) {
+                    if (shared.acquire("hot") == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertThat(allowed.get()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for CompressedResponseStore negotiation, storage and counters
+ */
+class CompressedResponseStoreTest {
+    
+    private static final byte[] BODY = "<p>Maven packaging demo</p>\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+    
+    private CompressedResponseStore store;
+    
+    @BeforeEach
+    void setUp() {
+        store = new CompressedResponseStore(1024, 64 * 1024);
+    }
+    
+    @Nested
+    @DisplayName("Accept-Encoding Negotiation Tests")
+    class NegotiationTests {
+        
+        @Test
+        @DisplayName("Should prefer gzip on equal weight")
+        void shouldPreferGzipOnEqualWeight() {
+            assertThat(CompressedResponseStore.negotiate("gzip, deflate, br")).isEqualTo("gzip");
+            assertThat(CompressedResponseStore.negotiate("deflate, gzip")).isEqualTo("gzip");
+        }
+        
+        @Test
+        @DisplayName("Should honor q-values")
+        void shouldHonorQValues() {
+            assertThat(CompressedResponseStore.negotiate("gzip;q=0.5, deflate")).isEqualTo("deflate");
+            assertThat(CompressedResponseStore.negotiate("gzip;q=0, deflate;q=0")).isNull();
+            assertThat(CompressedResponseStore.negotiate("*;q=0.1, gzip;q=0")).isEqualTo("deflate");
+        }
+        
+        @Test
+        @DisplayName("Should fall back to identity")
+        void shouldFallBackToIdentity() {
+            assertThat(CompressedResponseStore.negotiate(null)).isNull();
+            assertThat(CompressedResponseStore.negotiate("")).isNull();
+            assertThat(CompressedResponseStore.negotiate("br, identity")).isNull();
+        }
+    }
+    
+    @Nested
+    @DisplayName("Storage Tests")
+    class StorageTests {
+        
+        @Test
+        @DisplayName("Should compress once per ETag and encoding")
+        void shouldCompressOncePerEtagAndEncoding() throws IOException {
+            byte[] first = store.getOrCompress("/packaging", "\"v1\"", "gzip", BODY, BODY.length);
+            byte[] second = store.getOrCompress("/packaging", "\"v1\"", "gzip", BODY, BODY.length);
+            
+            assertThat(second).isSameAs(first);
+            assertThat(store.getMisses()).isEqualTo(1);
+            assertThat(store.getHits()).isEqualTo(1);
+            assertThat(gunzip(first)).isEqualTo(BODY);
+        }
+        
+        @Test
+        @DisplayName("Should store gzip and deflate variants separately")
+        void shouldStoreVariantsSeparately() throws IOException {
+            byte[] gzip = store.getOrCompress("/packaging", "\"v1\"", "gzip", BODY, BODY.length);
+            byte[] deflate = store.getOrCompress("/packaging", "\"v1\"", "deflate", BODY, BODY.length);
+            
+            assertThat(store.getMisses()).isEqualTo(2);
+            assertThat(gunzip(gzip)).isEqualTo(BODY);
+            assertThat(inflate(deflate)).isEqualTo(BODY);
+        }
+        
+        @Test
+        @DisplayName("Should miss when ETag changes")
+        void shouldMissWhenEtagChanges() {
+            store.getOrCompress("/packaging", "\"v1\"", "gzip", BODY, BODY.length);
+            store.getOrCompress("/packaging", "\"v2\"", "gzip", BODY, BODY.length);
+            
+            assertThat(store.getMisses()).isEqualTo(2);
+            assertThat(store.getHits()).isZero();
+        }
+        
+        @Test
+        @DisplayName("Should evict least recently used entries beyond byte bound")
+        void shouldEvictBeyondByteBound() {
+            CompressedResponseStore small = new CompressedResponseStore(1, 200);
+            for (int i = 0; i < 10; i++) {
+                small.getOrCompress("/page" + i, "\"v\"", "gzip", BODY, BODY.length);
+            }
+            
+            assertThat((Long) small.getStats().get("storedBytes")).isLessThanOrEqualTo(200L);
+            assertThat((Long) small.getStats().get("evictions")).isPositive();
+        }
+        
+        @Test
+        @DisplayName("Should skip tiny payloads")
+        void shouldSkipTinyPayloads() {
+            assertThat(store.isWorthCompressing(100)).isFalse();
+            assertThat(store.isWorthCompressing(BODY.length)).isTrue();
+        }
+    }
+    
+    @Test
+    @DisplayName("Should report bytes saved")
+    void shouldReportBytesSaved() {
+        byte[] compressed = store.getOrCompress("/packaging", "\"v1\"", "gzip", BODY, BODY.length);
+        store.getOrCompress("/packaging", "\"v1\"", "gzip", BODY, BODY.length);
+        
+        assertThat(store.getBytesSaved()).isEqualTo(2L * (BODY.length - compressed.length));
+        assertThat(store.getStats()).containsKeys("hits", "misses", "skipped", "bytesSaved", "entries");
+    }
+    
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+    
+    private static byte[] inflate(byte[] data) throws IOException {
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            return in.readAllBytes();
+        }
+    }
+}
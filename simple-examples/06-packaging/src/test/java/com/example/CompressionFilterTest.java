@@ -0,0 +1,138 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for CompressionFilter in front of PackagingServlet
+ */
+class CompressionFilterTest {
+    
+    private static EmbeddedTomcat tomcat;
+    private static CompressionFilter filter;
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        tomcat = new EmbeddedTomcat(8);
+        filter = new CompressionFilter();
+        tomcat.addFilter("compression", filter, new HashMap<>(), "/*");
+        
+        tomcat.addServlet("blocking", new PackagingServlet(), new HashMap<>(), "/blocking");
+        Map<String, String> asyncParams = new HashMap<>();
+        asyncParams.put(PackagingServlet.EXECUTION_MODE_PARAM, "async");
+        tomcat.addServlet("async", new PackagingServlet(), asyncParams, "/async");
+        tomcat.start();
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        tomcat.close();
+    }
+    
+    private HttpResponse<byte[]> get(String path, String acceptEncoding, String ifNoneMatch) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(tomcat.uri(path)).GET();
+        if (acceptEncoding != null) {
+            builder.header("Accept-Encoding", acceptEncoding);
+        }
+        if (ifNoneMatch != null) {
+            builder.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+    
+    @ParameterizedTest
+    @ValueSource(strings = {"/blocking", "/async"})
+    @DisplayName("Should serve gzip variant with its own ETag")
+    void shouldServeGzipVariant(String path) throws Exception {
+        HttpResponse<byte[]> response = get(path, "gzip", null);
+        
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Encoding")).contains("gzip");
+        assertThat(response.headers().firstValue("Vary")).contains("Accept-Encoding");
+        assertThat(response.headers().firstValue("ETag")).hasValueSatisfying(
+            etag -> assertThat(etag).endsWith("-gzip\""));
+        assertThat(gunzip(response.body())).contains("Maven Packaging Demonstration");
+    }
+    
+    @Test
+    @DisplayName("Should serve stored variant on repeated requests")
+    void shouldServeStoredVariantOnRepeatedRequests() throws Exception {
+        get("/blocking", "gzip", null);
+        long hits = filter.getStore().getHits();
+        
+        get("/blocking", "gzip", null);
+        
+        assertThat(filter.getStore().getHits()).isEqualTo(hits + 1);
+        assertThat(filter.getStore().getBytesSaved()).isPositive();
+    }
+    
+    @ParameterizedTest
+    @ValueSource(strings = {"/blocking", "/async"})
+    @DisplayName("Should answer 304 for compressed variant ETag")
+    void shouldAnswerNotModifiedForCompressedEtag(String path) throws Exception {
+        String etag = get(path, "gzip", null).headers().firstValue("ETag").orElseThrow();
+        
+        HttpResponse<byte[]> revalidated = get(path, "gzip", etag);
+        
+        assertThat(revalidated.statusCode()).isEqualTo(304);
+        assertThat(revalidated.headers().firstValue("ETag")).contains(etag);
+        assertThat(revalidated.headers().firstValue("Vary")).contains("Accept-Encoding");
+    }
+    
+    @Test
+    @DisplayName("Should send identity body without Accept-Encoding")
+    void shouldSendIdentityBodyWithoutAcceptEncoding() throws Exception {
+        HttpResponse<byte[]> response = get("/blocking", null, null);
+        
+        assertThat(response.headers().firstValue("Content-Encoding")).isEmpty();
+        assertThat(new String(response.body(), StandardCharsets.UTF_8)).contains("Maven Packaging Demonstration");
+    }
+    
+    @Test
+    @DisplayName("Should accept a store limit above 2 GiB and empty the store when destroyed")
+    void shouldHonorLargeStoreLimitAndClearOnDestroy() throws Exception {
+        CompressionFilter large = new CompressionFilter();
+        Map<String, String> params = new HashMap<>();
+        params.put(CompressionFilter.STORE_MAX_BYTES_PARAM, "8589934592");
+        try (EmbeddedTomcat server = new EmbeddedTomcat(2)) {
+            server.addFilter("compression", large, params, "/*");
+            server.addServlet("blocking", new PackagingServlet(), new HashMap<>(), "/blocking");
+            server.start();
+            
+            HttpRequest request = HttpRequest.newBuilder(server.uri("/blocking"))
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+            client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            
+            assertThat(large.getStore().getMaxBytes()).isEqualTo(8L * 1024 * 1024 * 1024);
+            assertThat(large.getStore().getStats()).containsEntry("entries", 1);
+        }
+        
+        assertThat(large.getStore().getStats()).containsEntry("entries", 0).containsEntry("storedBytes", 0L);
+    }
+    
+    private static String gunzip(byte[] data) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example;
+
+import org.apache.coyote.AbstractProtocol;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for EmbeddedServer: settings resolution, and the web application from
+ * src/main/webapp served with the configured connector and thread pool
+ */
+class EmbeddedServerTest {
+    
+    private static final String[] TOMCAT_PROPERTIES = {"catalina.home", "catalina.base"};
+    
+    private static final Map<String, String> savedProperties = new HashMap<>();
+    private static EmbeddedServer server;
+    
+    @BeforeAll
+    static void startServer() throws Exception {
+        for (String property : TOMCAT_PROPERTIES) {
+            savedProperties.put(property, System.getProperty(property));
+        }
+        Properties settings = EmbeddedServer.loadSettings(null);
+        settings.setProperty(EmbeddedServer.PORT, "0");
+        settings.setProperty(EmbeddedServer.BASE_DIR, Files.createTempDirectory("embedded-server").toString());
+        settings.setProperty(EmbeddedServer.WEBAPP_DIR, "src/main/webapp");
+        settings.setProperty(EmbeddedServer.ACCEPT_COUNT, "50");
+        settings.setProperty(EmbeddedServer.MAX_CONNECTIONS, "500");
+        settings.setProperty(EmbeddedServer.MAX_THREADS, "8");
+        settings.setProperty(EmbeddedServer.MIN_SPARE_THREADS, "2");
+        settings.setProperty(EmbeddedServer.MAX_QUEUE, "64");
+        server = new EmbeddedServer(settings);
+        server.start();
+    }
+    
+    @AfterAll
+    static void stopServer() throws Exception {
+        server.stop();
+        savedProperties.forEach((property, value) -> {
+            if (value == null) {
+                System.clearProperty(property);
+            } else {
+                System.setProperty(property, value);
+            }
+        });
+    }
+    
+    @Nested
+    @DisplayName("Settings")
+    class SettingsTests {
+        
+        @Test
+        @DisplayName("Should let the properties file override defaults and system properties override both")
+        void shouldLayerSettings(@TempDir Path dir) throws Exception {
+            Path file = dir.resolve("server.properties");
+            Files.writeString(file, "server.port=9000\nserver.threads.max=16\n");
+            String previous = System.getProperty(EmbeddedServer.MAX_THREADS);
+            System.setProperty(EmbeddedServer.MAX_THREADS, "32");
+            try {
+                Properties settings = EmbeddedServer.loadSettings(file.toString());
+                
+                assertThat(settings.getProperty(EmbeddedServer.PORT)).isEqualTo("9000");
+                assertThat(settings.getProperty(EmbeddedServer.MAX_THREADS)).isEqualTo("32");
+                assertThat(settings.getProperty(EmbeddedServer.ACCEPT_COUNT)).isEqualTo("100");
+            } finally {
+                if (previous == null) {
+                    System.clearProperty(EmbeddedServer.MAX_THREADS);
+                } else {
+                    System.setProperty(EmbeddedServer.MAX_THREADS, previous);
+                }
+            }
+        }
+        
+        @Test
+        @DisplayName("Should reject non-numeric sizes")
+        void shouldRejectInvalidSizes() throws Exception {
+            Properties settings = EmbeddedServer.loadSettings(null);
+            settings.setProperty(EmbeddedServer.MAX_QUEUE, "lots");
+            
+            assertThatThrownBy(() -> new EmbeddedServer(settings).start())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(EmbeddedServer.MAX_QUEUE);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Running server")
+    class RunningServerTests {
+        
+        private final HttpClient client = HttpClient.newHttpClient();
+        
+        private HttpResponse<String> get(String path) throws Exception {
+            URI uri = URI.create("http://localhost:" + server.getPort() + path);
+            return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+        }
+        
+        @Test
+        @DisplayName("Should serve the servlets declared in web.xml")
+        void shouldServeServlets() throws Exception {
+            assertThat(get("/packaging").statusCode()).isEqualTo(200);
+            
+            HttpResponse<String> metrics = get("/metrics");
+            assertThat(metrics.statusCode()).isEqualTo(200);
+            assertThat(metrics.body()).contains("\"warmup\"");
+        }
+        
+        @Test
+        @DisplayName("Should serve static content from the webapp directory")
+        void shouldServeStaticContent() throws Exception {
+            HttpResponse<String> response = get("/index.html");
+            
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(
+                type -> assertThat(type).startsWith("text/html"));
+        }
+        
+        @Test
+        @DisplayName("Should apply the connector and thread pool settings")
+        void shouldApplyTunables() {
+            assertThat(server.getConnector().getProperty("acceptCount")).isEqualTo(50);
+            assertThat(server.getConnector().getProperty("maxConnections")).isEqualTo(500);
+            assertThat(((AbstractProtocol<?>) server.getConnector().getProtocolHandler()).getExecutor())
+                .isSameAs(server.getExecutor());
+            assertThat(server.getExecutor().getMaxThreads()).isEqualTo(8);
+            assertThat(server.getExecutor().getMinSpareThreads()).isEqualTo(2);
+            assertThat(server.getExecutor().getMaxQueueSize()).isEqualTo(64);
+        }
+    }
+}
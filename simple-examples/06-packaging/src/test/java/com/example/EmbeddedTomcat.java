@@ -0,0 +1,121 @@
+package com.example;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.ErrorPage;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServlet;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal embedded Tomcat for servlet integration tests.
+ * Binds to a random free port and hosts servlets registered programmatically.
+ * Tomcat publishes catalina.home/catalina.base as system properties; they are
+ * restored on close so later tests in the same JVM see a non-web environment.
+ */
+class EmbeddedTomcat implements AutoCloseable {
+    
+    private static final String[] TOMCAT_PROPERTIES = {"catalina.home", "catalina.base"};
+    
+    private final Map<String, String> savedProperties = new HashMap<>();
+    private final Tomcat tomcat;
+    private final Connector connector;
+    private final Context context;
+    
+    EmbeddedTomcat(int maxThreads) throws IOException {
+        for (String property : TOMCAT_PROPERTIES) {
+            savedProperties.put(property, System.getProperty(property));
+        }
+        Path baseDir = Files.createTempDirectory("embedded-tomcat");
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        
+        connector = new Connector();
+        connector.setPort(0);
+        connector.setProperty("maxThreads", String.valueOf(maxThreads));
+        connector.setProperty("acceptCount", "2000");
+        connector.setProperty("maxConnections", "10000");
+        connector.setProperty("connectionTimeout", "60000");
+        tomcat.setConnector(connector);
+        
+        context = tomcat.addContext("", baseDir.toString());
+    }
+    
+    /**
+     * Registers a servlet instance with init parameters under the given URL patterns
+     */
+    Wrapper addServlet(String name, HttpServlet servlet, Map<String, String> initParams, String... patterns) {
+        Wrapper wrapper = Tomcat.addServlet(context, name, servlet);
+        wrapper.setAsyncSupported(true);
+        initParams.forEach(wrapper::addInitParameter);
+        for (String pattern : patterns) {
+            context.addServletMappingDecoded(pattern, name);
+        }
+        return wrapper;
+    }
+    
+    /**
+     * Registers a filter instance with init parameters in front of the given URL patterns
+     */
+    void addFilter(String name, Filter filter, Map<String, String> initParams, String... patterns) {
+        FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName(name);
+        filterDef.setFilter(filter);
+        filterDef.setAsyncSupported("true");
+        initParams.forEach(filterDef::addInitParameter);
+        context.addFilterDef(filterDef);
+        
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(name);
+        for (String pattern : patterns) {
+            filterMap.addURLPatternDecoded(pattern);
+        }
+        context.addFilterMap(filterMap);
+    }
+    
+    /**
+     * Forwards responses with the given status to a location, like an error-page element in web.xml
+     */
+    void addErrorPage(int status, String location) {
+        ErrorPage errorPage = new ErrorPage();
+        errorPage.setErrorCode(status);
+        errorPage.setLocation(location);
+        context.addErrorPage(errorPage);
+    }
+    
+    void start() throws LifecycleException {
+        tomcat.start();
+    }
+    
+    int getPort() {
+        return connector.getLocalPort();
+    }
+    
+    URI uri(String path) {
+        return URI.create("http://localhost:" + getPort() + path);
+    }
+    
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+        savedProperties.forEach((property, value) -> {
+            if (value == null) {
+                System.clearProperty(property);
+            } else {
+                System.setProperty(property, value);
+            }
+        });
+    }
+}
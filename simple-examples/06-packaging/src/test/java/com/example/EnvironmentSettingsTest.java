@@ -0,0 +1,61 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for the checks EnvironmentSettings applies to its fallback directories
+ */
+class EnvironmentSettingsTest {
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    @Test
+    @DisplayName("Should create a missing directory for its owner only")
+    void shouldCreateOwnerOnlyDirectory(@TempDir Path dir) throws IOException {
+        assumeTrue(isPosix(dir));
+        Path directory = dir.resolve("upload");
+
+        EnvironmentSettings.createPrivateDirectory(directory);
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory))).isEqualTo("rwx------");
+        // An existing private directory is accepted as it is
+        EnvironmentSettings.createPrivateDirectory(directory);
+    }
+
+    @Test
+    @DisplayName("Should refuse a directory open to other users")
+    void shouldRefuseSharedDirectory(@TempDir Path dir) throws IOException {
+        assumeTrue(isPosix(dir));
+        Path directory = Files.createDirectory(dir.resolve("upload"));
+        Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxrwxrwx"));
+
+        assertThatThrownBy(() -> EnvironmentSettings.createPrivateDirectory(directory))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("rwxrwxrwx");
+    }
+
+    @Test
+    @DisplayName("Should refuse a symbolic link, even to a private directory")
+    void shouldRefuseSymbolicLink(@TempDir Path dir) throws IOException {
+        assumeTrue(isPosix(dir));
+        Path target = dir.resolve("elsewhere");
+        EnvironmentSettings.createPrivateDirectory(target);
+        Path link = Files.createSymbolicLink(dir.resolve("upload"), target);
+
+        assertThatThrownBy(() -> EnvironmentSettings.createPrivateDirectory(link))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("symbolic link");
+    }
+}
@@ -0,0 +1,231 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for EventStreamServlet. Subscribers are plain HTTP/1.0 sockets (no chunked encoding), so
+ * a test can hold thousands of them or simply stop reading.
+ */
+class EventStreamServletTest {
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private static EmbeddedTomcat tomcat;
+    private static MetricsEventStream stream;
+    private static final AtomicReference<String> label = new AtomicReference<>("initial");
+    private static final AtomicLong counter = new AtomicLong();
+    private static final AtomicReference<String> payload = new AtomicReference<>("");
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        tomcat = new EmbeddedTomcat(8);
+        Map<String, String> params = new HashMap<>();
+        params.put(EventStreamServlet.INTERVAL_PARAM, "50");
+        params.put(EventStreamServlet.MAX_PENDING_PARAM, "4");
+        params.put(EventStreamServlet.MAX_STALL_PARAM, "2000");
+        params.put(EventStreamServlet.RATE_KEYS_PARAM, "test.counter");
+        EventStreamServlet servlet = new EventStreamServlet();
+        tomcat.addServlet("events", servlet, params, "/events").setLoadOnStartup(1);
+        tomcat.start();
+        
+        stream = servlet.getStream();
+        MetricsRegistry.forContext(servlet.getServletContext()).register("test", () -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("label", label.get());
+            values.put("counter", counter.get());
+            values.put("payload", payload.get());
+            return values;
+        });
+        // The stream has been ticking since startup; publish a snapshot with the test
+        // metrics now, so no subscriber starts from one taken before they existed
+        stream.tick();
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        tomcat.close();
+    }
+    
+    private static Socket subscribe() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress("localhost", tomcat.getPort()));
+        socket.setSoTimeout(10_000);
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET /events HTTP/1.0\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return socket;
+    }
+    
+    /**
+     * Reads events until one of the given type arrives and returns its data
+     */
+    private static JsonNode nextEvent(BufferedReader reader, String type) throws IOException {
+        String event = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("event: ")) {
+                event = line.substring("event: ".length());
+            } else if (line.startsWith("data: ") && type.equals(event)) {
+                return MAPPER.readTree(line.substring("data: ".length()));
+            }
+        }
+        throw new IOException("Stream ended before a " + type + " event");
+    }
+    
+    /**
+     * Waits for the subscriber count. Closed connections are only noticed when
+     * written to, so every poll publishes a change.
+     */
+    private static void awaitSubscribers(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while ((Integer) stream.getStats().get("subscribers") != expected && System.currentTimeMillis() < deadline) {
+            label.set("poll-" + System.nanoTime());
+            Thread.sleep(50);
+        }
+        assertThat(stream.getStats().get("subscribers")).isEqualTo(expected);
+    }
+    
+    @Nested
+    @DisplayName("Event Tests")
+    class EventTests {
+        
+        @Test
+        @DisplayName("Should send a snapshot, then only changed values")
+        void shouldSendSnapshotThenUpdates() throws Exception {
+            try (Socket socket = subscribe()) {
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                assertThat(reader.readLine()).isEqualTo("HTTP/1.1 200 ");
+                
+                JsonNode snapshot = nextEvent(reader, "snapshot");
+                assertThat(snapshot.get("test.label").asText()).isEqualTo(label.get());
+                assertThat(snapshot.has("test.counter")).isTrue();
+                
+                label.set("changed");
+                JsonNode update = nextEvent(reader, "update");
+                while (!update.has("test.label")) {
+                    update = nextEvent(reader, "update");
+                }
+                
+                assertThat(update.get("test.label").asText()).isEqualTo("changed");
+                assertThat(update.has("test.payload")).isFalse();
+            }
+        }
+        
+        @Test
+        @DisplayName("Should publish rates for configured counters")
+        void shouldPublishRates() throws Exception {
+            try (Socket socket = subscribe()) {
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                nextEvent(reader, "snapshot");
+                
+                counter.addAndGet(1000);
+                JsonNode update = nextEvent(reader, "update");
+                while (!update.has("test.counterPerSecond") || update.get("test.counterPerSecond").asDouble() == 0) {
+                    update = nextEvent(reader, "update");
+                }
+                
+                assertThat(update.get("test.counterPerSecond").asDouble()).isPositive();
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Subscriber Tests")
+    class SubscriberTests {
+        
+        @Test
+        @DisplayName("Should hold thousands of idle subscribers without a thread each")
+        void shouldHoldManyIdleSubscribers() throws Exception {
+            // 10k subscribers need twice as many descriptors here (client and server
+            // side share this JVM), so a smaller crowd checks the same property
+            int count = 5000;
+            int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+            List<Socket> sockets = new ArrayList<>(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    sockets.add(subscribe());
+                }
+                awaitSubscribers(count);
+                
+                assertThat(ManagementFactory.getThreadMXBean().getThreadCount()).isLessThan(threadsBefore + 50);
+                label.set("broadcast-" + System.nanoTime());
+                for (Socket socket : sockets) {
+                    BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    assertThat(nextEvent(reader, "snapshot").has("test.label")).isTrue();
+                }
+            } finally {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+            awaitSubscribers(0);
+        }
+        
+        @Test
+        @DisplayName("Should skip ahead and finally drop a subscriber that stops reading")
+        void shouldDropSlowSubscriber() throws Exception {
+            long resyncsBefore = (Long) stream.getStats().get("resyncs");
+            long droppedBefore = (Long) stream.getStats().get("dropped");
+            
+            Socket stalled = new Socket();
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", tomcat.getPort()));
+            stalled.getOutputStream().write("GET /events HTTP/1.0\r\nHost: localhost\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII));
+            try (stalled; Socket healthy = subscribe()) {
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(healthy.getInputStream(), StandardCharsets.UTF_8));
+                nextEvent(reader, "snapshot");
+                
+                // Large events that change every tick fill the stalled socket quickly
+                long deadline = System.currentTimeMillis() + 20_000;
+                while ((Long) stream.getStats().get("dropped") == droppedBefore
+                        && System.currentTimeMillis() < deadline) {
+                    payload.set(System.nanoTime() + "x".repeat(256 * 1024));
+                    nextEvent(reader, "update");
+                }
+                payload.set("");
+                
+                assertThat((Long) stream.getStats().get("resyncs")).isGreaterThan(resyncsBefore);
+                assertThat((Long) stream.getStats().get("dropped")).isGreaterThan(droppedBefore);
+                
+                // The healthy subscriber is still served
+                label.set("after-drop");
+                JsonNode update = nextEvent(reader, "update");
+                while (!update.has("test.label")) {
+                    update = nextEvent(reader, "update");
+                }
+                assertThat(update.get("test.label").asText()).isEqualTo("after-drop");
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for FileDownloadServlet. "/files" uses Tomcat's sendfile
+ * support, "/channel" is the same servlet with sendfile disabled, so both
+ * transfer paths are checked against the same expectations.
+ */
+class FileDownloadServletTest {
+    
+    private static final int FILE_SIZE = 3 * 1024 * 1024 + 17;
+    
+    private static EmbeddedTomcat tomcat;
+    private static FileDownloadServlet sendfileServlet;
+    private static Path dataDirectory;
+    private static byte[] content;
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        dataDirectory = Files.createTempDirectory("downloads");
+        content = new byte[FILE_SIZE];
+        new Random(7).nextBytes(content);
+        Files.write(dataDirectory.resolve("artifact.bin"), content);
+        
+        tomcat = new EmbeddedTomcat(8);
+        Map<String, String> params = new HashMap<>();
+        params.put(FileDownloadServlet.DATA_DIRECTORY, dataDirectory.toString());
+        sendfileServlet = new FileDownloadServlet();
+        tomcat.addServlet("files", sendfileServlet, params, "/files/*");
+        
+        Map<String, String> channelParams = new HashMap<>(params);
+        channelParams.put(FileDownloadServlet.SENDFILE_PARAM, "false");
+        tomcat.addServlet("channel", new FileDownloadServlet(), channelParams, "/channel/*");
+        tomcat.start();
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        tomcat.close();
+        Files.delete(dataDirectory.resolve("artifact.bin"));
+        Files.delete(dataDirectory);
+    }
+    
+    private HttpResponse<byte[]> get(String path, String... headers) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(tomcat.uri(path)).GET();
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+    
+    private static byte[] slice(int start, int endInclusive) {
+        return Arrays.copyOfRange(content, start, endInclusive + 1);
+    }
+    
+    @Nested
+    @DisplayName("Full Transfer Tests")
+    class FullTransferTests {
+        
+        @ParameterizedTest
+        @ValueSource(strings = {"/files", "/channel"})
+        @DisplayName("Should send the whole file with validators")
+        void shouldSendWholeFile(String prefix) throws Exception {
+            HttpResponse<byte[]> response = get(prefix + "/artifact.bin");
+            
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.headers().firstValue("Accept-Ranges")).contains("bytes");
+            assertThat(response.headers().firstValue("ETag")).isPresent();
+            assertThat(response.headers().firstValue("Last-Modified")).isPresent();
+            assertThat(response.body()).isEqualTo(content);
+        }
+        
+        @Test
+        @DisplayName("Should hand whole-file bodies to sendfile")
+        void shouldUseSendfile() throws Exception {
+            long before = (Long) sendfileServlet.getStats().get("sendfileTransfers");
+            
+            get("/files/artifact.bin");
+            
+            assertThat((Long) sendfileServlet.getStats().get("sendfileTransfers")).isEqualTo(before + 1);
+        }
+        
+        @Test
+        @DisplayName("Should answer HEAD without a body")
+        void shouldAnswerHeadWithoutBody() throws Exception {
+            HttpResponse<byte[]> response = client.send(
+                HttpRequest.newBuilder(tomcat.uri("/files/artifact.bin"))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+            
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.headers().firstValueAsLong("Content-Length")).hasValue(FILE_SIZE);
+            assertThat(response.body()).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("Should answer 404 for missing files and directories")
+        void shouldAnswerNotFound() throws Exception {
+            assertThat(get("/files/missing.bin").statusCode()).isEqualTo(404);
+            assertThat(get("/files/").statusCode()).isEqualTo(404);
+        }
+        
+        @Test
+        @DisplayName("Should follow symbolic links only while they stay inside the data directory")
+        void shouldNotFollowLinksOutOfDataDirectory() throws Exception {
+            Path outside = Files.createTempFile("outside", ".txt");
+            Path escaping = dataDirectory.resolve("escaping.txt");
+            Path inside = dataDirectory.resolve("inside.bin");
+            try {
+                Files.write(outside, "secret".getBytes(StandardCharsets.UTF_8));
+                Files.createSymbolicLink(escaping, outside);
+                Files.createSymbolicLink(inside, dataDirectory.resolve("artifact.bin"));
+                
+                assertThat(get("/files/escaping.txt").statusCode()).isEqualTo(404);
+                assertThat(get("/channel/escaping.txt").statusCode()).isEqualTo(404);
+                assertThat(get("/files/inside.bin").body()).isEqualTo(content);
+            } finally {
+                Files.deleteIfExists(escaping);
+                Files.deleteIfExists(inside);
+                Files.delete(outside);
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Range Tests")
+    class RangeTests {
+        
+        @ParameterizedTest
+        @ValueSource(strings = {"/files", "/channel"})
+        @DisplayName("Should send a single range as 206")
+        void shouldSendSingleRange(String prefix) throws Exception {
+            HttpResponse<byte[]> response = get(prefix + "/artifact.bin", "Range", "bytes=1000-1999");
+            
+            assertThat(response.statusCode()).isEqualTo(206);
+            assertThat(response.headers().firstValue("Content-Range")).contains("bytes 1000-1999/" + FILE_SIZE);
+            assertThat(response.body()).isEqualTo(slice(1000, 1999));
+        }
+        
+        @Test
+        @DisplayName("Should send a suffix range")
+        void shouldSendSuffixRange() throws Exception {
+            HttpResponse<byte[]> response = get("/files/artifact.bin", "Range", "bytes=-100");
+            
+            assertThat(response.statusCode()).isEqualTo(206);
+            assertThat(response.body()).isEqualTo(slice(FILE_SIZE - 100, FILE_SIZE - 1));
+        }
+        
+        @Test
+        @DisplayName("Should send multiple ranges as multipart/byteranges")
+        void shouldSendMultipleRanges() throws Exception {
+            HttpResponse<byte[]> response = get("/files/artifact.bin", "Range", "bytes=0-9, 2000000-2000099");
+            
+            assertThat(response.statusCode()).isEqualTo(206);
+            String contentType = response.headers().firstValue("Content-Type").orElseThrow();
+            assertThat(contentType).startsWith("multipart/byteranges; boundary=");
+            assertThat(response.headers().firstValueAsLong("Content-Length")).hasValue(response.body().length);
+            
+            String body = new String(response.body(), StandardCharsets.ISO_8859_1);
+            String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+            assertThat(body).contains("Content-Range: bytes 0-9/" + FILE_SIZE);
+            assertThat(body).contains("Content-Range: bytes 2000000-2000099/" + FILE_SIZE);
+            assertThat(body).endsWith("\r\n--" + boundary + "--\r\n");
+            assertThat(body).contains(new String(slice(2000000, 2000099), StandardCharsets.ISO_8859_1));
+        }
+        
+        @Test
+        @DisplayName("Should answer 416 for an unsatisfiable range")
+        void shouldRejectUnsatisfiableRange() throws Exception {
+            HttpResponse<byte[]> response = get("/files/artifact.bin", "Range", "bytes=" + FILE_SIZE + "-");
+            
+            assertThat(response.statusCode()).isEqualTo(416);
+            assertThat(response.headers().firstValue("Content-Range")).contains("bytes */" + FILE_SIZE);
+        }
+        
+        @Test
+        @DisplayName("Should honour Range only while If-Range matches")
+        void shouldApplyIfRange() throws Exception {
+            String etag = get("/files/artifact.bin").headers().firstValue("ETag").orElseThrow();
+            
+            HttpResponse<byte[]> matching = get("/files/artifact.bin", "Range", "bytes=0-99", "If-Range", etag);
+            HttpResponse<byte[]> stale = get("/files/artifact.bin", "Range", "bytes=0-99", "If-Range", "\"stale\"");
+            
+            assertThat(matching.statusCode()).isEqualTo(206);
+            assertThat(stale.statusCode()).isEqualTo(200);
+            assertThat(stale.body()).isEqualTo(content);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Conditional Request Tests")
+    class ConditionalRequestTests {
+        
+        @Test
+        @DisplayName("Should answer 304 for matching If-None-Match")
+        void shouldAnswerNotModifiedForEtag() throws Exception {
+            String etag = get("/files/artifact.bin").headers().firstValue("ETag").orElseThrow();
+            
+            HttpResponse<byte[]> response = get("/files/artifact.bin", "If-None-Match", etag);
+            
+            assertThat(response.statusCode()).isEqualTo(304);
+            assertThat(response.body()).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("Should answer 304 for If-Modified-Since at Last-Modified")
+        void shouldAnswerNotModifiedForDate() throws Exception {
+            String lastModified = get("/files/artifact.bin").headers().firstValue("Last-Modified").orElseThrow();
+            
+            assertThat(get("/files/artifact.bin", "If-Modified-Since", lastModified).statusCode()).isEqualTo(304);
+        }
+        
+        @Test
+        @DisplayName("Should answer 412 when If-Match names another version")
+        void shouldFailPreconditionForIfMatch() throws Exception {
+            assertThat(get("/files/artifact.bin", "If-Match", "\"other\"").statusCode()).isEqualTo(412);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Range Parsing Tests")
+    class RangeParsingTests {
+        
+        @Test
+        @DisplayName("Should merge overlapping and adjacent ranges")
+        void shouldMergeRanges() {
+            assertThat(ByteRange.parse("bytes=50-99, 0-49, 200-, 150-250", 1000, 16))
+                .containsExactly(new ByteRange(0, 99), new ByteRange(150, 999));
+        }
+        
+        @Test
+        @DisplayName("Should clamp open and oversized ranges to the length")
+        void shouldClampRanges() {
+            assertThat(ByteRange.parse("bytes=900-5000", 1000, 16)).containsExactly(new ByteRange(900, 999));
+            assertThat(ByteRange.parse("bytes=-5000", 1000, 16)).containsExactly(new ByteRange(0, 999));
+        }
+        
+        @Test
+        @DisplayName("Should ignore malformed headers and too many ranges")
+        void shouldIgnoreMalformedHeaders() {
+            assertThat(ByteRange.parse("items=0-1", 1000, 16)).isNull();
+            assertThat(ByteRange.parse("bytes=5-1", 1000, 16)).isNull();
+            assertThat(ByteRange.parse("bytes=a-b", 1000, 16)).isNull();
+            assertThat(ByteRange.parse("bytes=0-1,2-3,4-5", 1000, 2)).isNull();
+        }
+        
+        @Test
+        @DisplayName("Should report unsatisfiable ranges as empty")
+        void shouldReportUnsatisfiableRanges() {
+            List<ByteRange> ranges = ByteRange.parse("bytes=1000-1100", 1000, 16);
+            
+            assertThat(ranges).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fires bursts or fixed-rate streams of HTTP requests and summarizes throughput and latency
+ */
+final class HttpLoad {
+    
+    private HttpLoad() {
+    }
+    
+    /**
+     * Sends all requests at once, each on its own connection, and waits for every response
+     */
+    static Result burst(URI uri, int concurrency) {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .executor(executor)
+            .build();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+            long[] latencies = new long[concurrency];
+            int[] statuses = new int[concurrency];
+            List<CompletableFuture<?>> futures = new ArrayList<>(concurrency);
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < concurrency; i++) {
+                int index = i;
+                long sent = System.nanoTime();
+                futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        statuses[index] = error == null ? response.statusCode() : -1;
+                        return null;
+                    }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            long elapsed = System.nanoTime() - start;
+            
+            return new Result(concurrency, elapsed, latencies, statuses);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Sends requests at a fixed rate for the given duration, independent of how fast
+     * the server answers (open loop), and waits for every response
+     */
+    static Result constantRate(URI uri, int requestsPerSecond, long durationMillis) {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .executor(executor)
+            .build();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+            int count = (int) (requestsPerSecond * durationMillis / 1000);
+            long intervalNanos = 1_000_000_000L / requestsPerSecond;
+            long[] latencies = new long[count];
+            int[] statuses = new int[count];
+            List<CompletableFuture<?>> futures = new ArrayList<>(count);
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                long due = start + i * intervalNanos;
+                long delay;
+                while ((delay = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                int index = i;
+                long sent = System.nanoTime();
+                futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        statuses[index] = error == null ? response.statusCode() : -1;
+                        return null;
+                    }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            long elapsed = System.nanoTime() - start;
+            
+            return new Result(count, elapsed, latencies, statuses);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Throughput, latency percentiles and status counts of one burst
+     */
+    static final class Result {
+        private final int requests;
+        private final long elapsedNanos;
+        private final long[] latencies;
+        private final int[] statuses;
+        
+        private Result(int requests, long elapsedNanos, long[] latencies, int[] statuses) {
+            this.requests = requests;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.statuses = statuses;
+        }
+        
+        double throughput() {
+            return requests / (elapsedNanos / 1e9);
+        }
+        
+        long count(int status) {
+            return Arrays.stream(statuses).filter(s -> s == status).count();
+        }
+        
+        /**
+         * Latency percentile over all requests
+         */
+        long percentileMillis(double percentile) {
+            return percentile(latencies.clone(), latencies.length, percentile);
+        }
+        
+        /**
+         * Latency percentile over the requests answered with the given status
+         */
+        long percentileMillis(double percentile, int status) {
+            long[] matching = new long[latencies.length];
+            int n = 0;
+            for (int i = 0; i < latencies.length; i++) {
+                if (statuses[i] == status) {
+                    matching[n++] = latencies[i];
+                }
+            }
+            return percentile(matching, n, percentile);
+        }
+        
+        private static long percentile(long[] values, int n, double percentile) {
+            if (n == 0) {
+                return 0;
+            }
+            Arrays.sort(values, 0, n);
+            int index = (int) Math.ceil(percentile / 100.0 * n) - 1;
+            return TimeUnit.NANOSECONDS.toMillis(values[Math.max(0, index)]);
+        }
+        
+        String summary(String label) {
+            return String.format("%-10s requests=%d throughput=%.0f req/s p50=%dms p99=%dms max=%dms ok=%d",
+                label, requests, throughput(), percentileMillis(50), percentileMillis(99),
+                percentileMillis(100), count(200));
+        }
+    }
+}
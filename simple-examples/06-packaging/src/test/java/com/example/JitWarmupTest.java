@@ -0,0 +1,128 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for JitWarmup and the warm-up phase of PackagingServlet.init()
+ */
+class JitWarmupTest {
+    
+    @Nested
+    @DisplayName("Settle Detection Tests")
+    class SettleDetectionTests {
+        
+        @Test
+        @DisplayName("Should stop after consecutive quiet rounds")
+        void shouldStopWhenCompilationSettles() {
+            // Compilation grows by 10ms for the first three rounds, then stays flat
+            AtomicLong clock = new AtomicLong();
+            AtomicLong rounds = new AtomicLong();
+            JitWarmup warmup = new JitWarmup(10_000, 1, 3, 1,
+                () -> Math.min(rounds.get(), 3) * 10, clock::get);
+            
+            JitWarmup.Result result = warmup.run(() -> {
+                rounds.incrementAndGet();
+                clock.addAndGet(5);
+            });
+            
+            assertThat(result.isSettled()).isTrue();
+            assertThat(result.getRounds()).isEqualTo(6);
+            assertThat(result.getCompilationMillis()).isEqualTo(30);
+            assertThat(result.getElapsedMillis()).isEqualTo(30);
+        }
+        
+        @Test
+        @DisplayName("Should start counting quiet rounds again after new compilation")
+        void shouldResetOnNewCompilation() {
+            long[] compiled = {0, 0, 0, 5, 5, 5, 5};
+            AtomicLong round = new AtomicLong();
+            JitWarmup warmup = new JitWarmup(10_000, 1, 3, 1,
+                () -> compiled[(int) Math.min(round.get(), compiled.length - 1)], () -> 0L);
+            
+            JitWarmup.Result result = warmup.run(round::incrementAndGet);
+            
+            assertThat(result.isSettled()).isTrue();
+            assertThat(result.getRounds()).isEqualTo(6);
+        }
+        
+        @Test
+        @DisplayName("Should give up when the budget is spent")
+        void shouldStopAtBudget() {
+            AtomicLong clock = new AtomicLong();
+            JitWarmup warmup = new JitWarmup(100, 10, 3, 1, clock::get, clock::get);
+            
+            // Compilation time follows the clock, so no round is ever quiet
+            JitWarmup.Result result = warmup.run(() -> clock.addAndGet(1));
+            
+            assertThat(result.isSettled()).isFalse();
+            assertThat(result.getRounds()).isEqualTo(10);
+            assertThat(result.getIterations()).isEqualTo(100);
+        }
+        
+        @Test
+        @DisplayName("Should run until the budget when compilation time is unknown")
+        void shouldUseBudgetWithoutCompilationTime() {
+            AtomicLong clock = new AtomicLong();
+            JitWarmup warmup = new JitWarmup(50, 1, 1, 1, () -> -1L, clock::get);
+            
+            JitWarmup.Result result = warmup.run(() -> clock.addAndGet(10));
+            
+            assertThat(result.isSettled()).isFalse();
+            assertThat(result.getRounds()).isEqualTo(5);
+            assertThat(result.getCompilationMillis()).isEqualTo(-1);
+        }
+    }
+    
+    @Nested
+    @DisplayName("First Request Latency Tests")
+    class FirstRequestLatencyTests {
+        
+        private final Pattern timings = Pattern.compile("first=(\\d+) total=(\\d+)");
+        
+        @Test
+        @DisplayName("Should serve the first requests faster after warm-up")
+        void shouldReduceFirstRequestLatency() throws Exception {
+            long[] cold = probe(false);
+            long[] warm = probe(true);
+            
+            System.out.printf("First request: cold %.1f ms, warm %.1f ms; first %d: cold %.1f ms, warm %.1f ms%n",
+                              cold[0] / 1e6, warm[0] / 1e6, WarmupProbe.REQUESTS, cold[1] / 1e6, warm[1] / 1e6);
+            assertThat(warm[0]).isLessThan(cold[0]);
+            assertThat(warm[1]).isLessThan(cold[1]);
+        }
+        
+        /**
+         * Runs WarmupProbe in a fresh JVM, since JIT state cannot be reset in this one
+         */
+        private long[] probe(boolean warmup) throws Exception {
+            Process process = new ProcessBuilder(
+                    PackagingVariant.javaExecutable().toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    WarmupProbe.class.getName(), String.valueOf(warmup))
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            String output;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                output = reader.lines().reduce("", (all, line) -> all + line + "\n");
+            }
+            assertThat(process.waitFor(60, TimeUnit.SECONDS)).isTrue();
+            
+            Matcher matcher = timings.matcher(output);
+            assertThat(matcher.find()).as("probe output: %s", output).isTrue();
+            return new long[] {Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))};
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for JsonBatchProcessor ordering, error isolation and limits
+ */
+class JsonBatchProcessorTest {
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    private JsonNode run(JsonBatchProcessor processor, String body, boolean ndjson) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        processor.process(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), ndjson, output);
+        return MAPPER.readTree(output.toByteArray());
+    }
+    
+    private JsonBatchProcessor processor(int window) {
+        return new JsonBatchProcessor(new PackagingDemo(), pool, window, 1000, 1024);
+    }
+    
+    @Nested
+    @DisplayName("Ordering Tests")
+    class OrderingTests {
+        
+        @Test
+        @DisplayName("Should keep input order when later documents finish first")
+        void shouldKeepInputOrder() throws Exception {
+            // Earlier documents take longer, so completion order is the reverse of input order
+            PackagingDemo slowFirst = new PackagingDemo() {
+                @Override
+                public void processJson(InputStream input, OutputStream output) throws IOException {
+                    byte[] document = input.readAllBytes();
+                    int id = MAPPER.readTree(document).get("id").asInt();
+                    try {
+                        Thread.sleep(Math.max(0, 40 - id));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    super.processJson(new ByteArrayInputStream(document), output);
+                }
+            };
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < 40; i++) {
+                body.append("{\"id\":").append(i).append("}\n");
+            }
+            
+            JsonNode results = run(new JsonBatchProcessor(slowFirst, pool, 16, 1000, 1024), body.toString(), true);
+            
+            assertThat(results).hasSize(40);
+            for (int i = 0; i < 40; i++) {
+                assertThat(results.get(i).get("index").asInt()).isEqualTo(i);
+                assertThat(results.get(i).get("result").get("id").asInt()).isEqualTo(i);
+            }
+        }
+        
+        @Test
+        @DisplayName("Should process a JSON array body")
+        void shouldProcessArrayBody() throws Exception {
+            JsonNode results = run(processor(2), "[{\"a\":1}, [1,2], \"text\", 3]", false);
+            
+            assertThat(results).hasSize(4);
+            assertThat(results.get(0).get("result").get("a").asInt()).isEqualTo(1);
+            assertThat(results.get(1).get("result")).hasSize(2);
+            assertThat(results.get(2).get("result").asText()).isEqualTo("text");
+            assertThat(results.get(3).get("result").asInt()).isEqualTo(3);
+        }
+        
+        @Test
+        @DisplayName("Should skip blank NDJSON lines and accept CRLF")
+        void shouldSkipBlankLines() throws Exception {
+            JsonNode results = run(processor(4), "{\"a\":1}\r\n\r\n   \n{\"a\":2}", true);
+            
+            assertThat(results).hasSize(2);
+            assertThat(results.get(1).get("index").asInt()).isEqualTo(1);
+            assertThat(results.get(1).get("result").get("a").asInt()).isEqualTo(2);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Error Reporting Tests")
+    class ErrorReportingTests {
+        
+        @Test
+        @DisplayName("Should report invalid documents without failing the batch")
+        void shouldReportInvalidDocuments() throws Exception {
+            JsonNode results = run(processor(4), "{\"a\":1}\n{broken\n{\"a\":3}\n", true);
+            
+            assertThat(results).hasSize(3);
+            assertThat(results.get(0).has("result")).isTrue();
+            assertThat(results.get(1).get("error").asText()).startsWith("Invalid JSON");
+            assertThat(results.get(2).get("result").get("a").asInt()).isEqualTo(3);
+        }
+        
+        @Test
+        @DisplayName("Should report oversized documents")
+        void shouldReportOversizedDocuments() throws Exception {
+            String large = "{\"pad\":\"" + "x".repeat(2000) + "\"}";
+            
+            JsonNode results = run(processor(4), large + "\n{\"a\":2}\n", true);
+            
+            assertThat(results.get(0).get("error").asText()).contains("exceeds 1024 bytes");
+            assertThat(results.get(1).get("result").get("a").asInt()).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("Should stop copying an oversized array element at the limit and go on with the next")
+        void shouldBoundOversizedArrayElements() throws Exception {
+            // A 16 MB element between two small ones, generated as it is read
+            long elementBytes = 16L * 1024 * 1024;
+            InputStream body = new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream("[{\"a\":1},[".getBytes(StandardCharsets.UTF_8)),
+                new RepeatingStream("0,".getBytes(StandardCharsets.UTF_8), elementBytes),
+                new ByteArrayInputStream("0],{\"a\":3}]".getBytes(StandardCharsets.UTF_8)))));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+            
+            long before = threads.getThreadAllocatedBytes(thread);
+            processor(4).process(body, false, output);
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            
+            JsonNode results = MAPPER.readTree(output.toByteArray());
+            assertThat(results).hasSize(3);
+            assertThat(results.get(0).get("result").get("a").asInt()).isEqualTo(1);
+            assertThat(results.get(1).get("error").asText()).contains("exceeds 1024 bytes");
+            assertThat(results.get(2).get("result").get("a").asInt()).isEqualTo(3);
+            assertThat(allocated).isLessThan(elementBytes / 4);
+        }
+        
+        @Test
+        @DisplayName("Should stop at the item limit with one error entry")
+        void shouldStopAtItemLimit() throws Exception {
+            JsonBatchProcessor limited = new JsonBatchProcessor(new PackagingDemo(), pool, 4, 2, 1024);
+            
+            JsonNode results = run(limited, "1\n2\n3\n4\n", true);
+            
+            assertThat(results).hasSize(3);
+            assertThat(results.get(2).get("error").asText()).contains("exceeds 2 documents");
+        }
+        
+        @Test
+        @DisplayName("Should report a body that is not an array")
+        void shouldReportNonArrayBody() throws Exception {
+            JsonNode results = run(processor(4), "{\"a\":1}", false);
+            
+            assertThat(results).hasSize(1);
+            assertThat(results.get(0).get("error").asText()).contains("Expected a JSON array");
+        }
+    }
+    
+    /**
+     * Repeats a pattern up to a length, without holding the whole body
+     */
+    private static final class RepeatingStream extends InputStream {
+        private final byte[] pattern;
+        private long remaining;
+        private int position;
+        
+        RepeatingStream(byte[] pattern, long length) {
+            this.pattern = pattern;
+            this.remaining = length;
+        }
+        
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+            remaining--;
+            byte b = pattern[position];
+            position = (position + 1) % pattern.length;
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int off, int len) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(len, remaining);
+            for (int i = 0; i < count; i++) {
+                buffer[off + i] = pattern[position];
+                position = (position + 1) % pattern.length;
+            }
+            remaining -= count;
+            return count;
+        }
+    }
+}
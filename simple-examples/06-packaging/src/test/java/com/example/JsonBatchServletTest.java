@@ -0,0 +1,82 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for JsonBatchServlet running in an embedded container
+ */
+class JsonBatchServletTest {
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private static EmbeddedTomcat tomcat;
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        tomcat = new EmbeddedTomcat(8);
+        Map<String, String> params = new HashMap<>();
+        params.put(JsonBatchServlet.PARALLELISM_PARAM, "4");
+        params.put(JsonBatchServlet.WINDOW_PARAM, "32");
+        tomcat.addServlet("batch", new JsonBatchServlet(), params, "/batch");
+        tomcat.start();
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        tomcat.close();
+    }
+    
+    private HttpResponse<String> post(String contentType, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(tomcat.uri("/batch"))
+                               .header("Content-Type", contentType)
+                               .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                           HttpResponse.BodyHandlers.ofString());
+    }
+    
+    @Test
+    @DisplayName("Should process thousands of NDJSON documents in order")
+    void shouldProcessLargeNdjsonBatch() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            body.append("{\"id\":").append(i).append(",\"name\":\"doc-").append(i).append("\"}\n");
+        }
+        
+        HttpResponse<String> response = post("application/x-ndjson", body.toString());
+        
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonNode results = MAPPER.readTree(response.body());
+        assertThat(results).hasSize(5000);
+        for (int i = 0; i < 5000; i++) {
+            assertThat(results.get(i).get("result").get("id").asInt()).isEqualTo(i);
+        }
+    }
+    
+    @Test
+    @DisplayName("Should accept a JSON array body")
+    void shouldAcceptArrayBody() throws Exception {
+        HttpResponse<String> response = post("application/json", "[{\"a\":1},{\"a\":2}]");
+        
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(MAPPER.readTree(response.body()).get(1).get("result").get("a").asInt()).isEqualTo(2);
+    }
+    
+    @Test
+    @DisplayName("Should reject other content types")
+    void shouldRejectOtherContentTypes() throws Exception {
+        assertThat(post("text/plain", "{}").statusCode()).isEqualTo(415);
+    }
+}
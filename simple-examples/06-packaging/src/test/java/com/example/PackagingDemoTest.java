@@ -6,6 +6,17 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Properties;
 
 /**
@@ -123,6 +134,64 @@ class PackagingDemoTest {
             assertThat(result).isNotNull();
             assertThat(result).contains("\n"); // Should contain line breaks for pretty printing
         }
+        
+        @Test
+        @DisplayName("Should stream JSON between byte streams")
+        void shouldStreamJsonBetweenByteStreams() throws IOException {
+            String inputJson = "{\"nested\":{\"key\":\"value\"},\"array\":[1,2.5,true,null]}";
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            
+            packagingDemo.processJson(new ByteArrayInputStream(inputJson.getBytes(StandardCharsets.UTF_8)), output);
+            
+            assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(packagingDemo.processJson(inputJson));
+        }
+        
+        @Test
+        @DisplayName("Should stream JSON between character streams")
+        void shouldStreamJsonBetweenCharacterStreams() throws IOException {
+            StringWriter output = new StringWriter();
+            
+            packagingDemo.processJson(new StringReader("[{\"a\":1},{\"b\":\"ü\"}]"), output);
+            
+            assertThat(output.toString()).contains("\"a\" : 1").contains("\"b\" : \"ü\"").contains("\n");
+        }
+        
+        @Test
+        @DisplayName("Should reject invalid JSON in streaming mode")
+        void shouldRejectInvalidJsonInStreamingMode() {
+            assertThatThrownBy(() -> packagingDemo.processJson(
+                    new StringReader("{invalid json}"), new StringWriter()))
+                .isInstanceOf(IOException.class);
+            assertThatThrownBy(() -> packagingDemo.processJson(new StringReader(""), new StringWriter()))
+                .isInstanceOf(IOException.class);
+        }
+        
+        @Test
+        @DisplayName("Should process only the first root value")
+        void shouldProcessOnlyFirstRootValue() throws IOException {
+            StringWriter output = new StringWriter();
+            
+            packagingDemo.processJson(new StringReader("{\"a\":1} {\"b\":2}"), output);
+            
+            assertThat(output.toString()).contains("\"a\" : 1").doesNotContain("\"b\"");
+            assertThat(packagingDemo.processJson("[1] trailing")).isEqualTo(packagingDemo.processJson("[1]"));
+        }
+        
+        @Test
+        @DisplayName("Should stream large documents without buffering them")
+        void shouldStreamLargeDocumentsWithoutBufferingThem() throws IOException {
+            int elements = 200_000;
+            InputStream input = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream("[".getBytes(StandardCharsets.UTF_8)),
+                new GeneratedElementsStream(elements),
+                new ByteArrayInputStream("]".getBytes(StandardCharsets.UTF_8)))));
+            CountingOutputStream output = new CountingOutputStream();
+            
+            packagingDemo.processJson(input, output);
+            
+            assertThat(output.lines).isEqualTo(elements * 2L);
+            assertThat(output.bytes).isGreaterThan(elements * 20L);
+        }
     }
     
     @Nested
@@ -212,6 +281,49 @@ class PackagingDemoTest {
         }
     }
     
+    /**
+     * Produces {"id":n},{"id":n+1},... on demand without holding the document in memory
+     */
+    private static class GeneratedElementsStream extends InputStream {
+        private final int elements;
+        private int next;
+        private byte[] current = new byte[0];
+        private int position;
+        
+        GeneratedElementsStream(int elements) {
+            this.elements = elements;
+        }
+        
+        @Override
+        public int read() {
+            if (position == current.length) {
+                if (next == elements) {
+                    return -1;
+                }
+                current = ((next == 0 ? "" : ",") + "{\"id\":" + next + "}").getBytes(StandardCharsets.UTF_8);
+                position = 0;
+                next++;
+            }
+            return current[position++];
+        }
+    }
+    
+    /**
+     * Counts bytes and line breaks written without retaining them
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long bytes;
+        private long lines;
+        
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+    }
+    
     @Test
     @DisplayName("Should run main method without errors")
     void shouldRunMainMethodWithoutErrors() {
@@ -0,0 +1,139 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for PackagingServlet running in an embedded container
+ */
+class PackagingServletTest {
+    
+    private static EmbeddedTomcat tomcat;
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        tomcat = new EmbeddedTomcat(8);
+        tomcat.addServlet("packaging", new PackagingServlet(), new HashMap<>(), "/packaging");
+        tomcat.start();
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        tomcat.close();
+    }
+    
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws Exception {
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+    
+    @Nested
+    @DisplayName("Page Rendering Tests")
+    class PageRenderingTests {
+        
+        @Test
+        @DisplayName("Should render page with ETag")
+        void shouldRenderPageWithEtag() throws Exception {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(tomcat.uri("/packaging")));
+            
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.headers().firstValue("ETag")).isPresent();
+            assertThat(response.body()).contains("Maven Packaging Demonstration - Web Interface");
+        }
+        
+        @Test
+        @DisplayName("Should answer 304 for matching If-None-Match")
+        void shouldAnswerNotModifiedForMatchingEtag() throws Exception {
+            String etag = send(HttpRequest.newBuilder(tomcat.uri("/packaging")))
+                .headers().firstValue("ETag").orElseThrow();
+            
+            HttpResponse<String> response = send(HttpRequest.newBuilder(tomcat.uri("/packaging"))
+                .header("If-None-Match", etag));
+            
+            assertThat(response.statusCode()).isEqualTo(304);
+            assertThat(response.body()).isEmpty();
+        }
+    }
+    
+    @Nested
+    @DisplayName("JSON Streaming Tests")
+    class JsonStreamingTests {
+        
+        @Test
+        @DisplayName("Should stream pretty-printed JSON for posted documents")
+        void shouldStreamPrettyPrintedJson() throws Exception {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(tomcat.uri("/packaging"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"test\",\"value\":123}")));
+            
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(
+                type -> assertThat(type).startsWith("application/json"));
+            assertThat(response.body()).isEqualTo(new PackagingDemo().processJson("{\"name\":\"test\",\"value\":123}"));
+        }
+        
+        @Test
+        @DisplayName("Should reject invalid JSON with 400")
+        void shouldRejectInvalidJson() throws Exception {
+            HttpResponse<String> response = send(HttpRequest.newBuilder(tomcat.uri("/packaging"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{invalid json}")));
+            
+            assertThat(response.statusCode()).isEqualTo(400);
+        }
+    }
+    
+    @Nested
+    @DisplayName("Lifecycle Tests")
+    class LifecycleTests {
+        
+        @Test
+        @DisplayName("Should stop the async worker threads when the servlet is destroyed")
+        void shouldStopAsyncWorkersOnDestroy() throws Exception {
+            Map<String, String> params = new HashMap<>();
+            params.put(PackagingServlet.EXECUTION_MODE_PARAM, "async");
+            params.put(PackagingServlet.ASYNC_EXECUTOR_PARAM, RequestExecutors.BOUNDED);
+            params.put(PackagingServlet.ASYNC_POOL_SIZE_PARAM, "4");
+            List<String> leftAfterDestroy = new ArrayList<>();
+            PackagingServlet servlet = new PackagingServlet() {
+                @Override
+                public void destroy() {
+                    super.destroy();
+                    // What the container's leak check sees right after destroy
+                    leftAfterDestroy.addAll(workerThreads());
+                }
+            };
+            try (EmbeddedTomcat server = new EmbeddedTomcat(4)) {
+                server.addServlet("pooled", servlet, params, "/pooled");
+                server.start();
+                
+                assertThat(HttpLoad.burst(server.uri("/pooled"), 8).count(200)).isEqualTo(8);
+                assertThat(workerThreads()).isNotEmpty();
+            }
+            
+            assertThat(leftAfterDestroy).isEmpty();
+        }
+        
+        private List<String> workerThreads() {
+            return Thread.getAllStackTraces().keySet().stream()
+                .filter(Thread::isAlive)
+                .map(Thread::getName)
+                .filter(name -> name.startsWith("pooled-async-"))
+                .collect(Collectors.toList());
+        }
+    }
+}
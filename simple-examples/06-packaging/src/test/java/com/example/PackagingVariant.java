@@ -0,0 +1,49 @@
+package com.example;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The JAR artifacts produced by the default build, identified by their file name suffix
+ */
+enum PackagingVariant {
+    STANDARD("standard", ""),
+    FAT("fat", "-fat"),
+    EXECUTABLE("executable", "-executable"),
+    ASSEMBLY("assembly", "-jar-with-dependencies");
+    
+    private final String label;
+    private final String suffix;
+    
+    PackagingVariant(String label, String suffix) {
+        this.label = label;
+        this.suffix = suffix;
+    }
+    
+    String label() {
+        return label;
+    }
+    
+    Path jar(Path targetDir, String finalName) {
+        return targetDir.resolve(finalName + suffix + ".jar");
+    }
+    
+    /**
+     * The AppCDS archive stored next to the JAR
+     */
+    Path archive(Path targetDir, String finalName) {
+        return targetDir.resolve(finalName + suffix + ".jsa");
+    }
+    
+    Path classList(Path targetDir, String finalName) {
+        return targetDir.resolve("cds").resolve(finalName + suffix + ".classlist");
+    }
+    
+    boolean isBuilt(Path targetDir, String finalName) {
+        return Files.isRegularFile(jar(targetDir, finalName));
+    }
+    
+    static Path javaExecutable() {
+        return Path.of(System.getProperty("java.home"), "bin", "java");
+    }
+}
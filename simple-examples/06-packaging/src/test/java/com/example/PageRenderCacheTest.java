@@ -0,0 +1,154 @@
+package com.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for PageRenderCache section caching and ETag handling
+ */
+class PageRenderCacheTest {
+    
+    private static final long TTL = 1_000L;
+    
+    private AtomicLong clock;
+    private AtomicInteger jsonCalls;
+    private PageRenderCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong(1_000_000L);
+        jsonCalls = new AtomicInteger();
+        PackagingDemo demo = new PackagingDemo() {
+            @Override
+            public String processJson(String jsonString) {
+                jsonCalls.incrementAndGet();
+                return super.processJson(jsonString);
+            }
+        };
+        cache = new PageRenderCache(demo, TTL, clock::get);
+    }
+    
+    private PageRenderCache.RenderedPage render() {
+        return cache.render("/app", "/packaging", "Test Container");
+    }
+    
+    @Nested
+    @DisplayName("Rendering Tests")
+    class RenderingTests {
+        
+        @Test
+        @DisplayName("Should render complete page")
+        void shouldRenderCompletePage() throws IOException {
+            PageRenderCache.RenderedPage page = render();
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            page.writeTo(out);
+            String html = out.toString(StandardCharsets.UTF_8);
+            
+            assertThat(out.size()).isEqualTo(page.getContentLength());
+            assertThat(html).startsWith("<!DOCTYPE html>");
+            assertThat(html).contains("Application Information");
+            assertThat(html).contains("<strong>Context Path:</strong> /app");
+            assertThat(html).contains("<strong>Servlet Container:</strong> Test Container");
+            assertThat(html).contains("Hello from WAR deployment!");
+            assertThat(html).contains("✓ Running in Servlet Container");
+            assertThat(html).endsWith("</html>\n");
+        }
+        
+        @Test
+        @DisplayName("Should reuse page while sections are fresh")
+        void shouldReusePageWhileSectionsAreFresh() {
+            PageRenderCache.RenderedPage first = render();
+            clock.addAndGet(TTL - 1);
+            PageRenderCache.RenderedPage second = render();
+            
+            assertThat(second).isSameAs(first);
+            assertThat(jsonCalls.get()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("Should re-render JSON section after TTL")
+        void shouldReRenderJsonSectionAfterTtl() {
+            PageRenderCache.RenderedPage first = render();
+            clock.addAndGet(TTL);
+            PageRenderCache.RenderedPage second = render();
+            
+            assertThat(second).isNotSameAs(first);
+            assertThat(jsonCalls.get()).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("Should keep separate pages per servlet path")
+        void shouldKeepSeparatePagesPerServletPath() {
+            String packaging = new String(render().toByteArray(), StandardCharsets.UTF_8);
+            String demo = new String(cache.render("/app", "/demo", "Test Container").toByteArray(),
+                                     StandardCharsets.UTF_8);
+            
+            assertThat(packaging).contains("<strong>Servlet Path:</strong> /packaging");
+            assertThat(demo).contains("<strong>Servlet Path:</strong> /demo");
+            assertThat(jsonCalls.get()).isEqualTo(1);
+        }
+        
+        @Test
+        @DisplayName("Should rebuild page after invalidation")
+        void shouldRebuildPageAfterInvalidation() {
+            PageRenderCache.RenderedPage first = render();
+            
+            cache.invalidateApplicationInfo();
+            PageRenderCache.RenderedPage second = render();
+            assertThat(second).isNotSameAs(first);
+            assertThat(jsonCalls.get()).isEqualTo(1);
+            
+            cache.invalidateJsonSection();
+            render();
+            assertThat(jsonCalls.get()).isEqualTo(2);
+        }
+    }
+    
+    @Nested
+    @DisplayName("ETag Tests")
+    class EtagTests {
+        
+        @Test
+        @DisplayName("Should produce quoted strong ETag")
+        void shouldProduceQuotedStrongEtag() {
+            String etag = render().getEtag();
+            
+            assertThat(etag).matches("\"[0-9a-f]{32}\"");
+        }
+        
+        @Test
+        @DisplayName("Should keep ETag stable for identical content")
+        void shouldKeepEtagStableForIdenticalContent() {
+            String first = render().getEtag();
+            cache.invalidateApplicationInfo();
+            String second = render().getEtag();
+            
+            assertThat(second).isEqualTo(first);
+        }
+        
+        @Test
+        @DisplayName("Should match If-None-Match values")
+        void shouldMatchIfNoneMatchValues() {
+            PageRenderCache.RenderedPage page = render();
+            String etag = page.getEtag();
+            
+            assertThat(page.matches(etag)).isTrue();
+            assertThat(page.matches("\"other\", " + etag)).isTrue();
+            assertThat(page.matches("W/" + etag)).isTrue();
+            assertThat(page.matches("*")).isTrue();
+            assertThat(page.matches("\"other\"")).isFalse();
+            assertThat(page.matches(null)).isFalse();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for RuntimeSampler
+ */
+class RuntimeSamplerTest {
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private static JsonNode toJson(RuntimeSampler sampler, long since) throws Exception {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(json)) {
+            sampler.writeJson(generator, since);
+        }
+        return MAPPER.readTree(json.toString());
+    }
+    
+    @Nested
+    @DisplayName("Ring Buffer Tests")
+    class RingBufferTests {
+        
+        @Test
+        @DisplayName("Should keep only the most recent samples, oldest first")
+        void shouldOverwriteOldestSamples() throws Exception {
+            RuntimeSampler sampler = new RuntimeSampler(3);
+            for (int i = 0; i < 5; i++) {
+                sampler.sample();
+                Thread.sleep(2);
+            }
+            
+            JsonNode series = toJson(sampler, Long.MIN_VALUE);
+            
+            assertThat(sampler.size()).isEqualTo(3);
+            assertThat(series.get("samples").asInt()).isEqualTo(3);
+            JsonNode timestamps = series.get("timestamps");
+            assertThat(timestamps.get(0).asLong()).isLessThan(timestamps.get(2).asLong());
+            assertThat(timestamps.get(2).asLong()).isEqualTo(sampler.latestTimestamp());
+            for (RuntimeSampler.Series name : RuntimeSampler.Series.values()) {
+                assertThat(series.get(name.jsonName())).hasSize(3);
+            }
+        }
+        
+        @Test
+        @DisplayName("Should only return samples newer than since")
+        void shouldFilterBySince() throws Exception {
+            RuntimeSampler sampler = new RuntimeSampler(10);
+            sampler.sample();
+            Thread.sleep(5);
+            sampler.sample();
+            long since = sampler.latestTimestamp();
+            Thread.sleep(5);
+            sampler.sample();
+            
+            JsonNode series = toJson(sampler, since);
+            
+            assertThat(series.get("samples").asInt()).isEqualTo(1);
+            assertThat(series.get("timestamps").get(0).asLong()).isGreaterThan(since);
+        }
+        
+        @Test
+        @DisplayName("Should record plausible readings")
+        void shouldRecordReadings() {
+            RuntimeSampler sampler = new RuntimeSampler(4);
+            
+            assertThat(sampler.latest(RuntimeSampler.Series.HEAP_USED)).isNaN();
+            sampler.sample();
+            sampler.sample();
+            
+            assertThat(sampler.latest(RuntimeSampler.Series.HEAP_USED)).isPositive();
+            assertThat(sampler.latest(RuntimeSampler.Series.HEAP_COMMITTED))
+                .isGreaterThanOrEqualTo(sampler.latest(RuntimeSampler.Series.HEAP_USED));
+            assertThat(sampler.latest(RuntimeSampler.Series.THREADS)).isGreaterThanOrEqualTo(1);
+            assertThat(sampler.latest(RuntimeSampler.Series.GC_PAUSE)).isGreaterThanOrEqualTo(0);
+            assertThat(sampler.describeLatest()).contains("threads");
+        }
+    }
+    
+    @Nested
+    @DisplayName("Allocation Tests")
+    class AllocationTests {
+        
+        @Test
+        @DisplayName("Should not allocate per sample")
+        void shouldNotAllocatePerSample() {
+            com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+            RuntimeSampler sampler = new RuntimeSampler(64);
+            for (int i = 0; i < 20_000; i++) {
+                sampler.sample();
+            }
+            
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 10_000; i++) {
+                sampler.sample();
+            }
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            
+            // Allows for the few bytes of the measurement itself, not one object per sample
+            assertThat(allocated).isLessThan(10_000);
+        }
+    }
+}
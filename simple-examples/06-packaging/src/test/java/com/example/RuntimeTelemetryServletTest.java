@@ -0,0 +1,80 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for RuntimeTelemetryServlet running in an embedded container
+ */
+class RuntimeTelemetryServletTest {
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private static EmbeddedTomcat tomcat;
+    private static RuntimeTelemetryServlet servlet;
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        tomcat = new EmbeddedTomcat(4);
+        Map<String, String> params = new HashMap<>();
+        params.put(RuntimeTelemetryServlet.INTERVAL_PARAM, "20");
+        params.put(RuntimeTelemetryServlet.CAPACITY_PARAM, "50");
+        servlet = new RuntimeTelemetryServlet();
+        tomcat.addServlet("telemetry", servlet, params, "/telemetry").setLoadOnStartup(1);
+        tomcat.start();
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        tomcat.close();
+    }
+    
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(tomcat.uri(path)).GET().build(),
+                           HttpResponse.BodyHandlers.ofString());
+    }
+    
+    @Test
+    @DisplayName("Should serve the sampled time series")
+    void shouldServeTimeSeries() throws Exception {
+        Thread.sleep(200);
+        
+        HttpResponse<String> response = get("/telemetry");
+        
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonNode body = MAPPER.readTree(response.body());
+        assertThat(body.get("intervalMillis").asLong()).isEqualTo(20);
+        JsonNode series = body.get("series");
+        int samples = series.get("samples").asInt();
+        assertThat(samples).isBetween(2, 50);
+        assertThat(series.get("timestamps")).hasSize(samples);
+        assertThat(series.get("heapUsedBytes")).hasSize(samples);
+        assertThat(series.get("processCpuLoad")).hasSize(samples);
+    }
+    
+    @Test
+    @DisplayName("Should return only newer samples for since")
+    void shouldServeIncrementalSamples() throws Exception {
+        long since = servlet.getSampler().latestTimestamp();
+        
+        JsonNode series = MAPPER.readTree(get("/telemetry?since=" + since).body()).get("series");
+        
+        for (JsonNode timestamp : series.get("timestamps")) {
+            assertThat(timestamp.asLong()).isGreaterThan(since);
+        }
+        assertThat(get("/telemetry?since=yesterday").statusCode()).isEqualTo(400);
+    }
+}
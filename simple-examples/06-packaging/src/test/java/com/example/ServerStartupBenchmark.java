@@ -0,0 +1,169 @@
+package com.example;
+
+import org.apache.catalina.startup.Tomcat;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the executable JAR (EmbeddedServer) with the same application deployed
+ * as a WAR file in a plain Tomcat (WarDeployment).
+ * Startup time runs from process start until /packaging first answers 200;
+ * resident memory (VmRSS from /proc, Linux only) is read at that moment.
+ * Run by the "executable" Maven profile in the verify phase.
+ */
+public class ServerStartupBenchmark {
+    
+    private static final long STARTUP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(120);
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ServerStartupBenchmark <target directory> <final name> [runs]");
+            System.exit(2);
+        }
+        Path targetDir = Path.of(args[0]);
+        String finalName = args[1];
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        
+        System.out.printf("%nServer startup benchmark (median of %d runs, Java %s)%n",
+                          runs, System.getProperty("java.version"));
+        System.out.printf("%-12s %16s %10s%n", "deployment", "ready (ms)", "RSS (MB)");
+        
+        Path jar = PackagingVariant.EXECUTABLE.jar(targetDir, finalName);
+        if (Files.isRegularFile(jar)) {
+            report("embedded", measure(targetDir, runs, port -> List.of(
+                "-Dserver.port=" + port, "-jar", jar.toString())));
+        }
+        Path war = targetDir.resolve(finalName + "-webapp.war");
+        if (Files.isRegularFile(war)) {
+            String classPath = tomcatClassPath();
+            Path baseDir = targetDir.resolve("war-deployment");
+            report("war", measure(targetDir, runs, port -> List.of(
+                "-cp", classPath, WarDeployment.class.getName(), war.toString(), String.valueOf(port),
+                baseDir.toString())));
+        }
+    }
+    
+    /**
+     * Tomcat's own JARs plus the test classes holding WarDeployment; the application
+     * classes come from the WAR
+     */
+    private static String tomcatClassPath() throws URISyntaxException {
+        List<String> entries = new ArrayList<>();
+        for (Class<?> type : new Class<?>[] {Tomcat.class, Resource.class, WarDeployment.class}) {
+            entries.add(Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+    
+    private interface Command {
+        List<String> arguments(int port);
+    }
+    
+    private static void report(String deployment, long[][] result) {
+        System.out.printf("%-12s %16.1f %10.1f%n", deployment,
+                          median(result[0]) / 1e6, median(result[1]) / (1024.0 * 1024.0));
+    }
+    
+    /**
+     * Starts the server repeatedly after one unmeasured run (to fill the OS file cache)
+     *
+     * @return nanoseconds until ready and resident bytes at that point, one entry per run
+     */
+    private static long[][] measure(Path targetDir, int runs, Command command)
+            throws IOException, InterruptedException {
+        long[] ready = new long[runs];
+        long[] rss = new long[runs];
+        runOnce(targetDir, command);
+        for (int i = 0; i < runs; i++) {
+            long[] result = runOnce(targetDir, command);
+            ready[i] = result[0];
+            rss[i] = result[1];
+        }
+        return new long[][] {ready, rss};
+    }
+    
+    private static long[] runOnce(Path targetDir, Command command) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> arguments = new ArrayList<>();
+        arguments.add(PackagingVariant.javaExecutable().toString());
+        arguments.addAll(command.arguments(port));
+        
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(arguments)
+            .directory(targetDir.toFile())
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try {
+            URL url = new URL("http://localhost:" + port + "/packaging");
+            while (!isReady(url)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Server exited with " + process.exitValue() + ": " + arguments);
+                }
+                if (System.nanoTime() - start > STARTUP_TIMEOUT_NANOS) {
+                    throw new IllegalStateException("Server did not start: " + arguments);
+                }
+                Thread.sleep(5);
+            }
+            long elapsed = System.nanoTime() - start;
+            return new long[] {elapsed, residentBytes(process.pid())};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+    
+    private static boolean isReady(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(1000);
+            connection.setReadTimeout(10000);
+            try {
+                return connection.getResponseCode() == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * VmRSS of the process, or -1 where /proc is not available
+     */
+    private static long residentBytes(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+            }
+        }
+        return -1;
+    }
+    
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
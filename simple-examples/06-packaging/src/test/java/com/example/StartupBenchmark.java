@@ -0,0 +1,105 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures PackagingDemo startup for every packaged JAR, with the JDK's default
+ * CDS archive only and with the application's AppCDS archive.
+ * Time-to-first-output is the time from process start until the first byte
+ * arrives on stdout; total is the time until the process exits.
+ * Run by the "appcds" Maven profile in the verify phase.
+ */
+public class StartupBenchmark {
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: StartupBenchmark <target directory> <final name> [runs]");
+            System.exit(2);
+        }
+        Path targetDir = Path.of(args[0]);
+        String finalName = args[1];
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        
+        System.out.printf("%nStartup benchmark (median of %d runs, Java %s)%n", runs, System.getProperty("java.version"));
+        System.out.printf("%-12s %-8s %18s %12s%n", "variant", "archive", "first output (ms)", "total (ms)");
+        
+        for (PackagingVariant variant : PackagingVariant.values()) {
+            if (!variant.isBuilt(targetDir, finalName)) {
+                continue;
+            }
+            Path jar = variant.jar(targetDir, finalName);
+            Path archive = variant.archive(targetDir, finalName);
+            
+            report(variant, "default", measure(targetDir, runs, "-jar", jar.toString()));
+            if (Files.isRegularFile(archive)) {
+                report(variant, "appcds", measure(targetDir, runs,
+                    "-XX:SharedArchiveFile=" + archive, "-Xshare:auto", "-jar", jar.toString()));
+            }
+        }
+    }
+    
+    private static void report(PackagingVariant variant, String mode, long[][] result) {
+        System.out.printf("%-12s %-8s %18.1f %12.1f%n", variant.label(), mode,
+                          median(result[0]) / 1e6, median(result[1]) / 1e6);
+    }
+    
+    /**
+     * Runs the JAR repeatedly after one unmeasured warm-up run (to fill the OS file cache)
+     *
+     * @return nanoseconds to first output and to exit, one entry per run
+     */
+    private static long[][] measure(Path targetDir, int runs, String... jvmArgs)
+            throws IOException, InterruptedException {
+        long[] firstOutput = new long[runs];
+        long[] total = new long[runs];
+        runOnce(targetDir, jvmArgs);
+        for (int i = 0; i < runs; i++) {
+            long[] timings = runOnce(targetDir, jvmArgs);
+            firstOutput[i] = timings[0];
+            total[i] = timings[1];
+        }
+        return new long[][] {firstOutput, total};
+    }
+    
+    private static long[] runOnce(Path targetDir, String... jvmArgs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(PackagingVariant.javaExecutable().toString());
+        command.addAll(Arrays.asList(jvmArgs));
+        
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .directory(targetDir.toFile())
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        
+        long firstOutput = -1;
+        byte[] buffer = new byte[8192];
+        try (InputStream out = process.getInputStream()) {
+            int read;
+            while ((read = out.read(buffer)) != -1) {
+                if (firstOutput < 0 && read > 0) {
+                    firstOutput = System.nanoTime() - start;
+                }
+            }
+        }
+        if (!process.waitFor(120, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Startup run timed out: " + command);
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[] {firstOutput < 0 ? elapsed : firstOutput, elapsed};
+    }
+    
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,343 @@
+package com.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Pushes large generated uploads through PackagingServlet in an embedded container.
+ * Runs in its own surefire execution whose heap is capped by the test.heap.size
+ * property (128m by default), far below the upload size, so buffering a body in
+ * memory would fail outright.
+ * Override the size with -Dupload.test.bytes=8589934592 for longer runs.
+ */
+class StreamingUploadTest {
+    
+    private static final long UPLOAD_BYTES = Long.getLong("upload.test.bytes", 2L * 1024 * 1024 * 1024);
+    private static final long LIMIT_BYTES = 1024 * 1024;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private static EmbeddedTomcat tomcat;
+    private static Path uploadDirectory;
+    private final HttpClient client = HttpClient.newHttpClient();
+    
+    @BeforeAll
+    static void startContainer() throws Exception {
+        uploadDirectory = Files.createTempDirectory("uploads");
+        tomcat = new EmbeddedTomcat(16);
+        
+        Map<String, String> params = new HashMap<>();
+        params.put(PackagingServlet.UPLOAD_DIRECTORY, uploadDirectory.toString());
+        tomcat.addServlet("packaging", new PackagingServlet(), params, "/packaging");
+        
+        Map<String, String> limitedParams = new HashMap<>(params);
+        limitedParams.put(PackagingServlet.UPLOAD_MAX_BYTES_PARAM, String.valueOf(LIMIT_BYTES));
+        tomcat.addServlet("limited", new PackagingServlet(), limitedParams, "/limited");
+        // As in web.xml, unmapped URLs get the page
+        tomcat.addErrorPage(404, "/packaging");
+        tomcat.start();
+    }
+    
+    @AfterAll
+    static void stopContainer() throws Exception {
+        tomcat.close();
+        try (Stream<Path> files = Files.list(uploadDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(uploadDirectory);
+    }
+    
+    private HttpRequest.Builder upload(String path, InputStream body, long length) {
+        HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(() -> body);
+        if (length >= 0) {
+            publisher = HttpRequest.BodyPublishers.fromPublisher(publisher, length);
+        }
+        return HttpRequest.newBuilder(tomcat.uri(path)).POST(publisher);
+    }
+    
+    private JsonNode send(HttpRequest.Builder builder, int expectedStatus) throws Exception {
+        HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).as(response.body()).isEqualTo(expectedStatus);
+        return expectedStatus == 201 ? MAPPER.readTree(response.body()) : null;
+    }
+    
+    private static long crcOf(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try (FileChannel channel = FileChannel.open(file)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+    
+    private static void report(String label, JsonNode summary) {
+        System.out.printf("%s: %,d bytes in %d ms (%.1f MB/s), %,d bytes allocated by the request thread%n",
+                          label, summary.get("bytes").asLong(), summary.get("millis").asLong(),
+                          summary.get("mbPerSecond").asDouble(), summary.get("heapAllocatedBytes").asLong());
+    }
+    
+    @Nested
+    @DisplayName("Raw Upload Tests")
+    class RawUploadTests {
+        
+        @Test
+        @DisplayName("Should stream a multi-GB raw body to disk")
+        void shouldStreamLargeRawBody() throws Exception {
+            GeneratedStream body = new GeneratedStream(UPLOAD_BYTES, 1);
+            
+            JsonNode summary = send(upload("/packaging?name=large.bin", body, UPLOAD_BYTES)
+                .header("Content-Type", "application/octet-stream"), 201);
+            report("Raw upload", summary);
+            
+            Path stored = uploadDirectory.resolve("large.bin");
+            assertThat(summary.get("bytes").asLong()).isEqualTo(UPLOAD_BYTES);
+            assertThat(Files.size(stored)).isEqualTo(UPLOAD_BYTES);
+            assertThat(crcOf(stored)).isEqualTo(body.crc());
+            // The container allocates a small wrapper per 8 KiB read; the body itself is never held
+            assertThat(summary.get("heapAllocatedBytes").asLong()).isLessThan(UPLOAD_BYTES / 50);
+            Files.delete(stored);
+        }
+        
+        @Test
+        @DisplayName("Should take the file name from X-File-Name and strip directories")
+        void shouldSanitizeFileName() throws Exception {
+            JsonNode summary = send(upload("/packaging", new GeneratedStream(1000, 2), 1000)
+                .header("X-File-Name", "../../etc/passwd"), 201);
+            
+            assertThat(summary.get("files").has("passwd")).isTrue();
+            assertThat(Files.size(uploadDirectory.resolve("passwd"))).isEqualTo(1000);
+            Files.delete(uploadDirectory.resolve("passwd"));
+        }
+        
+        @Test
+        @DisplayName("Should store a clashing file name under a numbered name instead of replacing the file")
+        void shouldNotReplaceExistingFile() throws Exception {
+            GeneratedStream first = new GeneratedStream(1000, 3);
+            GeneratedStream second = new GeneratedStream(2000, 4);
+            
+            send(upload("/packaging?name=report.pdf", first, 1000), 201);
+            JsonNode summary = send(upload("/packaging?name=report.pdf", second, 2000), 201);
+            
+            assertThat(summary.get("files").get("report-1.pdf").asLong()).isEqualTo(2000);
+            assertThat(crcOf(uploadDirectory.resolve("report.pdf"))).isEqualTo(first.crc());
+            assertThat(crcOf(uploadDirectory.resolve("report-1.pdf"))).isEqualTo(second.crc());
+            Files.delete(uploadDirectory.resolve("report.pdf"));
+            Files.delete(uploadDirectory.resolve("report-1.pdf"));
+        }
+        
+        @Test
+        @DisplayName("Should receive concurrent uploads")
+        void shouldReceiveConcurrentUploads() throws Exception {
+            long size = 64L * 1024 * 1024;
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                responses.add(client.sendAsync(upload("/packaging?name=concurrent-" + i, new GeneratedStream(size, i), size)
+                                                   .build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            
+            for (int i = 0; i < 4; i++) {
+                assertThat(responses.get(i).get().statusCode()).isEqualTo(201);
+                Path stored = uploadDirectory.resolve("concurrent-" + i);
+                assertThat(crcOf(stored)).isEqualTo(new GeneratedStream(size, i).drain());
+                Files.delete(stored);
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Multipart Upload Tests")
+    class MultipartUploadTests {
+        
+        @Test
+        @DisplayName("Should stream every file part of a large multipart body")
+        void shouldStreamMultipartBody() throws Exception {
+            long largeSize = UPLOAD_BYTES / 4;
+            GeneratedStream large = new GeneratedStream(largeSize, 3);
+            GeneratedStream small = new GeneratedStream(10_000, 4);
+            String boundary = "----upload-boundary-7d91";
+            
+            InputStream body = new SequenceInputStream(Collections.enumeration(List.of(
+                text("preamble\r\n--" + boundary + "\r\n"
+                         + "Content-Disposition: form-data; name=\"comment\"\r\n\r\n"
+                         + "not a file\r\n--" + boundary + "\r\n"
+                         + "Content-Disposition: form-data; name=\"first\"; filename=\"part-large.bin\"\r\n"
+                         + "Content-Type: application/octet-stream\r\n\r\n"),
+                large,
+                text("\r\n--" + boundary + "\r\n"
+                         + "Content-Disposition: form-data; name=\"second\"; filename=\"C:\\\\tmp\\\\part-small.bin\"\r\n\r\n"),
+                small,
+                text("\r\n--" + boundary + "--\r\n"))));
+            
+            JsonNode summary = send(upload("/packaging", body, -1)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary), 201);
+            report("Multipart upload", summary);
+            
+            assertThat(summary.get("files").get("part-large.bin").asLong()).isEqualTo(largeSize);
+            assertThat(summary.get("files").get("part-small.bin").asLong()).isEqualTo(10_000);
+            assertThat(summary.get("files").has("comment")).isFalse();
+            assertThat(crcOf(uploadDirectory.resolve("part-large.bin"))).isEqualTo(large.crc());
+            assertThat(crcOf(uploadDirectory.resolve("part-small.bin"))).isEqualTo(small.crc());
+            // Chunked decoding adds a little per read on top of the raw case
+            assertThat(summary.get("heapAllocatedBytes").asLong()).isLessThan(largeSize / 25);
+            Files.delete(uploadDirectory.resolve("part-large.bin"));
+            Files.delete(uploadDirectory.resolve("part-small.bin"));
+        }
+        
+        @Test
+        @DisplayName("Should reject a body that ends before the closing boundary")
+        void shouldRejectTruncatedBody() throws Exception {
+            String boundary = "truncated";
+            InputStream body = text("--" + boundary + "\r\n"
+                                        + "Content-Disposition: form-data; name=\"f\"; filename=\"cut.bin\"\r\n\r\n"
+                                        + "no closing boundary");
+            
+            send(upload("/packaging", body, -1)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary), 400);
+            assertThat(uploadDirectory.resolve("cut.bin")).doesNotExist();
+        }
+        
+        private InputStream text(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    @Nested
+    @DisplayName("Size Limit Tests")
+    class SizeLimitTests {
+        
+        @Test
+        @DisplayName("Should reject a declared Content-Length above the limit")
+        void shouldRejectDeclaredLength() throws Exception {
+            long size = LIMIT_BYTES + 512 * 1024;
+            send(upload("/limited?name=declared.bin", new GeneratedStream(size, 5), size), 413);
+            assertThat(uploadDirectory.resolve("declared.bin")).doesNotExist();
+        }
+        
+        @Test
+        @DisplayName("Should stop a chunked body once it passes the limit")
+        void shouldRejectChunkedBodyAboveLimit() throws Exception {
+            send(upload("/limited?name=chunked.bin", new GeneratedStream(LIMIT_BYTES + 512 * 1024, 6), -1), 413);
+            
+            assertThat(uploadDirectory.resolve("chunked.bin")).doesNotExist();
+            try (Stream<Path> files = Files.list(uploadDirectory)) {
+                assertThat(files.filter(file -> file.getFileName().toString().endsWith(".part"))).isEmpty();
+            }
+        }
+    }
+    
+    @Nested
+    @DisplayName("Dispatch Tests")
+    class DispatchTests {
+        
+        @Test
+        @DisplayName("Should answer a POST to an unmapped URL with the 404 page and store nothing")
+        void shouldNotStoreErrorDispatch() throws Exception {
+            HttpResponse<String> raw = client.send(
+                upload("/unmapped?name=stray.bin", new GeneratedStream(64 * 1024, 7), 64 * 1024).build(),
+                HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> json = client.send(
+                HttpRequest.newBuilder(tomcat.uri("/unmapped"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"echo\":\"me\"}"))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+            
+            assertThat(raw.statusCode()).isEqualTo(404);
+            assertThat(raw.body()).contains("<html");
+            assertThat(json.statusCode()).isEqualTo(404);
+            assertThat(json.body()).doesNotContain("echo");
+            assertThat(uploadDirectory.resolve("stray.bin")).doesNotExist();
+            try (Stream<Path> files = Files.list(uploadDirectory)) {
+                assertThat(files.map(file -> file.getFileName().toString()))
+                    .noneMatch(name -> name.startsWith("stray") || name.endsWith(".part"));
+            }
+        }
+    }
+    
+    /**
+     * Deterministic pseudo-random body of a given length, generated on the fly
+     * from a small repeating block while tracking its CRC32
+     */
+    private static final class GeneratedStream extends InputStream {
+        private final byte[] block = new byte[64 * 1024 + 7];
+        private final CRC32 crc = new CRC32();
+        private final long length;
+        private long position;
+        
+        private GeneratedStream(long length, long seed) {
+            this.length = length;
+            new Random(seed).nextBytes(block);
+        }
+        
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if (position >= length) {
+                return -1;
+            }
+            int blockOffset = (int) (position % block.length);
+            int n = (int) Math.min(Math.min(count, block.length - blockOffset), length - position);
+            System.arraycopy(block, blockOffset, buffer, offset, n);
+            crc.update(buffer, offset, n);
+            position += n;
+            return n;
+        }
+        
+        /**
+         * CRC32 of everything read so far
+         */
+        private long crc() {
+            return crc.getValue();
+        }
+        
+        /**
+         * Reads the remaining bytes and returns the CRC32 of the whole body
+         */
+        private long drain() {
+            byte[] buffer = new byte[block.length];
+            while (read(buffer, 0, buffer.length) >= 0) {
+                // only computing the checksum
+            }
+            return crc();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Baseline side of ServerStartupBenchmark: a plain Tomcat deploying the WAR file
+ * the way a standalone container would, with Tomcat's default web.xml, the
+ * webapp class loader reading WEB-INF/classes and WEB-INF/lib, and the default
+ * connector settings. Its class path holds only Tomcat itself. The WAR is
+ * expanded below the base directory once and reused while it is unchanged.
+ */
+public class WarDeployment {
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: WarDeployment <war file> <port> <base directory>");
+            System.exit(2);
+        }
+        Path baseDir = Files.createDirectories(Path.of(args[2]).toAbsolutePath());
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        Files.createDirectories(baseDir.resolve("webapps"));
+        Connector connector = new Connector();
+        connector.setPort(Integer.parseInt(args[1]));
+        tomcat.setConnector(connector);
+        tomcat.addWebapp("", Path.of(args[0]).toAbsolutePath().toString());
+        tomcat.start();
+        tomcat.getServer().await();
+    }
+}
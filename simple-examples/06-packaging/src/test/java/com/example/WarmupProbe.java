@@ -0,0 +1,67 @@
+package com.example;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Child-JVM side of the warm-up comparison in JitWarmupTest. The JIT state is
+ * JVM-wide, so each mode needs a fresh process: this starts PackagingServlet
+ * (load-on-startup, so init() and any warm-up finish before the port opens),
+ * warms Tomcat and the client on a trivial servlet, then times the first
+ * requests to /packaging and prints "first=<nanos> total=<nanos>".
+ */
+public class WarmupProbe {
+    
+    static final int REQUESTS = 10;
+    
+    public static void main(String[] args) throws Exception {
+        boolean warmup = Boolean.parseBoolean(args[0]);
+        Map<String, String> params = new HashMap<>();
+        params.put(PackagingServlet.JSON_TTL_PARAM, "0");
+        params.put(PackagingServlet.WARMUP_ENABLED_PARAM, String.valueOf(warmup));
+        params.put(PackagingServlet.WARMUP_BUDGET_PARAM, "8000");
+        
+        try (EmbeddedTomcat tomcat = new EmbeddedTomcat(4)) {
+            tomcat.addServlet("packaging", new PackagingServlet(), params, "/packaging").setLoadOnStartup(1);
+            tomcat.addServlet("ping", new PingServlet(), new HashMap<>(), "/ping");
+            tomcat.start();
+            
+            for (int i = 0; i < 50; i++) {
+                get(tomcat, "/ping");
+            }
+            long first = get(tomcat, "/packaging");
+            long total = first;
+            for (int i = 1; i < REQUESTS; i++) {
+                total += get(tomcat, "/packaging?n=" + i);
+            }
+            System.out.println("first=" + first + " total=" + total);
+        }
+    }
+    
+    private static long get(EmbeddedTomcat tomcat, String path) throws IOException {
+        long start = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) tomcat.uri(path).toURL().openConnection();
+        try (InputStream body = connection.getInputStream()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        if (connection.getResponseCode() != 200) {
+            throw new IOException(path + " answered " + connection.getResponseCode());
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private static final class PingServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            response.setContentType("text/plain");
+            response.getWriter().write("pong");
+        }
+    }
+}